@@ -394,4 +394,16 @@ public interface AnnotationSchemaService
             throws UIMAException, IOException;
 
     TypeAdapter getAdapter(AnnotationLayer aLayer);
+
+    /**
+     * Get the current schema snapshot of the given project. The snapshot is built on first access
+     * and shared until the schema of the project is changed through this service. Use it on hot
+     * paths (rendering, diffing, exporting) to avoid repeated queries and to work on a consistent
+     * view of the schema for the duration of a request.
+     *
+     * @param aProject
+     *            the project.
+     * @return the schema snapshot.
+     */
+    ProjectSchema getProjectSchema(Project aProject);
 }
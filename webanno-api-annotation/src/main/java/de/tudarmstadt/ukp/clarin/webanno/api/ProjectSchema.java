@@ -0,0 +1,299 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import org.apache.uima.cas.CAS;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.TypeAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.LinkMode;
+import de.tudarmstadt.ukp.clarin.webanno.model.Tag;
+import de.tudarmstadt.ukp.clarin.webanno.model.TagSet;
+
+/**
+ * Immutable snapshot of the annotation schema of a project: layers, features, tagsets, tags and
+ * the type adapters for the layers. A snapshot is built once per schema version and is shared
+ * between all users of the project. Whenever the schema of the project changes, the
+ * {@link AnnotationSchemaService} provides a new snapshot with a higher version.
+ * <p>
+ * The entities contained in the snapshot are detached copies which are shared as well and must
+ * not be modified, e.g. to store per-user settings in them. Editors which change the schema must
+ * load the entities via the regular {@link AnnotationSchemaService} methods. Snapshots are not
+ * serializable and should not be stored in Wicket models.
+ */
+public class ProjectSchema
+{
+    private final long projectId;
+    private final long version;
+
+    private final List<AnnotationLayer> layers;
+    private final Map<Long, AnnotationLayer> layersById = new HashMap<>();
+    private final Map<String, AnnotationLayer> layersByName = new HashMap<>();
+
+    private final List<AnnotationFeature> features;
+    private final Map<Long, AnnotationFeature> featuresById = new HashMap<>();
+    private final Map<Long, List<AnnotationFeature>> featuresByLayer = new HashMap<>();
+
+    private final Map<Long, List<AnnotationLayer>> attachedRelationLayers = new HashMap<>();
+    private final Map<Long, List<AnnotationFeature>> attachedLinkFeatures = new HashMap<>();
+
+    private final List<TagSet> tagSets;
+    private final Map<Long, TagSet> tagSetsById = new HashMap<>();
+    private final Map<Long, List<Tag>> tagsByTagSet = new HashMap<>();
+
+    private final Map<Long, TypeAdapter> adapters = new HashMap<>();
+
+    /**
+     * @param aProjectId
+     *            the project ID.
+     * @param aVersion
+     *            the schema version this snapshot was built from.
+     * @param aLayers
+     *            the layers of the project ordered by UI name.
+     * @param aFeatures
+     *            the features of the project ordered by layer UI name and feature UI name.
+     * @param aTagSets
+     *            the tagsets of the project ordered by name.
+     * @param aTags
+     *            the tags of all tagsets of the project ordered by name.
+     * @param aAdapterFactory
+     *            creates the type adapter for a layer given its features.
+     */
+    public ProjectSchema(long aProjectId, long aVersion, List<AnnotationLayer> aLayers,
+            List<AnnotationFeature> aFeatures, List<TagSet> aTagSets, List<Tag> aTags,
+            BiFunction<AnnotationLayer, List<AnnotationFeature>, TypeAdapter> aAdapterFactory)
+    {
+        projectId = aProjectId;
+        version = aVersion;
+        layers = unmodifiableList(new ArrayList<>(aLayers));
+        features = unmodifiableList(new ArrayList<>(aFeatures));
+        tagSets = unmodifiableList(new ArrayList<>(aTagSets));
+
+        Map<Long, List<AnnotationFeature>> featureLists = new LinkedHashMap<>();
+        for (AnnotationLayer layer : layers) {
+            layersById.put(layer.getId(), layer);
+            layersByName.put(layer.getName(), layer);
+            featureLists.put(layer.getId(), new ArrayList<>());
+        }
+
+        for (AnnotationFeature feature : features) {
+            featuresById.put(feature.getId(), feature);
+            List<AnnotationFeature> list = featureLists.get(feature.getLayer().getId());
+            if (list != null) {
+                list.add(feature);
+            }
+        }
+
+        // Link features are reported in the order of their UI name, regardless of their layer
+        List<AnnotationFeature> linkFeatures = new ArrayList<>();
+        for (AnnotationFeature feature : features) {
+            if (LinkMode.SIMPLE.equals(feature.getLinkMode())
+                    || LinkMode.WITH_ROLE.equals(feature.getLinkMode())) {
+                linkFeatures.add(feature);
+            }
+        }
+        linkFeatures.sort(Comparator.comparing(AnnotationFeature::getUiName));
+
+        for (AnnotationLayer layer : layers) {
+            List<AnnotationFeature> layerFeatures = unmodifiableList(
+                    featureLists.get(layer.getId()));
+            featuresByLayer.put(layer.getId(), layerFeatures);
+            adapters.put(layer.getId(), aAdapterFactory.apply(layer, layerFeatures));
+
+            List<AnnotationLayer> relations = new ArrayList<>();
+            for (AnnotationLayer l : layers) {
+                if (!WebAnnoConst.RELATION_TYPE.equals(l.getType())) {
+                    continue;
+                }
+                if ((l.getAttachType() != null && l.getAttachType().getId() == layer.getId())
+                        || (l.getAttachFeature() != null
+                                && layer.getName().equals(l.getAttachFeature().getType()))) {
+                    relations.add(l);
+                }
+            }
+            attachedRelationLayers.put(layer.getId(), unmodifiableList(relations));
+
+            List<AnnotationFeature> links = new ArrayList<>();
+            for (AnnotationFeature f : linkFeatures) {
+                if (layer.getName().equals(f.getType())
+                        || CAS.TYPE_NAME_ANNOTATION.equals(f.getType())) {
+                    links.add(f);
+                }
+            }
+            attachedLinkFeatures.put(layer.getId(), unmodifiableList(links));
+        }
+
+        Map<Long, List<Tag>> tagLists = new HashMap<>();
+        for (TagSet tagSet : tagSets) {
+            tagSetsById.put(tagSet.getId(), tagSet);
+            tagLists.put(tagSet.getId(), new ArrayList<>());
+        }
+        for (Tag tag : aTags) {
+            List<Tag> list = tagLists.get(tag.getTagSet().getId());
+            if (list != null) {
+                list.add(tag);
+            }
+        }
+        for (Map.Entry<Long, List<Tag>> e : tagLists.entrySet()) {
+            tagsByTagSet.put(e.getKey(), unmodifiableList(e.getValue()));
+        }
+    }
+
+    public long getProjectId()
+    {
+        return projectId;
+    }
+
+    /**
+     * @return the schema version. Increases every time the schema of the project is changed.
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return the layers ordered by UI name.
+     */
+    public List<AnnotationLayer> getLayers()
+    {
+        return layers;
+    }
+
+    /**
+     * @return the layer or {@code null} if there is no such layer in the project.
+     */
+    public AnnotationLayer getLayer(long aId)
+    {
+        return layersById.get(aId);
+    }
+
+    /**
+     * @return the layer or {@code null} if there is no such layer in the project.
+     */
+    public AnnotationLayer getLayer(String aName)
+    {
+        return layersByName.get(aName);
+    }
+
+    /**
+     * @return all features of the project ordered by layer UI name and feature UI name.
+     */
+    public List<AnnotationFeature> getFeatures()
+    {
+        return features;
+    }
+
+    /**
+     * @return the features of the given layer ordered by UI name.
+     */
+    public List<AnnotationFeature> getFeatures(AnnotationLayer aLayer)
+    {
+        return featuresByLayer.getOrDefault(aLayer.getId(), emptyList());
+    }
+
+    /**
+     * @return the feature or {@code null} if there is no such feature in the project.
+     */
+    public AnnotationFeature getFeature(long aId)
+    {
+        return featuresById.get(aId);
+    }
+
+    /**
+     * @return the feature or {@code null} if there is no such feature on the layer.
+     */
+    public AnnotationFeature getFeature(String aName, AnnotationLayer aLayer)
+    {
+        for (AnnotationFeature feature : getFeatures(aLayer)) {
+            if (feature.getName().equals(aName)) {
+                return feature;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @see AnnotationSchemaService#listAttachedRelationLayers(AnnotationLayer)
+     */
+    public List<AnnotationLayer> getAttachedRelationLayers(AnnotationLayer aLayer)
+    {
+        return attachedRelationLayers.getOrDefault(aLayer.getId(), emptyList());
+    }
+
+    /**
+     * @see AnnotationSchemaService#listAttachedLinkFeatures(AnnotationLayer)
+     */
+    public List<AnnotationFeature> getAttachedLinkFeatures(AnnotationLayer aLayer)
+    {
+        return attachedLinkFeatures.getOrDefault(aLayer.getId(), emptyList());
+    }
+
+    /**
+     * @return the tagsets ordered by name.
+     */
+    public List<TagSet> getTagSets()
+    {
+        return tagSets;
+    }
+
+    /**
+     * @return the tagset or {@code null} if there is no such tagset in the project.
+     */
+    public TagSet getTagSet(long aId)
+    {
+        return tagSetsById.get(aId);
+    }
+
+    /**
+     * @return the tags of the given tagset ordered by name.
+     */
+    public List<Tag> getTags(TagSet aTagSet)
+    {
+        return tagsByTagSet.getOrDefault(aTagSet.getId(), emptyList());
+    }
+
+    /**
+     * @return the type adapter of the layer or {@code null} if the layer is not part of the
+     *         project.
+     */
+    public TypeAdapter getAdapter(AnnotationLayer aLayer)
+    {
+        return adapters.get(aLayer.getId());
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ProjectSchema [project=" + projectId + ", version=" + version + ", layers="
+                + layers.size() + ", features=" + features.size() + ", tagSets="
+                + tagSets.size() + "]";
+    }
+}
@@ -135,8 +135,17 @@ public interface AnnotatorState
 
     void setPreferences(AnnotationPreference aPreferences);
 
+    /**
+     * @return the layers of the project. Their enabled flag reflects the preferences of the
+     *         current user, so they are copies and not the managed entities.
+     */
     List<AnnotationLayer> getAnnotationLayers();
 
+    /**
+     * @param aAnnotationLayers
+     *            copies of the layers of the project. The enabled flag is changed per user, so
+     *            managed entities must not be passed here.
+     */
     void setAnnotationLayers(List<AnnotationLayer> aAnnotationLayers);
 
     // ---------------------------------------------------------------------------------------------
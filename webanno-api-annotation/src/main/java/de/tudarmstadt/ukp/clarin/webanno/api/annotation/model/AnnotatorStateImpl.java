@@ -21,17 +21,29 @@ import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUt
 import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getLastSentenceInDisplayWindow;
 import static org.apache.uima.fit.util.JCasUtil.select;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.SerializationUtils;
 import org.apache.uima.cas.CASException;
 import org.apache.uima.jcas.JCas;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
+import de.tudarmstadt.ukp.clarin.webanno.constraints.ConstraintsService;
 import de.tudarmstadt.ukp.clarin.webanno.constraints.model.ParsedConstraints;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
@@ -42,34 +54,48 @@ import de.tudarmstadt.ukp.clarin.webanno.model.ScriptDirection;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.Tag;
 import de.tudarmstadt.ukp.clarin.webanno.model.TagSet;
+import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.clarin.webanno.support.ApplicationContextProvider;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 
 /**
- * Data model for annotation editors
+ * Data model for annotation editors.
+ * <p>
+ * The state is part of the Wicket page state and serialized on every request. Thus, entities and
+ * derived data (project, document, user, layers, constraints) are kept in transient fields and
+ * only their IDs are serialized. When the state is deserialized, e.g. when the page is restored
+ * from the page store, they are lazily reloaded from the services. The layers are served from the
+ * schema query cache and the constraints from the per-project cache of the
+ * {@link ConstraintsService}, so reloading is cheap.
  */
 public class AnnotatorStateImpl
     implements Serializable, AnnotatorState, TransientActionContext
 {
     private static final long serialVersionUID = 1078613192789450714L;
 
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotatorStateImpl.class);
+
     /**
      * The Project the annotator working on
      */
-    private Project project;
+    private transient Project project;
+    private Long projectId;
     private boolean projectLocked = false;
 
     /**
      * The source document the to be annotated
      */
-    private SourceDocument document;
+    private transient SourceDocument document;
+    private Long documentId;
     private int documentIndex = -1;
     private int numberOfDocuments = -1;
 
     /**
      * The current user annotating the document
      */
-    private User user;
+    private transient User user;
+    private String username;
 
     private ScriptDirection scriptDirection;
 
@@ -123,12 +149,16 @@ public class AnnotatorStateImpl
     /**
      * Constraints object from rule file
      */
-    private ParsedConstraints constraints;
+    private transient ParsedConstraints constraints;
+    private transient boolean constraintsResolved;
+    private boolean constraintsLoaded;
 
     /**
      * The annotation layers available in the current project.
      */
-    private List<AnnotationLayer> annotationLayers = new ArrayList<>();
+    private transient List<AnnotationLayer> annotationLayers = new ArrayList<>();
+    private List<Long> annotationLayerIds = new ArrayList<>();
+    private Set<Long> enabledAnnotationLayerIds = new HashSet<>();
 
     private AnnotationPreference preferences = new AnnotationPreference();
 
@@ -142,20 +172,28 @@ public class AnnotatorStateImpl
      * The previously selected {@link TagSet} and {@link Tag} for a span/Arc annotation so as toz
      * pre-fill the type in the span/arc annotation dialog (only for new span/arc annotations)
      */
-    private AnnotationLayer rememberedSpanLayer;
-    private AnnotationLayer rememberedArcLayer;
-
-    private Map<AnnotationFeature, Serializable> rememberedSpanFeatures = new HashMap<>();
-    private Map<AnnotationFeature, Serializable> rememberedArcFeatures = new HashMap<>();
+    private transient AnnotationLayer rememberedSpanLayer;
+    private Long rememberedSpanLayerId;
+    private transient AnnotationLayer rememberedArcLayer;
+    private Long rememberedArcLayerId;
+
+    // The remembered values are serialized by feature ID, the features are reloaded when needed
+    private transient Map<AnnotationFeature, Serializable> rememberedSpanFeatures =
+            new HashMap<>();
+    private Map<Long, Serializable> rememberedSpanFeatureValues = new HashMap<>();
+    private transient Map<AnnotationFeature, Serializable> rememberedArcFeatures = new HashMap<>();
+    private Map<Long, Serializable> rememberedArcFeatureValues = new HashMap<>();
 
     // the selected annotation layer
-    private AnnotationLayer selectedAnnotationLayer;
+    private transient AnnotationLayer selectedAnnotationLayer;
+    private Long selectedAnnotationLayerId;
 
     // Text field to capture key-bindings for forward annotations
     private String forwardAnno;
     
     // the default annotation layer
-    private AnnotationLayer defaultAnnotationLayer;
+    private transient AnnotationLayer defaultAnnotationLayer;
+    private Long defaultAnnotationLayerId;
 
     // the name of the default annotation layer
     private String layerName;
@@ -174,6 +212,16 @@ public class AnnotatorStateImpl
     @Override
     public ParsedConstraints getConstraints()
     {
+        if (!constraintsResolved && constraintsLoaded) {
+            try {
+                constraints = getBean(ConstraintsService.class).loadConstraints(getProject());
+            }
+            catch (Exception e) {
+                LOG.error("Unable to reload constraints of project [{}]", projectId, e);
+                constraints = null;
+            }
+        }
+        constraintsResolved = true;
         return constraints;
     }
 
@@ -181,6 +229,8 @@ public class AnnotatorStateImpl
     public void setConstraints(ParsedConstraints aConstraints)
     {
         constraints = aConstraints;
+        constraintsResolved = true;
+        constraintsLoaded = true;
     }
 
     @Override
@@ -212,6 +262,9 @@ public class AnnotatorStateImpl
     @Override
     public Project getProject()
     {
+        if (project == null && projectId != null) {
+            project = getBean(ProjectService.class).getProject(projectId);
+        }
         return project;
     }
 
@@ -219,6 +272,7 @@ public class AnnotatorStateImpl
     public void setProject(Project aProject)
     {
         project = aProject;
+        projectId = aProject.getId();
         setScriptDirection(project.getScriptDirection());
     }
 
@@ -260,6 +314,9 @@ public class AnnotatorStateImpl
     @Override
     public SourceDocument getDocument()
     {
+        if (document == null && documentId != null) {
+            document = getBean(DocumentService.class).getSourceDocument(projectId, documentId);
+        }
         return document;
     }
 
@@ -279,6 +336,7 @@ public class AnnotatorStateImpl
     public void setDocument(SourceDocument aDocument, List<SourceDocument> aDocuments)
     {
         document = aDocument;
+        documentId = aDocument != null ? aDocument.getId() : null;
         if (aDocument != null) {
             documentIndex = aDocuments.indexOf(aDocument);
             numberOfDocuments = aDocuments.size();
@@ -292,6 +350,9 @@ public class AnnotatorStateImpl
     @Override
     public User getUser()
     {
+        if (user == null && username != null) {
+            user = getBean(UserDao.class).get(username);
+        }
         return user;
     }
 
@@ -299,6 +360,7 @@ public class AnnotatorStateImpl
     public void setUser(User aUser)
     {
         user = aUser;
+        username = aUser != null ? aUser.getUsername() : null;
     }
 
     @Override
@@ -348,6 +410,26 @@ public class AnnotatorStateImpl
     @Override
     public List<AnnotationLayer> getAnnotationLayers()
     {
+        if (annotationLayers == null && annotationLayerIds.isEmpty()) {
+            annotationLayers = new ArrayList<>();
+        }
+        else if (annotationLayers == null) {
+            // The enabled flag is per user, so it is set on copies of the layers. The managed
+            // entities are shared within the persistence context and changes to them would be
+            // written back to the database.
+            List<AnnotationLayer> copies = SerializationUtils.clone(new ArrayList<>(
+                    getBean(AnnotationSchemaService.class).listAnnotationLayer(getProject())));
+            Map<Long, AnnotationLayer> layers = copies.stream()
+                    .collect(Collectors.toMap(AnnotationLayer::getId, layer -> layer));
+            annotationLayers = new ArrayList<>();
+            for (Long id : annotationLayerIds) {
+                AnnotationLayer layer = layers.get(id);
+                if (layer != null) {
+                    layer.setEnabled(enabledAnnotationLayerIds.contains(id));
+                    annotationLayers.add(layer);
+                }
+            }
+        }
         return annotationLayers;
     }
 
@@ -378,18 +460,27 @@ public class AnnotatorStateImpl
     @Override
     public AnnotationLayer getRememberedSpanLayer()
     {
+        if (rememberedSpanLayer == null) {
+            rememberedSpanLayer = loadLayer(rememberedSpanLayerId);
+        }
         return rememberedSpanLayer;
     }
 
     @Override
     public AnnotationLayer getRememberedArcLayer()
     {
+        if (rememberedArcLayer == null) {
+            rememberedArcLayer = loadLayer(rememberedArcLayerId);
+        }
         return rememberedArcLayer;
     }
 
     @Override
     public Map<AnnotationFeature, Serializable> getRememberedSpanFeatures()
     {
+        if (rememberedSpanFeatures == null) {
+            rememberedSpanFeatures = loadFeatureValues(rememberedSpanFeatureValues);
+        }
         return rememberedSpanFeatures;
     }
 
@@ -415,6 +506,9 @@ public class AnnotatorStateImpl
     @Override
     public Map<AnnotationFeature, Serializable> getRememberedArcFeatures()
     {
+        if (rememberedArcFeatures == null) {
+            rememberedArcFeatures = loadFeatureValues(rememberedArcFeatureValues);
+        }
         return rememberedArcFeatures;
     }
 
@@ -482,6 +576,9 @@ public class AnnotatorStateImpl
     @Override
     public AnnotationLayer getSelectedAnnotationLayer()
     {
+        if (selectedAnnotationLayer == null) {
+            selectedAnnotationLayer = loadLayer(selectedAnnotationLayerId);
+        }
         return selectedAnnotationLayer;
     }
 
@@ -489,11 +586,15 @@ public class AnnotatorStateImpl
     public void setSelectedAnnotationLayer(AnnotationLayer selectedAnnotationLayer)
     {
         this.selectedAnnotationLayer = selectedAnnotationLayer;
+        this.selectedAnnotationLayerId = layerId(selectedAnnotationLayer);
     }
 
     @Override
     public AnnotationLayer getDefaultAnnotationLayer()
     {
+        if (defaultAnnotationLayer == null) {
+            defaultAnnotationLayer = loadLayer(defaultAnnotationLayerId);
+        }
         return defaultAnnotationLayer;
     }
 
@@ -501,6 +602,7 @@ public class AnnotatorStateImpl
     public void setDefaultAnnotationLayer(AnnotationLayer defaultAnnotationLayer)
     {
         this.defaultAnnotationLayer = defaultAnnotationLayer;
+        this.defaultAnnotationLayerId = layerId(defaultAnnotationLayer);
     }
 
     @Override
@@ -520,10 +622,12 @@ public class AnnotatorStateImpl
     {
         if (getSelection().isArc()) {
             this.rememberedArcLayer = getSelectedAnnotationLayer();
+            this.rememberedArcLayerId = layerId(rememberedArcLayer);
             setRememberedArcFeatures(featureModels);
         }
         else {
             this.rememberedSpanLayer = getSelectedAnnotationLayer();
+            this.rememberedSpanLayerId = layerId(rememberedSpanLayer);
             setRememberedSpanFeatures(featureModels);
         }
     }
@@ -533,8 +637,10 @@ public class AnnotatorStateImpl
     {
         setRememberedArcFeatures(null);
         this.rememberedArcLayer = null;
+        this.rememberedArcLayerId = null;
         setRememberedSpanFeatures(null);
         this.rememberedSpanLayer = null;
+        this.rememberedSpanLayerId = null;
     }
 
     @Override
@@ -632,4 +738,67 @@ public class AnnotatorStateImpl
     {
         this.isAnnotate = isAnnotate;
     }
+
+    private void writeObject(ObjectOutputStream aOut)
+        throws IOException
+    {
+        // The remembered values may have been changed in place, so capture their current state
+        if (rememberedSpanFeatures != null) {
+            rememberedSpanFeatureValues = featureValueIds(rememberedSpanFeatures);
+        }
+        if (rememberedArcFeatures != null) {
+            rememberedArcFeatureValues = featureValueIds(rememberedArcFeatures);
+        }
+
+        // The layers may have been enabled/disabled in place, so capture their current state
+        if (annotationLayers != null) {
+            annotationLayerIds = new ArrayList<>();
+            enabledAnnotationLayerIds = new HashSet<>();
+            for (AnnotationLayer layer : annotationLayers) {
+                annotationLayerIds.add(layer.getId());
+                if (layer.isEnabled()) {
+                    enabledAnnotationLayerIds.add(layer.getId());
+                }
+            }
+        }
+        aOut.defaultWriteObject();
+    }
+
+    private static Map<Long, Serializable> featureValueIds(
+            Map<AnnotationFeature, Serializable> aValues)
+    {
+        Map<Long, Serializable> values = new HashMap<>();
+        aValues.forEach((feature, value) -> values.put(feature.getId(), value));
+        return values;
+    }
+
+    private Map<AnnotationFeature, Serializable> loadFeatureValues(Map<Long, Serializable> aValues)
+    {
+        Map<AnnotationFeature, Serializable> values = new HashMap<>();
+        if (!aValues.isEmpty()) {
+            // Features which have been deleted meanwhile are skipped
+            for (AnnotationFeature feature : getBean(AnnotationSchemaService.class)
+                    .listAnnotationFeature(getProject())) {
+                if (aValues.containsKey(feature.getId())) {
+                    values.put(feature, aValues.get(feature.getId()));
+                }
+            }
+        }
+        return values;
+    }
+
+    private static Long layerId(AnnotationLayer aLayer)
+    {
+        return aLayer != null ? aLayer.getId() : null;
+    }
+
+    private static AnnotationLayer loadLayer(Long aId)
+    {
+        return aId != null ? getBean(AnnotationSchemaService.class).getLayer(aId) : null;
+    }
+
+    private static <T> T getBean(Class<T> aType)
+    {
+        return ApplicationContextProvider.getApplicationContext().getBean(aType);
+    }
 }
@@ -17,7 +17,7 @@
  */
 package de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering;
 
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.annotation.Resource;
@@ -26,6 +26,7 @@ import org.apache.uima.jcas.JCas;
 import org.springframework.stereotype.Component;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectSchema;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.ArcAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.ChainAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.SpanAdapter;
@@ -45,17 +46,22 @@ public class PreRenderer
     public void render(VDocument aResponse, AnnotatorState aState, JCas aJCas,
             List<AnnotationLayer> aLayers)
     {
+        ProjectSchema schema = annotationService.getProjectSchema(aState.getProject());
+        
         // Render visible (custom) layers
         for (AnnotationLayer layer : aLayers) {
-            List<AnnotationFeature> features = annotationService.listAnnotationFeature(layer);
-            
-            for (Iterator<AnnotationFeature> iter = features.iterator(); iter.hasNext();) {
-                if (!iter.next().isVisible()) {
-                    iter.remove();
+            List<AnnotationFeature> features = new ArrayList<>();
+            for (AnnotationFeature feature : schema.getFeatures(layer)) {
+                if (feature.isVisible()) {
+                    features.add(feature);
                 }
             }
 
-            TypeAdapter adapter = annotationService.getAdapter(layer);
+            TypeAdapter adapter = schema.getAdapter(layer);
+            if (adapter == null) {
+                // Layer has been added after the schema snapshot was taken
+                adapter = annotationService.getAdapter(layer);
+            }
             Renderer renderer = getRenderer(adapter);
             renderer.render(aJCas, features, aResponse, aState);
         }
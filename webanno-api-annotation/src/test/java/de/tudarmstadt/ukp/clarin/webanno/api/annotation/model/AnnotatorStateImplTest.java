@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.annotation.model;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.LinkMode;
+import de.tudarmstadt.ukp.clarin.webanno.model.Mode;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+
+public class AnnotatorStateImplTest
+{
+    private static final String MARKER = "description-marker";
+
+    private Project project;
+    private SourceDocument document;
+    private User user;
+    private List<AnnotationLayer> layers;
+    private List<AnnotationFeature> features;
+
+    @Before
+    public void setup()
+    {
+        project = new Project();
+        project.setId(1);
+        project.setName("project");
+        project.setDescription(MARKER + " " + StringUtils.repeat("Project description. ", 50));
+
+        document = new SourceDocument();
+        document.setId(2);
+        document.setName("document.txt");
+        document.setProject(project);
+
+        user = new User();
+        user.setUsername("annotator");
+
+        // A project with 20 layers of 5 features each
+        layers = new ArrayList<>();
+        features = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            AnnotationLayer layer = new AnnotationLayer("layer" + i, "Layer " + i, "span",
+                    project, false);
+            layer.setId(100 + i);
+            layer.setDescription(MARKER + " " + StringUtils.repeat("Layer description. ", 20));
+            layers.add(layer);
+
+            for (int j = 0; j < 5; j++) {
+                AnnotationFeature feature = new AnnotationFeature();
+                feature.setId(1000 + i * 10 + j);
+                feature.setName("feature" + j);
+                feature.setUiName("Feature " + j);
+                feature.setType("uima.cas.String");
+                feature.setDescription(
+                        MARKER + " " + StringUtils.repeat("Feature description. ", 20));
+                feature.setLayer(layer);
+                feature.setProject(project);
+                feature.setLinkMode(LinkMode.NONE);
+                feature.setRemember(true);
+                features.add(feature);
+            }
+        }
+    }
+
+    @Test
+    public void thatEntitiesAreNotSerialized()
+    {
+        AnnotatorStateImpl state = new AnnotatorStateImpl(Mode.ANNOTATION);
+        state.setProject(project);
+        state.setDocument(document, asList(document));
+        state.setUser(user);
+        state.setAnnotationLayers(layers);
+        state.setSelectedAnnotationLayer(layers.get(0));
+        state.setDefaultAnnotationLayer(layers.get(0));
+        int sizeBefore = SerializationUtils.serialize(state).length;
+
+        // Create an annotation on the first layer and remember its feature values
+        for (AnnotationFeature feature : features.subList(0, 5)) {
+            state.getFeatureStates().add(new FeatureState(feature, "value"));
+        }
+        state.rememberFeatures();
+        assertTrue(state.getRememberedSpanFeatures().containsKey(features.get(0)));
+        // The feature editors are cleared once the annotation is no longer selected
+        state.getFeatureStates().clear();
+
+        byte[] serializedState = SerializationUtils.serialize(state);
+        int sizeAfter = serializedState.length;
+
+        // Remembering the values must not pull the features, layers and project into the state
+        int featureSize = SerializationUtils.serialize(features.get(0)).length;
+        assertTrue("State grew from " + sizeBefore + " to " + sizeAfter + " bytes",
+                sizeAfter - sizeBefore < featureSize);
+
+        // The state used to serialize the entities along with the rest of the state
+        List<Serializable> entities = new ArrayList<>(asList(project, document, user));
+        entities.add(new ArrayList<>(layers));
+        entities.add(new ArrayList<>(features.subList(0, 5)));
+        int entitiesSize = SerializationUtils.serialize((Serializable) entities).length;
+        assertTrue("State has " + sizeAfter + " bytes, entities have " + entitiesSize,
+                sizeAfter < entitiesSize);
+
+        assertFalse(new String(serializedState, StandardCharsets.ISO_8859_1).contains(MARKER));
+    }
+}
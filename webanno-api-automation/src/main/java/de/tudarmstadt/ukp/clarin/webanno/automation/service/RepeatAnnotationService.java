@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.automation.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.apache.uima.jcas.JCas;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+
+/**
+ * Supports the "annotate and repeat" mode of automation projects. Keeps a persistent inverted
+ * index from tokens to their positions in the source documents of a project, so that the places
+ * an annotation is repeated to can be found without loading every document, and runs the actual
+ * propagation in the background.
+ */
+public interface RepeatAnnotationService
+{
+    String SERVICE_NAME = "repeatAnnotationService";
+
+    /**
+     * Looks up all occurrences of the given token sequence in the source documents of the
+     * project. Tokens are compared ignoring case and an occurrence never crosses a sentence
+     * boundary. Documents which are not yet part of the index are indexed first, so this can take
+     * a while unless the index has been prepared using {@link #prepareIndex(Project)}.
+     *
+     * @param aProject
+     *            the project.
+     * @param aTokens
+     *            the covered texts of the consecutive tokens to look for.
+     * @return the occurrences grouped by the ID of the source document they were found in.
+     * @throws IOException
+     *             if the index cannot be read or updated.
+     */
+    Map<Long, List<TextOccurrence>> findOccurrences(Project aProject, List<String> aTokens)
+        throws IOException;
+
+    /**
+     * Loads the index of the given project and indexes all documents which are not yet part of
+     * it in the background.
+     */
+    void prepareIndex(Project aProject);
+
+    /**
+     * Adds the tokens of the given document to the index of its project, replacing any previous
+     * entry for the document.
+     */
+    void indexDocument(SourceDocument aDocument, JCas aJCas)
+        throws IOException;
+
+    void removeDocument(SourceDocument aDocument)
+        throws IOException;
+
+    void removeIndex(Project aProject)
+        throws IOException;
+
+    /**
+     * Schedules a task that repeats or deletes annotations in the background. Tasks are executed
+     * in the order in which they were submitted. Failures are logged and reported through the
+     * returned future.
+     *
+     * @param aProject
+     *            the project the task operates on.
+     * @param aDescription
+     *            a short description of the task used for logging.
+     * @param aTask
+     *            the task.
+     * @return a future which completes once the task has run.
+     */
+    Future<Void> submit(Project aProject, String aDescription, RepeatTask aTask);
+
+    @FunctionalInterface
+    interface RepeatTask
+    {
+        void run()
+            throws Exception;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.automation.service;
+
+import java.io.Serializable;
+
+/**
+ * A match of a token sequence found through the {@link RepeatAnnotationService}.
+ */
+public class TextOccurrence
+    implements Serializable
+{
+    private static final long serialVersionUID = 3218570414342751867L;
+
+    private final long documentId;
+    private final int begin;
+    private final int end;
+
+    public TextOccurrence(long aDocumentId, int aBegin, int aEnd)
+    {
+        documentId = aDocumentId;
+        begin = aBegin;
+        end = aEnd;
+    }
+
+    public long getDocumentId()
+    {
+        return documentId;
+    }
+
+    /**
+     * @return the begin offset of the first matched token.
+     */
+    public int getBegin()
+    {
+        return begin;
+    }
+
+    /**
+     * @return the end offset of the last matched token.
+     */
+    public int getEnd()
+    {
+        return end;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[" + documentId + "](" + begin + "-" + end + ")";
+    }
+}
@@ -28,12 +28,15 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Resource;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 
+import org.apache.commons.lang3.SerializationUtils;
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.FeatureStructure;
@@ -54,8 +57,11 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectSchema;
 import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.ArcAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.ChainAdapter;
@@ -86,6 +92,14 @@ import de.tudarmstadt.ukp.dkpro.core.api.syntax.type.dependency.DependencyFlavor
 public class AnnotationSchemaServiceImpl
     implements AnnotationSchemaService
 {
+    /**
+     * Query hints to keep the results of schema queries in the query cache. Hibernate discards
+     * cached results as soon as one of the queried tables is modified.
+     */
+    private static final String HINT_CACHEABLE = "org.hibernate.cacheable";
+    private static final String HINT_CACHE_REGION = "org.hibernate.cacheRegion";
+    private static final String SCHEMA_CACHE_REGION = "webanno.schema";
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     @Value(value = "${repository.path}")
@@ -96,6 +110,12 @@ public class AnnotationSchemaServiceImpl
     
     private @Resource FeatureSupportRegistry featureSupportRegistry;
 
+    /**
+     * Current schema version per project ID. Incremented on every schema change.
+     */
+    private final Map<Long, Long> schemaVersions = new ConcurrentHashMap<>();
+    private final Map<Long, ProjectSchema> schemas = new ConcurrentHashMap<>();
+
     public AnnotationSchemaServiceImpl()
     {
         // Nothing to do
@@ -106,6 +126,7 @@ public class AnnotationSchemaServiceImpl
     public void createTag(Tag aTag)
     {
         entityManager.persist(aTag);
+        invalidateSchema(aTag.getTagSet().getProject());
 
         try (MDC.MDCCloseable closable = MDC.putCloseable(Logging.KEY_PROJECT_ID,
                 String.valueOf(aTag.getTagSet().getProject().getId()))) {
@@ -128,6 +149,7 @@ public class AnnotationSchemaServiceImpl
         else {
             entityManager.merge(aTagSet);
         }
+        invalidateSchema(aTagSet.getProject());
         
         try (MDC.MDCCloseable closable = MDC.putCloseable(Logging.KEY_PROJECT_ID,
                 String.valueOf(aTagSet.getProject().getId()))) {
@@ -148,6 +170,7 @@ public class AnnotationSchemaServiceImpl
         else {
             entityManager.merge(aLayer);
         }
+        invalidateSchema(aLayer.getProject());
         
         try (MDC.MDCCloseable closable = MDC.putCloseable(Logging.KEY_PROJECT_ID,
                 String.valueOf(aLayer.getProject().getId()))) {
@@ -167,6 +190,7 @@ public class AnnotationSchemaServiceImpl
         else {
             entityManager.merge(aFeature);
         }
+        invalidateSchema(aFeature.getProject());
     }
 
     @Override
@@ -175,7 +199,9 @@ public class AnnotationSchemaServiceImpl
     {
         return entityManager
                 .createQuery("FROM Tag WHERE name = :name AND" + " tagSet =:tagSet", Tag.class)
-                .setParameter("name", aTagName).setParameter("tagSet", aTagSet).getSingleResult();
+                .setParameter("name", aTagName).setParameter("tagSet", aTagSet)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getSingleResult();
     }
 
     @Override
@@ -265,7 +291,9 @@ public class AnnotationSchemaServiceImpl
     {
         return entityManager
                 .createQuery("FROM TagSet WHERE name = :name AND project =:project", TagSet.class)
-                .setParameter("name", aName).setParameter("project", aProject).getSingleResult();
+                .setParameter("name", aName).setParameter("project", aProject)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getSingleResult();
     }
 
     @Override
@@ -273,7 +301,9 @@ public class AnnotationSchemaServiceImpl
     public TagSet getTagSet(long aId)
     {
         return entityManager.createQuery("FROM TagSet WHERE id = :id", TagSet.class)
-                .setParameter("id", aId).getSingleResult();
+                .setParameter("id", aId)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getSingleResult();
     }
 
     @Override
@@ -282,7 +312,9 @@ public class AnnotationSchemaServiceImpl
     {
         return entityManager
                 .createQuery("FROM AnnotationLayer WHERE id = :id", AnnotationLayer.class)
-                .setParameter("id", aId).getSingleResult();
+                .setParameter("id", aId)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getSingleResult();
     }
 
     @Override
@@ -292,7 +324,9 @@ public class AnnotationSchemaServiceImpl
         return entityManager
                 .createQuery("From AnnotationLayer where name = :name AND project =:project",
                         AnnotationLayer.class).setParameter("name", aName)
-                .setParameter("project", aProject).getSingleResult();
+                .setParameter("project", aProject)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getSingleResult();
     }
     
     @Override
@@ -323,7 +357,9 @@ public class AnnotationSchemaServiceImpl
     {
         return entityManager
                 .createQuery("From AnnotationFeature where id = :id", AnnotationFeature.class)
-                .setParameter("id", aId).getSingleResult();
+                .setParameter("id", aId)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getSingleResult();
     }
 
     @Override
@@ -333,7 +369,9 @@ public class AnnotationSchemaServiceImpl
         return entityManager
                 .createQuery("From AnnotationFeature where name = :name AND layer = :layer",
                         AnnotationFeature.class).setParameter("name", aName)
-                .setParameter("layer", aLayer).getSingleResult();
+                .setParameter("layer", aLayer)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getSingleResult();
     }
 
     @Override
@@ -753,7 +791,9 @@ public class AnnotationSchemaServiceImpl
     public List<AnnotationLayer> listAnnotationType()
     {
         return entityManager.createQuery("FROM AnnotationLayer ORDER BY name",
-                AnnotationLayer.class).getResultList();
+                AnnotationLayer.class)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getResultList();
     }
 
     @Override
@@ -762,7 +802,9 @@ public class AnnotationSchemaServiceImpl
     {
         return entityManager
                 .createQuery("FROM AnnotationLayer WHERE project =:project ORDER BY uiName",
-                        AnnotationLayer.class).setParameter("project", aProject).getResultList();
+                        AnnotationLayer.class).setParameter("project", aProject)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getResultList();
     }
 
     @Override
@@ -779,7 +821,9 @@ public class AnnotationSchemaServiceImpl
                 .setParameter("attachType", aLayer)
                 .setParameter("attachTypeName", aLayer.getName())
                 // Checking for project is necessary because type match is string-based
-                .setParameter("project", aLayer.getProject()).getResultList();
+                .setParameter("project", aLayer.getProject())
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getResultList();
     }
 
     @Override
@@ -793,7 +837,9 @@ public class AnnotationSchemaServiceImpl
                 .setParameter("modes", asList(LinkMode.SIMPLE, LinkMode.WITH_ROLE))
                 .setParameter("attachType", asList(aLayer.getName(), CAS.TYPE_NAME_ANNOTATION))
                 // Checking for project is necessary because type match is string-based
-                .setParameter("project", aLayer.getProject()).getResultList();
+                .setParameter("project", aLayer.getProject())
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getResultList();
     }
 
     @Override
@@ -806,7 +852,9 @@ public class AnnotationSchemaServiceImpl
 
         return entityManager
                 .createQuery("FROM AnnotationFeature  WHERE layer =:layer ORDER BY uiName",
-                        AnnotationFeature.class).setParameter("layer", aLayer).getResultList();
+                        AnnotationFeature.class).setParameter("layer", aLayer)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getResultList();
     }
 
     @Override
@@ -816,14 +864,18 @@ public class AnnotationSchemaServiceImpl
         return entityManager
                 .createQuery(
                         "FROM AnnotationFeature f WHERE project =:project ORDER BY f.layer.uiName, f.uiName",
-                        AnnotationFeature.class).setParameter("project", aProject).getResultList();
+                        AnnotationFeature.class).setParameter("project", aProject)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getResultList();
     }
 
     @Override
     @Transactional
     public List<Tag> listTags()
     {
-        return entityManager.createQuery("From Tag ORDER BY name", Tag.class).getResultList();
+        return entityManager.createQuery("From Tag ORDER BY name", Tag.class)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getResultList();
     }
 
     @Override
@@ -832,7 +884,9 @@ public class AnnotationSchemaServiceImpl
     {
         return entityManager
                 .createQuery("FROM Tag WHERE tagSet = :tagSet ORDER BY name ASC", Tag.class)
-                .setParameter("tagSet", aTagSet).getResultList();
+                .setParameter("tagSet", aTagSet)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getResultList();
     }
 
     @Override
@@ -840,7 +894,8 @@ public class AnnotationSchemaServiceImpl
     public List<TagSet> listTagSets()
     {
         return entityManager.createQuery("FROM TagSet ORDER BY name ASC", TagSet.class)
-                .getResultList();
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getResultList();
     }
 
     @Override
@@ -849,7 +904,9 @@ public class AnnotationSchemaServiceImpl
     {
         return entityManager
                 .createQuery("FROM TagSet where project = :project ORDER BY name ASC", TagSet.class)
-                .setParameter("project", aProject).getResultList();
+                .setParameter("project", aProject)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getResultList();
     }
 
     @Override
@@ -857,6 +914,7 @@ public class AnnotationSchemaServiceImpl
     public void removeTag(Tag aTag)
     {
         entityManager.remove(entityManager.contains(aTag) ? aTag : entityManager.merge(aTag));
+        invalidateSchema(aTag.getTagSet().getProject());
     }
 
     @Override
@@ -868,6 +926,7 @@ public class AnnotationSchemaServiceImpl
         }
         entityManager
                 .remove(entityManager.contains(aTagSet) ? aTagSet : entityManager.merge(aTagSet));
+        invalidateSchema(aTagSet.getProject());
     }
 
     @Override
@@ -875,6 +934,7 @@ public class AnnotationSchemaServiceImpl
     public void removeAnnotationFeature(AnnotationFeature aFeature)
     {
         entityManager.remove(aFeature);
+        invalidateSchema(aFeature.getProject());
     }
 
     @Override
@@ -882,6 +942,7 @@ public class AnnotationSchemaServiceImpl
     public void removeAnnotationLayer(AnnotationLayer aLayer)
     {
         entityManager.remove(aLayer);
+        invalidateSchema(aLayer.getProject());
     }
 
     @Override
@@ -891,6 +952,7 @@ public class AnnotationSchemaServiceImpl
         for (Tag tag : listTags(aTagSet)) {
             entityManager.remove(tag);
         }
+        invalidateSchema(aTagSet.getProject());
     }
 
     @Override
@@ -1031,13 +1093,90 @@ public class AnnotationSchemaServiceImpl
         return getAdapter(this, featureSupportRegistry, aLayer);
     }
     
+    @Override
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public ProjectSchema getProjectSchema(Project aProject)
+    {
+        long version = schemaVersions.getOrDefault(aProject.getId(), 0L);
+        ProjectSchema schema = schemas.get(aProject.getId());
+        if (schema != null && schema.getVersion() == version) {
+            return schema;
+        }
+        
+        long start = System.currentTimeMillis();
+        
+        List<Tag> tags = entityManager
+                .createQuery("FROM Tag WHERE tagSet.project = :project ORDER BY name ASC",
+                        Tag.class)
+                .setParameter("project", aProject)
+                .setHint(HINT_CACHEABLE, true)
+                .setHint(HINT_CACHE_REGION, SCHEMA_CACHE_REGION).getResultList();
+        
+        // The snapshot is shared between all users and outlives the current persistence
+        // context, so it must not contain the managed entities - otherwise changes made to them
+        // in one request would be visible to everybody and might even be flushed to the
+        // database. Copying everything in one go keeps the references between the copies intact.
+        Object[] copies = SerializationUtils.clone(new Object[] {
+                new ArrayList<>(listAnnotationLayer(aProject)),
+                new ArrayList<>(listAnnotationFeature(aProject)),
+                new ArrayList<>(listTagSets(aProject)), new ArrayList<>(tags) });
+        
+        schema = new ProjectSchema(aProject.getId(), version, (List<AnnotationLayer>) copies[0],
+                (List<AnnotationFeature>) copies[1], (List<TagSet>) copies[2],
+                (List<Tag>) copies[3],
+                (layer, features) -> getAdapter(featureSupportRegistry, layer, features));
+        
+        // Do not replace a snapshot which has been built concurrently from a newer version
+        schemas.merge(aProject.getId(), schema,
+                (oldSchema, newSchema) -> oldSchema.getVersion() > newSchema.getVersion()
+                        ? oldSchema : newSchema);
+        
+        log.debug("Built schema of project [{}]({}) version {} in {}ms", aProject.getName(),
+                aProject.getId(), version, System.currentTimeMillis() - start);
+        
+        return schema;
+    }
+    
+    /**
+     * Move the schema of the given project to a new version. If a transaction is active, the
+     * version is incremented again after the transaction has completed so that a snapshot built
+     * by another thread before the changes were visible does not survive.
+     */
+    private void invalidateSchema(Project aProject)
+    {
+        long projectId = aProject.getId();
+        
+        schemaVersions.merge(projectId, 1L, Long::sum);
+        schemas.remove(projectId);
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager
+                    .registerSynchronization(new TransactionSynchronizationAdapter()
+                    {
+                        @Override
+                        public void afterCompletion(int aStatus)
+                        {
+                            schemaVersions.merge(projectId, 1L, Long::sum);
+                            schemas.remove(projectId);
+                        }
+                    });
+        }
+    }
+    
     public static TypeAdapter getAdapter(AnnotationSchemaService aSchemaService,
             FeatureSupportRegistry aFeatureSupportRegistry, AnnotationLayer aLayer)
+    {
+        return getAdapter(aFeatureSupportRegistry, aLayer,
+                aSchemaService.listAnnotationFeature(aLayer));
+    }
+    
+    public static TypeAdapter getAdapter(FeatureSupportRegistry aFeatureSupportRegistry,
+            AnnotationLayer aLayer, List<AnnotationFeature> aFeatures)
     {
         switch (aLayer.getType()) {
         case WebAnnoConst.SPAN_TYPE: {
-            SpanAdapter adapter = new SpanAdapter(aFeatureSupportRegistry, aLayer,
-                    aSchemaService.listAnnotationFeature(aLayer));
+            SpanAdapter adapter = new SpanAdapter(aFeatureSupportRegistry, aLayer, aFeatures);
             adapter.setLockToTokenOffsets(aLayer.isLockToTokenOffset());
             adapter.setAllowStacking(aLayer.isAllowStacking());
             adapter.setAllowMultipleToken(aLayer.isMultipleTokens());
@@ -1048,7 +1187,7 @@ public class AnnotationSchemaServiceImpl
             ArcAdapter adapter = new ArcAdapter(aFeatureSupportRegistry, aLayer, aLayer.getId(),
                     aLayer.getName(), WebAnnoConst.FEAT_REL_TARGET, WebAnnoConst.FEAT_REL_SOURCE,
                     aLayer.getAttachFeature() == null ? null : aLayer.getAttachFeature().getName(),
-                    aLayer.getAttachType().getName(), aSchemaService.listAnnotationFeature(aLayer));
+                    aLayer.getAttachType().getName(), aFeatures);
 
             adapter.setCrossMultipleSentence(aLayer.isCrossSentence());
             adapter.setAllowStacking(aLayer.isAllowStacking());
@@ -1059,7 +1198,7 @@ public class AnnotationSchemaServiceImpl
         case WebAnnoConst.CHAIN_TYPE: {
             ChainAdapter adapter = new ChainAdapter(aFeatureSupportRegistry, aLayer, aLayer.getId(),
                     aLayer.getName() + ChainAdapter.CHAIN, aLayer.getName(), "first", "next",
-                    aSchemaService.listAnnotationFeature(aLayer));
+                    aFeatures);
 
             adapter.setLinkedListBehavior(aLayer.isLinkedListBehavior());
 
@@ -67,7 +67,9 @@ public class CasStorageServiceImpl
 {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    private final Object lock = new Object();
+    // Accesses to the same CAS file are serialized, but different CAS files can be read and
+    // written in parallel, e.g. when the correction CASes of many documents are written at once
+    private final Object[] locks = new Object[64];
 
     public static final MetaDataKey<Map<JCasCacheKey, JCasCacheEntry>> CACHE = 
             new MetaDataKey<Map<JCasCacheKey, JCasCacheEntry>>()
@@ -97,7 +99,9 @@ public class CasStorageServiceImpl
     
     public CasStorageServiceImpl()
     {
-        // Nothing to do
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
     }
 
     /**
@@ -162,7 +166,7 @@ public class CasStorageServiceImpl
                     + ") in project [" + aProject.getName() + "] (" + aProject.getId() + ")", e);
         }
 
-        synchronized (lock) {
+        synchronized (getLock(aDocumentId, aUserName)) {
             // File annotationFolder = getAnnotationFolder(aDocument);
             FileUtils.forceMkdir(aAnnotationFolder);
 
@@ -337,7 +341,7 @@ public class CasStorageServiceImpl
 
         // DebugUtils.smallStack();
 
-        synchronized (lock) {
+        synchronized (getLock(aDocument.getId(), aUsername)) {
             JCas jcas = null;
             
             // Check if we have the CAS in the cache
@@ -474,6 +478,12 @@ public class CasStorageServiceImpl
         return annotationFolder;
     }
     
+    private Object getLock(long aDocumentId, String aUsername)
+    {
+        int hash = 31 * Long.hashCode(aDocumentId) + aUsername.hashCode();
+        return locks[Math.floorMod(hash, locks.length)];
+    }
+
     /**
      * Renames a file.
      *
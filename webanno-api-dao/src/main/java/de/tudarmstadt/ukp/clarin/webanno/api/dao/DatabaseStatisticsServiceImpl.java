@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.Resource;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.DatabasePoolStatistics;
+import de.tudarmstadt.ukp.clarin.webanno.api.DatabaseQueryStatistics;
+import de.tudarmstadt.ukp.clarin.webanno.api.DatabaseStatisticsService;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.db.CallSiteStatistics;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.db.InstrumentedDataSource;
+
+@Component(DatabaseStatisticsService.SERVICE_NAME)
+public class DatabaseStatisticsServiceImpl
+    implements DatabaseStatisticsService
+{
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Resource(name = "dataSource")
+    private DataSource dataSource;
+
+    @Override
+    public boolean isQueryStatisticsEnabled()
+    {
+        return getStatistics().isStatisticsEnabled();
+    }
+
+    @Override
+    public DatabasePoolStatistics getPoolStatistics()
+    {
+        int active = 0;
+        int idle = 0;
+        int maxActive = 0;
+        if (dataSource instanceof BasicDataSource) {
+            BasicDataSource pool = (BasicDataSource) dataSource;
+            active = pool.getNumActive();
+            idle = pool.getNumIdle();
+            maxActive = pool.getMaxActive();
+        }
+
+        long requests = 0;
+        long totalWait = 0;
+        long maxWait = 0;
+        if (dataSource instanceof InstrumentedDataSource) {
+            InstrumentedDataSource pool = (InstrumentedDataSource) dataSource;
+            requests = pool.getConnectionRequests();
+            totalWait = TimeUnit.NANOSECONDS.toMillis(pool.getTotalWaitTime());
+            maxWait = TimeUnit.NANOSECONDS.toMillis(pool.getMaxWaitTime());
+        }
+
+        return new DatabasePoolStatistics(active, idle, maxActive, requests, totalWait, maxWait);
+    }
+
+    @Override
+    public List<DatabaseQueryStatistics> listSlowestQueries(int aLimit)
+    {
+        return listQueries(comparing(DatabaseQueryStatistics::getAverageTime), aLimit);
+    }
+
+    @Override
+    public List<DatabaseQueryStatistics> listMostFrequentQueries(int aLimit)
+    {
+        return listQueries(comparing(DatabaseQueryStatistics::getExecutionCount), aLimit);
+    }
+
+    @Override
+    public void reset()
+    {
+        getStatistics().clear();
+        if (dataSource instanceof InstrumentedDataSource) {
+            ((InstrumentedDataSource) dataSource).resetWaitStatistics();
+        }
+    }
+
+    private List<DatabaseQueryStatistics> listQueries(
+            Comparator<DatabaseQueryStatistics> aComparator, int aLimit)
+    {
+        Statistics statistics = getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            return Collections.emptyList();
+        }
+
+        return Stream.of(statistics.getQueries())
+                .map(query -> toQueryStatistics(statistics, query))
+                .sorted(aComparator.reversed())
+                .limit(aLimit)
+                .collect(toList());
+    }
+
+    private DatabaseQueryStatistics toQueryStatistics(Statistics aStatistics, String aQuery)
+    {
+        QueryStatistics stats = aStatistics.getQueryStatistics(aQuery);
+        List<String> callSites = aStatistics instanceof CallSiteStatistics
+                ? ((CallSiteStatistics) aStatistics).getCallSites(aQuery)
+                : Collections.emptyList();
+        return new DatabaseQueryStatistics(aQuery, stats.getExecutionCount(),
+                stats.getExecutionAvgTime(), stats.getExecutionMaxTime(),
+                stats.getExecutionRowCount(), callSites);
+    }
+
+    private Statistics getStatistics()
+    {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
@@ -21,7 +21,9 @@ import static de.tudarmstadt.ukp.clarin.webanno.api.ProjectService.DOCUMENT;
 import static de.tudarmstadt.ukp.clarin.webanno.api.ProjectService.PROJECT;
 import static de.tudarmstadt.ukp.clarin.webanno.api.ProjectService.SOURCE;
 import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.INITIAL_CAS_PSEUDO_USER;
+import static java.util.Arrays.asList;
 import static org.apache.commons.io.IOUtils.copyLarge;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -31,15 +33,23 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import javax.annotation.Resource;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.uima.UIMAException;
@@ -62,9 +72,14 @@ import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
 import de.tudarmstadt.ukp.clarin.webanno.api.CasStorageService;
 import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.api.ImportExportService;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectProgressMatrix;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectProgressMatrix.DocumentProgress;
 import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterAnnotationDocumentSavedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterAnnotationUpdateEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterDocumentCreatedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterSourceDocumentSavedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeAnnotationDocumentRemovedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeDocumentRemovedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState;
@@ -72,6 +87,7 @@ import de.tudarmstadt.ukp.clarin.webanno.model.Mode;
 import de.tudarmstadt.ukp.clarin.webanno.model.PermissionLevel;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentStateTransition;
 import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
@@ -81,6 +97,9 @@ import de.tudarmstadt.ukp.clarin.webanno.support.logging.Logging;
 public class DocumentServiceImpl
     implements DocumentService, InitializingBean
 {
+    private static final Set<String> SORTABLE_SOURCE_DOCUMENT_PROPERTIES = new HashSet<>(
+            asList("name", "state", "format", "created", "updated"));
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     @PersistenceContext
@@ -154,26 +173,22 @@ public class DocumentServiceImpl
         else {
             entityManager.merge(aDocument);
         }
+        
+        applicationEventPublisher.publishEvent(new AfterSourceDocumentSavedEvent(this, aDocument));
     }
 
     @Override
     @Transactional
     public boolean existsAnnotationDocument(SourceDocument aDocument, User aUser)
     {
-        try {
-            entityManager
-                    .createQuery(
-                            "FROM AnnotationDocument WHERE project = :project "
-                                    + " AND document = :document AND user = :user",
-                            AnnotationDocument.class)
-                    .setParameter("project", aDocument.getProject())
-                    .setParameter("document", aDocument).setParameter("user", aUser.getUsername())
-                    .getSingleResult();
-            return true;
-        }
-        catch (NoResultException ex) {
-            return false;
-        }
+        return entityManager
+                .createQuery(
+                        "SELECT COUNT(*) FROM AnnotationDocument WHERE project = :project "
+                                + " AND document = :document AND user = :user",
+                        Long.class)
+                .setParameter("project", aDocument.getProject())
+                .setParameter("document", aDocument).setParameter("user", aUser.getUsername())
+                .getSingleResult() > 0;
     }
 
     @Override
@@ -198,6 +213,9 @@ public class DocumentServiceImpl
                     aAnnotationDocument.getProject().getName(),
                     aAnnotationDocument.getProject().getId());
         }
+        
+        applicationEventPublisher
+                .publishEvent(new AfterAnnotationDocumentSavedEvent(this, aAnnotationDocument));
     }
 
     @Override
@@ -220,17 +238,12 @@ public class DocumentServiceImpl
     @Transactional
     public boolean existsSourceDocument(Project aProject, String aFileName)
     {
-        try {
-            entityManager
-                    .createQuery(
-                            "FROM SourceDocument WHERE project = :project AND " + "name =:name ",
-                            SourceDocument.class).setParameter("project", aProject)
-                    .setParameter("name", aFileName).getSingleResult();
-            return true;
-        }
-        catch (NoResultException ex) {
-            return false;
-        }
+        return entityManager
+                .createQuery(
+                        "SELECT COUNT(*) FROM SourceDocument WHERE project = :project AND "
+                                + "name =:name ",
+                        Long.class).setParameter("project", aProject)
+                .setParameter("name", aFileName).getSingleResult() > 0;
     }
 
     @Override
@@ -306,35 +319,27 @@ public class DocumentServiceImpl
     @Transactional(noRollbackFor = NoResultException.class)
     public boolean existsFinishedAnnotation(SourceDocument aDocument)
     {
-        List<AnnotationDocument> annotationDocuments = entityManager
-                .createQuery("FROM AnnotationDocument WHERE document = :document",
-                        AnnotationDocument.class).setParameter("document", aDocument)
-                .getResultList();
-        for (AnnotationDocument annotationDocument : annotationDocuments) {
-            if (annotationDocument.getState().equals(AnnotationDocumentState.FINISHED)) {
-                return true;
-            }
-        }
-
-        return false;
+        return entityManager
+                .createQuery("SELECT COUNT(*) FROM AnnotationDocument "
+                        + "WHERE document = :document AND state = :state", Long.class)
+                .setParameter("document", aDocument)
+                .setParameter("state", AnnotationDocumentState.FINISHED)
+                .getSingleResult() > 0;
     }
 
     @Override
     @Transactional(noRollbackFor = NoResultException.class)
     public boolean existsFinishedAnnotation(Project aProject)
     {
-        for (SourceDocument document : listSourceDocuments(aProject)) {
-            List<AnnotationDocument> annotationDocuments = entityManager
-                    .createQuery("FROM AnnotationDocument WHERE document = :document",
-                            AnnotationDocument.class).setParameter("document", document)
-                    .getResultList();
-            for (AnnotationDocument annotationDocument : annotationDocuments) {
-                if (annotationDocument.getState().equals(AnnotationDocumentState.FINISHED)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        // Same documents as listSourceDocuments(aProject)
+        return entityManager
+                .createQuery("SELECT COUNT(*) FROM AnnotationDocument a "
+                        + "WHERE a.project = :project AND a.state = :state "
+                        + "AND a.document.format <> :format", Long.class)
+                .setParameter("project", aProject)
+                .setParameter("state", AnnotationDocumentState.FINISHED)
+                .setParameter("format", WebAnnoConst.TAB_SEP)
+                .getSingleResult() > 0;
     }
 
     @Override
@@ -386,6 +391,84 @@ public class DocumentServiceImpl
         return sourceDocuments;
     }
 
+    @Override
+    public long countSourceDocuments(Project aProject, String aNameFilter,
+            SourceDocumentState aState)
+    {
+        TypedQuery<Long> query = entityManager.createQuery(
+                "SELECT COUNT(*) FROM SourceDocument d WHERE "
+                        + sourceDocumentFilter(aNameFilter, aState), Long.class);
+        setSourceDocumentFilter(query, aProject, aNameFilter, aState);
+        return query.getSingleResult();
+    }
+
+    @Override
+    public List<SourceDocument> listSourceDocuments(Project aProject, String aNameFilter,
+            SourceDocumentState aState, String aSortProperty, boolean aAscending, long aFirst,
+            long aCount)
+    {
+        if (!SORTABLE_SOURCE_DOCUMENT_PROPERTIES.contains(aSortProperty)) {
+            throw new IllegalArgumentException(
+                    "Cannot sort source documents by [" + aSortProperty + "]");
+        }
+
+        String direction = aAscending ? "ASC" : "DESC";
+        TypedQuery<SourceDocument> query = entityManager.createQuery(
+                "FROM SourceDocument d WHERE " + sourceDocumentFilter(aNameFilter, aState)
+                        + " ORDER BY d." + aSortProperty + " " + direction + ", d.name "
+                        + direction, SourceDocument.class);
+        setSourceDocumentFilter(query, aProject, aNameFilter, aState);
+        return query.setFirstResult((int) aFirst).setMaxResults((int) aCount).getResultList();
+    }
+
+    @Override
+    public List<SourceDocument> listSourceDocumentsAfter(Project aProject, String aNameFilter,
+            SourceDocumentState aState, String aAfterName, int aLimit)
+    {
+        TypedQuery<SourceDocument> query = entityManager.createQuery(
+                "FROM SourceDocument d WHERE " + sourceDocumentFilter(aNameFilter, aState)
+                        + (aAfterName != null ? " AND d.name > :after" : "")
+                        + " ORDER BY d.name ASC", SourceDocument.class);
+        setSourceDocumentFilter(query, aProject, aNameFilter, aState);
+        if (aAfterName != null) {
+            query.setParameter("after", aAfterName);
+        }
+        return query.setMaxResults(aLimit).getResultList();
+    }
+
+    /**
+     * Build the condition shared by the paged source document queries. Like
+     * {@link #listSourceDocuments(Project)}, this excludes the tab-separated automation training
+     * documents.
+     */
+    private static String sourceDocumentFilter(String aNameFilter, SourceDocumentState aState)
+    {
+        StringBuilder condition = new StringBuilder();
+        condition.append("d.project = :project AND d.format <> :format");
+        if (isNotBlank(aNameFilter)) {
+            condition.append(" AND LOWER(d.name) LIKE :name ESCAPE '!'");
+        }
+        if (aState != null) {
+            condition.append(" AND d.state = :state");
+        }
+        return condition.toString();
+    }
+
+    private static void setSourceDocumentFilter(TypedQuery<?> aQuery, Project aProject,
+            String aNameFilter, SourceDocumentState aState)
+    {
+        aQuery.setParameter("project", aProject);
+        aQuery.setParameter("format", WebAnnoConst.TAB_SEP);
+        if (isNotBlank(aNameFilter)) {
+            String escaped = aNameFilter.trim().toLowerCase(Locale.ROOT).replace("!", "!!")
+                    .replace("%", "!%").replace("_", "!_");
+            aQuery.setParameter("name", "%" + escaped + "%");
+        }
+        if (aState != null) {
+            aQuery.setParameter("state", aState);
+        }
+    }
+
     @Override
     @Transactional
     public void removeSourceDocument(SourceDocument aDocument)
@@ -419,6 +502,9 @@ public class DocumentServiceImpl
     @Transactional
     public void removeAnnotationDocument(AnnotationDocument aAnnotationDocument)
     {
+        applicationEventPublisher
+                .publishEvent(new BeforeAnnotationDocumentRemovedEvent(this, aAnnotationDocument));
+        
         entityManager.remove(aAnnotationDocument);
     }
 
@@ -723,17 +809,20 @@ public class DocumentServiceImpl
     @Override
     public boolean existFinishedDocument(SourceDocument aSourceDocument, Project aProject)
     {
-        List<de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument> annotationDocuments =
-                listAnnotationDocuments(aSourceDocument);
-        boolean finishedAnnotationDocumentExist = false;
-        for (de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument annotationDocument : 
-            annotationDocuments) {
-            if (annotationDocument.getState().equals(AnnotationDocumentState.FINISHED)) {
-                finishedAnnotationDocumentExist = true;
-                break;
-            }
+        // Only consider the annotators of the project, like listAnnotationDocuments does
+        List<String> users = getAllAnnotators(aSourceDocument.getProject());
+        if (users.isEmpty()) {
+            return false;
         }
-        return finishedAnnotationDocumentExist;
+        
+        return entityManager
+                .createQuery("SELECT COUNT(*) FROM AnnotationDocument "
+                        + "WHERE document = :document AND state = :state AND user IN (:users)",
+                        Long.class)
+                .setParameter("document", aSourceDocument)
+                .setParameter("state", AnnotationDocumentState.FINISHED)
+                .setParameter("users", users)
+                .getSingleResult() > 0;
     }
     
     @Override
@@ -786,24 +875,14 @@ public class DocumentServiceImpl
     @Transactional(noRollbackFor = NoResultException.class)
     public boolean isAnnotationFinished(SourceDocument aDocument, User aUser)
     {
-        try {
-            AnnotationDocument annotationDocument = entityManager
-                    .createQuery(
-                            "FROM AnnotationDocument WHERE document = :document AND "
-                                    + "user =:user", AnnotationDocument.class)
-                    .setParameter("document", aDocument).setParameter("user", aUser.getUsername())
-                    .getSingleResult();
-            if (annotationDocument.getState().equals(AnnotationDocumentState.FINISHED)) {
-                return true;
-            }
-            else {
-                return false;
-            }
-        }
-        // User even didn't start annotating
-        catch (NoResultException e) {
-            return false;
-        }
+        // If the user did not even start annotating, there is no annotation document
+        return entityManager
+                .createQuery(
+                        "SELECT COUNT(*) FROM AnnotationDocument WHERE document = :document AND "
+                                + "user =:user AND state = :state", Long.class)
+                .setParameter("document", aDocument).setParameter("user", aUser.getUsername())
+                .setParameter("state", AnnotationDocumentState.FINISHED)
+                .getSingleResult() > 0;
     }
 
     @Override
@@ -836,6 +915,106 @@ public class DocumentServiceImpl
                 .getResultList();
     }
 
+    @Override
+    public Map<SourceDocument, List<AnnotationDocument>> listAnnotationDocuments(
+            Collection<SourceDocument> aDocuments)
+    {
+        Map<SourceDocument, List<AnnotationDocument>> result = new LinkedHashMap<>();
+        for (SourceDocument document : aDocuments) {
+            result.put(document, new ArrayList<>());
+        }
+
+        // The documents usually are all documents of a project, which would make for a huge IN
+        // list. So load the annotation documents of the whole project and pick the requested ones.
+        Set<Project> projects = new LinkedHashSet<>();
+        for (SourceDocument document : result.keySet()) {
+            projects.add(document.getProject());
+        }
+
+        for (Project project : projects) {
+            // Annotators are determined per project, as in listAnnotationDocuments(SourceDocument)
+            Set<String> annotators = new HashSet<>(getAllAnnotators(project));
+
+            List<AnnotationDocument> annotationDocuments = entityManager
+                    .createQuery("FROM AnnotationDocument WHERE project = :project",
+                            AnnotationDocument.class)
+                    .setParameter("project", project).getResultList();
+
+            for (AnnotationDocument annotationDocument : annotationDocuments) {
+                List<AnnotationDocument> list = result.get(annotationDocument.getDocument());
+                if (list != null && annotators.contains(annotationDocument.getUser())) {
+                    list.add(annotationDocument);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public Map<User, Map<SourceDocument, AnnotationDocument>> getAnnotationDocuments(
+            Project aProject, Collection<User> aUsers)
+    {
+        Map<User, Map<SourceDocument, AnnotationDocument>> result = new LinkedHashMap<>();
+        Map<String, Map<SourceDocument, AnnotationDocument>> byUsername = new HashMap<>();
+        for (User user : aUsers) {
+            Map<SourceDocument, AnnotationDocument> documents = new HashMap<>();
+            result.put(user, documents);
+            byUsername.put(user.getUsername(), documents);
+        }
+
+        // Bail out already. HQL doesn't seem to like queries with an empty
+        // parameter right of "in"
+        if (result.isEmpty()) {
+            return result;
+        }
+
+        List<AnnotationDocument> annotationDocuments = entityManager
+                .createQuery(
+                        "FROM AnnotationDocument WHERE project = :project AND user IN (:users)",
+                        AnnotationDocument.class)
+                .setParameter("project", aProject).setParameter("users", byUsername.keySet())
+                .getResultList();
+
+        for (AnnotationDocument annotationDocument : annotationDocuments) {
+            byUsername.get(annotationDocument.getUser()).put(annotationDocument.getDocument(),
+                    annotationDocument);
+        }
+
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public ProjectProgressMatrix getProjectProgressMatrix(Project aProject)
+    {
+        ProjectProgressMatrix matrix = new ProjectProgressMatrix(aProject.getId(),
+                getAllAnnotators(aProject));
+        Set<String> annotators = new HashSet<>(matrix.getAnnotators());
+
+        // Use a right join so that documents no annotator has started yet are included as well
+        List<Object[]> rows = entityManager
+                .createQuery(
+                        "SELECT d.id, d.name, d.state, d.timestamp, a.user, a.state, a.timestamp "
+                                + "FROM AnnotationDocument a RIGHT OUTER JOIN a.document d "
+                                + "WHERE d.project = :project AND d.format <> :format "
+                                + "ORDER BY d.name ASC", Object[].class)
+                .setParameter("project", aProject).setParameter("format", WebAnnoConst.TAB_SEP)
+                .getResultList();
+
+        for (Object[] row : rows) {
+            DocumentProgress document = matrix.addDocument((Long) row[0], (String) row[1],
+                    (SourceDocumentState) row[2], (Date) row[3]);
+            String user = (String) row[4];
+            if (user != null && annotators.contains(user)) {
+                document.addAnnotationDocument(user, (AnnotationDocumentState) row[5],
+                        (Date) row[6]);
+            }
+        }
+
+        return matrix;
+    }
+
     @Override
     public int numberOfExpectedAnnotationDocuments(Project aProject)
     {
@@ -869,7 +1048,7 @@ public class DocumentServiceImpl
         List<String> users = entityManager
                 .createQuery(
                         "SELECT DISTINCT user FROM ProjectPermission WHERE project = :project "
-                                + "AND level = :level", String.class)
+                                + "AND level = :level ORDER BY user ASC", String.class)
                 .setParameter("project", aProject).setParameter("level", PermissionLevel.USER)
                 .getResultList();
 
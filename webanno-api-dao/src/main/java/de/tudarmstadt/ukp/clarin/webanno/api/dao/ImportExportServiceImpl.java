@@ -20,17 +20,19 @@ package de.tudarmstadt.ukp.clarin.webanno.api.dao;
 import static de.tudarmstadt.ukp.clarin.webanno.api.ProjectService.DOCUMENT;
 import static de.tudarmstadt.ukp.clarin.webanno.api.ProjectService.PROJECT;
 import static de.tudarmstadt.ukp.clarin.webanno.api.ProjectService.SOURCE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static org.apache.commons.lang3.StringUtils.isBlank;
-import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
-import static org.apache.uima.fit.pipeline.SimplePipeline.runPipeline;
 import static org.apache.uima.fit.util.JCasUtil.select;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.text.BreakIterator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -43,10 +45,10 @@ import java.util.Set;
 import javax.annotation.Resource;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.LineIterator;
 import org.apache.uima.UIMAException;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
-import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
 import org.apache.uima.cas.FeatureStructure;
@@ -63,6 +65,8 @@ import org.apache.uima.util.CasCreationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
@@ -94,7 +98,7 @@ import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 
 @Component(ImportExportService.SERVICE_NAME)
 public class ImportExportServiceImpl
-    implements ImportExportService
+    implements ImportExportService, InitializingBean, DisposableBean
 {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -120,11 +124,38 @@ public class ImportExportServiceImpl
     @Resource(name = "formats")
     private Properties readWriteFileFormats;
 
+    @Value(value = "${export.writers.pool:8}")
+    private int writerPoolSize;
+
+    private WriterEnginePool writerPool;
+
+    /**
+     * Writers which do not keep any state between documents and can therefore be reused for
+     * several exports.
+     */
+    private static final Set<String> POOLABLE_WRITERS = new HashSet<>(Arrays.asList(
+            "de.tudarmstadt.ukp.clarin.webanno.tsv.WebannoTsv3Writer",
+            "de.tudarmstadt.ukp.clarin.webanno.xmi.XmiWriter",
+            "de.tudarmstadt.ukp.clarin.webanno.tcf.TcfWriter",
+            "de.tudarmstadt.ukp.clarin.webanno.conllu.ConllUWriter"));
+
     public ImportExportServiceImpl()
     {
         // Nothing to do
     }
 
+    @Override
+    public void afterPropertiesSet()
+    {
+        writerPool = new WriterEnginePool(writerPoolSize, POOLABLE_WRITERS);
+    }
+
+    @Override
+    public void destroy()
+    {
+        writerPool.destroy();
+    }
+
     /**
      * A new directory is created using UUID so that every exported file will reside in its own
      * directory. This is useful as the written file can have multiple extensions based on the
@@ -146,6 +177,35 @@ public class ImportExportServiceImpl
     public File exportAnnotationDocument(SourceDocument aDocument, String aUser, Class aWriter,
             String aFileName, Mode aMode, boolean aStripExtension)
         throws UIMAException, IOException, ClassNotFoundException
+    {
+        CAS cas = readExportCas(aDocument, aUser, aMode);
+        
+        File exportFile = exportCasToFile(cas, aDocument, aFileName, aWriter, aStripExtension);
+
+        logExport(aDocument, aUser);
+
+        return exportFile;
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    @Transactional
+    public String exportAnnotationDocument(SourceDocument aDocument, String aUser, Class aWriter,
+            String aFileName, Mode aMode, boolean aStripExtension, OutputStream aOutputStream)
+        throws UIMAException, IOException, ClassNotFoundException
+    {
+        CAS cas = readExportCas(aDocument, aUser, aMode);
+        
+        String exportFileName = exportCasToStream(cas, aDocument, aFileName, aWriter,
+                aStripExtension, aOutputStream);
+
+        logExport(aDocument, aUser);
+
+        return exportFileName;
+    }
+
+    private CAS readExportCas(SourceDocument aDocument, String aUser, Mode aMode)
+        throws UIMAException, IOException
     {
         File annotationFolder = casStorageService.getAnnotationFolder(aDocument);
         String serializedCasFileName;
@@ -175,8 +235,11 @@ public class ImportExportServiceImpl
         // Update type system the CAS
         annotationService.upgradeCas(cas, aDocument, aUser);
         
-        File exportFile = exportCasToFile(cas, aDocument, aFileName, aWriter, aStripExtension);
+        return cas;
+    }
 
+    private void logExport(SourceDocument aDocument, String aUser)
+    {
         Project project = aDocument.getProject();
         
         try (MDC.MDCCloseable closable = MDC.putCloseable(Logging.KEY_PROJECT_ID,
@@ -185,8 +248,6 @@ public class ImportExportServiceImpl
                     aDocument.getName(), aDocument.getId(), aUser, project.getName(),
                     project.getId());
         }
-
-        return exportFile;
     }
     
     @Override
@@ -482,14 +543,63 @@ public class ImportExportServiceImpl
     }    
     
     /**
-     * A new directory is created using UUID so that every exported file will reside in its own
-     * directory. This is useful as the written file can have multiple extensions based on the
-     * Writer class used.
+     * The file is written by a pooled writer. If the writer produces more than one file, they are
+     * packaged as a ZIP file.
      */
     @Override
     public File exportCasToFile(CAS cas, SourceDocument aDocument, String aFileName,
             @SuppressWarnings("rawtypes") Class aWriter, boolean aStripExtension)
         throws IOException, UIMAException
+    {
+        return exportCas(cas, aDocument, aFileName, aWriter, aStripExtension, files -> {
+            File exportFile;
+            if (files.length > 1) {
+                exportFile = File.createTempFile("webanno", "export.zip");
+                try {
+                    ZipUtils.zipFolder(files[0].getParentFile(), exportFile);
+                }
+                catch (Exception e) {
+                    try (MDC.MDCCloseable closable = MDC.putCloseable(Logging.KEY_PROJECT_ID,
+                            String.valueOf(aDocument.getProject().getId()))) {
+                        log.info("Unable to create zip File");
+                    }
+                }
+            }
+            else {
+                exportFile = new File(FileUtils.getTempDirectory(), files[0].getName());
+                Files.move(files[0].toPath(), exportFile.toPath(), REPLACE_EXISTING);
+            }
+            return exportFile;
+        });
+    }
+
+    /**
+     * The document is written by a pooled writer. If the writer produces more than one file, they
+     * are packaged as a ZIP file.
+     */
+    @Override
+    public String exportCasToStream(CAS cas, SourceDocument aDocument, String aFileName,
+            @SuppressWarnings("rawtypes") Class aWriter, boolean aStripExtension,
+            OutputStream aOutputStream)
+        throws IOException, UIMAException
+    {
+        return exportCas(cas, aDocument, aFileName, aWriter, aStripExtension, files -> {
+            if (files.length > 1) {
+                ZipUtils.zipFolder(files[0].getParentFile(), aOutputStream);
+                return (aStripExtension ? FilenameUtils.removeExtension(aFileName) : aFileName)
+                        + ".zip";
+            }
+            else {
+                FileUtils.copyFile(files[0], aOutputStream);
+                return files[0].getName();
+            }
+        });
+    }
+
+    private <T> T exportCas(CAS cas, SourceDocument aDocument, String aFileName,
+            Class<?> aWriter, boolean aStripExtension,
+            WriterEnginePool.WriterOutputHandler<T> aHandler)
+        throws IOException, UIMAException
     {
         // Update the source file name in case it is changed for some reason. This is necessary
         // for the writers to create the files under the correct names.
@@ -518,112 +628,78 @@ public class ImportExportServiceImpl
             }
         }
 
-        File exportTempDir = File.createTempFile("webanno", "export");
-        try {
-            exportTempDir.delete();
-            exportTempDir.mkdirs();
-            
-            AnalysisEngineDescription writer;
-            if (aWriter.getName()
-                    .equals("de.tudarmstadt.ukp.clarin.webanno.tsv.WebannoTsv3Writer")) {
-                List<AnnotationLayer> layers = annotationService
-                        .listAnnotationLayer(aDocument.getProject());
-    
-                List<String> slotFeatures = new ArrayList<>();
-                List<String> slotTargets = new ArrayList<>();
-                List<String> linkTypes = new ArrayList<>();
-    
-                Set<String> spanLayers = new HashSet<>();
-                Set<String> slotLayers = new HashSet<>();
-                for (AnnotationLayer layer : layers) {
-                    
-                    if (layer.getType().contentEquals(WebAnnoConst.SPAN_TYPE)) {
-                        // TSV will not use this
-                        if (!annotationExists(cas, layer.getName())) {
-                            continue;
-                        }
-                        boolean isslotLayer = false;
-                        for (AnnotationFeature f : annotationService.listAnnotationFeature(layer)) {
-                            if (MultiValueMode.ARRAY.equals(f.getMultiValueMode())
-                                    && LinkMode.WITH_ROLE.equals(f.getLinkMode())) {
-                                isslotLayer = true;
-                                slotFeatures.add(layer.getName() + ":" + f.getName());
-                                slotTargets.add(f.getType());
-                                linkTypes.add(f.getLinkTypeName());
-                            }
-                        }
-                        
-                        if (isslotLayer) {
-                            slotLayers.add(layer.getName());
-                        } else {
-                            spanLayers.add(layer.getName());
-                        }
+        // The target location is set by the pool - each pooled writer has its own folder
+        Object[] parameters;
+        if (aWriter.getName()
+                .equals("de.tudarmstadt.ukp.clarin.webanno.tsv.WebannoTsv3Writer")) {
+            List<AnnotationLayer> layers = annotationService
+                    .listAnnotationLayer(aDocument.getProject());
+
+            List<String> slotFeatures = new ArrayList<>();
+            List<String> slotTargets = new ArrayList<>();
+            List<String> linkTypes = new ArrayList<>();
+
+            Set<String> spanLayers = new HashSet<>();
+            Set<String> slotLayers = new HashSet<>();
+            for (AnnotationLayer layer : layers) {
+                
+                if (layer.getType().contentEquals(WebAnnoConst.SPAN_TYPE)) {
+                    // TSV will not use this
+                    if (!annotationExists(cas, layer.getName())) {
+                        continue;
                     }
-                }
-                spanLayers.addAll(slotLayers);
-                List<String> chainLayers = new ArrayList<>();
-                for (AnnotationLayer layer : layers) {
-                    if (layer.getType().contentEquals(WebAnnoConst.CHAIN_TYPE)) {
-                        if (!chainAnnotationExists(cas, layer.getName() + "Chain")) {
-                            continue;
+                    boolean isslotLayer = false;
+                    for (AnnotationFeature f : annotationService.listAnnotationFeature(layer)) {
+                        if (MultiValueMode.ARRAY.equals(f.getMultiValueMode())
+                                && LinkMode.WITH_ROLE.equals(f.getLinkMode())) {
+                            isslotLayer = true;
+                            slotFeatures.add(layer.getName() + ":" + f.getName());
+                            slotTargets.add(f.getType());
+                            linkTypes.add(f.getLinkTypeName());
                         }
-                        chainLayers.add(layer.getName());
                     }
-                }
-    
-                List<String> relationLayers = new ArrayList<>();
-                for (AnnotationLayer layer : layers) {
-                    if (layer.getType().contentEquals(WebAnnoConst.RELATION_TYPE)) {
-                        // TSV will not use this
-                        if (!annotationExists(cas, layer.getName())) {
-                            continue;
-                        }
-                        relationLayers.add(layer.getName());
+                    
+                    if (isslotLayer) {
+                        slotLayers.add(layer.getName());
+                    } else {
+                        spanLayers.add(layer.getName());
                     }
                 }
-    
-                writer = createEngineDescription(aWriter,
-                        JCasFileWriter_ImplBase.PARAM_TARGET_LOCATION, exportTempDir,
-                        JCasFileWriter_ImplBase.PARAM_STRIP_EXTENSION, aStripExtension,
-                        "spanLayers", spanLayers, "slotFeatures", slotFeatures, "slotTargets",
-                        slotTargets, "linkTypes", linkTypes, "chainLayers", chainLayers,
-                        "relationLayers", relationLayers);
-            }
-            else {
-                writer = createEngineDescription(aWriter,
-                        JCasFileWriter_ImplBase.PARAM_TARGET_LOCATION, exportTempDir,
-                        JCasFileWriter_ImplBase.PARAM_STRIP_EXTENSION, aStripExtension);
             }
-    
-            runPipeline(cas, writer);
-    
-            // If the writer produced more than one file, we package it up as a ZIP file
-            File exportFile;
-            if (exportTempDir.listFiles().length > 1) {
-                exportFile = new File(exportTempDir.getAbsolutePath() + ".zip");
-                try {
-                    ZipUtils.zipFolder(exportTempDir, exportFile);
-                }
-                catch (Exception e) {
-                    try (MDC.MDCCloseable closable = MDC.putCloseable(Logging.KEY_PROJECT_ID,
-                            String.valueOf(project.getId()))) {
-                        log.info("Unable to create zip File");
+            spanLayers.addAll(slotLayers);
+            List<String> chainLayers = new ArrayList<>();
+            for (AnnotationLayer layer : layers) {
+                if (layer.getType().contentEquals(WebAnnoConst.CHAIN_TYPE)) {
+                    if (!chainAnnotationExists(cas, layer.getName() + "Chain")) {
+                        continue;
                     }
+                    chainLayers.add(layer.getName());
                 }
             }
-            else {
-                exportFile = new File(exportTempDir.getParent(),
-                        exportTempDir.listFiles()[0].getName());
-                FileUtils.copyFile(exportTempDir.listFiles()[0], exportFile);
+
+            List<String> relationLayers = new ArrayList<>();
+            for (AnnotationLayer layer : layers) {
+                if (layer.getType().contentEquals(WebAnnoConst.RELATION_TYPE)) {
+                    // TSV will not use this
+                    if (!annotationExists(cas, layer.getName())) {
+                        continue;
+                    }
+                    relationLayers.add(layer.getName());
+                }
             }
-            
-            return exportFile;
+
+            parameters = new Object[] {
+                    JCasFileWriter_ImplBase.PARAM_STRIP_EXTENSION, aStripExtension,
+                    "spanLayers", spanLayers, "slotFeatures", slotFeatures, "slotTargets",
+                    slotTargets, "linkTypes", linkTypes, "chainLayers", chainLayers,
+                    "relationLayers", relationLayers };
         }
-        finally {
-            if (exportTempDir != null) {
-                FileUtils.forceDelete(exportTempDir);
-            }
+        else {
+            parameters = new Object[] {
+                    JCasFileWriter_ImplBase.PARAM_STRIP_EXTENSION, aStripExtension };
         }
+
+        return writerPool.write(cas, aWriter, parameters, aHandler);
     }
     
     private boolean annotationExists(CAS aCas, String aType) {
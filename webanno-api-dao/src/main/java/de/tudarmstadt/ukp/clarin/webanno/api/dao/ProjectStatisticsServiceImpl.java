@@ -0,0 +1,565 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectStatistics;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectStatistics.Counts;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectStatisticsService;
+import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterAnnotationDocumentSavedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterAnnotationUpdateEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterSourceDocumentSavedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeAnnotationDocumentRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeDocumentRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeProjectRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.ProjectImportEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.ProjectPermissionsChangedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState;
+import de.tudarmstadt.ukp.clarin.webanno.model.PermissionLevel;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState;
+
+@Component(ProjectStatisticsService.SERVICE_NAME)
+public class ProjectStatisticsServiceImpl
+    implements ProjectStatisticsService, SmartLifecycle
+{
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Interval in minutes in which the statistics are rebuilt from the database. A value of 0
+     * disables the periodic reconciliation - projects are then only loaded on first access.
+     */
+    @Value(value = "${statistics.reconcile.interval:60}")
+    private int reconcileInterval;
+
+    private final Map<Long, ProjectCounter> projects = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    private boolean running = false;
+
+    @Override
+    public ProjectStatistics getProjectStatistics(Project aProject)
+    {
+        ProjectCounter counter = projects.get(aProject.getId());
+        if (counter == null || counter.isDirty()) {
+            counter = load(aProject.getId());
+        }
+        return counter.getStatistics();
+    }
+
+    @Override
+    public void reconcile()
+    {
+        long start = System.currentTimeMillis();
+
+        List<Long> projectIds = entityManager.createQuery("SELECT id FROM Project", Long.class)
+                .getResultList();
+
+        rebuild(projectIds, null);
+
+        projects.keySet().retainAll(projectIds);
+
+        log.info("Reconciled statistics of {} projects in {}ms", projectIds.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public void reconcile(Project aProject)
+    {
+        load(aProject.getId());
+    }
+
+    private ProjectCounter load(long aProjectId)
+    {
+        ProjectCounter counter = rebuild(Collections.singletonList(aProjectId), aProjectId)
+                .get(aProjectId);
+        // If another rebuild finished first, its counter has been published instead
+        return projects.getOrDefault(aProjectId, counter);
+    }
+
+    /**
+     * Rebuilds the counters of the given projects from the database. The current counters stay in
+     * use while the new ones are filled. Updates arriving meanwhile are applied to the current
+     * counters and are replayed on the new ones before these are published, so no update is lost.
+     *
+     * @return the rebuilt counters.
+     */
+    private Map<Long, ProjectCounter> rebuild(Collection<Long> aProjectIds, Long aProjectId)
+    {
+        Map<Long, ProjectCounter> current = new HashMap<>();
+        Map<Long, List<Consumer<ProjectCounter>>> journals = new HashMap<>();
+        Map<Long, ProjectCounter> counters = new HashMap<>();
+        for (Long projectId : aProjectIds) {
+            // Projects which are not tracked yet get a placeholder which records the updates. It
+            // is dirty, so it is not used for statistics before the rebuilt counter is published.
+            ProjectCounter counter = projects.computeIfAbsent(projectId, id -> {
+                ProjectCounter placeholder = new ProjectCounter(id);
+                placeholder.setDirty();
+                return placeholder;
+            });
+            current.put(projectId, counter);
+            journals.put(projectId, counter.beginRebuild());
+            counters.put(projectId, new ProjectCounter(projectId));
+        }
+
+        try {
+            fill(counters, aProjectId);
+        }
+        catch (RuntimeException e) {
+            current.forEach((id, counter) -> counter.endRebuild(journals.get(id)));
+            throw e;
+        }
+
+        current.forEach((id, counter) -> counter.replaceWith(counters.get(id),
+                journals.get(id), projects));
+
+        return counters;
+    }
+
+    /**
+     * Load documents, annotation documents and annotators of all projects (if the project ID is
+     * {@code null}) or of a single project. Each is loaded with a single query.
+     */
+    private void fill(Map<Long, ProjectCounter> aCounters, Long aProjectId)
+    {
+        TypedQuery<Object[]> docQuery = entityManager.createQuery(
+                "SELECT d.id, d.project.id, d.state FROM SourceDocument d "
+                        + "WHERE d.format <> :format"
+                        + (aProjectId != null ? " AND d.project.id = :project" : ""),
+                Object[].class)
+                .setParameter("format", WebAnnoConst.TAB_SEP);
+        TypedQuery<Object[]> annDocQuery = entityManager.createQuery(
+                "SELECT a.id, a.project.id, a.document.id, a.user, a.state "
+                        + "FROM AnnotationDocument a WHERE a.document.format <> :format"
+                        + (aProjectId != null ? " AND a.project.id = :project" : ""),
+                Object[].class)
+                .setParameter("format", WebAnnoConst.TAB_SEP);
+        // Permissions of users which have been deleted are left behind, so only consider users
+        // that still exist
+        TypedQuery<Object[]> annotatorQuery = entityManager.createQuery(
+                "SELECT DISTINCT p.project.id, p.user FROM ProjectPermission p, User u "
+                        + "WHERE p.user = u.username AND p.level = :level"
+                        + (aProjectId != null ? " AND p.project.id = :project" : ""),
+                Object[].class)
+                .setParameter("level", PermissionLevel.USER);
+
+        if (aProjectId != null) {
+            docQuery.setParameter("project", aProjectId);
+            annDocQuery.setParameter("project", aProjectId);
+            annotatorQuery.setParameter("project", aProjectId);
+        }
+
+        for (Object[] row : docQuery.getResultList()) {
+            ProjectCounter counter = aCounters.get(row[1]);
+            if (counter != null) {
+                counter.putDocument((Long) row[0], (SourceDocumentState) row[2]);
+            }
+        }
+
+        for (Object[] row : annDocQuery.getResultList()) {
+            ProjectCounter counter = aCounters.get(row[1]);
+            if (counter != null) {
+                counter.putAnnotation((Long) row[0], (Long) row[2], (String) row[3],
+                        (AnnotationDocumentState) row[4]);
+            }
+        }
+
+        for (Object[] row : annotatorQuery.getResultList()) {
+            ProjectCounter counter = aCounters.get(row[0]);
+            if (counter != null) {
+                counter.addAnnotator((String) row[1]);
+            }
+        }
+    }
+
+    @EventListener
+    public void onSourceDocumentSaved(AfterSourceDocumentSavedEvent aEvent)
+    {
+        SourceDocument doc = aEvent.getDocument();
+        ProjectCounter counter = projects.get(doc.getProject().getId());
+        if (counter != null && !WebAnnoConst.TAB_SEP.equals(doc.getFormat())) {
+            counter.putDocument(doc.getId(), doc.getState());
+        }
+    }
+
+    @EventListener
+    public void beforeSourceDocumentRemoved(BeforeDocumentRemovedEvent aEvent)
+    {
+        SourceDocument doc = aEvent.getDocument();
+        ProjectCounter counter = projects.get(doc.getProject().getId());
+        if (counter != null) {
+            counter.removeDocument(doc.getId());
+        }
+    }
+
+    @EventListener
+    public void onAnnotationDocumentSaved(AfterAnnotationDocumentSavedEvent aEvent)
+    {
+        putAnnotation(aEvent.getDocument());
+    }
+
+    @EventListener
+    public void onAnnotationUpdated(AfterAnnotationUpdateEvent aEvent)
+    {
+        putAnnotation(aEvent.getDocument());
+    }
+
+    private void putAnnotation(AnnotationDocument aDocument)
+    {
+        ProjectCounter counter = projects.get(aDocument.getProject().getId());
+        if (counter != null && aDocument.getId() != 0) {
+            counter.putAnnotation(aDocument.getId(), aDocument.getDocument().getId(),
+                    aDocument.getUser(), aDocument.getState());
+        }
+    }
+
+    @EventListener
+    public void beforeAnnotationDocumentRemoved(BeforeAnnotationDocumentRemovedEvent aEvent)
+    {
+        AnnotationDocument doc = aEvent.getDocument();
+        ProjectCounter counter = projects.get(doc.getProject().getId());
+        if (counter != null) {
+            counter.removeAnnotation(doc.getId());
+        }
+    }
+
+    @EventListener
+    public void onProjectPermissionsChanged(ProjectPermissionsChangedEvent aEvent)
+    {
+        invalidate(aEvent.getProject());
+    }
+
+    @EventListener
+    public void onProjectImported(ProjectImportEvent aEvent)
+    {
+        invalidate(aEvent.getProject());
+    }
+
+    @EventListener
+    public void beforeProjectRemoved(BeforeProjectRemovedEvent aEvent)
+    {
+        projects.remove(aEvent.getProject().getId());
+    }
+
+    private void invalidate(Project aProject)
+    {
+        ProjectCounter counter = projects.get(aProject.getId());
+        if (counter != null) {
+            counter.setDirty();
+        }
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    @Override
+    public void start()
+    {
+        if (reconcileInterval > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "project-statistics-reconcile");
+                t.setDaemon(true);
+                return t;
+            });
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    reconcile();
+                }
+                catch (Exception e) {
+                    // Keep the task scheduled - the next run may succeed
+                    log.error("Unable to reconcile project statistics", e);
+                }
+            }, 0, reconcileInterval, TimeUnit.MINUTES);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop()
+    {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public int getPhase()
+    {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean isAutoStartup()
+    {
+        return true;
+    }
+
+    @Override
+    public void stop(Runnable aCallback)
+    {
+        stop();
+        aCallback.run();
+    }
+
+    /**
+     * Counts for a single project. Every annotation document is remembered with its state so that
+     * repeated or out-of-order updates can be applied without knowing the previous state.
+     */
+    private static class ProjectCounter
+    {
+        private final long projectId;
+        private final Map<Long, SourceDocumentState> documents = new HashMap<>();
+        private final Map<Long, AnnotationEntry> annotations = new HashMap<>();
+        private final Map<String, Map<AnnotationDocumentState, Integer>> userCounts =
+                new HashMap<>();
+        private final Map<SourceDocumentState, Integer> documentCounts = new EnumMap<>(
+                SourceDocumentState.class);
+        private final Set<String> annotators = new HashSet<>();
+
+        private ProjectStatistics statistics;
+        private volatile boolean dirty;
+
+        // Updates recorded for each rebuild of this counter which is in progress
+        private final List<List<Consumer<ProjectCounter>>> journals = new ArrayList<>();
+        // Counter which replaced this one - later updates are forwarded to it
+        private ProjectCounter successor;
+
+        public ProjectCounter(long aProjectId)
+        {
+            projectId = aProjectId;
+        }
+
+        public boolean isDirty()
+        {
+            return dirty;
+        }
+
+        public void setDirty()
+        {
+            // Recorded like any other update, so a rebuild which is in progress does not reset it
+            update(c -> c.dirty = true);
+        }
+
+        /**
+         * Starts recording the updates of this counter until it is replaced by a rebuilt one.
+         */
+        public synchronized List<Consumer<ProjectCounter>> beginRebuild()
+        {
+            List<Consumer<ProjectCounter>> journal = new ArrayList<>();
+            journals.add(journal);
+            return journal;
+        }
+
+        public synchronized void endRebuild(List<Consumer<ProjectCounter>> aJournal)
+        {
+            journals.removeIf(j -> j == aJournal);
+        }
+
+        /**
+         * Replays the updates recorded since the rebuild started on the given counter and
+         * publishes it in place of this one - unless this counter has been replaced or removed
+         * meanwhile.
+         */
+        public synchronized void replaceWith(ProjectCounter aCounter,
+                List<Consumer<ProjectCounter>> aJournal, Map<Long, ProjectCounter> aProjects)
+        {
+            endRebuild(aJournal);
+
+            if (successor != null || aProjects.get(projectId) != this) {
+                return;
+            }
+
+            // All updates are idempotent, so replaying an update which is already contained in
+            // the data loaded from the database does no harm
+            for (Consumer<ProjectCounter> update : aJournal) {
+                aCounter.update(update);
+            }
+
+            successor = aCounter;
+            aProjects.put(projectId, aCounter);
+        }
+
+        private synchronized void update(Consumer<ProjectCounter> aUpdate)
+        {
+            if (successor != null) {
+                successor.update(aUpdate);
+                return;
+            }
+
+            aUpdate.accept(this);
+            for (List<Consumer<ProjectCounter>> journal : journals) {
+                journal.add(aUpdate);
+            }
+        }
+
+        public void putDocument(long aId, SourceDocumentState aState)
+        {
+            update(c -> c.applyPutDocument(aId, aState));
+        }
+
+        public void removeDocument(long aId)
+        {
+            update(c -> c.applyRemoveDocument(aId));
+        }
+
+        public void putAnnotation(long aId, long aDocumentId, String aUser,
+                AnnotationDocumentState aState)
+        {
+            update(c -> c.applyPutAnnotation(aId, aDocumentId, aUser, aState));
+        }
+
+        public void removeAnnotation(long aId)
+        {
+            update(c -> c.applyRemoveAnnotation(aId));
+        }
+
+        private synchronized void applyPutDocument(long aId, SourceDocumentState aState)
+        {
+            SourceDocumentState old = documents.put(aId, aState);
+            if (old != null) {
+                documentCounts.merge(old, -1, Integer::sum);
+            }
+            documentCounts.merge(aState, 1, Integer::sum);
+            statistics = null;
+        }
+
+        private synchronized void applyRemoveDocument(long aId)
+        {
+            SourceDocumentState old = documents.remove(aId);
+            if (old != null) {
+                documentCounts.merge(old, -1, Integer::sum);
+            }
+            // Usually the annotation documents have already been removed at this point
+            annotations.values().removeIf(e -> {
+                if (e.documentId == aId) {
+                    count(e, -1);
+                    return true;
+                }
+                return false;
+            });
+            statistics = null;
+        }
+
+        private synchronized void applyPutAnnotation(long aId, long aDocumentId, String aUser,
+                AnnotationDocumentState aState)
+        {
+            AnnotationEntry entry = new AnnotationEntry(aDocumentId, aUser, aState);
+            AnnotationEntry old = annotations.put(aId, entry);
+            if (old != null) {
+                count(old, -1);
+            }
+            count(entry, 1);
+            statistics = null;
+        }
+
+        private synchronized void applyRemoveAnnotation(long aId)
+        {
+            AnnotationEntry old = annotations.remove(aId);
+            if (old != null) {
+                count(old, -1);
+            }
+            statistics = null;
+        }
+
+        public synchronized void addAnnotator(String aUser)
+        {
+            annotators.add(aUser);
+            statistics = null;
+        }
+
+        private void count(AnnotationEntry aEntry, int aDelta)
+        {
+            userCounts.computeIfAbsent(aEntry.user, u -> new EnumMap<>(
+                    AnnotationDocumentState.class)).merge(aEntry.state, aDelta, Integer::sum);
+        }
+
+        public synchronized ProjectStatistics getStatistics()
+        {
+            if (statistics == null) {
+                Map<String, Counts> counts = new HashMap<>();
+                for (String user : annotators) {
+                    Map<AnnotationDocumentState, Integer> c = userCounts.get(user);
+                    if (c == null) {
+                        counts.put(user, Counts.NONE);
+                    }
+                    else {
+                        counts.put(user, new Counts(
+                                c.getOrDefault(AnnotationDocumentState.FINISHED, 0),
+                                c.getOrDefault(AnnotationDocumentState.IN_PROGRESS, 0),
+                                c.getOrDefault(AnnotationDocumentState.IGNORE, 0)));
+                    }
+                }
+                statistics = new ProjectStatistics(projectId, documents.size(),
+                        documentCounts.getOrDefault(SourceDocumentState.CURATION_IN_PROGRESS, 0),
+                        documentCounts.getOrDefault(SourceDocumentState.CURATION_FINISHED, 0),
+                        counts);
+            }
+            return statistics;
+        }
+    }
+
+    private static class AnnotationEntry
+    {
+        final long documentId;
+        final String user;
+        final AnnotationDocumentState state;
+
+        AnnotationEntry(long aDocumentId, String aUser, AnnotationDocumentState aState)
+        {
+            documentId = aDocumentId;
+            user = aUser;
+            state = aState;
+        }
+    }
+}
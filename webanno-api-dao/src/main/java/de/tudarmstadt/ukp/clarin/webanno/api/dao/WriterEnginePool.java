@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.apache.uima.fit.pipeline.SimplePipeline.runPipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_component.AnalysisComponent;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tudarmstadt.ukp.dkpro.core.api.io.JCasFileWriter_ImplBase;
+
+/**
+ * Pool of initialized DKPro Core writers. Each writer writes into its own temporary folder and is
+ * reused for all exports with the same writer class and parameters. Creating a writer is
+ * expensive compared to writing a single document, so bulk exports benefit from reusing them.
+ * <p>
+ * Only writers which are known not to carry any state from one document to the next are reused.
+ * Many writers remember e.g. whether they already wrote the type system, so all other writers are
+ * created for a single export and destroyed afterwards.
+ * <p>
+ * Instances are thread-safe. A writer is only used by one thread at a time.
+ */
+class WriterEnginePool
+{
+    private static final Logger LOG = LoggerFactory.getLogger(WriterEnginePool.class);
+
+    private final int maxIdle;
+    private final Set<String> poolableWriters;
+
+    // Idle writers, most recently used first
+    private final LinkedList<PooledWriter> idle = new LinkedList<>();
+    private int created;
+    private int reused;
+
+    /**
+     * @param aMaxIdle
+     *            the number of idle writers kept in the pool.
+     * @param aPoolableWriters
+     *            the class names of the writers which may be reused.
+     */
+    public WriterEnginePool(int aMaxIdle, Set<String> aPoolableWriters)
+    {
+        maxIdle = aMaxIdle;
+        poolableWriters = new HashSet<>(aPoolableWriters);
+    }
+
+    public boolean isPoolable(Class<?> aWriter)
+    {
+        return maxIdle > 0 && poolableWriters.contains(aWriter.getName());
+    }
+
+    /**
+     * Writes the given CAS with a writer of the given class and parameters and passes the files
+     * it produced to the given handler. The files are removed once the handler is done.
+     * 
+     * @param aParameters
+     *            the writer parameters, except for the target location.
+     */
+    public <T> T write(CAS aCas, Class<?> aWriter, Object[] aParameters,
+            WriterOutputHandler<T> aHandler)
+        throws IOException, UIMAException
+    {
+        boolean poolable = isPoolable(aWriter);
+        PooledWriter writer = poolable ? borrow(aWriter, aParameters)
+                : new PooledWriter(null, aWriter, aParameters);
+        boolean healthy = false;
+        try {
+            FileUtils.cleanDirectory(writer.targetFolder);
+            runPipeline(aCas, writer.engine);
+            T result = aHandler.handle(writer.targetFolder.listFiles());
+            FileUtils.cleanDirectory(writer.targetFolder);
+            healthy = true;
+            return result;
+        }
+        finally {
+            if (healthy && poolable) {
+                release(writer);
+            }
+            else {
+                writer.destroy();
+            }
+        }
+    }
+
+    private PooledWriter borrow(Class<?> aWriter, Object[] aParameters)
+        throws IOException, UIMAException
+    {
+        List<Object> key = new ArrayList<>();
+        key.add(aWriter.getName());
+        key.addAll(Arrays.asList(aParameters));
+
+        synchronized (this) {
+            Iterator<PooledWriter> i = idle.iterator();
+            while (i.hasNext()) {
+                PooledWriter writer = i.next();
+                if (writer.key.equals(key)) {
+                    i.remove();
+                    reused++;
+                    return writer;
+                }
+            }
+            created++;
+        }
+
+        return new PooledWriter(key, aWriter, aParameters);
+    }
+
+    private void release(PooledWriter aWriter)
+    {
+        PooledWriter evicted = null;
+        synchronized (this) {
+            idle.addFirst(aWriter);
+            if (idle.size() > maxIdle) {
+                evicted = idle.removeLast();
+            }
+        }
+        if (evicted != null) {
+            evicted.destroy();
+        }
+    }
+
+    /**
+     * Destroys all idle writers.
+     */
+    public void destroy()
+    {
+        List<PooledWriter> writers;
+        synchronized (this) {
+            writers = new ArrayList<>(idle);
+            idle.clear();
+            LOG.info("Writer pool: {} writers created, {} reused", created, reused);
+        }
+        for (PooledWriter writer : writers) {
+            writer.destroy();
+        }
+    }
+
+    @FunctionalInterface
+    public interface WriterOutputHandler<T>
+    {
+        T handle(File[] aFiles)
+            throws IOException;
+    }
+
+    private static class PooledWriter
+    {
+        private final List<Object> key;
+        private final File targetFolder;
+        private final AnalysisEngine engine;
+
+        PooledWriter(List<Object> aKey, Class<?> aWriter, Object[] aParameters)
+            throws IOException, UIMAException
+        {
+            key = aKey;
+            targetFolder = File.createTempFile("webanno", "export");
+            targetFolder.delete();
+            targetFolder.mkdirs();
+
+            Object[] parameters = Arrays.copyOf(aParameters, aParameters.length + 2);
+            parameters[aParameters.length] = JCasFileWriter_ImplBase.PARAM_TARGET_LOCATION;
+            parameters[aParameters.length + 1] = targetFolder;
+            try {
+                engine = createEngine(aWriter.asSubclass(AnalysisComponent.class), parameters);
+            }
+            catch (UIMAException | RuntimeException e) {
+                FileUtils.deleteQuietly(targetFolder);
+                throw e;
+            }
+        }
+
+        void destroy()
+        {
+            engine.destroy();
+            FileUtils.deleteQuietly(targetFolder);
+        }
+    }
+}
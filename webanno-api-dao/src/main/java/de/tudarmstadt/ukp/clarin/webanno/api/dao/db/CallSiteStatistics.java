@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.db;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.ConcurrentStatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+
+/**
+ * Hibernate statistics which in addition to the timings of each query also remember from which
+ * application methods the query has been executed. Hibernate only reports executed queries if
+ * statistics are enabled ({@code hibernate.generate_statistics}), so the stack inspection
+ * performed here does not cost anything otherwise.
+ * <p>
+ * Enabled by setting {@code hibernate.stats.factory} to {@link Factory}.
+ */
+public class CallSiteStatistics
+    extends ConcurrentStatisticsImpl
+{
+    private static final String APPLICATION_PACKAGE = "de.tudarmstadt.ukp.clarin.webanno.";
+    private static final String UNKNOWN = "<unknown>";
+
+    private final Map<String, Map<String, LongAdder>> callSites = new ConcurrentHashMap<>();
+
+    public CallSiteStatistics(SessionFactoryImplementor aSessionFactory)
+    {
+        super(aSessionFactory);
+    }
+
+    @Override
+    public void queryExecuted(String aHql, int aRows, long aTime)
+    {
+        super.queryExecuted(aHql, aRows, aTime);
+
+        if (aHql != null) {
+            callSites.computeIfAbsent(aHql, k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(findCallSite(), k -> new LongAdder()).increment();
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        super.clear();
+        callSites.clear();
+    }
+
+    /**
+     * @param aHql
+     *            the query.
+     * @return the methods from which the given query was executed, most frequent first.
+     */
+    public List<String> getCallSites(String aHql)
+    {
+        Map<String, LongAdder> sites = callSites.get(aHql);
+        if (sites == null) {
+            return Collections.emptyList();
+        }
+
+        return sites.entrySet().stream()
+                .sorted(comparing((Entry<String, LongAdder> e) -> e.getValue().sum()).reversed())
+                .map(Entry::getKey)
+                .collect(toList());
+    }
+
+    /**
+     * Locate the first application method on the stack which is not part of this package.
+     */
+    private static String findCallSite()
+    {
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            String className = frame.getClassName();
+            if (className.startsWith(APPLICATION_PACKAGE)
+                    && !className.startsWith(CallSiteStatistics.class.getPackage().getName())) {
+                // Strip the suffix of Spring/CGLIB proxies and lambdas
+                int proxy = className.indexOf("$$");
+                if (proxy >= 0) {
+                    className = className.substring(0, proxy);
+                }
+                return className.substring(className.lastIndexOf('.') + 1) + "."
+                        + frame.getMethodName();
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Instantiated by Hibernate via the {@code hibernate.stats.factory} setting.
+     */
+    public static class Factory
+        implements StatisticsFactory
+    {
+        @Override
+        public StatisticsImplementor buildStatistics(SessionFactoryImplementor aSessionFactory)
+        {
+            return new CallSiteStatistics(aSessionFactory);
+        }
+    }
+}
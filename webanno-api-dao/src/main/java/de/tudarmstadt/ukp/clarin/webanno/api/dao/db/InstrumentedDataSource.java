@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.dbcp.BasicDataSource;
+
+/**
+ * Connection pool which measures how long callers have to wait until the pool hands out a
+ * connection. This is a drop-in replacement for the {@link BasicDataSource} and is configured in
+ * exactly the same way.
+ */
+public class InstrumentedDataSource
+    extends BasicDataSource
+{
+    private final LongAdder connectionRequests = new LongAdder();
+    private final LongAdder totalWaitTime = new LongAdder();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    @Override
+    public Connection getConnection()
+        throws SQLException
+    {
+        long start = System.nanoTime();
+        try {
+            return super.getConnection();
+        }
+        finally {
+            long wait = System.nanoTime() - start;
+            connectionRequests.increment();
+            totalWaitTime.add(wait);
+            maxWaitTime.accumulateAndGet(wait, Math::max);
+        }
+    }
+
+    public long getConnectionRequests()
+    {
+        return connectionRequests.sum();
+    }
+
+    /**
+     * @return the accumulated time spent waiting for connections (ns).
+     */
+    public long getTotalWaitTime()
+    {
+        return totalWaitTime.sum();
+    }
+
+    /**
+     * @return the longest time spent waiting for a single connection (ns).
+     */
+    public long getMaxWaitTime()
+    {
+        return maxWaitTime.get();
+    }
+
+    public void resetWaitStatistics()
+    {
+        connectionRequests.reset();
+        totalWaitTime.reset();
+        maxWaitTime.set(0);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao.migration;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * WebAnno versions until 3.3.0 did not define any indexes on the document and permission tables
+ * apart from their unique constraints. The indexes are declared on the entities now, but they
+ * are only created automatically if the database schema is generated/updated by Hibernate. This
+ * migration creates any of them which are still missing.
+ */
+public class CreateDocumentIndexes
+    implements SmartLifecycle
+{
+    private static final String[][] INDEXES = {
+            { "annotation_document", "idx_annotation_document_document_user", "document, user" },
+            { "annotation_document", "idx_annotation_document_project_user", "project, user" },
+            { "annotation_document", "idx_annotation_document_project_state", "project, state" },
+            { "annotation_document", "idx_annotation_document_document_state", "document, state" },
+            { "source_document", "idx_source_document_project_format", "project, format" },
+            { "source_document", "idx_source_document_project_state", "project, state" },
+            { "project_permissions", "idx_project_permissions_project_level", "project, level" } };
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private boolean running = false;
+
+    @Resource(name = "dataSource")
+    private DataSource dataSource;
+
+    @Override
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    @Override
+    public void start()
+    {
+        running = true;
+        doMigration();
+    }
+
+    @Override
+    public void stop()
+    {
+        running = false;
+    }
+
+    @Override
+    public int getPhase()
+    {
+        return Integer.MIN_VALUE;
+    }
+
+    @Override
+    public boolean isAutoStartup()
+    {
+        return true;
+    }
+
+    @Override
+    public void stop(Runnable aCallback)
+    {
+        stop();
+        aCallback.run();
+    }
+
+    private void doMigration()
+    {
+        try (Connection conn = dataSource.getConnection()) {
+            DatabaseMetaData meta = conn.getMetaData();
+            for (String[] index : INDEXES) {
+                String table = index[0];
+                String name = index[1];
+                
+                if (!tableExists(meta, table) || indexExists(meta, table, name)) {
+                    continue;
+                }
+                
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("CREATE INDEX " + name + " ON " + table + " (" + index[2] + ")");
+                    log.info("DATABASE UPGRADE PERFORMED: created index [" + name + "] on ["
+                            + table + "]");
+                }
+                catch (SQLException e) {
+                    // The index is only needed for performance - continue without it
+                    log.warn("Unable to create index [" + name + "] on [" + table + "]", e);
+                }
+            }
+        }
+        catch (SQLException e) {
+            log.error("Unable to check database indexes", e);
+        }
+    }
+
+    private boolean tableExists(DatabaseMetaData aMeta, String aTable)
+        throws SQLException
+    {
+        // Databases differ in how they store unquoted identifiers
+        for (String table : new String[] { aTable, aTable.toUpperCase(), aTable.toLowerCase() }) {
+            try (ResultSet rs = aMeta.getTables(null, null, table, null)) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean indexExists(DatabaseMetaData aMeta, String aTable, String aIndex)
+        throws SQLException
+    {
+        for (String table : new String[] { aTable, aTable.toUpperCase(), aTable.toLowerCase() }) {
+            try (ResultSet rs = aMeta.getIndexInfo(null, null, table, false, true)) {
+                while (rs.next()) {
+                    if (aIndex.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.dao;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.testing.factory.TokenBuilder;
+import org.apache.uima.jcas.JCas;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.tsv.WebannoTsv3Writer;
+import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+public class WriterEnginePoolTest
+{
+    private static final Object[] PARAMETERS = { WebannoTsv3Writer.PARAM_SPAN_LAYERS,
+            asList(NamedEntity.class.getName()) };
+
+    private WriterEnginePool pooled;
+    private WriterEnginePool unpooled;
+
+    @Before
+    public void setup()
+    {
+        pooled = new WriterEnginePool(1,
+                new HashSet<>(asList(WebannoTsv3Writer.class.getName())));
+        unpooled = new WriterEnginePool(1, Collections.emptySet());
+    }
+
+    @After
+    public void tearDown()
+    {
+        pooled.destroy();
+        unpooled.destroy();
+    }
+
+    @Test
+    public void thatReusedWriterProducesSameOutputAsFreshWriter()
+        throws Exception
+    {
+        JCas doc1 = makeJCas("doc1", "This is a test .", 0, 4);
+        JCas doc2 = makeJCas("doc2", "Another sentence here .", 8, 16);
+
+        File folder1 = pooled.write(doc1.getCas(), WebannoTsv3Writer.class, PARAMETERS,
+            files -> files[0].getParentFile());
+        String pooled1 = export(pooled, doc1);
+        String pooled2 = export(pooled, doc2);
+        File folder2 = pooled.write(doc2.getCas(), WebannoTsv3Writer.class, PARAMETERS,
+            files -> files[0].getParentFile());
+
+        // Same folder means the same pooled writer was used for both documents
+        assertEquals(folder1, folder2);
+
+        assertEquals(export(unpooled, doc1), pooled1);
+        assertEquals(export(unpooled, doc2), pooled2);
+    }
+
+    @Test
+    public void thatNonPoolableWriterIsNotReused()
+        throws Exception
+    {
+        JCas doc = makeJCas("doc", "This is a test .", 0, 4);
+
+        File folder1 = unpooled.write(doc.getCas(), WebannoTsv3Writer.class, PARAMETERS,
+            files -> files[0].getParentFile());
+        File folder2 = unpooled.write(doc.getCas(), WebannoTsv3Writer.class, PARAMETERS,
+            files -> files[0].getParentFile());
+
+        assertNotEquals(folder1, folder2);
+    }
+
+    private String export(WriterEnginePool aPool, JCas aJCas)
+        throws Exception
+    {
+        return aPool.write(aJCas.getCas(), WebannoTsv3Writer.class, PARAMETERS, files -> {
+            assertEquals(1, files.length);
+            return FileUtils.readFileToString(files[0], "UTF-8");
+        });
+    }
+
+    private JCas makeJCas(String aId, String aText, int aNeBegin, int aNeEnd)
+        throws Exception
+    {
+        JCas jcas = JCasFactory.createJCas();
+        DocumentMetaData.create(jcas).setDocumentId(aId);
+
+        TokenBuilder<Token, Sentence> tb = new TokenBuilder<>(Token.class, Sentence.class);
+        tb.buildTokens(jcas, aText);
+
+        NamedEntity ne = new NamedEntity(jcas, aNeBegin, aNeEnd);
+        ne.setValue("PER");
+        ne.addToIndexes();
+
+        return jcas;
+    }
+}
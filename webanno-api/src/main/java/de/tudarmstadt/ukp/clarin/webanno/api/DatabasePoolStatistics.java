@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the database connection pool state as reported by the
+ * {@link DatabaseStatisticsService}. Wait times are measured from the moment a connection is
+ * requested until the pool hands it out.
+ */
+public class DatabasePoolStatistics
+    implements Serializable
+{
+    private static final long serialVersionUID = -4630458370391232514L;
+
+    private final int active;
+    private final int idle;
+    private final int maxActive;
+    private final long connectionRequests;
+    private final long totalWaitTime;
+    private final long maxWaitTime;
+
+    public DatabasePoolStatistics(int aActive, int aIdle, int aMaxActive, long aConnectionRequests,
+            long aTotalWaitTime, long aMaxWaitTime)
+    {
+        active = aActive;
+        idle = aIdle;
+        maxActive = aMaxActive;
+        connectionRequests = aConnectionRequests;
+        totalWaitTime = aTotalWaitTime;
+        maxWaitTime = aMaxWaitTime;
+    }
+
+    /**
+     * @return the number of connections currently borrowed from the pool.
+     */
+    public int getActive()
+    {
+        return active;
+    }
+
+    /**
+     * @return the number of connections currently idle in the pool.
+     */
+    public int getIdle()
+    {
+        return idle;
+    }
+
+    /**
+     * @return the maximum number of connections the pool hands out at the same time.
+     */
+    public int getMaxActive()
+    {
+        return maxActive;
+    }
+
+    public long getConnectionRequests()
+    {
+        return connectionRequests;
+    }
+
+    /**
+     * @return the accumulated time spent waiting for connections (ms).
+     */
+    public long getTotalWaitTime()
+    {
+        return totalWaitTime;
+    }
+
+    /**
+     * @return the longest time spent waiting for a single connection (ms).
+     */
+    public long getMaxWaitTime()
+    {
+        return maxWaitTime;
+    }
+
+    /**
+     * @return the average time spent waiting for a connection (ms).
+     */
+    public double getAverageWaitTime()
+    {
+        return connectionRequests == 0 ? 0.0 : (double) totalWaitTime / connectionRequests;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Execution statistics of a single JPQL query as reported by the
+ * {@link DatabaseStatisticsService}. The call sites are the service methods from which the query
+ * was executed, ordered by descending number of executions.
+ */
+public class DatabaseQueryStatistics
+    implements Serializable
+{
+    private static final long serialVersionUID = 2214702426180410734L;
+
+    private final String query;
+    private final long executionCount;
+    private final long averageTime;
+    private final long maxTime;
+    private final long rowCount;
+    private final List<String> callSites;
+
+    public DatabaseQueryStatistics(String aQuery, long aExecutionCount, long aAverageTime,
+            long aMaxTime, long aRowCount, List<String> aCallSites)
+    {
+        query = aQuery;
+        executionCount = aExecutionCount;
+        averageTime = aAverageTime;
+        maxTime = aMaxTime;
+        rowCount = aRowCount;
+        callSites = Collections.unmodifiableList(aCallSites);
+    }
+
+    public String getQuery()
+    {
+        return query;
+    }
+
+    public long getExecutionCount()
+    {
+        return executionCount;
+    }
+
+    /**
+     * @return the average execution time (ms).
+     */
+    public long getAverageTime()
+    {
+        return averageTime;
+    }
+
+    /**
+     * @return the maximum execution time (ms).
+     */
+    public long getMaxTime()
+    {
+        return maxTime;
+    }
+
+    /**
+     * @return the total number of rows returned by all executions.
+     */
+    public long getRowCount()
+    {
+        return rowCount;
+    }
+
+    public List<String> getCallSites()
+    {
+        return callSites;
+    }
+}
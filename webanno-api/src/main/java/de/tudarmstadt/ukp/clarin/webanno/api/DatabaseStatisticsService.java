@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api;
+
+import java.util.List;
+
+/**
+ * Exposes metrics about the database connection pool and the JPQL queries executed by the
+ * application. Query timings are only collected if the {@code database.statistics} setting is
+ * enabled since collecting them adds a small overhead to every query.
+ */
+public interface DatabaseStatisticsService
+{
+    String SERVICE_NAME = "databaseStatisticsService";
+
+    /**
+     * @return whether query statistics are being collected.
+     */
+    boolean isQueryStatisticsEnabled();
+
+    /**
+     * @return the current state of the connection pool.
+     */
+    DatabasePoolStatistics getPoolStatistics();
+
+    /**
+     * Get the queries with the highest average execution time.
+     *
+     * @param aLimit
+     *            the maximum number of queries to return.
+     * @return the queries ordered by descending average execution time.
+     */
+    List<DatabaseQueryStatistics> listSlowestQueries(int aLimit);
+
+    /**
+     * Get the queries which have been executed most often.
+     *
+     * @param aLimit
+     *            the maximum number of queries to return.
+     * @return the queries ordered by descending execution count.
+     */
+    List<DatabaseQueryStatistics> listMostFrequentQueries(int aLimit);
+
+    /**
+     * Discard all query statistics and connection wait times collected so far.
+     */
+    void reset();
+}
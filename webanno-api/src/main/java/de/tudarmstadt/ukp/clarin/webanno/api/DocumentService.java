@@ -20,6 +20,7 @@ package de.tudarmstadt.ukp.clarin.webanno.api;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -149,6 +150,67 @@ public interface DocumentService
      */
     List<SourceDocument> listSourceDocuments(Project aProject);
 
+    /**
+     * Count the source documents in a project which match the given filter.
+     *
+     * @param aProject
+     *            the project.
+     * @param aNameFilter
+     *            case-insensitive substring of the document name or {@code null} to match all.
+     * @param aState
+     *            the document state or {@code null} to match all.
+     * @return the number of matching documents.
+     */
+    long countSourceDocuments(Project aProject, String aNameFilter, SourceDocumentState aState);
+
+    /**
+     * List a page of the source documents in a project which match the given filter. Meant to be
+     * used by paging data providers instead of loading all documents of a project via
+     * {@link #listSourceDocuments(Project)}.
+     *
+     * @param aProject
+     *            the project.
+     * @param aNameFilter
+     *            case-insensitive substring of the document name or {@code null} to match all.
+     * @param aState
+     *            the document state or {@code null} to match all.
+     * @param aSortProperty
+     *            the property to sort by ({@code name}, {@code state}, {@code format},
+     *            {@code created} or {@code updated}). Ties are broken by name.
+     * @param aAscending
+     *            whether to sort in ascending order.
+     * @param aFirst
+     *            the index of the first document to return.
+     * @param aCount
+     *            the maximum number of documents to return.
+     * @return the matching documents.
+     */
+    List<SourceDocument> listSourceDocuments(Project aProject, String aNameFilter,
+            SourceDocumentState aState, String aSortProperty, boolean aAscending, long aFirst,
+            long aCount);
+
+    /**
+     * List the source documents in a project which match the given filter and whose name sorts
+     * after the given name (keyset paging). Unlike offset paging, the cost of fetching a page does
+     * not grow with the position of the page and the result is stable when documents are added or
+     * removed concurrently.
+     *
+     * @param aProject
+     *            the project.
+     * @param aNameFilter
+     *            case-insensitive substring of the document name or {@code null} to match all.
+     * @param aState
+     *            the document state or {@code null} to match all.
+     * @param aAfterName
+     *            the name of the last document of the previous page or {@code null} to start at
+     *            the beginning.
+     * @param aLimit
+     *            the maximum number of documents to return.
+     * @return the matching documents ordered by name.
+     */
+    List<SourceDocument> listSourceDocumentsAfter(Project aProject, String aNameFilter,
+            SourceDocumentState aState, String aAfterName, int aLimit);
+
     /**
      * ROLE_ADMINs or project admins can remove source documents from a project. removing a a source
      * document also removes an annotation document related to that document
@@ -375,6 +437,49 @@ public interface DocumentService
 
     List<AnnotationDocument> listAnnotationDocuments(Project project, User user);
 
+    /**
+     * Batch variant of {@link #listAnnotationDocuments(SourceDocument)} which loads the
+     * {@link AnnotationDocument}s of all given source documents using a single query per project
+     * instead of one query per document. As in the single-document variant, only the annotation
+     * documents of users which are annotators in the respective project are returned.
+     *
+     * @param aDocuments
+     *            the source documents.
+     * @return a map containing an entry (possibly an empty list) for every given source document,
+     *         in the order of the given collection.
+     */
+    Map<SourceDocument, List<AnnotationDocument>> listAnnotationDocuments(
+            Collection<SourceDocument> aDocuments);
+
+    /**
+     * Load the {@link AnnotationDocument}s of the given users for all source documents in the
+     * project using a single query. This is meant to be used instead of calling
+     * {@link #getAnnotationDocument(SourceDocument, User)} in a loop over the documents of a
+     * project.
+     *
+     * @param aProject
+     *            the project.
+     * @param aUsers
+     *            the users.
+     * @return a map containing an entry for every given user which maps the source documents to
+     *         the user's annotation document. Source documents for which the user has no
+     *         annotation document yet are not contained in the map of the user.
+     */
+    Map<User, Map<SourceDocument, AnnotationDocument>> getAnnotationDocuments(Project aProject,
+            Collection<User> aUsers);
+
+    /**
+     * Get the state and timestamp of the annotation documents of all annotators for all source
+     * documents in the project. The matrix is obtained using a single query and is meant to be
+     * used instead of checking the annotation documents one by one, e.g. when monitoring the
+     * progress of a project.
+     *
+     * @param aProject
+     *            the project.
+     * @return the progress matrix.
+     */
+    ProjectProgressMatrix getProjectProgressMatrix(Project aProject);
+
     /**
      * Number of expected annotation documents in this project (numUser X document - Ignored)
      *
@@ -19,6 +19,7 @@ package de.tudarmstadt.ukp.clarin.webanno.api;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -122,6 +123,20 @@ public interface ImportExportService
     File exportCasToFile(CAS cas, SourceDocument aDocument, String aFileName,
             Class aWriter, boolean aStripExtension)
         throws IOException, UIMAException;
+
+    /**
+     * Converts a CAS and writes the result to the given stream. If the writer produces more than
+     * one file, a ZIP file containing them is written. The stream is not closed.
+     *
+     * @return the name of the exported file.
+     * @throws UIMAException
+     *             if there was a conversion error.
+     * @throws IOException
+     *             if there was an I/O error.
+     */
+    String exportCasToStream(CAS cas, SourceDocument aDocument, String aFileName,
+            Class aWriter, boolean aStripExtension, OutputStream aOutputStream)
+        throws IOException, UIMAException;
     
     /**
      * Exports an {@link AnnotationDocument } CAS Object as TCF/TXT/XMI... file formats.
@@ -154,6 +169,18 @@ public interface ImportExportService
     File exportAnnotationDocument(SourceDocument document, String user, Class writer,
             String fileName, Mode mode, boolean stripExtension)
         throws UIMAException, IOException, ClassNotFoundException;
+
+    /**
+     * Exports an {@link AnnotationDocument } CAS Object to the given stream instead of a temporary
+     * file. The stream is not closed.
+     *
+     * @return the name of the exported file.
+     * @see #exportCasToStream
+     */
+    @SuppressWarnings("rawtypes")
+    String exportAnnotationDocument(SourceDocument document, String user, Class writer,
+            String fileName, Mode mode, boolean stripExtension, OutputStream outputStream)
+        throws UIMAException, IOException, ClassNotFoundException;
     
     void uploadTrainingDocument(File aFile, TrainingDocument aDocument)
             throws IOException;
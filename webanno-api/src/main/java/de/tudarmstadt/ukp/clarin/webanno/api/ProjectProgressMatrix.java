@@ -0,0 +1,253 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState;
+
+/**
+ * Snapshot of the annotation progress of a project: the state and timestamp of every
+ * annotation document for every combination of source document and annotator. Cells for which
+ * no annotation document exists yet have no state (the annotator has not started).
+ * 
+ * @see DocumentService#getProjectProgressMatrix
+ */
+public class ProjectProgressMatrix
+    implements Serializable
+{
+    private static final long serialVersionUID = -3217896411096458706L;
+
+    private final long projectId;
+    private final List<String> annotators;
+    private final Map<Long, DocumentProgress> documentsById = new LinkedHashMap<>();
+    private final Map<String, DocumentProgress> documentsByName = new HashMap<>();
+
+    public ProjectProgressMatrix(long aProjectId, Collection<String> aAnnotators)
+    {
+        projectId = aProjectId;
+        annotators = Collections.unmodifiableList(new ArrayList<>(aAnnotators));
+    }
+
+    /**
+     * Adds a source document to the matrix. Documents are kept in the order they were added.
+     */
+    public DocumentProgress addDocument(long aDocumentId, String aName,
+            SourceDocumentState aState, Date aTimestamp)
+    {
+        DocumentProgress document = documentsById.get(aDocumentId);
+        if (document == null) {
+            document = new DocumentProgress(aDocumentId, aName, aState, aTimestamp);
+            documentsById.put(aDocumentId, document);
+            documentsByName.put(aName, document);
+        }
+        return document;
+    }
+
+    public long getProjectId()
+    {
+        return projectId;
+    }
+
+    /**
+     * @return the names of the users with annotator permissions in the project, sorted by name.
+     */
+    public List<String> getAnnotators()
+    {
+        return annotators;
+    }
+
+    public Collection<DocumentProgress> getDocuments()
+    {
+        return Collections.unmodifiableCollection(documentsById.values());
+    }
+
+    public DocumentProgress getDocument(long aDocumentId)
+    {
+        return documentsById.get(aDocumentId);
+    }
+
+    public DocumentProgress getDocument(String aDocumentName)
+    {
+        return documentsByName.get(aDocumentName);
+    }
+
+    public int getDocumentCount()
+    {
+        return documentsById.size();
+    }
+
+    /**
+     * @return the annotation document state or {@code null} if the document or annotation document
+     *         does not exist.
+     */
+    public AnnotationDocumentState getState(String aDocumentName, String aUser)
+    {
+        DocumentProgress document = documentsByName.get(aDocumentName);
+        return document != null ? document.getState(aUser) : null;
+    }
+
+    public int getCount(String aUser, AnnotationDocumentState aState)
+    {
+        int count = 0;
+        for (DocumentProgress document : documentsById.values()) {
+            if (aState.equals(document.getState(aUser))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of documents finished by all annotators together.
+     */
+    public int getFinishedCount()
+    {
+        int count = 0;
+        for (String user : annotators) {
+            count += getCount(user, AnnotationDocumentState.FINISHED);
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of annotation documents expected to be finished, i.e. the number of
+     *         documents multiplied by the number of annotators minus the ignored ones.
+     */
+    public int getExpectedCount()
+    {
+        int ignored = 0;
+        for (String user : annotators) {
+            ignored += getCount(user, AnnotationDocumentState.IGNORE);
+        }
+        return documentsById.size() * annotators.size() - ignored;
+    }
+
+    /**
+     * @return the most recent time the given user has modified any annotation document or
+     *         {@code null} if the user has not started any annotation document.
+     */
+    public Date getLastAccess(String aUser)
+    {
+        Date last = null;
+        for (DocumentProgress document : documentsById.values()) {
+            last = max(last, document.getTimestamp(aUser));
+        }
+        return last;
+    }
+
+    /**
+     * @return the most recent time any source document has been modified or {@code null}.
+     */
+    public Date getLastAccess()
+    {
+        Date last = null;
+        for (DocumentProgress document : documentsById.values()) {
+            last = max(last, document.getTimestamp());
+        }
+        return last;
+    }
+
+    private static Date max(Date aFirst, Date aSecond)
+    {
+        if (aFirst == null) {
+            return aSecond;
+        }
+        if (aSecond == null) {
+            return aFirst;
+        }
+        return aSecond.after(aFirst) ? aSecond : aFirst;
+    }
+
+    /**
+     * A row of the matrix, i.e. a source document and the annotation documents of all annotators.
+     */
+    public static class DocumentProgress
+        implements Serializable
+    {
+        private static final long serialVersionUID = 8473263081393839187L;
+
+        private final long id;
+        private final String name;
+        private final SourceDocumentState state;
+        private final Date timestamp;
+        private final Map<String, AnnotationDocumentState> states = new HashMap<>();
+        private final Map<String, Date> timestamps = new HashMap<>();
+
+        private DocumentProgress(long aId, String aName, SourceDocumentState aState,
+                Date aTimestamp)
+        {
+            id = aId;
+            name = aName;
+            state = aState;
+            timestamp = aTimestamp;
+        }
+
+        public void addAnnotationDocument(String aUser, AnnotationDocumentState aState,
+                Date aTimestamp)
+        {
+            states.put(aUser, aState);
+            if (aTimestamp != null) {
+                timestamps.put(aUser, aTimestamp);
+            }
+        }
+
+        public long getId()
+        {
+            return id;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public SourceDocumentState getState()
+        {
+            return state;
+        }
+
+        public Date getTimestamp()
+        {
+            return timestamp;
+        }
+
+        /**
+         * @return the state of the annotation document of the given user or {@code null} if the
+         *         user has not started annotating the document.
+         */
+        public AnnotationDocumentState getState(String aUser)
+        {
+            return states.get(aUser);
+        }
+
+        public Date getTimestamp(String aUser)
+        {
+            return timestamps.get(aUser);
+        }
+    }
+}
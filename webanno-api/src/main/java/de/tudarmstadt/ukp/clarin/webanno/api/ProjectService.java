@@ -110,8 +110,43 @@ public interface ProjectService
      */
     List<ProjectPermission> listProjectPermissionLevel(User user, Project project);
 
+    /**
+     * Get the permission levels a user has in a given project. The permissions of a user are
+     * cached until they are changed via {@link #createProjectPermission} or
+     * {@link #removeProjectPermission} or until the project is removed.
+     *
+     * @param aUser
+     *            the user.
+     * @param aProject
+     *            the project.
+     * @return the permission levels.
+     */
     List<PermissionLevel> getProjectPermissionLevels(User aUser, Project aProject);
 
+    /**
+     * List the projects in which the given user has at least one of the given permission levels.
+     * This uses the same cached permissions as {@link #getProjectPermissionLevels(User, Project)}
+     * so that checking all projects of a user does not require a query per project.
+     *
+     * @param aUser
+     *            the user.
+     * @param aLevels
+     *            the permission levels.
+     * @return the projects ordered by name.
+     */
+    List<Project> listProjectsWithPermission(User aUser, PermissionLevel... aLevels);
+
+    /**
+     * Check if the given user has at least one of the given permission levels in any project.
+     *
+     * @param aUser
+     *            the user.
+     * @param aLevels
+     *            the permission levels.
+     * @return if there is such a project.
+     */
+    boolean hasPermissionInAnyProject(User aUser, PermissionLevel... aLevels);
+
     void setProjectPermissionLevels(User aUser, Project aProject,
             Collection<PermissionLevel> aLevels);
     
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable snapshot of the annotation and curation progress of a project as maintained by the
+ * {@link ProjectStatisticsService}. Only users with annotator permissions are taken into account
+ * and documents which have not been opened by an annotator count as new.
+ */
+public class ProjectStatistics
+    implements Serializable
+{
+    private static final long serialVersionUID = 1586420950713451823L;
+
+    private final long projectId;
+    private final int documentCount;
+    private final int curationInProgress;
+    private final int curationFinished;
+    private final Map<String, Counts> annotators;
+    private final Counts total;
+
+    public ProjectStatistics(long aProjectId, int aDocumentCount, int aCurationInProgress,
+            int aCurationFinished, Map<String, Counts> aAnnotators)
+    {
+        projectId = aProjectId;
+        documentCount = aDocumentCount;
+        curationInProgress = aCurationInProgress;
+        curationFinished = aCurationFinished;
+        annotators = Collections.unmodifiableMap(new TreeMap<>(aAnnotators));
+
+        int finished = 0;
+        int inProgress = 0;
+        int ignored = 0;
+        for (Counts c : annotators.values()) {
+            finished += c.getFinished();
+            inProgress += c.getInProgress();
+            ignored += c.getIgnored();
+        }
+        total = new Counts(finished, inProgress, ignored);
+    }
+
+    public long getProjectId()
+    {
+        return projectId;
+    }
+
+    public int getDocumentCount()
+    {
+        return documentCount;
+    }
+
+    /**
+     * @return the number of documents in the curation in progress state.
+     */
+    public int getCurationInProgress()
+    {
+        return curationInProgress;
+    }
+
+    /**
+     * @return the number of documents for which the curation has been finished.
+     */
+    public int getCurationFinished()
+    {
+        return curationFinished;
+    }
+
+    public Set<String> getAnnotators()
+    {
+        return annotators.keySet();
+    }
+
+    /**
+     * @return the counts for the given annotator or all zero counts if the user is not an
+     *         annotator in the project.
+     */
+    public Counts getCounts(String aUser)
+    {
+        return annotators.getOrDefault(aUser, Counts.NONE);
+    }
+
+    /**
+     * @return the counts summed over all annotators.
+     */
+    public Counts getCounts()
+    {
+        return total;
+    }
+
+    /**
+     * @return the number of annotation documents expected to be finished, i.e. the number of
+     *         documents multiplied by the number of annotators minus the ignored ones.
+     */
+    public int getExpected()
+    {
+        return documentCount * annotators.size() - total.getIgnored();
+    }
+
+    /**
+     * @return the percentage of expected annotation documents which have been finished.
+     */
+    public int getAnnotationProgress()
+    {
+        int expected = getExpected();
+        return expected > 0 ? (int) Math.round((double) (total.getFinished() * 100) / expected)
+                : 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("[%d] %d documents, %d annotators, %d/%d finished", projectId,
+                documentCount, annotators.size(), total.getFinished(), getExpected());
+    }
+
+    /**
+     * Number of annotation documents per state.
+     */
+    public static class Counts
+        implements Serializable
+    {
+        private static final long serialVersionUID = -4307318802966592187L;
+
+        public static final Counts NONE = new Counts(0, 0, 0);
+
+        private final int finished;
+        private final int inProgress;
+        private final int ignored;
+
+        public Counts(int aFinished, int aInProgress, int aIgnored)
+        {
+            finished = aFinished;
+            inProgress = aInProgress;
+            ignored = aIgnored;
+        }
+
+        public int getFinished()
+        {
+            return finished;
+        }
+
+        public int getInProgress()
+        {
+            return inProgress;
+        }
+
+        public int getIgnored()
+        {
+            return ignored;
+        }
+    }
+}
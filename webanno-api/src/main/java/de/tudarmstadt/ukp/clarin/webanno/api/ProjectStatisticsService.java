@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+
+/**
+ * Maintains the annotation and curation progress of all projects in memory. The statistics are
+ * updated incrementally when documents are saved or change their state and are periodically
+ * rebuilt from the database to correct any drift, e.g. caused by changes made outside of the
+ * services or by rolled back transactions.
+ */
+public interface ProjectStatisticsService
+{
+    String SERVICE_NAME = "projectStatisticsService";
+
+    /**
+     * Get the current statistics of a project. If the project is not yet known to the service or
+     * has been invalidated, its statistics are loaded from the database.
+     *
+     * @param aProject
+     *            the project.
+     * @return the statistics.
+     */
+    ProjectStatistics getProjectStatistics(Project aProject);
+
+    /**
+     * Rebuild the statistics of all projects from the database.
+     */
+    void reconcile();
+
+    /**
+     * Rebuild the statistics of the given project from the database.
+     *
+     * @param aProject
+     *            the project.
+     */
+    void reconcile(Project aProject);
+}
@@ -18,20 +18,13 @@
 package de.tudarmstadt.ukp.clarin.webanno.api;
 
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
-import javax.persistence.NoResultException;
-
-import org.apache.commons.lang3.StringUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.PermissionLevel;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
-import de.tudarmstadt.ukp.clarin.webanno.model.ProjectPermission;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.Authority;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.Role;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
@@ -41,8 +34,6 @@ import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
  */
 public class SecurityUtil
 {
-    private static final Logger LOG = LoggerFactory.getLogger(SecurityUtil.class);
-
     public static Set<String> getRoles(ProjectService aProjectRepository, User aUser)
     {
         // When looking up roles for the user who is currently logged in, then we look in the
@@ -112,23 +103,8 @@ public class SecurityUtil
     public static boolean isProjectAdmin(Project aProject, ProjectService aProjectRepository,
             User aUser)
     {
-        boolean projectAdmin = false;
-        try {
-            List<ProjectPermission> permissionLevels = aProjectRepository
-                    .listProjectPermissionLevel(aUser, aProject);
-            for (ProjectPermission permissionLevel : permissionLevels) {
-                if (StringUtils.equalsIgnoreCase(permissionLevel.getLevel().getName(),
-                        PermissionLevel.ADMIN.getName())) {
-                    projectAdmin = true;
-                    break;
-                }
-            }
-        }
-        catch (NoResultException ex) {
-            LOG.info("No permision is given to this user " + ex);
-        }
-
-        return projectAdmin;
+        return aProjectRepository.getProjectPermissionLevels(aUser, aProject)
+                .contains(PermissionLevel.ADMIN);
     }
 
     /**
@@ -142,23 +118,8 @@ public class SecurityUtil
     public static boolean isCurator(Project aProject, ProjectService aProjectRepository,
             User aUser)
     {
-        boolean curator = false;
-        try {
-            List<ProjectPermission> permissionLevels = aProjectRepository
-                    .listProjectPermissionLevel(aUser, aProject);
-            for (ProjectPermission permissionLevel : permissionLevels) {
-                if (StringUtils.equalsIgnoreCase(permissionLevel.getLevel().getName(),
-                        PermissionLevel.CURATOR.getName())) {
-                    curator = true;
-                    break;
-                }
-            }
-        }
-        catch (NoResultException ex) {
-            LOG.info("No permision is given to this user " + ex);
-        }
-
-        return curator;
+        return aProjectRepository.getProjectPermissionLevels(aUser, aProject)
+                .contains(PermissionLevel.CURATOR);
     }
 
     /**
@@ -172,24 +133,8 @@ public class SecurityUtil
     public static boolean isAnnotator(Project aProject, ProjectService aProjectRepository,
             User aUser)
     {
-        boolean user = false;
-        try {
-            List<ProjectPermission> permissionLevels = aProjectRepository
-                    .listProjectPermissionLevel(aUser, aProject);
-            for (ProjectPermission permissionLevel : permissionLevels) {
-                if (StringUtils.equalsIgnoreCase(permissionLevel.getLevel().getName(),
-                        PermissionLevel.USER.getName())) {
-                    user = true;
-                    break;
-                }
-            }
-        }
-
-        catch (NoResultException ex) {
-            LOG.info("No permision is given to this user " + ex);
-        }
-
-        return user;
+        return aProjectRepository.getProjectPermissionLevels(aUser, aProject)
+                .contains(PermissionLevel.USER);
     }
     
     /**
@@ -203,24 +148,8 @@ public class SecurityUtil
     public static boolean isAdmin(Project aProject, ProjectService aProjectRepository,
             User aUser)
     {
-        boolean user = false;
-        try {
-            List<ProjectPermission> permissionLevels = aProjectRepository
-                    .listProjectPermissionLevel(aUser, aProject);
-            for (ProjectPermission permissionLevel : permissionLevels) {
-                if (StringUtils.equalsIgnoreCase(permissionLevel.getLevel().getName(),
-                        PermissionLevel.ADMIN.getName())) {
-                    user = true;
-                    break;
-                }
-            }
-        }
-
-        catch (NoResultException ex) {
-            LOG.info("No permision is given to this user " + ex);
-        }
-
-        return user;
+        return aProjectRepository.getProjectPermissionLevels(aUser, aProject)
+                .contains(PermissionLevel.ADMIN);
     }
     
     public static boolean projectSettingsEnabeled(ProjectService repository, User user)
@@ -233,31 +162,19 @@ public class SecurityUtil
             return true;
         }
 
-        for (Project project : repository.listProjects()) {
-            if (SecurityUtil.isProjectAdmin(project, repository, user)) {
-                return true;
-            }
-        }
-        
-        return false;
+        return repository.hasPermissionInAnyProject(user, PermissionLevel.ADMIN);
     }
 
     public static boolean curationEnabeled(ProjectService repository, User user)
     {
-        for (Project project : repository.listProjects()) {
-            if (SecurityUtil.isCurator(project, repository, user)) {
-                return true;
-            }
-        }
-        
-        return false;
+        return repository.hasPermissionInAnyProject(user, PermissionLevel.CURATOR);
     }
 
     public static boolean annotationEnabeled(ProjectService aRepository, User aUser, String aMode)
     {
-        for (Project project : aRepository.listProjects()) {
-            if (SecurityUtil.isAnnotator(project, aRepository, aUser)
-                    && aMode.equals(project.getMode())) {
+        for (Project project : aRepository.listProjectsWithPermission(aUser,
+                PermissionLevel.USER)) {
+            if (aMode.equals(project.getMode())) {
                 return true;
             }
         }
@@ -267,14 +184,8 @@ public class SecurityUtil
     
     public static boolean monitoringEnabeled(ProjectService repository, User user)
     {
-        for (Project project : repository.listProjects()) {
-            if (SecurityUtil.isCurator(project, repository, user)
-                    || SecurityUtil.isProjectAdmin(project, repository, user)) {
-                return true;
-            }
-        }
-        
-        return false;
+        return repository.hasPermissionInAnyProject(user, PermissionLevel.CURATOR,
+                PermissionLevel.ADMIN);
     }
 
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.event;
+
+import org.springframework.context.ApplicationEvent;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+
+/**
+ * Published after a permission has been granted or revoked in a project.
+ */
+public class ProjectPermissionsChangedEvent
+    extends ApplicationEvent
+{
+    private static final long serialVersionUID = -5436419071658823130L;
+    
+    private final Project project;
+    private final String user;
+
+    public ProjectPermissionsChangedEvent(Object aSource, Project aProject, String aUser)
+    {
+        super(aSource);
+        project = aProject;
+        user = aUser;
+    }
+
+    public Project getProject()
+    {
+        return project;
+    }
+
+    public String getUser()
+    {
+        return user;
+    }
+}
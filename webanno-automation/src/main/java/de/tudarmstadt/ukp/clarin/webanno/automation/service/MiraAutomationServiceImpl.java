@@ -163,7 +163,12 @@ public class MiraAutomationServiceImpl
     @Transactional
     public void createAutomationStatus(AutomationStatus aStatus)
     {
-        entityManager.persist(aStatus);
+        if (aStatus.getId() == 0) {
+            entityManager.persist(aStatus);
+        }
+        else {
+            entityManager.merge(aStatus);
+        }
     }
 
     @Override
@@ -0,0 +1,536 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.automation.service;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.ProjectService.PROJECT;
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.PROJECT_TYPE_AUTOMATION;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.apache.uima.fit.util.JCasUtil.select;
+import static org.apache.uima.fit.util.JCasUtil.selectCovered;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.jcas.JCas;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Component;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterDocumentCreatedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeDocumentRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeProjectRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.support.logging.Logging;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+@Component(RepeatAnnotationService.SERVICE_NAME)
+public class RepeatAnnotationServiceImpl
+    implements RepeatAnnotationService, SmartLifecycle
+{
+    private static final String INDEX_FILE = "/automation/token-index.ser";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private @Resource DocumentService documentService;
+
+    @Value(value = "${repository.path}")
+    private File dir;
+
+    @Value(value = "${automation.repeat.indexes:4}")
+    private int maxIndexes;
+
+    // Indexes of the most recently used projects, least recently used first. The indexes of all
+    // other projects are only kept on disk.
+    private final LinkedHashMap<Long, ProjectIndex> indexes = new LinkedHashMap<>(16, 0.75f,
+            true);
+
+    // Projects for which an index update has been scheduled but not yet started
+    private final Set<Long> pendingIndexUpdates = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor executor;
+    private ThreadPoolExecutor indexer;
+
+    private boolean running = false;
+
+    @Override
+    public Map<Long, List<TextOccurrence>> findOccurrences(Project aProject, List<String> aTokens)
+        throws IOException
+    {
+        if (aTokens.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        String[] terms = aTokens.stream().map(this::normalize).toArray(String[]::new);
+
+        ProjectIndex index = getIndex(aProject);
+        synchronized (index) {
+            update(aProject, index);
+
+            List<Map<Long, int[]>> postings = new ArrayList<>();
+            for (String term : terms) {
+                Map<Long, int[]> p = index.postings.get(term);
+                // If any of the tokens does not occur at all, there cannot be a match
+                if (p == null) {
+                    return Collections.emptyMap();
+                }
+                postings.add(p);
+            }
+
+            Map<Long, List<TextOccurrence>> result = new LinkedHashMap<>();
+            nextDocument: for (Entry<Long, int[]> e : postings.get(0).entrySet()) {
+                for (Map<Long, int[]> p : postings) {
+                    if (!p.containsKey(e.getKey())) {
+                        continue nextDocument;
+                    }
+                }
+
+                DocumentTokens doc = index.documents.get(e.getKey());
+                for (int pos : e.getValue()) {
+                    if (doc.matches(pos, terms)) {
+                        result.computeIfAbsent(e.getKey(), k -> new ArrayList<>())
+                                .add(new TextOccurrence(e.getKey(), doc.begins[pos],
+                                        doc.ends[pos + terms.length - 1]));
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public void prepareIndex(Project aProject)
+    {
+        if (!pendingIndexUpdates.add(aProject.getId())) {
+            return;
+        }
+
+        // Reading the initial CASes requires the permissions of the user who opened the project
+        indexer.execute(new DelegatingSecurityContextRunnable(() -> {
+            pendingIndexUpdates.remove(aProject.getId());
+            try (MDC.MDCCloseable closable = MDC.putCloseable(Logging.KEY_PROJECT_ID,
+                    String.valueOf(aProject.getId()))) {
+                long start = System.currentTimeMillis();
+                ProjectIndex index = getIndex(aProject);
+                synchronized (index) {
+                    update(aProject, index);
+                }
+                log.debug("Prepared token index of project [{}]({}) in {}ms",
+                        aProject.getName(), aProject.getId(), System.currentTimeMillis() - start);
+            }
+            catch (Exception e) {
+                log.error("Unable to prepare token index of project [{}]({})",
+                        aProject.getName(), aProject.getId(), e);
+            }
+        }));
+    }
+
+    @Override
+    public void indexDocument(SourceDocument aDocument, JCas aJCas)
+        throws IOException
+    {
+        ProjectIndex index = getIndex(aDocument.getProject());
+        synchronized (index) {
+            index.put(aDocument.getId(), tokenize(aJCas));
+        }
+    }
+
+    @Override
+    public void removeDocument(SourceDocument aDocument)
+        throws IOException
+    {
+        ProjectIndex index = getIndex(aDocument.getProject());
+        synchronized (index) {
+            index.remove(aDocument.getId());
+        }
+    }
+
+    @Override
+    public void removeIndex(Project aProject)
+        throws IOException
+    {
+        synchronized (indexes) {
+            indexes.remove(aProject.getId());
+        }
+        FileUtils.deleteQuietly(getIndexFile(aProject.getId()));
+    }
+
+    @EventListener
+    public void onAfterDocumentCreated(AfterDocumentCreatedEvent aEvent)
+        throws IOException
+    {
+        if (PROJECT_TYPE_AUTOMATION.equals(aEvent.getDocument().getProject().getMode())) {
+            indexDocument(aEvent.getDocument(), aEvent.getJcas());
+        }
+    }
+
+    @EventListener
+    public void onBeforeDocumentRemoved(BeforeDocumentRemovedEvent aEvent)
+        throws IOException
+    {
+        boolean loaded;
+        synchronized (indexes) {
+            loaded = indexes.containsKey(aEvent.getDocument().getProject().getId());
+        }
+        // Indexes which are not loaded drop the document when they are next updated
+        if (loaded) {
+            removeDocument(aEvent.getDocument());
+        }
+    }
+
+    @EventListener
+    public void onBeforeProjectRemoved(BeforeProjectRemovedEvent aEvent)
+        throws IOException
+    {
+        removeIndex(aEvent.getProject());
+    }
+
+    @Override
+    public Future<Void> submit(Project aProject, String aDescription, RepeatTask aTask)
+    {
+        // The task writes CASes, which requires the permissions of the user who submitted it
+        return executor.submit(new DelegatingSecurityContextCallable<Void>(() -> {
+            try (MDC.MDCCloseable closable = MDC.putCloseable(Logging.KEY_PROJECT_ID,
+                    String.valueOf(aProject.getId()))) {
+                long start = System.currentTimeMillis();
+                aTask.run();
+                log.info("{} in project [{}]({}) completed in {}ms", aDescription,
+                        aProject.getName(), aProject.getId(), System.currentTimeMillis() - start);
+                return null;
+            }
+            catch (Exception e) {
+                log.error("{} in project [{}]({}) failed", aDescription, aProject.getName(),
+                        aProject.getId(), e);
+                throw e;
+            }
+        }));
+    }
+
+    /**
+     * Brings the index in line with the source documents of the project. Documents which were
+     * added while the index was not loaded are indexed, entries of documents which no longer
+     * exist are dropped. The index is written back to disk if anything changed since it was
+     * last saved.
+     */
+    private void update(Project aProject, ProjectIndex aIndex)
+        throws IOException
+    {
+        Set<Long> stale = new HashSet<>(aIndex.documents.keySet());
+        for (SourceDocument document : documentService.listSourceDocuments(aProject)) {
+            if (!stale.remove(document.getId())) {
+                aIndex.put(document.getId(),
+                        tokenize(documentService.createOrReadInitialCas(document)));
+            }
+        }
+        for (Long id : stale) {
+            aIndex.remove(id);
+        }
+
+        if (aIndex.dirty) {
+            writeIndex(aProject.getId(), aIndex);
+        }
+    }
+
+    private DocumentTokens tokenize(JCas aJCas)
+    {
+        List<Token> tokens = new ArrayList<>();
+        List<Integer> sentences = new ArrayList<>();
+        int sentence = 0;
+        for (Sentence s : select(aJCas, Sentence.class)) {
+            for (Token t : selectCovered(Token.class, s)) {
+                tokens.add(t);
+                sentences.add(sentence);
+            }
+            sentence++;
+        }
+
+        DocumentTokens doc = new DocumentTokens(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            Token t = tokens.get(i);
+            doc.terms[i] = normalize(t.getCoveredText());
+            doc.begins[i] = t.getBegin();
+            doc.ends[i] = t.getEnd();
+            doc.sentences[i] = sentences.get(i);
+        }
+        return doc;
+    }
+
+    private String normalize(String aToken)
+    {
+        return aToken.toLowerCase(Locale.ROOT);
+    }
+
+    private ProjectIndex getIndex(Project aProject)
+        throws IOException
+    {
+        ProjectIndex index;
+        Map<Long, ProjectIndex> evicted = new HashMap<>();
+        synchronized (indexes) {
+            index = indexes.get(aProject.getId());
+            if (index == null) {
+                index = readIndex(aProject);
+                indexes.put(aProject.getId(), index);
+            }
+
+            Iterator<Entry<Long, ProjectIndex>> i = indexes.entrySet().iterator();
+            while (indexes.size() > Math.max(maxIndexes, 1)) {
+                Entry<Long, ProjectIndex> eldest = i.next();
+                evicted.put(eldest.getKey(), eldest.getValue());
+                i.remove();
+            }
+        }
+
+        // Write evicted indexes outside the lock on the map so other projects are not blocked.
+        // Changes made to an evicted index by a thread still holding on to it are not lost for
+        // good - the next update of the index picks up missing and removed documents again.
+        for (Entry<Long, ProjectIndex> e : evicted.entrySet()) {
+            synchronized (e.getValue()) {
+                if (e.getValue().dirty) {
+                    writeIndex(e.getKey(), e.getValue());
+                }
+            }
+        }
+
+        return index;
+    }
+
+    private File getIndexFile(long aProjectId)
+    {
+        return new File(dir, PROJECT + aProjectId + INDEX_FILE);
+    }
+
+    private ProjectIndex readIndex(Project aProject)
+    {
+        File file = getIndexFile(aProject.getId());
+        if (file.exists()) {
+            try (ObjectInputStream is = new ObjectInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                return (ProjectIndex) is.readObject();
+            }
+            catch (IOException | ClassNotFoundException e) {
+                log.warn("Unable to read token index of project [{}]({}) - rebuilding it",
+                        aProject.getName(), aProject.getId(), e);
+            }
+        }
+        return new ProjectIndex();
+    }
+
+    private void writeIndex(long aProjectId, ProjectIndex aIndex)
+        throws IOException
+    {
+        File file = getIndexFile(aProjectId);
+        FileUtils.forceMkdir(file.getParentFile());
+        // Write to a temporary file first so a crash never leaves a truncated index behind
+        File tmp = new File(file.getPath() + ".tmp");
+        try (ObjectOutputStream os = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            os.writeObject(aIndex);
+        }
+        Files.move(tmp.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+        aIndex.dirty = false;
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    @Override
+    public void start()
+    {
+        // A single thread so that propagations within a project are applied in order
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        // Separate from the propagations so preparing an index never waits for them
+        indexer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        running = true;
+    }
+
+    @Override
+    public void stop()
+    {
+        running = false;
+        if (indexer != null) {
+            indexer.shutdownNow();
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(30, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (indexes) {
+            indexes.clear();
+        }
+    }
+
+    @Override
+    public int getPhase()
+    {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean isAutoStartup()
+    {
+        return true;
+    }
+
+    @Override
+    public void stop(Runnable aCallback)
+    {
+        stop();
+        aCallback.run();
+    }
+
+    /**
+     * Inverted index of a single project.
+     */
+    private static class ProjectIndex
+        implements Serializable
+    {
+        private static final long serialVersionUID = -4417926409213486815L;
+
+        // source document ID -> tokens of the document
+        private final Map<Long, DocumentTokens> documents = new HashMap<>();
+
+        // lower-cased token text -> source document ID -> token positions in the document
+        private final Map<String, Map<Long, int[]>> postings = new HashMap<>();
+
+        // whether the index has been modified since it was last written
+        private transient boolean dirty;
+
+        private void put(long aDocumentId, DocumentTokens aTokens)
+        {
+            remove(aDocumentId);
+
+            Map<String, List<Integer>> positions = new HashMap<>();
+            for (int i = 0; i < aTokens.terms.length; i++) {
+                positions.computeIfAbsent(aTokens.terms[i], k -> new ArrayList<>()).add(i);
+            }
+            for (Entry<String, List<Integer>> e : positions.entrySet()) {
+                postings.computeIfAbsent(e.getKey(), k -> new HashMap<>()).put(aDocumentId,
+                        e.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+
+            documents.put(aDocumentId, aTokens);
+            dirty = true;
+        }
+
+        private void remove(long aDocumentId)
+        {
+            DocumentTokens doc = documents.remove(aDocumentId);
+            if (doc == null) {
+                return;
+            }
+
+            for (String term : new HashSet<>(Arrays.asList(doc.terms))) {
+                Map<Long, int[]> p = postings.get(term);
+                if (p != null) {
+                    p.remove(aDocumentId);
+                    if (p.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            dirty = true;
+        }
+    }
+
+    /**
+     * Token sequence of a single document.
+     */
+    private static class DocumentTokens
+        implements Serializable
+    {
+        private static final long serialVersionUID = 5962407297414337618L;
+
+        private final String[] terms;
+        private final int[] begins;
+        private final int[] ends;
+        private final int[] sentences;
+
+        private DocumentTokens(int aSize)
+        {
+            terms = new String[aSize];
+            begins = new int[aSize];
+            ends = new int[aSize];
+            sentences = new int[aSize];
+        }
+
+        /**
+         * Checks whether the given terms occur at the given position without crossing a sentence
+         * boundary.
+         */
+        private boolean matches(int aPosition, String[] aTerms)
+        {
+            if (aPosition + aTerms.length > terms.length) {
+                return false;
+            }
+            for (int i = 0; i < aTerms.length; i++) {
+                if (!aTerms[i].equals(terms[aPosition + i])
+                        || sentences[aPosition + i] != sentences[aPosition]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.AgreementUtils;
+import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.AgreementUtils.AgreementResult;
+import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.AgreementUtils.ConcreteAgreementMeasure;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.DiffResult;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.LinkCompareBehavior;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+
+/**
+ * Measures the pairwise agreement calculation on a pre-calculated diff as it is done by the
+ * agreement page for each pair of annotators. Only the first two annotators are compared.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AgreementBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class DiffState
+    {
+        DiffResult diff;
+        Map<String, List<JCas>> pair;
+        String type;
+        String feature;
+
+        @Setup
+        public void setupDiff(CorpusState aState)
+        {
+            Map<String, List<JCas>> casMap = aState.corpus.getCasMap();
+            diff = CasDiff2.doDiff(aState.corpus.getEntryTypes(), aState.adapters,
+                    LinkCompareBehavior.LINK_ROLE_AS_LABEL, casMap);
+
+            List<String> users = new ArrayList<>(casMap.keySet());
+            pair = new LinkedHashMap<>();
+            pair.put(users.get(0), casMap.get(users.get(0)));
+            pair.put(users.get(1), casMap.get(users.get(1)));
+
+            AnnotationLayer layer = aState.corpus.getLayers().get(0);
+            AnnotationFeature feat = aState.corpus.getFeatures(layer).get(0);
+            type = layer.getName();
+            feature = feat.getName();
+        }
+    }
+
+    @Benchmark
+    public AgreementResult krippendorffAlpha(DiffState aDiff)
+    {
+        return AgreementUtils.getAgreement(
+                ConcreteAgreementMeasure.KRIPPENDORFF_ALPHA_NOMINAL_AGREEMENT, false, aDiff.diff,
+                aDiff.type, aDiff.feature, aDiff.pair);
+    }
+
+    @Benchmark
+    public AgreementResult cohenKappa(DiffState aDiff)
+    {
+        return AgreementUtils.getAgreement(ConcreteAgreementMeasure.COHEN_KAPPA_AGREEMENT, true,
+                aDiff.diff, aDiff.type, aDiff.feature, aDiff.pair);
+    }
+}
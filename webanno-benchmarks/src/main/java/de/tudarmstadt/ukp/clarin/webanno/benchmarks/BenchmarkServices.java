@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.benchmarks;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.FEAT_REL_SOURCE;
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.FEAT_REL_TARGET;
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.RELATION_TYPE;
+import static java.util.Collections.emptyList;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.uima.jcas.JCas;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectSchema;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.ArcAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.SpanAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.TypeAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.curation.storage.CurationDocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+
+/**
+ * Minimal in-memory implementations of the services used by the benchmarked code paths. The
+ * services answer only the calls required by the benchmarks from a {@link SyntheticCorpus}; any
+ * other call fails with an {@link UnsupportedOperationException} so that a benchmark does not
+ * silently measure something else when the code under test changes.
+ */
+public final class BenchmarkServices
+{
+    private BenchmarkServices()
+    {
+        // No instances
+    }
+
+    public static AnnotationSchemaService annotationSchemaService(SyntheticCorpus aCorpus)
+    {
+        Map<AnnotationLayer, TypeAdapter> adapters = new HashMap<>();
+        List<AnnotationFeature> features = new ArrayList<>();
+        for (AnnotationLayer layer : aCorpus.getLayers()) {
+            adapters.put(layer, createAdapter(aCorpus, layer));
+            features.addAll(aCorpus.getFeatures(layer));
+        }
+        ProjectSchema schema = new ProjectSchema(aCorpus.getProject().getId(), 0,
+                aCorpus.getLayers(), features, emptyList(), emptyList(),
+                (layer, layerFeatures) -> adapters.get(layer));
+
+        Map<String, Function<Object[], Object>> methods = new HashMap<>();
+        methods.put("listAnnotationLayer", args -> aCorpus.getLayers());
+        methods.put("listAnnotationFeature", args -> args[0] instanceof AnnotationLayer
+                ? aCorpus.getFeatures((AnnotationLayer) args[0]) : null);
+        methods.put("getAdapter", args -> adapters.get(args[0]));
+        methods.put("getProjectSchema", args -> schema);
+        return stub(AnnotationSchemaService.class, methods);
+    }
+
+    public static DocumentService documentService(SyntheticCorpus aCorpus)
+    {
+        Map<String, Function<Object[], Object>> methods = new HashMap<>();
+        methods.put("listAnnotationDocuments", args -> aCorpus.getAnnotationDocuments());
+        methods.put("readAnnotationCas", args -> args[0] instanceof AnnotationDocument
+                ? aCorpus.getCas(((AnnotationDocument) args[0]).getUser()) : null);
+        return stub(DocumentService.class, methods);
+    }
+
+    public static CurationDocumentService curationDocumentService(JCas aCurationCas)
+    {
+        Map<String, Function<Object[], Object>> methods = new HashMap<>();
+        methods.put("readCurationCas", args -> aCurationCas);
+        return stub(CurationDocumentService.class, methods);
+    }
+
+    private static TypeAdapter createAdapter(SyntheticCorpus aCorpus, AnnotationLayer aLayer)
+    {
+        // The feature support registry is only needed when editing annotations, not for
+        // looking up types or reading features
+        if (RELATION_TYPE.equals(aLayer.getType())) {
+            return new ArcAdapter(null, aLayer, aLayer.getId(), aLayer.getName(),
+                    FEAT_REL_TARGET, FEAT_REL_SOURCE, null, aLayer.getAttachType().getName(),
+                    aCorpus.getFeatures(aLayer));
+        }
+        else {
+            return new SpanAdapter(null, aLayer, aCorpus.getFeatures(aLayer));
+        }
+    }
+
+    private static <T> T stub(Class<T> aInterface, Map<String, Function<Object[], Object>> aMethods)
+    {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(aInterface, proxy, method, args);
+            }
+            
+            Function<Object[], Object> impl = aMethods.get(method.getName());
+            if (impl == null) {
+                throw new UnsupportedOperationException("Not supported by the benchmark stub: "
+                        + aInterface.getSimpleName() + "." + method.getName());
+            }
+            return impl.apply(args != null ? args : new Object[0]);
+        };
+
+        return aInterface.cast(Proxy.newProxyInstance(aInterface.getClassLoader(),
+                new Class<?>[] { aInterface }, handler));
+    }
+
+    private static Object invokeObjectMethod(Class<?> aInterface, Object aProxy, Method aMethod,
+            Object[] aArgs)
+    {
+        switch (aMethod.getName()) {
+        case "equals":
+            return aProxy == aArgs[0];
+        case "hashCode":
+            return System.identityHashCode(aProxy);
+        default:
+            return "Benchmark stub for " + aInterface.getSimpleName();
+        }
+    }
+}
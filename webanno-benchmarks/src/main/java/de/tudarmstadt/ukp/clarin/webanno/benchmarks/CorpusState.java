@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.benchmarks;
+
+import java.util.List;
+
+import org.apache.uima.UIMAException;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.DiffAdapter;
+
+/**
+ * Shared benchmark state holding the synthetic corpus. The corpus dimensions can be overridden
+ * on the JMH command line, e.g. {@code -p sentences=5000 -p annotators=4}.
+ */
+@State(Scope.Benchmark)
+public class CorpusState
+{
+    @Param({ "100", "1000" })
+    public int sentences;
+
+    @Param({ "1", "3" })
+    public int layers;
+
+    @Param({ "2", "4" })
+    public int annotators;
+
+    @Param({ "0.1", "0.3" })
+    public double disagreement;
+
+    @Param({ "42" })
+    public long seed;
+
+    public SyntheticCorpus corpus;
+    public AnnotationSchemaService annotationService;
+    public List<DiffAdapter> adapters;
+
+    @Setup
+    public void setupCorpus()
+        throws UIMAException
+    {
+        corpus = new SyntheticCorpus(sentences, layers, annotators, disagreement, seed);
+        annotationService = BenchmarkServices.annotationSchemaService(corpus);
+        adapters = CasDiff2.getAdapters(annotationService, corpus.getProject());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.benchmarks;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.CURATION_USER;
+import static java.util.Arrays.asList;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.cas.impl.CASSerializer;
+import org.apache.uima.cas.impl.Serialization;
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.DiffResult;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.LinkCompareBehavior;
+import de.tudarmstadt.ukp.clarin.webanno.ui.curation.util.MergeCas;
+
+/**
+ * Measures the creation of the initial curation CAS from the annotator CASes. Merging modifies
+ * the curation CAS, so it is restored before each invocation. The restore keeps the feature
+ * structure addresses stable, which allows the diff to be calculated only once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MergeCasBenchmark
+{
+    @State(Scope.Thread)
+    public static class MergeState
+    {
+        Map<String, JCas> jcases;
+        DiffResult diff;
+        JCas curationCas;
+        CASSerializer pristine;
+
+        @Setup(Level.Trial)
+        public void setupDiff(CorpusState aState)
+            throws UIMAException
+        {
+            curationCas = aState.corpus.copyFirstCas();
+            pristine = Serialization.serializeCAS(curationCas.getCas());
+
+            jcases = new LinkedHashMap<>(aState.corpus.getCasByUser());
+            jcases.put(CURATION_USER, curationCas);
+
+            Map<String, List<JCas>> casMap = new LinkedHashMap<>();
+            for (Map.Entry<String, JCas> e : jcases.entrySet()) {
+                casMap.put(e.getKey(), asList(e.getValue()));
+            }
+            diff = CasDiff2.doDiff(aState.corpus.getEntryTypes(), aState.adapters,
+                    LinkCompareBehavior.LINK_ROLE_AS_LABEL, casMap);
+        }
+
+        @Setup(Level.Invocation)
+        public void restoreCurationCas()
+        {
+            Serialization.deserializeCAS(curationCas.getCas(), pristine);
+        }
+    }
+
+    @Benchmark
+    public JCas mergeCas(MergeState aMerge)
+    {
+        return MergeCas.geMergeCas(aMerge.diff, aMerge.jcases);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.benchmarks;
+
+import static org.apache.uima.fit.util.JCasUtil.select;
+import static org.apache.uima.fit.util.JCasUtil.selectCovered;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.cas.CASException;
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.AutomationTypeAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.ui.automation.util.MiraRowBuilder;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+/**
+ * Measures extracting the MIRA feature rows of a document as it is done when training and
+ * predicting in automation projects, once without labels and once labelled with the
+ * part-of-speech layer. The default document has 100k tokens.
+ * <p>
+ * The {@code previous*} benchmarks run the per-sentence extraction which was replaced by
+ * {@link MiraRowBuilder} as a baseline.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MiraRowBuilderBenchmark
+{
+    private static final String NIL = "__nil__";
+    private static final String NILL = "__nill__";
+
+    @State(Scope.Benchmark)
+    public static class DocumentState
+    {
+        @Param({ "8334" })
+        public int sentences;
+
+        JCas jcas;
+        AnnotationFeature feature;
+        AutomationTypeAdapter adapter;
+
+        @Setup
+        public void setupDocument()
+            throws UIMAException
+        {
+            SyntheticCorpus corpus = new SyntheticCorpus(sentences, 1, 2, 0.1, 42);
+            jcas = corpus.getCas("annotator1");
+            AnnotationLayer layer = corpus.getLayers().get(0);
+            feature = corpus.getFeatures(layer).get(0);
+            adapter = (AutomationTypeAdapter) BenchmarkServices.annotationSchemaService(corpus)
+                    .getAdapter(layer);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BuilderState
+    {
+        MiraRowBuilder builder = new MiraRowBuilder();
+    }
+
+    @Benchmark
+    public String unlabeled(DocumentState aDocument, BuilderState aBuilder)
+        throws CASException
+    {
+        return aBuilder.builder.build(aDocument.jcas, null, aDocument.adapter);
+    }
+
+    @Benchmark
+    public String labeled(DocumentState aDocument, BuilderState aBuilder)
+        throws CASException
+    {
+        return aBuilder.builder.build(aDocument.jcas, aDocument.feature, aDocument.adapter);
+    }
+
+    @Benchmark
+    public String previousUnlabeled(DocumentState aDocument)
+    {
+        return previousRows(aDocument.jcas, null, aDocument.adapter);
+    }
+
+    @Benchmark
+    public String previousLabeled(DocumentState aDocument)
+    {
+        return previousRows(aDocument.jcas, aDocument.feature, aDocument.adapter);
+    }
+
+    private static String previousRows(JCas aJCas, AnnotationFeature aFeature,
+            AutomationTypeAdapter aAdapter)
+    {
+        StringBuilder rows = new StringBuilder();
+        for (Sentence sentence : select(aJCas, Sentence.class)) {
+            StringBuffer sb = new StringBuffer();
+            List<String> annotations = aFeature != null
+                    ? aAdapter.getAnnotation(sentence, aFeature) : null;
+            int i = 0;
+            for (Token token : selectCovered(Token.class, sentence)) {
+                String word = token.getCoveredText();
+                char[] words = word.toCharArray();
+                String p1 = Character.toString(words[0]) + " ";
+                String p2 = (words.length > 1 ? p1.trim() + nil(words[1]) : NIL) + " ";
+                String p3 = (words.length > 2 ? p2.trim() + nil(words[2]) : NIL) + " ";
+                String p4 = (words.length > 3 ? p3.trim() + nil(words[3]) : NIL) + " ";
+                String s1 = Character.toString(words[words.length - 1]) + " ";
+                String s2 = (words.length > 1 ? nil(words[words.length - 2]) + s1.trim() : NIL)
+                        + " ";
+                String s3 = (words.length > 2 ? nil(words[words.length - 3]) + s2.trim() : NIL)
+                        + " ";
+                String s4 = (words.length > 3 ? nil(words[words.length - 4]) + s3.trim() : NIL)
+                        + " ";
+                String tag = "";
+                if (annotations != null) {
+                    tag = annotations.size() == 0 ? NILL : annotations.get(i);
+                    i++;
+                }
+                sb.append(word).append(" ").append(p1).append(p2).append(p3).append(p4)
+                        .append(s1).append(s2).append(s3).append(s4).append(tag).append("\n");
+            }
+            rows.append(sb.toString()).append("\n");
+        }
+        return rows.toString();
+    }
+
+    private static String nil(char aChar)
+    {
+        return Character.toString(aChar).trim().equals("") ? NIL : Character.toString(aChar);
+    }
+}
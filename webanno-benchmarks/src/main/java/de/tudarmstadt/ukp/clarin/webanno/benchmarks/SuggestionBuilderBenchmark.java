@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.benchmarks;
+
+import static java.util.Collections.singletonList;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.UIMAException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.exception.AnnotationException;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.AnnotatorState;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.AnnotatorStateImpl;
+import de.tudarmstadt.ukp.clarin.webanno.curation.storage.CurationDocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.ui.curation.component.model.CurationContainer;
+import de.tudarmstadt.ukp.clarin.webanno.ui.curation.component.model.SuggestionBuilder;
+
+/**
+ * Measures building the sentence overview of the curation page, i.e. the per-sentence diff
+ * between all annotators, for a document for which the curation CAS already exists.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SuggestionBuilderBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class CurationState
+    {
+        DocumentService documentService;
+        CurationDocumentService curationDocumentService;
+        AnnotatorState state;
+
+        @Setup
+        public void setupCuration(CorpusState aState)
+            throws UIMAException
+        {
+            documentService = BenchmarkServices.documentService(aState.corpus);
+            curationDocumentService = BenchmarkServices
+                    .curationDocumentService(aState.corpus.createMergeCas(aState.adapters));
+
+            AnnotatorStateImpl annotatorState = new AnnotatorStateImpl(
+                    de.tudarmstadt.ukp.clarin.webanno.model.Mode.CURATION);
+            annotatorState.setProject(aState.corpus.getProject());
+            annotatorState.setDocument(aState.corpus.getDocument(),
+                    singletonList(aState.corpus.getDocument()));
+            annotatorState.setAnnotationLayers(aState.corpus.getLayers());
+            state = annotatorState;
+        }
+    }
+
+    @Benchmark
+    public CurationContainer buildCurationContainer(CorpusState aState, CurationState aCuration)
+        throws UIMAException, ClassNotFoundException, IOException, AnnotationException
+    {
+        // The builder keeps state between calls on the same page, so use a fresh one as a newly
+        // opened curation page would
+        SuggestionBuilder builder = new SuggestionBuilder(aCuration.documentService, null,
+                aCuration.curationDocumentService, aState.annotationService, null);
+        return builder.buildCurationContainer(aCuration.state);
+    }
+}
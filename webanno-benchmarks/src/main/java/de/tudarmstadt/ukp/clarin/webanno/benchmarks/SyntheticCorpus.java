@@ -0,0 +1,375 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.benchmarks;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.CURATION_USER;
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.RELATION_TYPE;
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.SPAN_TYPE;
+import static java.util.Arrays.asList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.util.CasCopier;
+
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.DiffAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.DiffResult;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.LinkCompareBehavior;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.LinkMode;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.ui.curation.util.MergeCas;
+import de.tudarmstadt.ukp.dkpro.core.api.lexmorph.type.pos.POS;
+import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import de.tudarmstadt.ukp.dkpro.core.api.syntax.type.dependency.Dependency;
+
+/**
+ * A synthetic project with a single document annotated by several users. All annotators start
+ * from the same gold annotations and deviate from them at the given disagreement rate by either
+ * choosing a different label or by omitting the annotation. The corpus is fully determined by its
+ * parameters and the seed, so repeated runs operate on identical data.
+ * <p>
+ * Depending on the number of layers, the document carries part-of-speech tags (1), additionally
+ * named entities on every fourth token (2) and additionally a chain of dependency relations
+ * within each sentence (3).
+ */
+public class SyntheticCorpus
+{
+    public static final int TOKENS_PER_SENTENCE = 12;
+    public static final int MAX_LAYERS = 3;
+
+    private static final String[] POS_TAGS = { "ADJ", "ADV", "ART", "CARD", "CONJ", "N", "O",
+            "PP", "PR", "PUNC", "V" };
+    private static final String[] NE_TAGS = { "PER", "LOC", "ORG", "OTH" };
+    private static final String[] DEP_TAGS = { "SUBJ", "OBJ", "ATTR", "DET", "PREP", "PMOD",
+            "ADV", "CONJ", "PUNCT" };
+
+    private final int sentences;
+    private final int layerCount;
+    private final double disagreement;
+    private final long seed;
+
+    private final Project project;
+    private final SourceDocument document;
+    private final AnnotationLayer tokenLayer;
+    private final List<AnnotationLayer> layers = new ArrayList<>();
+    private final Map<AnnotationLayer, List<AnnotationFeature>> features = new LinkedHashMap<>();
+    private final List<AnnotationDocument> annotationDocuments = new ArrayList<>();
+    private final Map<String, JCas> casByUser = new LinkedHashMap<>();
+
+    // Gold labels per token - null means that the token does not carry an annotation
+    private final String[] goldPos;
+    private final String[] goldNe;
+    private final String[] goldDep;
+
+    public SyntheticCorpus(int aSentences, int aLayers, int aAnnotators, double aDisagreement,
+            long aSeed)
+        throws UIMAException
+    {
+        if (aLayers < 1 || aLayers > MAX_LAYERS) {
+            throw new IllegalArgumentException(
+                    "Number of layers must be between 1 and " + MAX_LAYERS);
+        }
+        if (aAnnotators < 2) {
+            throw new IllegalArgumentException("At least two annotators are required");
+        }
+
+        sentences = aSentences;
+        layerCount = aLayers;
+        disagreement = aDisagreement;
+        seed = aSeed;
+
+        project = new Project();
+        project.setId(1);
+        project.setName("benchmark");
+
+        document = new SourceDocument();
+        document.setId(1);
+        document.setName("document.txt");
+        document.setProject(project);
+
+        tokenLayer = new AnnotationLayer(Token.class.getName(), "Token", SPAN_TYPE, project, true);
+        tokenLayer.setId(1);
+
+        AnnotationLayer posLayer = addLayer(2, POS.class.getName(), "POS", SPAN_TYPE,
+                "PosValue");
+        posLayer.setAttachType(tokenLayer);
+        if (layerCount >= 2) {
+            addLayer(3, NamedEntity.class.getName(), "Named entity", SPAN_TYPE, "value");
+        }
+        if (layerCount >= 3) {
+            AnnotationLayer depLayer = addLayer(4, Dependency.class.getName(), "Dependency",
+                    RELATION_TYPE, "DependencyType");
+            depLayer.setAttachType(tokenLayer);
+        }
+
+        int tokens = sentences * TOKENS_PER_SENTENCE;
+        Random rnd = new Random(seed);
+        goldPos = new String[tokens];
+        goldNe = new String[tokens];
+        goldDep = new String[tokens];
+        for (int i = 0; i < tokens; i++) {
+            goldPos[i] = POS_TAGS[rnd.nextInt(POS_TAGS.length)];
+            if (i % 4 == 0) {
+                goldNe[i] = NE_TAGS[rnd.nextInt(NE_TAGS.length)];
+            }
+            // The first token of each sentence has no governor
+            if (i % TOKENS_PER_SENTENCE != 0) {
+                goldDep[i] = DEP_TAGS[rnd.nextInt(DEP_TAGS.length)];
+            }
+        }
+
+        for (int u = 0; u < aAnnotators; u++) {
+            String user = "annotator" + (u + 1);
+
+            AnnotationDocument annDoc = new AnnotationDocument();
+            annDoc.setId(u + 1);
+            annDoc.setName(document.getName());
+            annDoc.setProject(project);
+            annDoc.setDocument(document);
+            annDoc.setUser(user);
+            annDoc.setState(AnnotationDocumentState.FINISHED);
+            annotationDocuments.add(annDoc);
+
+            casByUser.put(user, createCas(new Random(seed + u + 1)));
+        }
+    }
+
+    private AnnotationLayer addLayer(long aId, String aName, String aUiName, String aType,
+            String aFeature)
+    {
+        AnnotationLayer layer = new AnnotationLayer(aName, aUiName, aType, project, true);
+        layer.setId(aId);
+
+        AnnotationFeature feature = new AnnotationFeature();
+        feature.setId(aId);
+        feature.setName(aFeature);
+        feature.setUiName(aFeature);
+        feature.setType(CAS.TYPE_NAME_STRING);
+        feature.setLinkMode(LinkMode.NONE);
+        feature.setLayer(layer);
+        feature.setProject(project);
+
+        layers.add(layer);
+        features.put(layer, asList(feature));
+        return layer;
+    }
+
+    private JCas createCas(Random aRandom)
+        throws UIMAException
+    {
+        JCas jcas = JCasFactory.createJCas();
+
+        StringBuilder text = new StringBuilder();
+        int tokens = sentences * TOKENS_PER_SENTENCE;
+        int[] begins = new int[tokens];
+        int[] ends = new int[tokens];
+        for (int i = 0; i < tokens; i++) {
+            if (i > 0) {
+                text.append(i % TOKENS_PER_SENTENCE == 0 ? "\n" : " ");
+            }
+            begins[i] = text.length();
+            text.append("tok").append(i % 97);
+            ends[i] = text.length();
+        }
+        jcas.setDocumentText(text.toString());
+        jcas.setDocumentLanguage("en");
+
+        DocumentMetaData dmd = DocumentMetaData.create(jcas);
+        dmd.setDocumentId(document.getName());
+        dmd.setDocumentTitle(document.getName());
+
+        Token[] tokenFs = new Token[tokens];
+        for (int s = 0; s < sentences; s++) {
+            int first = s * TOKENS_PER_SENTENCE;
+            int last = first + TOKENS_PER_SENTENCE - 1;
+            new Sentence(jcas, begins[first], ends[last]).addToIndexes();
+            for (int i = first; i <= last; i++) {
+                tokenFs[i] = new Token(jcas, begins[i], ends[i]);
+                tokenFs[i].addToIndexes();
+            }
+        }
+
+        for (int i = 0; i < tokens; i++) {
+            String pos = deviate(aRandom, goldPos[i], POS_TAGS);
+            if (pos != null) {
+                POS posFs = new POS(jcas, begins[i], ends[i]);
+                posFs.setPosValue(pos);
+                posFs.addToIndexes();
+                tokenFs[i].setPos(posFs);
+            }
+
+            if (layerCount >= 2 && goldNe[i] != null) {
+                String ne = deviate(aRandom, goldNe[i], NE_TAGS);
+                if (ne != null) {
+                    NamedEntity neFs = new NamedEntity(jcas, begins[i], ends[i]);
+                    neFs.setValue(ne);
+                    neFs.addToIndexes();
+                }
+            }
+
+            if (layerCount >= 3 && goldDep[i] != null) {
+                String dep = deviate(aRandom, goldDep[i], DEP_TAGS);
+                if (dep != null) {
+                    Dependency depFs = new Dependency(jcas, begins[i], ends[i]);
+                    depFs.setGovernor(tokenFs[i - 1]);
+                    depFs.setDependent(tokenFs[i]);
+                    depFs.setDependencyType(dep);
+                    depFs.addToIndexes();
+                }
+            }
+        }
+
+        return jcas;
+    }
+
+    /**
+     * @return the gold label, a different label or {@code null} if the annotation is omitted.
+     */
+    private String deviate(Random aRandom, String aGold, String[] aTagset)
+    {
+        double r = aRandom.nextDouble();
+        if (r >= disagreement) {
+            return aGold;
+        }
+        if (r < disagreement / 2) {
+            return null;
+        }
+        String label = aTagset[aRandom.nextInt(aTagset.length - 1)];
+        // Never pick the gold label when deviating from it
+        return label.equals(aGold) ? aTagset[aTagset.length - 1] : label;
+    }
+
+    public Project getProject()
+    {
+        return project;
+    }
+
+    public SourceDocument getDocument()
+    {
+        return document;
+    }
+
+    public AnnotationLayer getTokenLayer()
+    {
+        return tokenLayer;
+    }
+
+    public List<AnnotationLayer> getLayers()
+    {
+        return Collections.unmodifiableList(layers);
+    }
+
+    public List<AnnotationFeature> getFeatures(AnnotationLayer aLayer)
+    {
+        return features.getOrDefault(aLayer, Collections.emptyList());
+    }
+
+    public List<AnnotationDocument> getAnnotationDocuments()
+    {
+        return Collections.unmodifiableList(annotationDocuments);
+    }
+
+    /**
+     * @return the annotator CASes by user name. The CASes are shared and must not be modified.
+     */
+    public Map<String, JCas> getCasByUser()
+    {
+        return Collections.unmodifiableMap(casByUser);
+    }
+
+    public JCas getCas(String aUser)
+    {
+        return casByUser.get(aUser);
+    }
+
+    public List<String> getEntryTypes()
+    {
+        List<String> entryTypes = new ArrayList<>();
+        for (AnnotationLayer layer : layers) {
+            entryTypes.add(layer.getName());
+        }
+        return entryTypes;
+    }
+
+    /**
+     * @return the annotator CASes in the form expected by {@link CasDiff2}.
+     */
+    public Map<String, List<JCas>> getCasMap()
+    {
+        Map<String, List<JCas>> casMap = new LinkedHashMap<>();
+        for (Map.Entry<String, JCas> e : casByUser.entrySet()) {
+            casMap.put(e.getKey(), asList(e.getValue()));
+        }
+        return casMap;
+    }
+
+    /**
+     * Creates an independent copy of the CAS of the first annotator to be used as the initial
+     * state of the curation CAS.
+     */
+    public JCas copyFirstCas()
+        throws UIMAException
+    {
+        JCas copy = JCasFactory.createJCas();
+        CasCopier.copyCas(casByUser.values().iterator().next().getCas(), copy.getCas(), true);
+        return copy;
+    }
+
+    /**
+     * Creates the curation CAS as it is produced when curation is started for the first time,
+     * i.e. containing only the annotations on which all annotators agree.
+     */
+    public JCas createMergeCas(List<? extends DiffAdapter> aAdapters)
+        throws UIMAException
+    {
+        Map<String, JCas> jcases = new LinkedHashMap<>(casByUser);
+        jcases.put(CURATION_USER, copyFirstCas());
+
+        Map<String, List<JCas>> casMap = new LinkedHashMap<>();
+        for (Map.Entry<String, JCas> e : jcases.entrySet()) {
+            casMap.put(e.getKey(), asList(e.getValue()));
+        }
+        DiffResult diff = CasDiff2.doDiff(getEntryTypes(), aAdapters,
+                LinkCompareBehavior.LINK_ROLE_AS_LABEL, casMap);
+        return MergeCas.geMergeCas(diff, jcases);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d sentences, %d layers, %d annotators, %.2f disagreement",
+                sentences, layerCount, casByUser.size(), disagreement);
+    }
+}
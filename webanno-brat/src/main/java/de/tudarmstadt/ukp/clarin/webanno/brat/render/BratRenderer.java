@@ -38,6 +38,7 @@ import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.jcas.JCas;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectSchema;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.ChainAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.TypeAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.coloring.ColoringStrategy;
@@ -105,12 +106,16 @@ public class BratRenderer
         
         // Render visible (custom) layers
         Map<String[], Queue<String>> colorQueues = new HashMap<>();
+        ProjectSchema schema = aAnnotationService.getProjectSchema(aState.getProject());
         for (AnnotationLayer layer : aVDoc.getAnnotationLayers()) {
             ColoringStrategy coloringStrategy = aColoringStrategy != null ? aColoringStrategy
                     : ColoringStrategy.getStrategy(aAnnotationService, layer,
                             aState.getPreferences(), colorQueues);
 
-            TypeAdapter typeAdapter = aAnnotationService.getAdapter(layer);
+            TypeAdapter typeAdapter = schema.getAdapter(layer);
+            if (typeAdapter == null) {
+                typeAdapter = aAnnotationService.getAdapter(layer);
+            }
             
             for (VSpan vspan : aVDoc.spans(layer.getId())) {
                 List<Offsets> offsets = toOffsets(vspan.getRanges());
@@ -256,8 +261,9 @@ public class BratRenderer
             
             // For link features, we also need to configure the arcs, even though there is no arc
             // layer here.
+            ProjectSchema schema = aAnnotationService.getProjectSchema(layer.getProject());
             boolean hasLinkFeatures = false;
-            for (AnnotationFeature f : aAnnotationService.listAnnotationFeature(layer)) {
+            for (AnnotationFeature f : schema.getFeatures(layer)) {
                 if (!LinkMode.NONE.equals(f.getLinkMode())) {
                     hasLinkFeatures = true;
                     break;
@@ -270,8 +276,7 @@ public class BratRenderer
             }
 
             // Styles for the remaining relation and chain layers
-            for (AnnotationLayer attachingLayer : getAttachingLayers(layer, layers,
-                    aAnnotationService)) {
+            for (AnnotationLayer attachingLayer : getAttachingLayers(layer, layers, schema)) {
                 arcs.add(configureRelationType(layer, attachingLayer));
             }
 
@@ -286,7 +291,7 @@ public class BratRenderer
      * Scan through the layers once to remember which layers attach to which layers.
      */
     private static List<AnnotationLayer> getAttachingLayers(AnnotationLayer aTarget,
-            List<AnnotationLayer> aLayers, AnnotationSchemaService aAnnotationService)
+            List<AnnotationLayer> aLayers, ProjectSchema aSchema)
     {
         List<AnnotationLayer> attachingLayers = new ArrayList<>();
 
@@ -299,8 +304,10 @@ public class BratRenderer
         // determine which layers attach to with other layers. Currently we only use attachType,
         // but do not follow attachFeature if it is set.
         if (aTarget.isBuiltIn() && aTarget.getName().equals(POS.class.getName())) {
-            attachingLayers.add(aAnnotationService.getLayer(Dependency.class.getName(),
-                    aTarget.getProject()));
+            AnnotationLayer dependencyLayer = aSchema.getLayer(Dependency.class.getName());
+            if (dependencyLayer != null) {
+                attachingLayers.add(dependencyLayer);
+            }
         }
 
         // Custom layers
@@ -24,7 +24,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
@@ -35,9 +39,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeProjectRemovedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.constraints.grammar.ConstraintsGrammar;
 import de.tudarmstadt.ukp.clarin.webanno.constraints.grammar.ParseException;
 import de.tudarmstadt.ukp.clarin.webanno.constraints.grammar.syntaxtree.Parse;
@@ -60,6 +66,20 @@ public class ConstraintsServiceImpl
     @Value(value = "${repository.path}")
     private File dir;
 
+    /**
+     * Parsed constraints per project. The parsed constraints are only read by the editors, so a
+     * single instance is shared by all users of a project instead of every annotator keeping its
+     * own copy in the page state. An empty value means the project has no constraints.
+     */
+    private final Map<Long, Optional<ParsedConstraints>> parsedConstraints =
+            new ConcurrentHashMap<>();
+    
+    /**
+     * Incremented on every change to any constraint set. Used to avoid caching a result which was
+     * parsed while a constraint set was being changed.
+     */
+    private final AtomicLong changes = new AtomicLong();
+
     public ConstraintsServiceImpl()
     {
         // Nothing to do
@@ -79,6 +99,7 @@ public class ConstraintsServiceImpl
     public void createConstraintSet(ConstraintSet aSet)
     {
         entityManager.persist(aSet);
+        invalidate(aSet.getProject());
         
         try (MDC.MDCCloseable closable = MDC.putCloseable(Logging.KEY_PROJECT_ID,
                 String.valueOf(aSet.getProject().getId()))) {
@@ -92,6 +113,7 @@ public class ConstraintsServiceImpl
     public void removeConstraintSet(ConstraintSet aSet)
     {
         entityManager.remove(entityManager.merge(aSet));
+        invalidate(aSet.getProject());
         
         try (MDC.MDCCloseable closable = MDC.putCloseable(Logging.KEY_PROJECT_ID,
                 String.valueOf(aSet.getProject().getId()))) {
@@ -127,6 +149,7 @@ public class ConstraintsServiceImpl
         String filename = aSet.getId() + ".txt";
         FileUtils.forceMkdir(new File(constraintRulesPath));
         FileUtils.copyInputStreamToFile(aContent, new File(constraintRulesPath, filename));
+        invalidate(aSet.getProject());
 
         
         try (MDC.MDCCloseable closable = MDC.putCloseable(Logging.KEY_PROJECT_ID,
@@ -190,6 +213,34 @@ public class ConstraintsServiceImpl
     @Override
     public ParsedConstraints loadConstraints(Project aProject)
             throws IOException, ParseException
+    {
+        Optional<ParsedConstraints> cached = parsedConstraints.get(aProject.getId());
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+        
+        long changesBefore = changes.get();
+        ParsedConstraints constraints = parseConstraints(aProject);
+        if (changes.get() == changesBefore) {
+            parsedConstraints.put(aProject.getId(), Optional.ofNullable(constraints));
+        }
+        return constraints;
+    }
+    
+    @EventListener
+    public void beforeProjectRemove(BeforeProjectRemovedEvent aEvent)
+    {
+        invalidate(aEvent.getProject());
+    }
+    
+    private void invalidate(Project aProject)
+    {
+        changes.incrementAndGet();
+        parsedConstraints.remove(aProject.getId());
+    }
+    
+    private ParsedConstraints parseConstraints(Project aProject)
+            throws IOException, ParseException
     {
         ParsedConstraints merged = null;
 
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.curation.agreement;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An agreement calculation running in the background. The job is owned by the
+ * {@link AgreementJobService}; UI components should only hold on to the {@link AgreementRequest}
+ * and look the job up again when needed.
+ */
+public class AgreementJob
+{
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED, CANCELLED;
+
+        public boolean isFinished()
+        {
+            return this == DONE || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final AgreementRequest request;
+    private final String owner;
+    private final Date created = new Date();
+
+    private final AtomicInteger done = new AtomicInteger();
+    private volatile int total;
+    private volatile State state = State.QUEUED;
+    private volatile boolean cancelled;
+    private volatile Date finished;
+    private volatile String message;
+    private volatile PairwiseAnnotationResult result;
+    private volatile byte[] report;
+
+    private Future<?> future;
+
+    AgreementJob(AgreementRequest aRequest, String aOwner)
+    {
+        request = aRequest;
+        owner = aOwner;
+    }
+
+    public AgreementRequest getRequest()
+    {
+        return request;
+    }
+
+    /**
+     * @return the user who started the job.
+     */
+    public String getOwner()
+    {
+        return owner;
+    }
+
+    public Date getCreated()
+    {
+        return created;
+    }
+
+    public Date getFinished()
+    {
+        return finished;
+    }
+
+    public State getState()
+    {
+        return state;
+    }
+
+    public String getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * @return the progress in percent.
+     */
+    public int getProgress()
+    {
+        if (state.isFinished()) {
+            return 100;
+        }
+        int t = total;
+        return t > 0 ? Math.min(99, (done.get() * 100) / t) : 0;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * @return the pairwise agreement or {@code null} if the job has not completed successfully.
+     */
+    public PairwiseAnnotationResult getResult()
+    {
+        return result;
+    }
+
+    /**
+     * @return the CSV report over all annotators or {@code null} if the job has not completed
+     *         successfully.
+     */
+    public InputStream getReport()
+    {
+        byte[] r = report;
+        return r != null ? new ByteArrayInputStream(r) : null;
+    }
+
+    void setFuture(Future<?> aFuture)
+    {
+        future = aFuture;
+    }
+
+    void setTotal(int aTotal)
+    {
+        total = aTotal;
+    }
+
+    void step()
+    {
+        done.incrementAndGet();
+    }
+
+    void running()
+    {
+        state = State.RUNNING;
+    }
+
+    void done(PairwiseAnnotationResult aResult, byte[] aReport)
+    {
+        result = aResult;
+        report = aReport;
+        finish(State.DONE, null);
+    }
+
+    void failed(String aMessage)
+    {
+        finish(State.FAILED, aMessage);
+    }
+
+    void cancelled()
+    {
+        finish(State.CANCELLED, null);
+    }
+
+    private void finish(State aState, String aMessage)
+    {
+        message = aMessage;
+        finished = new Date();
+        state = aState;
+    }
+
+    void cancel()
+    {
+        cancelled = true;
+        if (future != null) {
+            future.cancel(true);
+        }
+        if (state == State.QUEUED) {
+            cancelled();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "AgreementJob [" + request + ", owner=" + owner + ", state=" + state
+                + ", progress=" + getProgress() + "%]";
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.curation.agreement;
+
+import java.util.List;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+
+/**
+ * Runs agreement calculations in the background on a bounded pool of workers. Jobs are identified
+ * by their {@link AgreementRequest}, so all curators of a project asking for the same agreement
+ * share a single calculation and its results.
+ */
+public interface AgreementJobService
+{
+    String SERVICE_NAME = "agreementJobService";
+
+    /**
+     * Start an agreement calculation unless there is already one for the same request which is
+     * running or which has completed successfully.
+     *
+     * @param aRequest
+     *            the agreement parameters.
+     * @param aUsername
+     *            the user starting the job.
+     * @param aRecalculate
+     *            whether to discard a finished job for the same request and calculate anew.
+     * @return the job.
+     */
+    AgreementJob submit(AgreementRequest aRequest, String aUsername, boolean aRecalculate);
+
+    /**
+     * @return the job for the given request or {@code null} if there is none.
+     */
+    AgreementJob getJob(AgreementRequest aRequest);
+
+    /**
+     * Cancel the job for the given request if it is still queued or running.
+     */
+    void cancel(AgreementRequest aRequest);
+
+    /**
+     * @return all jobs known for the given project, most recent first.
+     */
+    List<AgreementJob> listJobs(Project aProject);
+}
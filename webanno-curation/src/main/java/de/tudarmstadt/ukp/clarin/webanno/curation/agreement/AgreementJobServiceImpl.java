@@ -0,0 +1,319 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.curation.agreement;
+
+import static java.util.Arrays.asList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.Resource;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.uima.jcas.JCas;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
+import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.AgreementJob.State;
+import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.AgreementUtils.AgreementResult;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.DiffAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.DiffResult;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.PermissionLevel;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.clarin.webanno.support.logging.Logging;
+import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
+
+@Component(AgreementJobService.SERVICE_NAME)
+public class AgreementJobServiceImpl
+    implements AgreementJobService, SmartLifecycle
+{
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private @Resource DocumentService documentService;
+    private @Resource ProjectService projectService;
+    private @Resource AnnotationSchemaService annotationService;
+
+    @Value(value = "${agreement.jobs.threads:2}")
+    private int threads;
+
+    @Value(value = "${agreement.jobs.queue:16}")
+    private int queueSize;
+
+    @Value(value = "${agreement.jobs.retention:60}")
+    private int retentionMinutes;
+
+    private final Map<AgreementRequest, AgreementJob> jobs = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    private boolean running = false;
+
+    @Override
+    public synchronized AgreementJob submit(AgreementRequest aRequest, String aUsername,
+            boolean aRecalculate)
+    {
+        expireJobs();
+
+        AgreementJob job = jobs.get(aRequest);
+        if (job != null) {
+            boolean reusable = !job.getState().isFinished() || job.getState() == State.DONE;
+            if (reusable && !aRecalculate) {
+                return job;
+            }
+            job.cancel();
+        }
+
+        AgreementJob newJob = new AgreementJob(aRequest, aUsername);
+        jobs.put(aRequest, newJob);
+        try {
+            newJob.setFuture(executor.submit(() -> run(newJob)));
+            log.info("Queued agreement calculation {}", newJob);
+        }
+        catch (RejectedExecutionException e) {
+            newJob.failed("Too many agreement calculations are pending. Please try again later.");
+        }
+        return newJob;
+    }
+
+    @Override
+    public AgreementJob getJob(AgreementRequest aRequest)
+    {
+        expireJobs();
+        return jobs.get(aRequest);
+    }
+
+    @Override
+    public synchronized void cancel(AgreementRequest aRequest)
+    {
+        AgreementJob job = jobs.get(aRequest);
+        if (job != null && !job.getState().isFinished()) {
+            job.cancel();
+            log.info("Cancelled agreement calculation {}", job);
+        }
+    }
+
+    @Override
+    public List<AgreementJob> listJobs(Project aProject)
+    {
+        expireJobs();
+        return jobs.values().stream()
+                .filter(j -> j.getRequest().getProjectId() == aProject.getId())
+                .sorted(Comparator.comparing(AgreementJob::getCreated).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Forget finished jobs after the retention period. The results hold on to the annotations of
+     * all annotators, so we do not want to keep them around indefinitely.
+     */
+    private void expireJobs()
+    {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        jobs.values().removeIf(j -> j.getState().isFinished() && j.getFinished() != null
+                && j.getFinished().getTime() < cutoff);
+    }
+
+    private void run(AgreementJob aJob)
+    {
+        AgreementRequest request = aJob.getRequest();
+        Logging.setMDC(request.getProjectId(), aJob.getOwner());
+        try {
+            if (aJob.isCancelled()) {
+                aJob.cancelled();
+                return;
+            }
+            aJob.running();
+
+            Project project = projectService.getProject(request.getProjectId());
+            AnnotationFeature feature = annotationService.getFeature(request.getFeatureId());
+            String type = feature.getLayer().getName();
+
+            Map<String, List<JCas>> casMap = loadCases(aJob, project);
+
+            checkCancelled(aJob);
+            List<DiffAdapter> adapters = CasDiff2.getAdapters(annotationService, project);
+            DiffResult diff = CasDiff2.doDiff(asList(type), adapters,
+                    request.getLinkCompareBehavior(), casMap);
+            aJob.step();
+
+            PairwiseAnnotationResult result = new PairwiseAnnotationResult();
+            List<Entry<String, List<JCas>>> entryList = new ArrayList<>(casMap.entrySet());
+            for (int m = 0; m < entryList.size(); m++) {
+                for (int n = 0; n < m; n++) {
+                    checkCancelled(aJob);
+                    Map<String, List<JCas>> pairwiseCasMap = new LinkedHashMap<>();
+                    pairwiseCasMap.put(entryList.get(m).getKey(), entryList.get(m).getValue());
+                    pairwiseCasMap.put(entryList.get(n).getKey(), entryList.get(n).getValue());
+                    AgreementResult res = AgreementUtils.getAgreement(request.getMeasure(),
+                            request.isExcludeIncomplete(), diff, type, feature.getName(),
+                            pairwiseCasMap);
+                    result.add(entryList.get(m).getKey(), entryList.get(n).getKey(), res);
+                    aJob.step();
+                }
+            }
+
+            checkCancelled(aJob);
+            AgreementResult all = AgreementUtils.makeStudy(diff, type, feature.getName(),
+                    request.isExcludeIncomplete(), casMap);
+            byte[] report = IOUtils.toByteArray(AgreementUtils.generateCsvReport(all));
+
+            aJob.done(result, report);
+            log.info("Completed agreement calculation {}", aJob);
+        }
+        catch (CancellationException e) {
+            aJob.cancelled();
+            log.info("Agreement calculation cancelled {}", aJob);
+        }
+        catch (Throwable e) {
+            log.error("Agreement calculation failed {}", aJob, e);
+            aJob.failed(ExceptionUtils.getRootCauseMessage(e));
+        }
+        finally {
+            Logging.clearMDC();
+        }
+    }
+
+    /**
+     * Load the finished CASes of all annotators. The list for each annotator contains
+     * {@code null} for documents which the annotator has not finished.
+     */
+    private Map<String, List<JCas>> loadCases(AgreementJob aJob, Project aProject)
+    {
+        List<User> users = projectService.listProjectUsersWithPermissions(aProject,
+                PermissionLevel.USER);
+        List<SourceDocument> sourceDocuments = documentService.listSourceDocuments(aProject);
+
+        // Loading each CAS, the diff and each annotator pair are one step each.
+        int pairs = (users.size() * (users.size() - 1)) / 2;
+        aJob.setTotal(users.size() * sourceDocuments.size() + 1 + pairs);
+
+        Map<User, Map<SourceDocument, AnnotationDocument>> annotationDocuments = documentService
+                .getAnnotationDocuments(aProject, users);
+
+        Map<String, List<JCas>> casMap = new LinkedHashMap<>();
+        for (User user : users) {
+            List<JCas> cases = new ArrayList<>();
+            for (SourceDocument document : sourceDocuments) {
+                checkCancelled(aJob);
+
+                JCas jCas = null;
+                AnnotationDocument annotationDocument = annotationDocuments.get(user)
+                        .get(document);
+                if (annotationDocument != null) {
+                    if (AnnotationDocumentState.FINISHED.equals(annotationDocument.getState())) {
+                        try {
+                            jCas = documentService.readAnnotationCas(annotationDocument);
+                            documentService.upgradeCas(jCas.getCas(), annotationDocument);
+
+                            // Set the CAS name in the DocumentMetaData so that we can pick it
+                            // up in the Diff position for the purpose of debugging / transparency.
+                            DocumentMetaData documentMetadata = DocumentMetaData.get(jCas);
+                            documentMetadata.setDocumentId(document.getName());
+                            documentMetadata.setCollectionId(aProject.getName());
+                        }
+                        catch (Exception e) {
+                            log.error("Unable to load annotations of [{}] on [{}]({})",
+                                    user.getUsername(), document.getName(), document.getId(), e);
+                            jCas = null;
+                        }
+                    }
+                }
+
+                // Enter null if the user did not finish this document
+                cases.add(jCas);
+                aJob.step();
+            }
+            casMap.put(user.getUsername(), cases);
+        }
+        return casMap;
+    }
+
+    private void checkCancelled(AgreementJob aJob)
+    {
+        if (aJob.isCancelled() || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    @Override
+    public void start()
+    {
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueSize));
+        running = true;
+    }
+
+    @Override
+    public void stop()
+    {
+        running = false;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        jobs.clear();
+    }
+
+    @Override
+    public int getPhase()
+    {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean isAutoStartup()
+    {
+        return true;
+    }
+
+    @Override
+    public void stop(Runnable aCallback)
+    {
+        stop();
+        aCallback.run();
+    }
+}
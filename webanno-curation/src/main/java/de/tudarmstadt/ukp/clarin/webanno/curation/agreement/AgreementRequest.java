@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.curation.agreement;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.AgreementUtils.ConcreteAgreementMeasure;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.LinkCompareBehavior;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+
+/**
+ * Parameters of an agreement calculation. Two requests with the same parameters are equal, which
+ * allows curators of the same project to share the results of an {@link AgreementJob}.
+ */
+public class AgreementRequest
+    implements Serializable
+{
+    private static final long serialVersionUID = 2990428520372418063L;
+
+    private final long projectId;
+    private final long featureId;
+    private final ConcreteAgreementMeasure measure;
+    private final LinkCompareBehavior linkCompareBehavior;
+    private final boolean excludeIncomplete;
+
+    public AgreementRequest(Project aProject, AnnotationFeature aFeature,
+            ConcreteAgreementMeasure aMeasure, LinkCompareBehavior aLinkCompareBehavior,
+            boolean aExcludeIncomplete)
+    {
+        projectId = aProject.getId();
+        featureId = aFeature.getId();
+        measure = aMeasure;
+        linkCompareBehavior = aLinkCompareBehavior;
+        excludeIncomplete = aExcludeIncomplete;
+    }
+
+    public long getProjectId()
+    {
+        return projectId;
+    }
+
+    public long getFeatureId()
+    {
+        return featureId;
+    }
+
+    public ConcreteAgreementMeasure getMeasure()
+    {
+        return measure;
+    }
+
+    public LinkCompareBehavior getLinkCompareBehavior()
+    {
+        return linkCompareBehavior;
+    }
+
+    public boolean isExcludeIncomplete()
+    {
+        return excludeIncomplete;
+    }
+
+    @Override
+    public boolean equals(Object aOther)
+    {
+        if (this == aOther) {
+            return true;
+        }
+        if (!(aOther instanceof AgreementRequest)) {
+            return false;
+        }
+        AgreementRequest other = (AgreementRequest) aOther;
+        return projectId == other.projectId && featureId == other.featureId
+                && measure == other.measure && linkCompareBehavior == other.linkCompareBehavior
+                && excludeIncomplete == other.excludeIncomplete;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(projectId, featureId, measure, linkCompareBehavior,
+                excludeIncomplete);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "AgreementRequest [project=" + projectId + ", feature=" + featureId + ", measure="
+                + measure + ", linkCompareBehavior=" + linkCompareBehavior
+                + ", excludeIncomplete=" + excludeIncomplete + "]";
+    }
+}
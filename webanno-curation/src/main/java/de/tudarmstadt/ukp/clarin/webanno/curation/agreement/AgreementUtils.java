@@ -54,7 +54,6 @@ import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.DiffResult;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.Position;
 import de.tudarmstadt.ukp.dkpro.statistics.agreement.IAgreementMeasure;
 import de.tudarmstadt.ukp.dkpro.statistics.agreement.IAnnotationUnit;
-import de.tudarmstadt.ukp.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
 import de.tudarmstadt.ukp.dkpro.statistics.agreement.coding.CohenKappaAgreement;
 import de.tudarmstadt.ukp.dkpro.statistics.agreement.coding.FleissKappaAgreement;
 import de.tudarmstadt.ukp.dkpro.statistics.agreement.coding.ICodingAnnotationItem;
@@ -111,6 +110,16 @@ public class AgreementUtils
         {
             return nullValueSupported;
         }
+
+        public double calculate(CompactCodingStudy aStudy)
+        {
+            switch (this) {
+            case KRIPPENDORFF_ALPHA_NOMINAL_AGREEMENT:
+                return aStudy.calculateKrippendorffAlphaNominal();
+            default:
+                return make(aStudy.toCodingAnnotationStudy()).calculateAgreement();
+            }
+        }
     }
     
     public static PairwiseAnnotationResult getPairwiseCohenKappaAgreement(DiffResult aDiff,
@@ -160,10 +169,8 @@ public class AgreementUtils
         AgreementResult agreementResult = AgreementUtils.makeStudy(aDiff, aType, aFeature,
                 aExcludeIncomplete, aCasMap);
         try {
-            IAgreementMeasure agreement = aMeasure.make(agreementResult.study);
-            
             if (agreementResult.study.getItemCount() > 0) {
-                agreementResult.setAgreement(agreement.calculateAgreement());
+                agreementResult.setAgreement(aMeasure.calculate(agreementResult.study));
             }
             else {
                 agreementResult.setAgreement(Double.NaN);
@@ -213,7 +220,7 @@ public class AgreementUtils
         List<ConfigurationSet> incompleteSetsByLabel = new ArrayList<>();
         List<ConfigurationSet> pluralitySets = new ArrayList<>();
         List<ConfigurationSet> irrelevantSets = new ArrayList<>();
-        CodingAnnotationStudy study = new CodingAnnotationStudy(users.size());
+        CompactCodingStudy study = new CompactCodingStudy(users.size());
         
         // Check if the feature we are looking at is a primitive feature or a link feature
         // We do this by looking it up in the first available CAS. Mind that at this point all
@@ -419,7 +426,7 @@ public class AgreementUtils
                     || cfgSet.getPosition().getFeature().equals(aFeature);
             
             completeSets.add(cfgSet);
-            study.addItemAsArray(values);
+            study.addItem(values);
         }
         
         return new AgreementResult(aType, aFeature, aDiff, study, users, completeSets,
@@ -430,15 +437,15 @@ public class AgreementUtils
     public static void toCSV(CSVPrinter aOut, AgreementResult aAgreement) throws IOException
     {
         try {
-            aOut.printComment(String.format("Category count: %d%n", aAgreement.getStudy()
-                    .getCategoryCount()));
+            aOut.printComment(String.format("Category count: %d%n", aAgreement
+                    .getCompactStudy().getCategoryCount()));
         }
         catch (Throwable e) {
             aOut.printComment(String.format("Category count: %s%n",
                     ExceptionUtils.getRootCauseMessage(e)));
         }
         try {
-            aOut.printComment(String.format("Item count: %d%n", aAgreement.getStudy()
+            aOut.printComment(String.format("Item count: %d%n", aAgreement.getCompactStudy()
                     .getItemCount()));
         }
         catch (Throwable e) {
@@ -468,13 +475,14 @@ public class AgreementUtils
     public static void dumpAgreementStudy(PrintStream aOut, AgreementResult aAgreement)
     {
         try {
-            aOut.printf("Category count: %d%n", aAgreement.getStudy().getCategoryCount());
+            aOut.printf("Category count: %d%n",
+                    aAgreement.getCompactStudy().getCategoryCount());
         }
         catch (Throwable e) {
             aOut.printf("Category count: %s%n", ExceptionUtils.getRootCauseMessage(e));
         }
         try {
-            aOut.printf("Item count: %d%n", aAgreement.getStudy().getItemCount());
+            aOut.printf("Item count: %d%n", aAgreement.getCompactStudy().getItemCount());
         }
         catch (Throwable e) {
             aOut.printf("Item count: %s%n", ExceptionUtils.getRootCauseMessage(e));
@@ -498,7 +506,7 @@ public class AgreementUtils
     }
     
     private static void configurationSetsWithItemsToCsv(CSVPrinter aOut,
-            AgreementResult aAgreement, List<ConfigurationSet> aSets)
+            AgreementResult aAgreement, List<Position> aSets)
         throws IOException
     {
         List<String> headers = new ArrayList<>(
@@ -506,55 +514,45 @@ public class AgreementUtils
         headers.addAll(aAgreement.getCasGroupIds());
         aOut.printRecord(headers);
         
-        int i = 0;
-        for (ICodingAnnotationItem item : aAgreement.getStudy().getItems()) {
-            Position pos = aSets.get(i).getPosition();
+        CompactCodingStudy study = aAgreement.getCompactStudy();
+        for (int i = 0; i < study.getItemCount(); i++) {
+            Position pos = aSets.get(i);
             List<String> values = new ArrayList<>();
             values.add(pos.getClass().getSimpleName());
             values.add(pos.getCollectionId());
             values.add(pos.getDocumentId());
             values.add(pos.getType());
             values.add(aAgreement.getFeature());
-            values.add(aSets.get(i).getPosition().toMinimalString());
-            for (IAnnotationUnit unit : item.getUnits()) {
-                values.add(String.valueOf(unit.getCategory()));
+            values.add(pos.toMinimalString());
+            for (int r = 0; r < study.getRaterCount(); r++) {
+                values.add(String.valueOf(study.getValue(i, r)));
             }
             aOut.printRecord(values);
-            i++;
         }
     }    
     
     private static void dumpAgreementConfigurationSetsWithItems(PrintStream aOut,
-            AgreementResult aAgreement, List<ConfigurationSet> aSets)
+            AgreementResult aAgreement, List<Position> aSets)
     {
-        int i = 0;
-        for (ICodingAnnotationItem item : aAgreement.getStudy().getItems()) {
+        CompactCodingStudy study = aAgreement.getCompactStudy();
+        for (int i = 0; i < study.getItemCount(); i++) {
             StringBuilder sb = new StringBuilder();
-            sb.append(aSets.get(i).getPosition());
-            for (IAnnotationUnit unit : item.getUnits()) {
+            sb.append(aSets.get(i));
+            for (int r = 0; r < study.getRaterCount(); r++) {
                 if (sb.length() > 0) {
                     sb.append(" \t");
                 }
-                sb.append(unit.getCategory());
+                sb.append(study.getValue(i, r));
             }
             aOut.println(sb);
-            i++;
         }
     }
 
     private static void dumpAgreementConfigurationSets(PrintStream aOut,
-            AgreementResult aAgreement, List<ConfigurationSet> aSets)
+            AgreementResult aAgreement, List<Position> aSets)
     {
-        for (ConfigurationSet cfgSet : aSets) {
-            StringBuilder sb = new StringBuilder();
-            sb.append(cfgSet.getPosition());
-            for (Configuration cfg : cfgSet.getConfigurations()) {
-                if (sb.length() > 0) {
-                    sb.append(" \t");
-                }
-                sb.append(cfg.toString());
-            }
-            aOut.println(sb);
+        for (Position position : aSets) {
+            aOut.println(position);
         }
     }
 
@@ -585,18 +583,24 @@ public class AgreementUtils
         }
     }
 
+    /**
+     * Result of an agreement calculation. The result only keeps the positions of the configuration
+     * sets, not the sets themselves. Those refer to the diff and thereby to all CASes it was
+     * calculated from, so the diff and the CASes can be released once all results have been
+     * calculated.
+     */
     public static class AgreementResult
     {
         private final String type;
         private final String feature;
-        private final DiffResult diff;
-        private final ICodingAnnotationStudy study;
-        private final List<ConfigurationSet> setsWithDifferences;
-        private final List<ConfigurationSet> completeSets;
-        private final List<ConfigurationSet> irrelevantSets;
-        private final List<ConfigurationSet> incompleteSetsByPosition;
-        private final List<ConfigurationSet> incompleteSetsByLabel;
-        private final List<ConfigurationSet> pluralitySets;
+        private final int totalSetCount;
+        private final CompactCodingStudy study;
+        private final List<Position> setsWithDifferences;
+        private final List<Position> completeSets;
+        private final List<Position> irrelevantSets;
+        private final List<Position> incompleteSetsByPosition;
+        private final List<Position> incompleteSetsByLabel;
+        private final List<Position> pluralitySets;
         private double agreement;
         private List<String> casGroupIds;
         private final boolean excludeIncomplete;
@@ -605,7 +609,7 @@ public class AgreementUtils
         {
             type = aType;
             feature = aFeature;
-            diff = null;
+            totalSetCount = 0;
             study = null;
             setsWithDifferences = null;
             completeSets = null;
@@ -617,7 +621,7 @@ public class AgreementUtils
         }
 
         public AgreementResult(String aType, String aFeature, DiffResult aDiff,
-                ICodingAnnotationStudy aStudy, List<String> aCasGroupIds,
+                CompactCodingStudy aStudy, List<String> aCasGroupIds,
                 List<ConfigurationSet> aComplete,
                 List<ConfigurationSet> aIrrelevantSets,
                 List<ConfigurationSet> aSetsWithDifferences,
@@ -628,21 +632,27 @@ public class AgreementUtils
         {
             type = aType;
             feature = aFeature;
-            diff = aDiff;
+            totalSetCount = aDiff.getPositions().size();
             study = aStudy;
-            setsWithDifferences = aSetsWithDifferences;
-            completeSets = Collections.unmodifiableList(new ArrayList<>(aComplete));
-            irrelevantSets = aIrrelevantSets;
-            incompleteSetsByPosition = Collections.unmodifiableList(new ArrayList<>(
-                    aIncompleteByPosition));
-            incompleteSetsByLabel = Collections
-                    .unmodifiableList(new ArrayList<>(aIncompleteByLabel));
-            pluralitySets = Collections
-                    .unmodifiableList(new ArrayList<>(aPluralitySets));
+            setsWithDifferences = positions(aSetsWithDifferences);
+            completeSets = positions(aComplete);
+            irrelevantSets = positions(aIrrelevantSets);
+            incompleteSetsByPosition = positions(aIncompleteByPosition);
+            incompleteSetsByLabel = positions(aIncompleteByLabel);
+            pluralitySets = positions(aPluralitySets);
             casGroupIds = Collections.unmodifiableList(new ArrayList<>(aCasGroupIds));
             excludeIncomplete = aExcludeIncomplete;
         }
         
+        private static List<Position> positions(List<ConfigurationSet> aSets)
+        {
+            List<Position> positions = new ArrayList<>(aSets.size());
+            for (ConfigurationSet set : aSets) {
+                positions.add(set.getPosition());
+            }
+            return Collections.unmodifiableList(positions);
+        }
+
         public List<String> getCasGroupIds()
         {
             return casGroupIds;
@@ -650,23 +660,12 @@ public class AgreementUtils
         
         public boolean isAllNull(String aCasGroupId)
         {
-            for (ICodingAnnotationItem item : study.getItems()) {
-                if (item.getUnit(casGroupIds.indexOf(aCasGroupId)).getCategory() != null) {
-                    return false;
-                }
-            }
-            return true;
+            return getNonNullCount(aCasGroupId) == 0;
         }
         
         public int getNonNullCount(String aCasGroupId)
         {
-            int i = 0;
-            for (ICodingAnnotationItem item : study.getItems()) {
-                if (item.getUnit(casGroupIds.indexOf(aCasGroupId)).getCategory() != null) {
-                    i++;
-                }
-            }
-            return i;
+            return study.getNonNullCount(casGroupIds.indexOf(aCasGroupId));
         }
 
         private void setAgreement(double aAgreement)
@@ -677,7 +676,7 @@ public class AgreementUtils
         /**
          * Positions that were not seen in all CAS groups.
          */
-        public List<ConfigurationSet> getIncompleteSetsByPosition()
+        public List<Position> getIncompleteSetsByPosition()
         {
             return incompleteSetsByPosition;
         }
@@ -685,12 +684,12 @@ public class AgreementUtils
         /**
          * Positions that were seen in all CAS groups, but labels are unset (null).
          */
-        public List<ConfigurationSet> getIncompleteSetsByLabel()
+        public List<Position> getIncompleteSetsByLabel()
         {
             return incompleteSetsByLabel;
         }
 
-        public List<ConfigurationSet> getPluralitySets()
+        public List<Position> getPluralitySets()
         {
             return pluralitySets;
         }
@@ -698,17 +697,17 @@ public class AgreementUtils
         /**
          * @return sets differing with respect to the type and feature used to calculate agreement.
          */
-        public List<ConfigurationSet> getSetsWithDifferences()
+        public List<Position> getSetsWithDifferences()
         {
             return setsWithDifferences;
         }
         
-        public List<ConfigurationSet> getCompleteSets()
+        public List<Position> getCompleteSets()
         {
             return completeSets;
         }
         
-        public List<ConfigurationSet> getIrrelevantSets()
+        public List<Position> getIrrelevantSets()
         {
             return irrelevantSets;
         }
@@ -731,12 +730,12 @@ public class AgreementUtils
 
         public int getTotalSetCount()
         {
-            return diff.getPositions().size();
+            return totalSetCount;
         }
         
         public int getRelevantSetCount()
         {
-            return diff.getPositions().size() - irrelevantSets.size();
+            return totalSetCount - irrelevantSets.size();
         }
         
         public double getAgreement()
@@ -744,14 +743,18 @@ public class AgreementUtils
             return agreement;
         }
         
-        public ICodingAnnotationStudy getStudy()
+        public CompactCodingStudy getCompactStudy()
         {
             return study;
         }
-        
-        public DiffResult getDiff()
+
+        /**
+         * @return the study as a DKPro Statistics study. This creates a copy of the data on every
+         *         call; prefer {@link #getCompactStudy()} where possible.
+         */
+        public ICodingAnnotationStudy getStudy()
         {
-            return diff;
+            return study != null ? study.toCodingAnnotationStudy() : null;
         }
         
         public String getType()
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.curation.agreement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.tudarmstadt.ukp.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
+import de.tudarmstadt.ukp.dkpro.statistics.agreement.coding.ICodingAnnotationStudy;
+
+/**
+ * Memory-efficient coding study. Each category is stored only once and referred to by an int id.
+ * The items are stored row by row in a single int array with one column per rater. Missing values
+ * are represented by {@link #NONE}.
+ * <p>
+ * Krippendorff's alpha (nominal) is calculated directly from the coincidence matrix of this
+ * study. For other measures, the study can be converted to a DKPro Statistics study using
+ * {@link #toCodingAnnotationStudy()}.
+ */
+public class CompactCodingStudy
+{
+    public static final int NONE = -1;
+
+    private final int raterCount;
+    private final List<Object> categories = new ArrayList<>();
+    private final Map<Object, Integer> categoryIds = new HashMap<>();
+
+    private int[] data;
+    private int itemCount;
+
+    public CompactCodingStudy(int aRaterCount)
+    {
+        raterCount = aRaterCount;
+        data = new int[Math.max(1, aRaterCount) * 64];
+    }
+
+    /**
+     * Add an item to the study.
+     *
+     * @param aValues
+     *            the category assigned by each rater or {@code null} if a rater did not assign a
+     *            category.
+     */
+    public void addItem(Object... aValues)
+    {
+        if (aValues.length != raterCount) {
+            throw new IllegalArgumentException("Expected [" + raterCount + "] values but got ["
+                    + aValues.length + "]");
+        }
+
+        int offset = itemCount * raterCount;
+        if (offset + raterCount > data.length) {
+            data = Arrays.copyOf(data, Math.max(offset + raterCount, data.length * 2));
+        }
+
+        for (int r = 0; r < raterCount; r++) {
+            data[offset + r] = aValues[r] == null ? NONE : categoryId(aValues[r]);
+        }
+        itemCount++;
+    }
+
+    private int categoryId(Object aCategory)
+    {
+        Integer id = categoryIds.get(aCategory);
+        if (id == null) {
+            id = categories.size();
+            categories.add(aCategory);
+            categoryIds.put(aCategory, id);
+        }
+        return id;
+    }
+
+    public int getRaterCount()
+    {
+        return raterCount;
+    }
+
+    public int getItemCount()
+    {
+        return itemCount;
+    }
+
+    public int getCategoryCount()
+    {
+        return categories.size();
+    }
+
+    public Object getCategory(int aCategoryId)
+    {
+        return categories.get(aCategoryId);
+    }
+
+    /**
+     * @return the id of the category the rater assigned to the item or {@link #NONE}.
+     */
+    public int getCategoryId(int aItem, int aRater)
+    {
+        return data[aItem * raterCount + aRater];
+    }
+
+    /**
+     * @return the category the rater assigned to the item or {@code null}.
+     */
+    public Object getValue(int aItem, int aRater)
+    {
+        int id = getCategoryId(aItem, aRater);
+        return id == NONE ? null : categories.get(id);
+    }
+
+    public int getNonNullCount(int aRater)
+    {
+        int count = 0;
+        for (int i = 0; i < itemCount; i++) {
+            if (data[i * raterCount + aRater] != NONE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Calculate the coincidence matrix over all pairable values, i.e. over all items which have
+     * been coded by at least two raters. Cell {@code [c][k]} contains the number of times category
+     * {@code c} has been paired with category {@code k}, each item weighted by one over the number
+     * of its values minus one.
+     */
+    public double[][] getCoincidenceMatrix()
+    {
+        int categoryCount = categories.size();
+        double[][] coincidences = new double[categoryCount][categoryCount];
+
+        // Per item, how often each category has been assigned and which categories were seen
+        int[] counts = new int[categoryCount];
+        int[] seen = new int[raterCount];
+
+        for (int i = 0; i < itemCount; i++) {
+            int offset = i * raterCount;
+            int values = 0;
+            int distinct = 0;
+            for (int r = 0; r < raterCount; r++) {
+                int id = data[offset + r];
+                if (id == NONE) {
+                    continue;
+                }
+                if (counts[id] == 0) {
+                    seen[distinct] = id;
+                    distinct++;
+                }
+                counts[id]++;
+                values++;
+            }
+
+            if (values > 1) {
+                double weight = 1.0 / (values - 1);
+                for (int a = 0; a < distinct; a++) {
+                    int c = seen[a];
+                    for (int b = 0; b < distinct; b++) {
+                        int k = seen[b];
+                        int pairs = c == k ? counts[c] * (counts[c] - 1) : counts[c] * counts[k];
+                        coincidences[c][k] += pairs * weight;
+                    }
+                }
+            }
+
+            for (int a = 0; a < distinct; a++) {
+                counts[seen[a]] = 0;
+            }
+        }
+
+        return coincidences;
+    }
+
+    /**
+     * Calculate Krippendorff's alpha using the nominal distance function.
+     */
+    public double calculateKrippendorffAlphaNominal()
+    {
+        double[][] coincidences = getCoincidenceMatrix();
+        int categoryCount = coincidences.length;
+
+        double[] marginals = new double[categoryCount];
+        double n = 0.0;
+        double observed = 0.0;
+        for (int c = 0; c < categoryCount; c++) {
+            for (int k = 0; k < categoryCount; k++) {
+                marginals[c] += coincidences[c][k];
+                if (c != k) {
+                    observed += coincidences[c][k];
+                }
+            }
+            n += marginals[c];
+        }
+
+        double expected = 0.0;
+        for (int c = 0; c < categoryCount; c++) {
+            for (int k = 0; k < categoryCount; k++) {
+                if (c != k) {
+                    expected += marginals[c] * marginals[k];
+                }
+            }
+        }
+
+        // Same normalization and special case as in DKPro Statistics
+        double observedDisagreement = observed / n;
+        double expectedDisagreement = expected / (n * (n - 1.0));
+        if (observedDisagreement == expectedDisagreement) {
+            return 0.0;
+        }
+        return 1.0 - (observedDisagreement / expectedDisagreement);
+    }
+
+    /**
+     * Create a DKPro Statistics study with the same items. This creates a full copy of the data
+     * using boxed values, so it should only be used for small studies or when a measure is required
+     * which is not directly supported by this class.
+     */
+    public ICodingAnnotationStudy toCodingAnnotationStudy()
+    {
+        CodingAnnotationStudy study = new CodingAnnotationStudy(raterCount);
+        for (int i = 0; i < itemCount; i++) {
+            Object[] values = new Object[raterCount];
+            for (int r = 0; r < raterCount; r++) {
+                values[r] = getValue(i, r);
+            }
+            study.addItemAsArray(values);
+        }
+        return study;
+    }
+}
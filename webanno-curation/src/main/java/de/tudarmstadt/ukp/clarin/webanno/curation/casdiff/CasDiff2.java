@@ -58,6 +58,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectSchema;
 import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.ArcAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
@@ -1787,10 +1788,12 @@ public class CasDiff2
     public static List<DiffAdapter> getAdapters(AnnotationSchemaService annotationService,
             Project project)
     {
+        ProjectSchema schema = annotationService.getProjectSchema(project);
+        
         List<DiffAdapter> adapters = new ArrayList<>();
-        for (AnnotationLayer layer : annotationService.listAnnotationLayer(project)) {
+        for (AnnotationLayer layer : schema.getLayers()) {
             Set<String> labelFeatures = new LinkedHashSet<>();
-            for (AnnotationFeature f : annotationService.listAnnotationFeature(layer)) {
+            for (AnnotationFeature f : schema.getFeatures(layer)) {
                 if (!f.isEnabled()) {
                     continue;
                 }
@@ -1810,7 +1813,7 @@ public class CasDiff2
                 break;
             }
             case RELATION_TYPE: {
-                ArcAdapter typeAdpt = (ArcAdapter) annotationService.getAdapter(layer);
+                ArcAdapter typeAdpt = (ArcAdapter) schema.getAdapter(layer);
                 adpt = new ArcDiffAdapter(layer.getName(),
                         typeAdpt.getSourceFeatureName(), typeAdpt.getTargetFeatureName(),
                         labelFeatures);
@@ -1825,7 +1828,7 @@ public class CasDiff2
 
             adapters.add(adpt);
 
-            for (AnnotationFeature f : annotationService.listAnnotationFeature(layer)) {
+            for (AnnotationFeature f : schema.getFeatures(layer)) {
                 if (!f.isEnabled()) {
                     continue;
                 }
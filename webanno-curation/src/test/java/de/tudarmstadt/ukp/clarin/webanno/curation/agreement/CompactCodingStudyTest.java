@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.curation.agreement;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.dkpro.statistics.agreement.coding.KrippendorffAlphaAgreement;
+import de.tudarmstadt.ukp.dkpro.statistics.agreement.distance.NominalDistanceFunction;
+
+public class CompactCodingStudyTest
+{
+    @Test
+    public void thatCategoriesAreStoredOnce()
+    {
+        CompactCodingStudy study = new CompactCodingStudy(3);
+        study.addItem("A", "A", null);
+        study.addItem("B", "A", "");
+
+        assertEquals(2, study.getItemCount());
+        assertEquals(3, study.getCategoryCount());
+        assertEquals(study.getCategoryId(0, 0), study.getCategoryId(1, 1));
+        assertEquals(CompactCodingStudy.NONE, study.getCategoryId(0, 2));
+        assertEquals("", study.getValue(1, 2));
+        assertEquals(2, study.getNonNullCount(0));
+        assertEquals(1, study.getNonNullCount(2));
+    }
+
+    @Test
+    public void thatKrippendorffAlphaMatchesDKProStatistics()
+    {
+        Random rnd = new Random(42);
+        String[] labels = { "PER", "LOC", "ORG", "MISC", "" };
+
+        for (int run = 0; run < 20; run++) {
+            int raters = 2 + rnd.nextInt(4);
+            CompactCodingStudy study = new CompactCodingStudy(raters);
+            for (int i = 0; i < 200; i++) {
+                Object[] values = new Object[raters];
+                for (int r = 0; r < raters; r++) {
+                    values[r] = rnd.nextInt(10) == 0 ? null
+                            : labels[rnd.nextInt(r == 0 ? labels.length : 2)];
+                }
+                study.addItem(values);
+            }
+
+            double expected = new KrippendorffAlphaAgreement(study.toCodingAnnotationStudy(),
+                    new NominalDistanceFunction()).calculateAgreement();
+
+            assertEquals(expected, study.calculateKrippendorffAlphaNominal(), 0.000001);
+        }
+    }
+}
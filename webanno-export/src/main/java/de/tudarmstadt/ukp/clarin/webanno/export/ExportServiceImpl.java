@@ -18,9 +18,19 @@
 package de.tudarmstadt.ukp.clarin.webanno.export;
 
 import static de.tudarmstadt.ukp.clarin.webanno.export.ImportUtil.EXPORTED_PROJECT;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Resource;
 
@@ -28,6 +38,8 @@ import org.apache.commons.io.FileUtils;
 import org.apache.uima.UIMAException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
@@ -36,10 +48,11 @@ import de.tudarmstadt.ukp.clarin.webanno.api.ImportExportService;
 import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
 import de.tudarmstadt.ukp.clarin.webanno.automation.service.AutomationService;
 import de.tudarmstadt.ukp.clarin.webanno.constraints.ConstraintsService;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
 import de.tudarmstadt.ukp.clarin.webanno.support.JSONUtil;
-import de.tudarmstadt.ukp.clarin.webanno.support.ZipUtils;
 
 @Component(ExportService.SERVICE_NAME)
 public class ExportServiceImpl implements ExportService
@@ -53,62 +66,46 @@ public class ExportServiceImpl implements ExportService
     private @Resource ConstraintsService constraintsService;
     private @Resource UserDao userRepository;
     private @Resource ImportExportService importExportService;
+
+    @Value(value = "${project.export.threads:0}")
+    private int threads;
+
+    @Value(value = "${project.export.compress-cas:true}")
+    private boolean compressCas;
     
     @Override
     public File generateZipFile(final ProjectExportRequest aRequest)
         throws IOException, UIMAException, ClassNotFoundException, ProjectExportException
     {
-        // Directory to store source documents and annotation documents
-        File exportTempDir = File.createTempFile("webanno-project", "export");
-        exportTempDir.delete();
-        exportTempDir.mkdirs();
-        
-        // Target file
-        File projectZipFile = new File(exportTempDir.getAbsolutePath() + ".zip");
+        Project project = aRequest.project.getObject();
+
+        if (project.getId() == 0) {
+            throw new ProjectExportException(
+                    "Project not yet created. Please save project details first!");
+        }
+
+        // Target file - the export is written directly into it
+        File projectZipFile = File.createTempFile("webanno-project", "export.zip");
 
         boolean success = false;
         
         try {
-            // all metadata and project settings data from the database as JSON file
-            File projectSettings = null;
-            projectSettings = File.createTempFile(EXPORTED_PROJECT, ".json");
-    
-            Project project = aRequest.project.getObject();
-            
-            if (project.getId() == 0) {
-                throw new ProjectExportException(
-                        "Project not yet created. Please save project details first!");
-            }
-    
-            de.tudarmstadt.ukp.clarin.webanno.export.model.Project exProjekt = ExportUtil
-                    .exportProjectSettings(annotationService, automationService, documentService,
-                            projectService, project, projectSettings, exportTempDir);
-    
-            JSONUtil.generatePrettyJson(exProjekt, projectSettings);
-            FileUtils.copyFileToDirectory(projectSettings, exportTempDir);
-            
-            aRequest.progress = 9;
-            ExportUtil.exportSourceDocuments(documentService, automationService, aRequest, project,
-                    exportTempDir);
-            ExportUtil.exportTrainingDocuments(automationService, aRequest, project, exportTempDir);
-            ExportUtil.exportAnnotationDocuments(documentService, importExportService,
-                    userRepository, aRequest, exportTempDir);
-            ExportUtil.exportProjectLog(projectService, project, exportTempDir);
-            ExportUtil.exportGuideLine(projectService, project, exportTempDir);
-            ExportUtil.exportProjectMetaInf(projectService, project, exportTempDir);
-            ExportUtil.exportProjectConstraints(constraintsService, project, exportTempDir);
-            aRequest.progress = 90;
-            
-            ExportUtil.exportCuratedDocuments(documentService, importExportService, aRequest,
-                    exportTempDir, true);
-    
-            try {
-                ZipUtils.zipFolder(exportTempDir, projectZipFile);
-            }
-            finally {
-                FileUtils.forceDelete(projectSettings);
-                System.gc();
-                FileUtils.forceDelete(exportTempDir);
+            try (ProjectZipWriter zip = new ProjectZipWriter(projectZipFile, compressCas)) {
+                // all metadata and project settings data from the database as JSON file
+                de.tudarmstadt.ukp.clarin.webanno.export.model.Project exProjekt = ExportUtil
+                        .exportProjectSettings(annotationService, automationService,
+                                documentService, projectService, project);
+                zip.addEntry(EXPORTED_PROJECT + ".json",
+                        JSONUtil.toPrettyJsonString(exProjekt).getBytes(UTF_8));
+
+                ExportUtil.exportTrainingDocuments(automationService, aRequest, project, zip);
+                ExportUtil.exportProjectLog(projectService, project, zip);
+                ExportUtil.exportGuideLine(projectService, project, zip);
+                ExportUtil.exportProjectMetaInf(projectService, project, zip);
+                ExportUtil.exportProjectConstraints(constraintsService, project, zip);
+                aRequest.progress = 10;
+
+                exportDocuments(aRequest, project, zip);
             }
             
             aRequest.progress = 100;
@@ -120,12 +117,103 @@ public class ExportServiceImpl implements ExportService
         finally {
             if (!success) {
                 try {
-                    FileUtils.forceDelete(exportTempDir);
+                    FileUtils.forceDelete(projectZipFile);
                 } catch (IOException e) {
-                    log.error(
-                            "Unable to delete temporary export directory [" + exportTempDir + "]");
+                    log.error("Unable to delete incomplete export file [" + projectZipFile
+                            + "]");
                 }
             }
         }
     }
+
+    /**
+     * Exports the source documents with their annotation and curation documents. The documents
+     * are converted in parallel and streamed into the ZIP file as soon as they are ready.
+     */
+    private void exportDocuments(ProjectExportRequest aRequest, Project aProject,
+            ProjectZipWriter aZip)
+        throws IOException, UIMAException, ClassNotFoundException, ProjectExportException
+    {
+        List<SourceDocument> documents = documentService.listSourceDocuments(aProject);
+        Map<SourceDocument, List<AnnotationDocument>> annotationDocumentsByDocument = 
+                documentService.listAnnotationDocuments(documents);
+        Class<?> curationWriter = ExportUtil.getCurationWriter(importExportService, aRequest);
+
+        // Progress is reported per annotation document and per source document
+        int initProgress = aRequest.progress;
+        int total = documents.size();
+        for (SourceDocument document : documents) {
+            total += annotationDocumentsByDocument.get(document).size();
+        }
+        int steps = Math.max(1, total);
+        AtomicInteger done = new AtomicInteger();
+        Runnable progress = () -> aRequest.progress = initProgress
+                + (int) ((99.0 - initProgress) * done.incrementAndGet() / steps);
+
+        // Workers log with the same context as the export itself
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        try {
+            // Each worker exports a source document together with all its annotation, correction
+            // and curation documents
+            List<Future<?>> futures = new ArrayList<>();
+            for (SourceDocument document : documents) {
+                futures.add(executor.submit(() -> {
+                    if (mdc != null) {
+                        MDC.setContextMap(mdc);
+                    }
+                    try {
+                        ExportUtil.exportSourceDocument(documentService, aRequest, document,
+                                aZip);
+                        ExportUtil.exportAnnotationDocuments(documentService,
+                                importExportService, userRepository, aRequest, document,
+                                annotationDocumentsByDocument.get(document), aZip, progress);
+                        ExportUtil.exportCuratedDocument(documentService, importExportService,
+                                document, curationWriter, aZip, true);
+                        progress.run();
+                        return null;
+                    }
+                    finally {
+                        MDC.clear();
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UIMAException) {
+                throw (UIMAException) cause;
+            }
+            if (cause instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException) cause;
+            }
+            if (cause instanceof ProjectExportException) {
+                throw (ProjectExportException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ex = new InterruptedIOException("Project export interrupted");
+            ex.initCause(e);
+            throw ex;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -32,6 +32,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.uima.UIMAException;
@@ -69,19 +70,21 @@ public class ExportUtil
 {
     private static final Logger LOG = LoggerFactory.getLogger(ExportUtil.class);
     
-    private static final String ANNOTATION_ORIGINAL_FOLDER = "/annotation/";
-    private static final String CONSTRAINTS = "/constraints/";
-    private static final String LOG_FOLDER = "/" + ProjectService.LOG_DIR;
-    private static final String GUIDELINES_FOLDER = "/" + ImportUtil.GUIDELINE;
-    private static final String ANNOTATION_CAS_FOLDER = "/"
-            + ImportUtil.ANNOTATION_AS_SERIALISED_CAS + "/";
-    private static final String META_INF = "/" + ImportUtil.META_INF;
-    private static final String SOURCE_FOLDER = "/" + ImportUtil.SOURCE;
-    private static final String TRAIN_FOLDER = "/" + ImportUtil.TRAIN;
+    private static final String ANNOTATION_ORIGINAL_FOLDER = "annotation/";
+    private static final String CONSTRAINTS = ImportUtil.CONSTRAINTS + "/";
+    private static final String LOG_FOLDER = ProjectService.LOG_DIR + "/";
+    private static final String GUIDELINES_FOLDER = ImportUtil.GUIDELINE + "/";
+    private static final String ANNOTATION_CAS_FOLDER = ImportUtil.ANNOTATION_AS_SERIALISED_CAS
+            + "/";
+    private static final String SOURCE_FOLDER = ImportUtil.SOURCE + "/";
+    private static final String TRAIN_FOLDER = ImportUtil.TRAIN + "/";
     private static final String CORRECTION_USER = "CORRECTION_USER";
-    private static final String CURATION_AS_SERIALISED_CAS = "/"
-            + ImportUtil.CURATION_AS_SERIALISED_CAS + "/";
-    private static final String CURATION_FOLDER = "/curation/";
+    private static final String CURATION_AS_SERIALISED_CAS = ImportUtil.CURATION_AS_SERIALISED_CAS
+            + "/";
+    private static final String CURATION_FOLDER = "curation/";
+
+    // Converted documents up to this size are buffered in memory before they are added
+    private static final int CONVERSION_BUFFER_SIZE = 4 * 1024 * 1024;
 
     public ExportUtil()
     {
@@ -90,8 +93,7 @@ public class ExportUtil
 
     public static de.tudarmstadt.ukp.clarin.webanno.export.model.Project exportProjectSettings(
             AnnotationSchemaService annotationService, AutomationService automationService,
-            DocumentService documentService, ProjectService projectService, Project aProject,
-            File aProjectSettings, File aExportTempDir)
+            DocumentService documentService, ProjectService projectService, Project aProject)
     {
         de.tudarmstadt.ukp.clarin.webanno.export.model.Project exProjekt =
                 new de.tudarmstadt.ukp.clarin.webanno.export.model.Project();
@@ -161,6 +163,9 @@ public class ExportUtil
         // add source documents to a project
         List<de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument> documents = documentService
                 .listSourceDocuments(aProject);
+        Map<de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument,
+                List<de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument>>
+                annotationDocumentsByDocument = documentService.listAnnotationDocuments(documents);
         for (de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument sourceDocument : documents) {
 
             SourceDocument exDocument = new SourceDocument();
@@ -174,7 +179,7 @@ public class ExportUtil
 
             // add annotation document to Project
             for (de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument annotationDocument : 
-                    documentService.listAnnotationDocuments(sourceDocument)) {
+                    annotationDocumentsByDocument.get(sourceDocument)) {
                 AnnotationDocument annotationDocumentToExport = new AnnotationDocument();
                 annotationDocumentToExport.setName(annotationDocument.getName());
                 annotationDocumentToExport.setState(annotationDocument.getState());
@@ -266,305 +271,241 @@ public class ExportUtil
     }
 
     /**
-     * Copy source documents from the file system of this project to the export folder
+     * Add the source file of the given document to the export
      */
-    public static void exportSourceDocuments(DocumentService documentService,
-            AutomationService automationService, ProjectExportRequest model, Project aProject,
-            File aCopyDir)
+    public static void exportSourceDocument(DocumentService documentService,
+            ProjectExportRequest aModel,
+            de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument aDocument,
+            ProjectZipWriter aZip)
         throws IOException, ProjectExportException
     {
-        File sourceDocumentDir = new File(aCopyDir + SOURCE_FOLDER);
-        FileUtils.forceMkdir(sourceDocumentDir);
-        // Get all the source documents from the project
-        List<de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument> documents = documentService
-                .listSourceDocuments(aProject);
-        int i = 1;
-        for (de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument sourceDocument : documents) {
-            try {
-                FileUtils.copyFileToDirectory(documentService.getSourceDocumentFile(sourceDocument),
-                        sourceDocumentDir);
-                model.progress = (int) Math.ceil(((double) i) / documents.size() * 10.0);
-                i++;
-                LOG.info("Exported content for source document ["
-                        + sourceDocument.getId() + "] in project [" + aProject.getName()
-                        + "] with id [" + aProject.getId() + "]");
-            }
-            catch (FileNotFoundException e) {
-                // error(e.getMessage());
-                StringBuilder errorMessage = new StringBuilder();
-                errorMessage.append("Source file '");
-                errorMessage.append(sourceDocument.getName());
-                errorMessage.append("' related to project couldn't be located in repository");
-                LOG.error(errorMessage.toString(), ExceptionUtils.getRootCause(e));
-                model.messages.add(errorMessage.toString());
-                throw new ProjectExportException(
-                        "Couldn't find some source file(s) related to project");
-                // continue;
-
-            }
+        Project project = aDocument.getProject();
+        try {
+            aZip.addFile(SOURCE_FOLDER + aDocument.getName(),
+                    documentService.getSourceDocumentFile(aDocument));
+            LOG.info("Exported content for source document [" + aDocument.getId()
+                    + "] in project [" + project.getName() + "] with id [" + project.getId()
+                    + "]");
+        }
+        catch (FileNotFoundException e) {
+            StringBuilder errorMessage = new StringBuilder();
+            errorMessage.append("Source file '");
+            errorMessage.append(aDocument.getName());
+            errorMessage.append("' related to project couldn't be located in repository");
+            LOG.error(errorMessage.toString(), ExceptionUtils.getRootCause(e));
+            aModel.messages.add(errorMessage.toString());
+            throw new ProjectExportException(
+                    "Couldn't find some source file(s) related to project");
         }
     }
+
     /**
      * Export {@link TrainingDocument}
      */
-    
     public static void exportTrainingDocuments(AutomationService automationService,
-            ProjectExportRequest model, Project aProject, File aCopyDir)
+            ProjectExportRequest model, Project aProject, ProjectZipWriter aZip)
         throws IOException, ProjectExportException
     {
-        File trainDocumentDir = new File(aCopyDir + TRAIN_FOLDER);
-        FileUtils.forceMkdir(trainDocumentDir);
         // Get all the training documents from the project
         List<TrainingDocument> documents = automationService
                 .listTrainingDocuments(aProject);
         int i = 1;
         for (TrainingDocument trainingDocument : documents) {
             try {
-                FileUtils.copyFileToDirectory(
-                        automationService.getTrainingDocumentFile(trainingDocument),
-                        trainDocumentDir);
+                aZip.addFile(TRAIN_FOLDER + trainingDocument.getName(),
+                        automationService.getTrainingDocumentFile(trainingDocument));
                 model.progress = (int) Math.ceil(((double) i) / documents.size() * 10.0);
                 i++;
                 LOG.info("Imported content for training document ["
                         + trainingDocument.getId() + "] in project [" + aProject.getName()
                         + "] with id [" + aProject.getId() + "]");
             } catch (FileNotFoundException e) {
-//              error(e.getMessage());
                 StringBuilder errorMessage = new StringBuilder();
                 errorMessage.append("Source file '");
                 errorMessage.append(trainingDocument.getName());
                 errorMessage.append("' related to project couldn't be located in repository");
                 LOG.error(errorMessage.toString(), ExceptionUtils.getRootCause(e));
                 model.messages.add(errorMessage.toString());
-                throw new ProjectExportException("Couldn't find some source file(s) related to project");
-//              continue;
+                throw new ProjectExportException(
+                        "Couldn't find some source file(s) related to project");
             }
         }
     }
 
     /**
-     * Copy annotation document as Serialized CAS from the file system of this project to the
-     * export folder.
+     * Add the annotation documents of the given source document to the export - as serialized
+     * CAS and converted to the export format. The given callback is invoked after each annotation
+     * document.
      */
     public static void exportAnnotationDocuments(DocumentService documentService,
             ImportExportService importExportService, UserDao userRepository,
-            ProjectExportRequest aModel, File aCopyDir)
+            ProjectExportRequest aModel,
+            de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument aDocument,
+            List<de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument> aAnnotationDocuments,
+            ProjectZipWriter aZip, Runnable aProgress)
         throws IOException, UIMAException, ClassNotFoundException
     {
-        Project project = aModel.project.getObject();
-        
-        List<de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument> documents = documentService
-                .listSourceDocuments(project);
-        int i = 1;
-        int initProgress = aModel.progress;
-        for (de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument sourceDocument : documents) {
-            //
-            // Export initial CASes
-            //
-            
-            // The initial CAS must always be exported to ensure that the converted source document
-            // will *always* have the state it had at the time of the initial import. We we do have
-            // a reliably initial CAS and instead lazily convert whenever an annotator starts
-            // annotating, then we could end up with two annotators having two different versions of
-            // their CAS e.g. if there was a code change in the reader component that affects its
-            // output.
-
-            // If the initial CAS does not exist yet, it must be created before export.
-            documentService.createOrReadInitialCas(sourceDocument);
-            
-            File targetDir = new File(aCopyDir.getAbsolutePath() + ANNOTATION_CAS_FOLDER
-                    + sourceDocument.getName());
-            FileUtils.forceMkdir(targetDir);
-            
-            File initialCasFile = documentService.getCasFile(sourceDocument,
-                    INITIAL_CAS_PSEUDO_USER);
-            
-            FileUtils.copyFileToDirectory(initialCasFile, targetDir);
-            
-            LOG.info("Exported annotation document content for user [" + INITIAL_CAS_PSEUDO_USER
-                    + "] for source document [" + sourceDocument.getId() + "] in project ["
-                    + project.getName() + "] with id [" + project.getId() + "]");
-
-            //
-            // Export per-user annotation document
-            // 
-            
-            // Determine which format to use for export
-            String formatId;
-            if (FORMAT_AUTO.equals(aModel.format)) {
-                formatId = sourceDocument.getFormat();
-            }
-            else {
-                formatId = importExportService.getWritableFormatId(aModel.format);
-            }
-            Class<?> writer = importExportService.getWritableFormats().get(formatId);
-            if (writer == null) {
-                String msg = "[" + sourceDocument.getName()
-                        + "] No writer found for format [" + formatId
-                        + "] - exporting as WebAnno TSV instead.";
-                // Avoid repeating the same message over for different users
-                if (!aModel.messages.contains(msg)) {
-                    aModel.messages.add(msg);
-                }
-                writer = WebannoTsv3Writer.class;
+        Project project = aDocument.getProject();
+
+        //
+        // Export initial CASes
+        //
+
+        // The initial CAS must always be exported to ensure that the converted source document
+        // will *always* have the state it had at the time of the initial import. We we do have
+        // a reliably initial CAS and instead lazily convert whenever an annotator starts
+        // annotating, then we could end up with two annotators having two different versions of
+        // their CAS e.g. if there was a code change in the reader component that affects its
+        // output.
+
+        // If the initial CAS does not exist yet, it must be created before export.
+        documentService.createOrReadInitialCas(aDocument);
+
+        String annotationCasDir = ANNOTATION_CAS_FOLDER + aDocument.getName() + "/";
+        File initialCasFile = documentService.getCasFile(aDocument, INITIAL_CAS_PSEUDO_USER);
+        aZip.addCasFile(annotationCasDir + initialCasFile.getName(), initialCasFile);
+
+        LOG.info("Exported annotation document content for user [" + INITIAL_CAS_PSEUDO_USER
+                + "] for source document [" + aDocument.getId() + "] in project ["
+                + project.getName() + "] with id [" + project.getId() + "]");
+
+        //
+        // Export per-user annotation document
+        //
+
+        // Determine which format to use for export
+        String formatId;
+        if (FORMAT_AUTO.equals(aModel.format)) {
+            formatId = aDocument.getFormat();
+        }
+        else {
+            formatId = importExportService.getWritableFormatId(aModel.format);
+        }
+        Class<?> writer = importExportService.getWritableFormats().get(formatId);
+        if (writer == null) {
+            String msg = "[" + aDocument.getName() + "] No writer found for format ["
+                    + formatId + "] - exporting as WebAnno TSV instead.";
+            // Avoid repeating the same message over for different users
+            if (!aModel.messages.contains(msg)) {
+                aModel.messages.add(msg);
             }
+            writer = WebannoTsv3Writer.class;
+        }
 
-            // Export annotations from regular users
-            for (de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument annotationDocument : 
-                    documentService.listAnnotationDocuments(sourceDocument)) {
-                // copy annotation document only for ACTIVE users and the state of the 
-                // annotation document is not NEW/IGNORE
-                if (
-                        userRepository.get(annotationDocument.getUser()) != null && 
-                        !annotationDocument.getState().equals(AnnotationDocumentState.NEW) && 
-                        !annotationDocument.getState().equals(AnnotationDocumentState.IGNORE)
-                ) {
-                    File annotationDocumentAsSerialisedCasDir = new File(
-                            aCopyDir.getAbsolutePath() + ANNOTATION_CAS_FOLDER
-                                    + sourceDocument.getName());
-                    File annotationDocumentDir = new File(aCopyDir.getAbsolutePath()
-                            + ANNOTATION_ORIGINAL_FOLDER + sourceDocument.getName());
-
-                    FileUtils.forceMkdir(annotationDocumentAsSerialisedCasDir);
-                    FileUtils.forceMkdir(annotationDocumentDir);
-
-                    File annotationFileAsSerialisedCas = documentService.getCasFile(
-                            sourceDocument, annotationDocument.getUser());
-
-                    File annotationFile = null;
-                    if (annotationFileAsSerialisedCas.exists() && writer != null) {
-                        annotationFile = importExportService.exportAnnotationDocument(
-                                sourceDocument, annotationDocument.getUser(), writer,
-                                annotationDocument.getUser(), Mode.ANNOTATION, false);
-                    }
-                    
-                    if (annotationFileAsSerialisedCas.exists()) {
-                        FileUtils.copyFileToDirectory(annotationFileAsSerialisedCas,
-                                annotationDocumentAsSerialisedCasDir);
-                        if (writer != null) {
-                            FileUtils.copyFileToDirectory(annotationFile, annotationDocumentDir);
-                            FileUtils.forceDelete(annotationFile);
-                        }
-                    }
-                    
-                    LOG.info("Exported annotation document content for user ["
-                            + annotationDocument.getUser() + "] for source document ["
-                            + sourceDocument.getId() + "] in project [" + project.getName()
-                            + "] with id [" + project.getId() + "]");
+        // Export annotations from regular users
+        String annotationDir = ANNOTATION_ORIGINAL_FOLDER + aDocument.getName() + "/";
+        for (de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument annotationDocument : 
+                aAnnotationDocuments) {
+            // copy annotation document only for ACTIVE users and the state of the 
+            // annotation document is not NEW/IGNORE
+            if (
+                    userRepository.get(annotationDocument.getUser()) != null && 
+                    !annotationDocument.getState().equals(AnnotationDocumentState.NEW) && 
+                    !annotationDocument.getState().equals(AnnotationDocumentState.IGNORE)
+            ) {
+                File annotationFileAsSerialisedCas = documentService.getCasFile(aDocument,
+                        annotationDocument.getUser());
+
+                if (annotationFileAsSerialisedCas.exists()) {
+                    exportConvertedDocument(importExportService, aDocument,
+                            annotationDocument.getUser(), writer, Mode.ANNOTATION, false,
+                            annotationDir, aZip);
+                    aZip.addCasFile(annotationCasDir + annotationFileAsSerialisedCas.getName(),
+                            annotationFileAsSerialisedCas);
                 }
+
+                LOG.info("Exported annotation document content for user ["
+                        + annotationDocument.getUser() + "] for source document ["
+                        + aDocument.getId() + "] in project [" + project.getName()
+                        + "] with id [" + project.getId() + "]");
             }
-            
-            // BEGIN FIXME #1224 CURATION_USER and CORRECTION_USER files should be exported in
-            // annotation_ser
-            // If this project is a correction project, add the auto-annotated CAS to same
-            // folder as CURATION_FOLDER
-            if (WebAnnoConst.PROJECT_TYPE_AUTOMATION.equals(project.getMode())
-                    || WebAnnoConst.PROJECT_TYPE_CORRECTION.equals(project.getMode())) {
-                File correctionCasFile = documentService.getCasFile(sourceDocument,
-                        CORRECTION_USER);
-                if (correctionCasFile.exists()) {
-                    // Copy CAS - this is used when importing the project again
-                    File curationCasDir = new File(aCopyDir + CURATION_AS_SERIALISED_CAS
-                            + sourceDocument.getName());
-                    FileUtils.forceMkdir(curationCasDir);
-                    FileUtils.copyFileToDirectory(correctionCasFile, curationCasDir);
-                    
-                    // Copy secondary export format for convenience - not used during import
-                    File curationDir = new File(
-                            aCopyDir + CURATION_FOLDER + sourceDocument.getName());
-                    FileUtils.forceMkdir(curationDir);
-                    File correctionFile = importExportService.exportAnnotationDocument(
-                            sourceDocument, CORRECTION_USER, writer, CORRECTION_USER,
-                            Mode.CORRECTION);
-                    FileUtils.copyFileToDirectory(correctionFile, curationDir);
-                    FileUtils.forceDelete(correctionFile);
-                }
+            aProgress.run();
+        }
+
+        // BEGIN FIXME #1224 CURATION_USER and CORRECTION_USER files should be exported in
+        // annotation_ser
+        // If this project is a correction project, add the auto-annotated CAS to same
+        // folder as CURATION_FOLDER
+        if (WebAnnoConst.PROJECT_TYPE_AUTOMATION.equals(project.getMode())
+                || WebAnnoConst.PROJECT_TYPE_CORRECTION.equals(project.getMode())) {
+            File correctionCasFile = documentService.getCasFile(aDocument, CORRECTION_USER);
+            if (correctionCasFile.exists()) {
+                // Copy CAS - this is used when importing the project again
+                aZip.addCasFile(CURATION_AS_SERIALISED_CAS + aDocument.getName() + "/"
+                        + correctionCasFile.getName(), correctionCasFile);
+
+                // Copy secondary export format for convenience - not used during import
+                exportConvertedDocument(importExportService, aDocument, CORRECTION_USER, writer,
+                        Mode.CORRECTION, true, CURATION_FOLDER + aDocument.getName() + "/",
+                        aZip);
             }
-            // END FIXME #1224 CURATION_USER and CORRECTION_USER files should be exported in
-            // annotation_ser
-            
-            aModel.progress = initProgress
-                    + (int) Math.ceil(((double) i) / documents.size() * 80.0);
-            i++;
         }
+        // END FIXME #1224 CURATION_USER and CORRECTION_USER files should be exported in
+        // annotation_ser
     }
 
     /**
-     * Copy Project logs from the file system of this project to the export folder
+     * Add Project logs from the file system of this project to the export
      */
     public static void exportProjectLog(ProjectService projectService, Project aProject,
-            File aCopyDir)
+            ProjectZipWriter aZip)
         throws IOException
     {
-        File logDir = new File(aCopyDir + LOG_FOLDER);
-        FileUtils.forceMkdir(logDir);
-        if (projectService.getProjectLogFile(aProject).exists()) {
-            FileUtils.copyFileToDirectory(projectService.getProjectLogFile(aProject), logDir);
+        File logFile = projectService.getProjectLogFile(aProject);
+        if (logFile.exists()) {
+            aZip.addFile(LOG_FOLDER + logFile.getName(), logFile);
         }
     }
 
     /**
-     * Copy Project guidelines from the file system of this project to the export folder
+     * Add Project guidelines from the file system of this project to the export
      */
     public static void exportGuideLine(ProjectService projectService, Project aProject,
-            File aCopyDir)
+            ProjectZipWriter aZip)
         throws IOException
     {
-        File guidelineDir = new File(aCopyDir + GUIDELINES_FOLDER);
-        FileUtils.forceMkdir(guidelineDir);
         File annotationGuidlines = projectService.getGuidelinesFile(aProject);
         if (annotationGuidlines.exists()) {
             for (File annotationGuideline : annotationGuidlines.listFiles()) {
-                FileUtils.copyFileToDirectory(annotationGuideline, guidelineDir);
+                aZip.addFile(GUIDELINES_FOLDER + annotationGuideline.getName(),
+                        annotationGuideline);
             }
         }
     }
 
     /**
-     * Copy Project guidelines from the file system of this project to the export folder
+     * Add the META-INF folder from the file system of this project to the export
      */
     public static void exportProjectMetaInf(ProjectService projectService, Project aProject,
-            File aCopyDir)
+            ProjectZipWriter aZip)
         throws IOException
     {
-        File metaInfDir = new File(aCopyDir + META_INF);
-        FileUtils.forceMkdir(metaInfDir);
         File metaInf = projectService.getMetaInfFolder(aProject);
         if (metaInf.exists()) {
-            FileUtils.copyDirectory(metaInf, metaInfDir);
+            aZip.addFolder(ImportUtil.META_INF, metaInf);
         }
     }
     
     /**
-     * Copy Project Constraints from file system of this project to export folder
+     * Add Project Constraints from file system of this project to the export
      */
     public static void exportProjectConstraints(ConstraintsService constraintsService,
-            Project project, File exportTempDir)
+            Project project, ProjectZipWriter aZip)
         throws IOException
     {
-        File constraintsDir = new File(exportTempDir + CONSTRAINTS);
-        FileUtils.forceMkdir(constraintsDir);
-        String fileName;
         for (ConstraintSet set : constraintsService.listConstraintSets(project)) {
-            fileName = set.getName();
-         /*
-          * Copying with file's original name to save ConstraintSet's name
-          */
-            FileUtils.copyFile(constraintsService.exportConstraintAsFile(set),
-                    new File(constraintsDir, fileName));
+            // Export with the set's name to save ConstraintSet's name
+            aZip.addFile(CONSTRAINTS + set.getName(),
+                    constraintsService.exportConstraintAsFile(set));
         }
-
     }
     
     /**
-     * Copy, if exists, curation documents to a folder that will be exported as Zip file
-     * 
-     * @param aCopyDir
-     *            The folder where curated documents are copied to be exported as Zip File
+     * Add, if exists, curation documents to the export
      */
     public static void exportCuratedDocuments(DocumentService documentService,
-            ImportExportService importExportService, ProjectExportRequest aModel, File aCopyDir,
-            boolean aIncludeInProgress)
+            ImportExportService importExportService, ProjectExportRequest aModel,
+            ProjectZipWriter aZip, boolean aIncludeInProgress)
         throws UIMAException, IOException, ClassNotFoundException,
         ProjectExportException
     {
@@ -574,6 +515,26 @@ public class ExportUtil
         List<de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument> documents = documentService
                 .listSourceDocuments(project);
 
+        Class<?> writer = getCurationWriter(importExportService, aModel);
+        
+        int initProgress = aModel.progress - 1;
+        int i = 1;
+        for (de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument sourceDocument : documents) {
+            exportCuratedDocument(documentService, importExportService, sourceDocument, writer,
+                    aZip, aIncludeInProgress);
+
+            aModel.progress = initProgress
+                    + (int) Math.ceil(((double) i) / documents.size() * 10.0);
+            i++;
+        }
+    }
+
+    /**
+     * @return the writer used to export the curated documents in the format of the request.
+     */
+    public static Class<?> getCurationWriter(ImportExportService importExportService,
+            ProjectExportRequest aModel)
+    {
         // Determine which format to use for export.
         Class<?> writer;
         if (FORMAT_AUTO.equals(aModel.format)) {
@@ -586,50 +547,77 @@ public class ExportUtil
                 writer = WebannoTsv3Writer.class;
             }
         }
-        
-        int initProgress = aModel.progress - 1;
-        int i = 1;
-        for (de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument sourceDocument : documents) {
-            File curationCasDir = new File(aCopyDir + CURATION_AS_SERIALISED_CAS
-                    + sourceDocument.getName());
-            FileUtils.forceMkdir(curationCasDir);
-
-            File curationDir = new File(aCopyDir + CURATION_FOLDER + sourceDocument.getName());
-            FileUtils.forceMkdir(curationDir);
+        return writer;
+    }
 
-            // If depending on aInProgress, include only the the curation documents that are
-            // finished or also the ones that are in progress
-            if (
-                (aIncludeInProgress && 
-                    SourceDocumentState.CURATION_IN_PROGRESS.equals(sourceDocument.getState())) ||
-                SourceDocumentState.CURATION_FINISHED.equals(sourceDocument.getState())
-            ) {
-                File curationCasFile = documentService.getCasFile(sourceDocument,
-                        WebAnnoConst.CURATION_USER);
-                if (curationCasFile.exists()) {
-                    // Copy CAS - this is used when importing the project again
-                    FileUtils.copyFileToDirectory(curationCasFile, curationCasDir);
-
-                    // Copy secondary export format for convenience - not used during import
-                    try {
-                        File curationFile = importExportService.exportAnnotationDocument(
-                                sourceDocument, WebAnnoConst.CURATION_USER, writer,
-                                WebAnnoConst.CURATION_USER, Mode.CURATION);
-                        FileUtils.copyFileToDirectory(curationFile, curationDir);
-                        FileUtils.forceDelete(curationFile);
-                    }
-                    catch (Exception e) {
-                        // error("Unexpected error while exporting project: " +
-                        // ExceptionUtils.getRootCauseMessage(e) );
-                        throw new ProjectExportException(
-                                "Aborting due to unrecoverable error while exporting!");
-                    }
+    /**
+     * Add, if exists, the curation document of the given source document to the export
+     */
+    public static void exportCuratedDocument(DocumentService documentService,
+            ImportExportService importExportService,
+            de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument aDocument, Class<?> aWriter,
+            ProjectZipWriter aZip, boolean aIncludeInProgress)
+        throws IOException, ProjectExportException
+    {
+        // If depending on aInProgress, include only the the curation documents that are
+        // finished or also the ones that are in progress
+        if (
+            (aIncludeInProgress && 
+                SourceDocumentState.CURATION_IN_PROGRESS.equals(aDocument.getState())) ||
+            SourceDocumentState.CURATION_FINISHED.equals(aDocument.getState())
+        ) {
+            File curationCasFile = documentService.getCasFile(aDocument,
+                    WebAnnoConst.CURATION_USER);
+            if (curationCasFile.exists()) {
+                // Copy CAS - this is used when importing the project again
+                aZip.addCasFile(CURATION_AS_SERIALISED_CAS + aDocument.getName() + "/"
+                        + curationCasFile.getName(), curationCasFile);
+
+                // Copy secondary export format for convenience - not used during import
+                try {
+                    exportConvertedDocument(importExportService, aDocument,
+                            WebAnnoConst.CURATION_USER, aWriter, Mode.CURATION, true,
+                            CURATION_FOLDER + aDocument.getName() + "/", aZip);
+                }
+                catch (Exception e) {
+                    throw new ProjectExportException(
+                            "Aborting due to unrecoverable error while exporting!");
                 }
             }
+        }
+    }
 
-            aModel.progress = initProgress
-                    + (int) Math.ceil(((double) i) / documents.size() * 10.0);
-            i++;
+    /**
+     * Converts the CAS of the given user and adds it to the export below the given path. Small
+     * results are buffered in memory, larger ones in a temporary file.
+     */
+    private static void exportConvertedDocument(ImportExportService importExportService,
+            de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument aDocument, String aUser,
+            Class<?> aWriter, Mode aMode, boolean aStripExtension, String aPath,
+            ProjectZipWriter aZip)
+        throws IOException, UIMAException, ClassNotFoundException
+    {
+        DeferredFileOutputStream buffer = new DeferredFileOutputStream(CONVERSION_BUFFER_SIZE,
+                "webanno", "export", null);
+        try {
+            String fileName;
+            try {
+                fileName = importExportService.exportAnnotationDocument(aDocument, aUser,
+                        aWriter, aUser, aMode, aStripExtension, buffer);
+            }
+            finally {
+                buffer.close();
+            }
+
+            if (buffer.isInMemory()) {
+                aZip.addEntry(aPath + fileName, buffer.getData());
+            }
+            else {
+                aZip.addFile(aPath + fileName, buffer.getFile());
+            }
+        }
+        finally {
+            FileUtils.deleteQuietly(buffer.getFile());
         }
     }
 }
@@ -34,7 +34,7 @@ public class ProjectExportRequest
     
     public String format;
     public IModel<Project> project;
-    public int progress = 0;
+    public volatile int progress = 0;
     public final Queue<String> messages;
             
     public ProjectExportRequest(IModel<Project> aProject, String aFormat)
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.export;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the entries of a project export directly into the target ZIP file. Entries may be added
+ * concurrently by several threads - they are written one after the other, so the threads only
+ * wait for each other while copying data into the archive.
+ * <p>
+ * Serialized CAS files can optionally be stored without compression. Their checksum is then
+ * computed before the archive is locked.
+ */
+public class ProjectZipWriter
+    implements Closeable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ProjectZipWriter.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ZipOutputStream zip;
+    private final boolean compressCas;
+    private final Set<String> entries = new HashSet<>();
+
+    /**
+     * @param aCompressCas
+     *            whether serialized CAS files are compressed or stored as they are.
+     */
+    public ProjectZipWriter(File aZipFile, boolean aCompressCas)
+        throws IOException
+    {
+        zip = new ZipOutputStream(
+                new BufferedOutputStream(new FileOutputStream(aZipFile), BUFFER_SIZE));
+        compressCas = aCompressCas;
+    }
+
+    /**
+     * Adds the given file as a compressed entry.
+     */
+    public void addFile(String aEntryName, File aFile)
+        throws IOException
+    {
+        try (InputStream is = new FileInputStream(aFile)) {
+            synchronized (this) {
+                if (putNextEntry(new ZipEntry(aEntryName))) {
+                    IOUtils.copyLarge(is, zip, new byte[BUFFER_SIZE]);
+                    zip.closeEntry();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the given serialized CAS file. Depending on the settings of the writer, it is either
+     * compressed or stored as it is.
+     */
+    public void addCasFile(String aEntryName, File aFile)
+        throws IOException
+    {
+        if (compressCas) {
+            addFile(aEntryName, aFile);
+            return;
+        }
+
+        try (FileInputStream is = new FileInputStream(aFile)) {
+            // Stored entries need their size and checksum up front. Both passes use the same
+            // stream, so the entry stays consistent even if the file is replaced in between.
+            byte[] buffer = new byte[BUFFER_SIZE];
+            CRC32 crc = new CRC32();
+            long size = 0;
+            int n;
+            while ((n = is.read(buffer)) != -1) {
+                crc.update(buffer, 0, n);
+                size += n;
+            }
+            is.getChannel().position(0);
+
+            ZipEntry entry = new ZipEntry(aEntryName);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            entry.setCrc(crc.getValue());
+            synchronized (this) {
+                if (putNextEntry(entry)) {
+                    IOUtils.copyLarge(is, zip, 0, size, buffer);
+                    zip.closeEntry();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds all files in the given folder and its sub-folders below the given path.
+     */
+    public void addFolder(String aPath, File aFolder)
+        throws IOException
+    {
+        File[] files = aFolder.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addFolder(aPath + "/" + file.getName(), file);
+            }
+            else {
+                addFile(aPath + "/" + file.getName(), file);
+            }
+        }
+    }
+
+    /**
+     * Adds an entry with the given content.
+     */
+    public synchronized void addEntry(String aEntryName, byte[] aData)
+        throws IOException
+    {
+        if (putNextEntry(new ZipEntry(aEntryName))) {
+            zip.write(aData);
+            zip.closeEntry();
+        }
+    }
+
+    private boolean putNextEntry(ZipEntry aEntry)
+        throws IOException
+    {
+        // A ZIP file cannot contain duplicate entries - if two files map to the same entry, the
+        // first one is kept
+        if (!entries.add(aEntry.getName())) {
+            LOG.warn("Skipping duplicate entry [{}] in project export", aEntry.getName());
+            return false;
+        }
+
+        zip.putNextEntry(aEntry);
+        return true;
+    }
+
+    @Override
+    public synchronized void close()
+        throws IOException
+    {
+        zip.close();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.export;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProjectZipWriterTest
+{
+    public @Rule TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void thatCasFilesAreStoredUncompressed()
+        throws Exception
+    {
+        byte[] data = "serialized CAS".getBytes(UTF_8);
+        File cas = temp.newFile("doc.ser");
+        FileUtils.writeByteArrayToFile(cas, data);
+        File other = temp.newFile("source.txt");
+        FileUtils.writeStringToFile(other, "text", UTF_8);
+
+        File zipFile = temp.newFile("export.zip");
+        try (ProjectZipWriter zip = new ProjectZipWriter(zipFile, false)) {
+            zip.addCasFile("annotation_ser/doc.ser", cas);
+            zip.addFile("source/source.txt", other);
+        }
+
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            ZipEntry entry = zip.getEntry("annotation_ser/doc.ser");
+            assertEquals(ZipEntry.STORED, entry.getMethod());
+            assertEquals(data.length, entry.getSize());
+            assertEquals(data.length, entry.getCompressedSize());
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            assertEquals(crc.getValue(), entry.getCrc());
+            assertArrayEquals(data, read(zip, entry));
+
+            // Other files are compressed anyway
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("source/source.txt").getMethod());
+        }
+    }
+
+    @Test
+    public void thatCasFilesAreCompressedIfRequested()
+        throws Exception
+    {
+        File cas = temp.newFile("doc.ser");
+        FileUtils.writeStringToFile(cas, "serialized CAS", UTF_8);
+
+        File zipFile = temp.newFile("export.zip");
+        try (ProjectZipWriter zip = new ProjectZipWriter(zipFile, true)) {
+            zip.addCasFile("annotation_ser/doc.ser", cas);
+        }
+
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("annotation_ser/doc.ser").getMethod());
+        }
+    }
+
+    @Test
+    public void thatDuplicateEntriesAreSkipped()
+        throws Exception
+    {
+        File file = temp.newFile("doc.ser");
+        FileUtils.writeStringToFile(file, "second", UTF_8);
+
+        File zipFile = temp.newFile("export.zip");
+        try (ProjectZipWriter zip = new ProjectZipWriter(zipFile, false)) {
+            zip.addEntry("doc.ser", "first".getBytes(UTF_8));
+            zip.addFile("doc.ser", file);
+            zip.addCasFile("doc.ser", file);
+        }
+
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            List<String> names = Collections.list(zip.entries()).stream()
+                    .map(ZipEntry::getName)
+                    .collect(Collectors.toList());
+            assertEquals(Collections.singletonList("doc.ser"), names);
+            assertEquals("first", new String(read(zip, zip.getEntry("doc.ser")), UTF_8));
+        }
+    }
+
+    private static byte[] read(ZipFile aZip, ZipEntry aEntry)
+        throws IOException
+    {
+        try (InputStream is = aZip.getInputStream(aEntry)) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+}
@@ -136,6 +136,10 @@ public class WebannoTsv3Writer
     public void process(JCas aJCas)
         throws AnalysisEngineProcessException
     {
+        // The writer instance may be re-used for several documents, so make sure nothing of the
+        // previous document is carried over
+        reset();
+
         try (OutputStream docOS = getOutputStream(aJCas, filenameSuffix)) {
             setSlotLinkTypes();
             setLinkMaps(aJCas);
@@ -209,6 +213,22 @@ public class WebannoTsv3Writer
         }
     }
 
+    private void reset()
+    {
+        units.clear();
+        subUnits.clear();
+        featurePerLayer.clear();
+        unitsLineNumber.clear();
+        sentenceUnits.clear();
+        annotationsPerPostion.clear();
+        slotFeatureTypes.clear();
+        annotaionRefPerType.clear();
+        ambigUnits.clear();
+        multiAnnosPerUnit.clear();
+        slotLinkTypes.clear();
+        layerMaps.clear();
+    }
+
     private void setSlotLinkTypes()
     {
         int i = 0;
@@ -24,6 +24,7 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.PrePersist;
@@ -42,7 +43,11 @@ import org.hibernate.annotations.Type;
  */
 @Entity
 @Table(name = "annotation_document", uniqueConstraints = { @UniqueConstraint(columnNames = {
-        "name", "project", "user" }) })
+        "name", "project", "user" }) }, indexes = {
+        @Index(name = "idx_annotation_document_document_user", columnList = "document,user"),
+        @Index(name = "idx_annotation_document_project_user", columnList = "project,user"),
+        @Index(name = "idx_annotation_document_project_state", columnList = "project,state"),
+        @Index(name = "idx_annotation_document_document_state", columnList = "document,state") })
 public class AnnotationDocument
     implements Serializable
 {
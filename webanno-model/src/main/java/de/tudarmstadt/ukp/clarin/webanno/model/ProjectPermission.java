@@ -22,6 +22,7 @@ import java.io.Serializable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -36,7 +37,8 @@ import org.hibernate.annotations.Type;
  */
 @Entity
 @Table(name = "project_permissions", uniqueConstraints = { @UniqueConstraint(columnNames = {
-        "user", "level", "project" }) })
+        "user", "level", "project" }) }, indexes = {
+        @Index(name = "idx_project_permissions_project_level", columnList = "project,level") })
 public class ProjectPermission
     implements Serializable
 {
@@ -25,6 +25,7 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.PrePersist;
@@ -42,7 +43,9 @@ import org.hibernate.annotations.Type;
  */
 @Entity
 @Table(name = "source_document", uniqueConstraints = { @UniqueConstraint(columnNames = { "name",
-        "project" }) })
+        "project" }) }, indexes = {
+        @Index(name = "idx_source_document_project_format", columnList = "project,format"),
+        @Index(name = "idx_source_document_project_state", columnList = "project,state") })
 public class SourceDocument
     implements Serializable
 {
@@ -33,12 +33,16 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -62,12 +66,15 @@ import org.springframework.context.annotation.ClassPathScanningCandidateComponen
 import org.springframework.core.type.filter.AnnotationTypeFilter;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
 import de.tudarmstadt.ukp.clarin.webanno.api.ProjectType;
 import de.tudarmstadt.ukp.clarin.webanno.api.SecurityUtil;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterProjectCreatedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeProjectRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.ProjectPermissionsChangedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState;
 import de.tudarmstadt.ukp.clarin.webanno.model.Mode;
 import de.tudarmstadt.ukp.clarin.webanno.model.PermissionLevel;
@@ -102,6 +109,12 @@ public class ProjectServiceImpl
     private boolean running = false;
 
     private List<ProjectType> projectTypes;
+
+    /**
+     * Permission levels per project ID for each user. Loaded with a single query on first access.
+     */
+    private final Map<String, Map<Long, Set<PermissionLevel>>> permissionIndex =
+            new ConcurrentHashMap<>();
     
     public ProjectServiceImpl()
     {
@@ -144,6 +157,11 @@ public class ProjectServiceImpl
                     aPermission.getLevel(), aPermission.getUser(),
                     aPermission.getProject().getName(), aPermission.getProject().getId());
         }
+        
+        invalidatePermissions(aPermission.getUser());
+
+        applicationEventPublisher.publishEvent(new ProjectPermissionsChangedEvent(this,
+                aPermission.getProject(), aPermission.getUser()));
     }
 
     @Override
@@ -277,15 +295,95 @@ public class ProjectServiceImpl
     @Transactional(noRollbackFor = NoResultException.class)
     public List<PermissionLevel> getProjectPermissionLevels(User aUser, Project aProject)
     {
-        try {
-            String query = "SELECT level FROM ProjectPermission WHERE user =:user AND " + "project =:project";
-            return entityManager.createQuery(query, PermissionLevel.class)
-                    .setParameter("user", aUser.getUsername())
-                    .setParameter("project", aProject).getResultList();
-        }
-        catch (NoResultException e) {
+        Set<PermissionLevel> levels = getPermissionIndex(aUser).get(aProject.getId());
+        if (levels == null) {
             return Collections.emptyList();
         }
+        return new ArrayList<>(levels);
+    }
+    
+    @Override
+    @Transactional
+    public List<Project> listProjectsWithPermission(User aUser, PermissionLevel... aLevels)
+    {
+        Set<Long> projectIds = new HashSet<>();
+        for (Entry<Long, Set<PermissionLevel>> e : getPermissionIndex(aUser).entrySet()) {
+            for (PermissionLevel level : aLevels) {
+                if (e.getValue().contains(level)) {
+                    projectIds.add(e.getKey());
+                    break;
+                }
+            }
+        }
+        
+        if (projectIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        return entityManager
+                .createQuery("FROM Project WHERE id IN (:ids) ORDER BY name ASC", Project.class)
+                .setParameter("ids", projectIds).getResultList();
+    }
+    
+    @Override
+    @Transactional
+    public boolean hasPermissionInAnyProject(User aUser, PermissionLevel... aLevels)
+    {
+        for (Set<PermissionLevel> levels : getPermissionIndex(aUser).values()) {
+            for (PermissionLevel level : aLevels) {
+                if (levels.contains(level)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private Map<Long, Set<PermissionLevel>> getPermissionIndex(User aUser)
+    {
+        return permissionIndex.computeIfAbsent(aUser.getUsername(), this::loadPermissionIndex);
+    }
+    
+    private Map<Long, Set<PermissionLevel>> loadPermissionIndex(String aUsername)
+    {
+        List<Object[]> rows = entityManager
+                .createQuery("SELECT project.id, level FROM ProjectPermission WHERE user = :user",
+                        Object[].class)
+                .setParameter("user", aUsername).getResultList();
+        
+        Map<Long, Set<PermissionLevel>> index = new HashMap<>();
+        for (Object[] row : rows) {
+            index.computeIfAbsent((Long) row[0], k -> EnumSet.noneOf(PermissionLevel.class))
+                    .add((PermissionLevel) row[1]);
+        }
+        
+        // Sets are not modified after loading, so they can be shared between threads
+        for (Entry<Long, Set<PermissionLevel>> e : index.entrySet()) {
+            e.setValue(Collections.unmodifiableSet(e.getValue()));
+        }
+        return Collections.unmodifiableMap(index);
+    }
+    
+    /**
+     * Drop the cached permissions of the given user. If a transaction is active, the cache is
+     * dropped again after the commit so that permissions loaded by other threads in the meantime
+     * do not survive.
+     */
+    private void invalidatePermissions(String aUsername)
+    {
+        permissionIndex.remove(aUsername);
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager
+                    .registerSynchronization(new TransactionSynchronizationAdapter()
+                    {
+                        @Override
+                        public void afterCompletion(int aStatus)
+                        {
+                            permissionIndex.remove(aUsername);
+                        }
+                    });
+        }
     }
     
     @Override
@@ -481,6 +579,7 @@ public class ProjectServiceImpl
 
         for (ProjectPermission permissions : getProjectPermissions(aProject)) {
             entityManager.remove(permissions);
+            invalidatePermissions(permissions.getUser());
         }
                 
         entityManager.remove(project);
@@ -529,6 +628,11 @@ public class ProjectServiceImpl
                     aPermission.getLevel(), aPermission.getUser(),
                     aPermission.getProject().getName(), aPermission.getProject().getId());
         }
+        
+        invalidatePermissions(aPermission.getUser());
+
+        applicationEventPublisher.publishEvent(new ProjectPermissionsChangedEvent(this,
+                aPermission.getProject(), aPermission.getUser()));
     }
 
     @Override
@@ -596,21 +700,13 @@ public class ProjectServiceImpl
     @Override
     public List<Project> listAccessibleProjects(User user)
     {
-        List<Project> allowedProject = new ArrayList<>();
-        List<Project> allProjects = listProjects();
-
         // if global admin, show all projects
         if (SecurityUtil.isSuperAdmin(this, user)) {
-            return allProjects;
+            return listProjects();
         }
         
         // else only projects she is admin of
-        for (Project project : allProjects) {
-            if (SecurityUtil.isProjectAdmin(project, this, user)) {
-                allowedProject.add(project);
-            }
-        }
-        return allowedProject;
+        return listProjectsWithPermission(user, PermissionLevel.ADMIN);
     }
     
     @Override
@@ -109,6 +109,7 @@ import de.tudarmstadt.ukp.clarin.webanno.support.ZipUtils;
 import de.tudarmstadt.ukp.clarin.webanno.tsv.WebannoTsv3Writer;
 import de.tudarmstadt.ukp.clarin.webanno.webapp.remoteapi.v2.exception.AccessForbiddenException;
 import de.tudarmstadt.ukp.clarin.webanno.webapp.remoteapi.v2.exception.IllegalObjectStateException;
+import de.tudarmstadt.ukp.clarin.webanno.webapp.remoteapi.v2.exception.IllegalParameterException;
 import de.tudarmstadt.ukp.clarin.webanno.webapp.remoteapi.v2.exception.IncompatibleDocumentException;
 import de.tudarmstadt.ukp.clarin.webanno.webapp.remoteapi.v2.exception.ObjectExistsException;
 import de.tudarmstadt.ukp.clarin.webanno.webapp.remoteapi.v2.exception.ObjectNotFoundException;
@@ -146,6 +147,8 @@ public class RemoteApiController2
     private static final String PARAM_PROJECT_ID = "projectId";
     private static final String PARAM_ANNOTATOR_ID = "userId";
     private static final String PARAM_DOCUMENT_ID = "documentId";
+    private static final String PARAM_AFTER = "after";
+    private static final String PARAM_LIMIT = "limit";
     
     private static final String VAL_ORIGINAL = "ORIGINAL";
     
@@ -459,13 +462,33 @@ public class RemoteApiController2
             method = RequestMethod.GET, 
             produces = APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<RResponse<List<RDocument>>> documentList(
-            @PathVariable(PARAM_PROJECT_ID) long aProjectId)
+            @PathVariable(PARAM_PROJECT_ID) long aProjectId,
+            @RequestParam(value = PARAM_NAME) Optional<String> aName,
+            @RequestParam(value = PARAM_STATE) Optional<String> aState,
+            @RequestParam(value = PARAM_AFTER) Optional<String> aAfter,
+            @RequestParam(value = PARAM_LIMIT) Optional<Integer> aLimit)
         throws Exception
     {               
+        if (aLimit.isPresent() && aLimit.get() < 0) {
+            throw new IllegalParameterException("Parameter [%s] must not be negative but was [%d]",
+                    PARAM_LIMIT, aLimit.get());
+        }
+        
         // Get project (this also ensures that it exists and that the current user can access it
         Project project = getProject(aProjectId);
         
-        List<SourceDocument> documents = documentService.listSourceDocuments(project);
+        List<SourceDocument> documents;
+        if (aName.isPresent() || aState.isPresent() || aAfter.isPresent() || aLimit.isPresent()) {
+            // Page through the documents by name - pass the name of the last document of a
+            // response as "after" to obtain the next page
+            SourceDocumentState state = aState.isPresent()
+                    ? parseSourceDocumentState(aState.get()) : null;
+            documents = documentService.listSourceDocumentsAfter(project, aName.orElse(null),
+                    state, aAfter.orElse(null), aLimit.orElse(Integer.MAX_VALUE));
+        }
+        else {
+            documents = documentService.listSourceDocuments(project);
+        }
         
         List<RDocument> documentList = new ArrayList<>();
         for (SourceDocument document : documents) { 
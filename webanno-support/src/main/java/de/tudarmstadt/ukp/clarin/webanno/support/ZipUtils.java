@@ -24,6 +24,7 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -80,18 +81,33 @@ public class ZipUtils
     public static void zipFolder(File srcFolder, File destZipFile)
         throws IOException
     {
-        ZipOutputStream zip = null;
+        OutputStream os = null;
         try {
-            zip = new ZipOutputStream(new FileOutputStream(destZipFile));
-
-            for (File file : srcFolder.getAbsoluteFile().listFiles()) {
-                addToZip(zip, srcFolder.getAbsoluteFile(), file);
-            }
-            zip.flush();
+            os = new FileOutputStream(destZipFile);
+            zipFolder(srcFolder, os);
         }
         finally {
-            closeQuietly(zip);
+            closeQuietly(os);
+        }
+    }
+
+    /**
+     * Writes the contents of the given folder as a ZIP file to the given stream. The stream is not
+     * closed.
+     * 
+     * @param srcFolder source folder.
+     * @param aOutputStream target stream.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static void zipFolder(File srcFolder, OutputStream aOutputStream)
+        throws IOException
+    {
+        ZipOutputStream zip = new ZipOutputStream(aOutputStream);
+        for (File file : srcFolder.getAbsoluteFile().listFiles()) {
+            addToZip(zip, srcFolder.getAbsoluteFile(), file);
         }
+        zip.finish();
+        zip.flush();
     }
 
     private static void addToZip(ZipOutputStream zip, File aBasePath, File aPath)
@@ -19,6 +19,7 @@ package de.tudarmstadt.ukp.clarin.webanno.ui.annotation;
 
 import java.io.IOException;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -27,6 +28,7 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.BeanWrapper;
 import org.springframework.beans.BeanWrapperImpl;
@@ -116,8 +118,8 @@ public class PreferencesUtil
             }
 
             // set layers according to preferences
-            List<AnnotationLayer> layers = aAnnotationService
-                    .listAnnotationLayer(aBModel.getProject());
+            List<AnnotationLayer> layers = copyLayers(aAnnotationService
+                    .listAnnotationLayer(aBModel.getProject()));
             if (preference.getAnnotationLayers() != null)
                 layers.forEach(layer -> layer.setEnabled(
                         preference.getAnnotationLayers().contains(layer.getId())));
@@ -140,8 +142,8 @@ public class PreferencesUtil
         // no preference found
         catch (Exception e) {
             // If no layer preferences are defined, then just assume all layers are enabled
-            List<AnnotationLayer> layers = aAnnotationService.listAnnotationLayer(aBModel
-                    .getProject());
+            List<AnnotationLayer> layers = copyLayers(aAnnotationService
+                    .listAnnotationLayer(aBModel.getProject()));
             aBModel.setAnnotationLayers(layers);
             preference.setWindowSize(aSettingsService.getNumberOfSentences());
             // add default coloring strategy
@@ -157,6 +159,16 @@ public class PreferencesUtil
         aBModel.setPreferences(preference);
     }
 
+    /**
+     * The enabled flag of the layers in the annotator state is a per-user setting, so it must not
+     * be set on the managed entities which are shared within the persistence context and would be
+     * written back to the database.
+     */
+    private static List<AnnotationLayer> copyLayers(List<AnnotationLayer> aLayers)
+    {
+        return SerializationUtils.clone(new ArrayList<>(aLayers));
+    }
+
     public static void savePreference(AnnotatorState aBModel, ProjectService aRepository)
         throws IOException
     {
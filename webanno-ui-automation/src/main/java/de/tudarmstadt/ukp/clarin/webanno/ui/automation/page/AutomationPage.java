@@ -66,6 +66,7 @@ import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.AnnotatorState;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.AnnotatorStateImpl;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
 import de.tudarmstadt.ukp.clarin.webanno.automation.service.AutomationService;
+import de.tudarmstadt.ukp.clarin.webanno.automation.service.RepeatAnnotationService;
 import de.tudarmstadt.ukp.clarin.webanno.brat.annotation.BratAnnotationEditor;
 import de.tudarmstadt.ukp.clarin.webanno.constraints.ConstraintsService;
 import de.tudarmstadt.ukp.clarin.webanno.curation.storage.CurationDocumentService;
@@ -73,6 +74,7 @@ import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Mode;
+import de.tudarmstadt.ukp.clarin.webanno.model.PermissionLevel;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState;
@@ -134,6 +136,7 @@ public class AutomationPage
     private @SpringBean CurationDocumentService curationDocumentService;
     private @SpringBean CorrectionDocumentService correctionDocumentService;
     private @SpringBean AutomationService automationService;
+    private @SpringBean RepeatAnnotationService repeatAnnotationService;
 
     private NumberTextField<Integer> gotoPageTextField;
     private DocumentNamePanel documentNamePanel;
@@ -371,9 +374,9 @@ public class AutomationPage
         return LambdaModel.of(() -> {
             User user = userRepository.getCurrentUser();
             List<DecoratedObject<Project>> allowedProject = new ArrayList<>();
-            for (Project project : projectService.listProjects()) {
-                if (SecurityUtil.isAnnotator(project, projectService, user)
-                        && WebAnnoConst.PROJECT_TYPE_AUTOMATION.equals(project.getMode())) {
+            for (Project project : projectService.listProjectsWithPermission(user,
+                    PermissionLevel.USER)) {
+                if (WebAnnoConst.PROJECT_TYPE_AUTOMATION.equals(project.getMode())) {
                     allowedProject.add(DecoratedObject.of(project));
                 }
             }
@@ -459,15 +462,17 @@ public class AutomationPage
 
                             if (layer.getType().endsWith(WebAnnoConst.RELATION_TYPE)) {
                                 AutomationUtil.repeateRelationAnnotation(state, documentService,
-                                        correctionDocumentService, annotationService, fs, f,
+                                        correctionDocumentService, annotationService,
+                                        repeatAnnotationService, fs, f,
                                         fs.getFeatureValueAsString(feat));
                                 update(aTarget);
                                 break;
                             }
                             else if (layer.getType().endsWith(WebAnnoConst.SPAN_TYPE)) {
                                 AutomationUtil.repeateSpanAnnotation(state, documentService,
-                                        correctionDocumentService, annotationService, fs.getBegin(),
-                                        fs.getEnd(), f, fs.getFeatureValueAsString(feat));
+                                        correctionDocumentService, annotationService,
+                                        repeatAnnotationService, fs.getBegin(), fs.getEnd(), f,
+                                        fs.getFeatureValueAsString(feat));
                                 update(aTarget);
                                 break;
                             }
@@ -503,13 +508,15 @@ public class AutomationPage
                         Feature feat = type.getFeatureByBaseName(f.getName());
                         if (layer.getType().endsWith(WebAnnoConst.RELATION_TYPE)) {
                             AutomationUtil.deleteRelationAnnotation(state, documentService,
-                                    correctionDocumentService, annotationService, aFS, f,
+                                    correctionDocumentService, annotationService,
+                                    repeatAnnotationService, aFS, f,
                                     aFS.getFeatureValueAsString(feat));
                         }
                         else {
                             AutomationUtil.deleteSpanAnnotation(state, documentService,
-                                    correctionDocumentService, annotationService, aFS.getBegin(),
-                                    aFS.getEnd(), f, aFS.getFeatureValueAsString(feat));
+                                    correctionDocumentService, annotationService,
+                                    repeatAnnotationService, aFS.getBegin(), aFS.getEnd(), f,
+                                    aFS.getFeatureValueAsString(feat));
                         }
                         update(aTarget);
                     }
@@ -740,6 +747,9 @@ public class AutomationPage
             // (Re)initialize brat model after potential creating / upgrading CAS
             state.reset();
 
+            // Make sure the token index is ready before the first annotation is repeated
+            repeatAnnotationService.prepareIndex(state.getProject());
+
             // Load constraints
             state.setConstraints(constraintsService.loadConstraints(state.getProject()));
 
@@ -17,20 +17,17 @@
  */
 package de.tudarmstadt.ukp.clarin.webanno.ui.automation.project;
 
-import java.io.IOException;
 import java.io.Serializable;
-import java.sql.Timestamp;
+import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
-import org.apache.commons.lang3.exception.ExceptionUtils;
-import org.apache.uima.UIMAException;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.extensions.ajax.markup.html.IndicatingAjaxButton;
 import org.apache.wicket.extensions.markup.html.tabs.AbstractTab;
 import org.apache.wicket.extensions.markup.html.tabs.ITab;
 import org.apache.wicket.feedback.IFeedback;
+import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.Button;
 import org.apache.wicket.markup.html.form.CheckBox;
 import org.apache.wicket.markup.html.form.ChoiceRenderer;
@@ -44,26 +41,27 @@ import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.model.StringResourceModel;
 import org.apache.wicket.spring.injection.annot.SpringBean;
+import org.wicketstuff.progressbar.ProgressBar;
+import org.wicketstuff.progressbar.Progression;
+import org.wicketstuff.progressbar.ProgressionModel;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
-import de.tudarmstadt.ukp.clarin.webanno.api.CorrectionDocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
-import de.tudarmstadt.ukp.clarin.webanno.api.annotation.exception.AnnotationException;
-import de.tudarmstadt.ukp.clarin.webanno.automation.model.AutomationStatus;
 import de.tudarmstadt.ukp.clarin.webanno.automation.model.MiraTemplate;
 import de.tudarmstadt.ukp.clarin.webanno.automation.service.AutomationService;
-import de.tudarmstadt.ukp.clarin.webanno.curation.storage.CurationDocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState;
-import de.tudarmstadt.ukp.clarin.webanno.model.Status;
 import de.tudarmstadt.ukp.clarin.webanno.model.TrainingDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
 import de.tudarmstadt.ukp.clarin.webanno.support.EntityModel;
 import de.tudarmstadt.ukp.clarin.webanno.support.bootstrap.BootstrapAjaxTabbedPanel;
-import de.tudarmstadt.ukp.clarin.webanno.ui.automation.util.AutomationUtil;
+import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxLink;
+import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaModel;
+import de.tudarmstadt.ukp.clarin.webanno.ui.automation.service.AutomationJob;
+import de.tudarmstadt.ukp.clarin.webanno.ui.automation.service.AutomationJobService;
 import de.tudarmstadt.ukp.clarin.webanno.ui.automation.util.TabSepDocModel;
 import de.tudarmstadt.ukp.clarin.webanno.ui.core.settings.ProjectSettingsPanel;
 import de.tudarmstadt.ukp.clarin.webanno.ui.core.settings.ProjectSettingsPanelBase;
@@ -83,9 +81,8 @@ public class ProjectMiraTemplatePanel
     private @SpringBean AnnotationSchemaService annotationService;
     private @SpringBean AutomationService automationService;
     private @SpringBean DocumentService documentService;
-    private @SpringBean CurationDocumentService curationDocumentService;
-    private @SpringBean CorrectionDocumentService correctionDocumentService;
     private @SpringBean UserDao userRepository;
+    private @SpringBean AutomationJobService automationJobService;
 
     private MiraTrainLayerSelectionForm miraTrainLayerSelectionForm;
     private MiraTemplateDetailForm miraTemplateDetailForm;
@@ -616,187 +613,170 @@ public class ProjectMiraTemplatePanel
     {
         private static final long serialVersionUID = -683824912741426241L;
 
+        private ProgressBar progress;
+
         public ApplyForm(String id)
         {
             super(id);
 
-            add(new IndicatingAjaxButton("apply", new StringResourceModel("label"))
+            setOutputMarkupId(true);
+
+            add(new Label("status", LambdaModel.of(this::getJobStatus)));
+
+            add(progress = new ProgressBar("progress", new ProgressionModel()
             {
+                private static final long serialVersionUID = 1L;
 
+                @Override
+                protected Progression getProgression()
+                {
+                    AutomationJob job = getAutomationJob();
+                    return new Progression(job != null ? job.getProgress() : 100);
+                }
+            })
+            {
                 private static final long serialVersionUID = 1L;
 
                 @Override
-                protected void onSubmit(AjaxRequestTarget aTarget, Form<?> form)
+                protected void onFinished(AjaxRequestTarget aTarget)
                 {
-                    MiraTemplate template = miraTemplateDetailForm.getModelObject();
-                    if (!template.getTrainFeature().getLayer().getType()
-                            .equals(WebAnnoConst.SPAN_TYPE)) {
+                    AutomationJob job = getAutomationJob();
+                    if (job != null && AutomationJob.State.FAILED.equals(job.getState())) {
+                        error("Automation failed: " + job.getMessage());
                         aTarget.addChildren(getPage(), IFeedback.class);
-                        error("Relation automation is not supported yet, but you can use the copy annotator.");
-                        // No support yet for relation automation
-                        return;
                     }
-                    AutomationStatus automationStatus = new AutomationStatus();
-                    try {
-                        Project project = ProjectMiraTemplatePanel.this.getModelObject();
-                        
-                        // no training document is added / no curation is done yet!
-                        boolean existsTrainDocument = false;
-                        for (TrainingDocument document : automationService
-                                .listTrainingDocuments(project)) {
-                            if (document.getState().equals(SourceDocumentState.CURATION_FINISHED)
-                                    || template.getTrainFeature().equals(document.getFeature())) {
-                                existsTrainDocument = true;
-                                break;
-                            }
-                        }
-                        if (automationService.listTabSepDocuments(project).size() > 0) {
-                            existsTrainDocument = true;
-                        }
-
-                        if (!existsTrainDocument) {
-                            error("No training document exists to proceed.");
-                            aTarget.appendJavaScript("alert('No training document exists to proceed.')");
-                            return;
-                        }
-                        if (!template.isCurrentLayer()) {
-                            error("Please save automation layer details to proceed.");
-                            aTarget.appendJavaScript("alert('Please save automation layer details to proceed.')");
-                            return;
-                        }
-
-                        // no need to re-train if no new document is added
-                        boolean existUnprocessedDocument = false;
-                        for (SourceDocument document : documentService
-                                .listSourceDocuments(project)) {
-                            if (document.getState().equals(SourceDocumentState.CURATION_FINISHED)) {
-                                existUnprocessedDocument = true;
-                                break;
-                            }
-                        }
-                        for (TrainingDocument document : automationService
-                                .listTrainingDocuments(project)) {
-                            if (!document.isProcessed()) {
-                                existUnprocessedDocument = true;
-                                break;
-                            }
-                        }
-                        if (!existUnprocessedDocument) {
-                            error("No new training/annotation document added.");
-                            aTarget.appendJavaScript("alert('No new training/annotation document added.')");
-                            return;
-                        }
+                    else if (job != null
+                            && AutomationJob.State.PARTIAL.equals(job.getState())) {
+                        warn("Automation completed with errors: " + job.getMessage());
+                        aTarget.addChildren(getPage(), IFeedback.class);
+                    }
+                    aTarget.add(ApplyForm.this);
+                    aTarget.add(targetLayerDetailForm);
+                }
+            });
 
-                        int annodoc = 0, trainDoc = 0;
+            add(new LambdaAjaxLink("cancel", this::actionCancel).onConfigure(_this -> {
+                AutomationJob job = getAutomationJob();
+                _this.setVisible(job != null && !job.getState().isFinished());
+            }));
 
-                        for (SourceDocument document : documentService
-                                .listSourceDocuments(project)) {
-                            if (document.getState().equals(SourceDocumentState.CURATION_FINISHED)) {
-                                trainDoc++;
-                            }
-                            else {
-                                annodoc++;
-                            }
-                        }
+            add(new IndicatingAjaxButton("apply", new StringResourceModel("label"))
+            {
 
-                        trainDoc = trainDoc
-                                + automationService.listTrainingDocuments(project).size();
-
-                        automationStatus = automationService.existsAutomationStatus(template) ?
-                                automationService.getAutomationStatus(template) : automationStatus;
-                        automationStatus.setStartime(new Timestamp(new Date().getTime()));
-                        automationStatus.setEndTime(new Timestamp(new Date().getTime()));
-                        automationStatus.setTrainDocs(trainDoc);
-                        automationStatus.setAnnoDocs(annodoc);
-                        automationStatus.setTotalDocs(annodoc + trainDoc);
-                        automationStatus.setTemplate(template);
-
-                        automationService.createAutomationStatus(automationStatus);
-
-                        template.setAutomationStarted(true);
-
-                        automationStatus.setStatus(Status.GENERATE_TRAIN_DOC);
-                        template.setResult("---");
-
-                        AutomationUtil.addOtherFeatureTrainDocument(template, 
-                                annotationService, automationService, userRepository);
-                        AutomationUtil.otherFeatureClassifiers(template, documentService,
-                                automationService);
-
-                        AutomationUtil.addTabSepTrainDocument(template,
-                                automationService);
-                        AutomationUtil.tabSepClassifiers(template, automationService);
-
-                        AutomationUtil.generateTrainDocument(template, documentService,
-                                curationDocumentService, annotationService, automationService,
-                                userRepository, true);
-                        AutomationUtil.generatePredictDocument(template, documentService,
-                                correctionDocumentService, annotationService, automationService,
-                                userRepository);
-
-                        automationStatus.setStatus(Status.GENERATE_CLASSIFIER);
-                        miraTemplateDetailForm.getModelObject().setResult(
-                                AutomationUtil.generateFinalClassifier(template, documentService,
-                                        curationDocumentService, annotationService,
-                                        automationService, userRepository));
-                        AutomationUtil.addOtherFeatureToPredictDocument(template, documentService,
-                                annotationService, automationService, userRepository);
-
-                        automationStatus.setStatus(Status.PREDICTION);
-                        AutomationUtil.predict(template, documentService, correctionDocumentService,
-                                automationService, userRepository);
-
-                        template.setAutomationStarted(false);
-                        automationStatus.setStatus(Status.COMPLETED);
-                        automationStatus.setEndTime(new Timestamp(new Date().getTime()));
-                        automationService.createTemplate(template);
-                        automationService.createAutomationStatus(automationStatus);
+                private static final long serialVersionUID = 1L;
 
-                    }
-                    catch (UIMAException e) {
-                        template.setAutomationStarted(false);
-                        automationStatus.setStatus(Status.INTERRUPTED);
-                        automationStatus.setEndTime(new Timestamp(new Date().getTime()));
-                        automationService.createTemplate(template);
-                        automationService.createAutomationStatus(automationStatus);
-                        aTarget.appendJavaScript("alert('" + ExceptionUtils.getRootCause(e) + "')");
-                    }
-                    catch (ClassNotFoundException | IOException e) {
-                        template.setAutomationStarted(false);
-                        automationStatus.setStatus(Status.INTERRUPTED);
-                        automationStatus.setEndTime(new Timestamp(new Date().getTime()));
-                        automationService.createTemplate(template);
-                        automationService.createAutomationStatus(automationStatus);
-                        aTarget.appendJavaScript("alert('" + e.getMessage() + "')");
-                    }
-                    catch (AnnotationException e) {
-                        aTarget.appendJavaScript("alert('" + e.getMessage() + "')");
-                    }
-                    // any other exception such as Memmory heap
-                    catch (Exception e) {
-                        template.setAutomationStarted(false);
-                        automationStatus.setStatus(Status.INTERRUPTED);
-                        automationStatus.setEndTime(new Timestamp(new Date().getTime()));
-                        automationService.createTemplate(template);
-                        automationService.createAutomationStatus(automationStatus);
-                        aTarget.appendJavaScript("alert('" + e.getMessage() + "')");
-                    }
-                    finally {
-                        automationStatus.setStatus(Status.COMPLETED);
-                        automationStatus.setEndTime(new Timestamp(new Date().getTime()));
-                        template.setAutomationStarted(false);
-                        automationService.createTemplate(template);
-                    }
+                @Override
+                protected void onSubmit(AjaxRequestTarget aTarget, Form<?> form)
+                {
+                    actionApply(aTarget);
                 }
 
                 @Override
                 public boolean isEnabled()
                 {
+                    AutomationJob job = getAutomationJob();
                     return miraTemplateDetailForm != null
-                            && !miraTemplateDetailForm.getModelObject().isAutomationStarted();
+                            && (job == null || job.getState().isFinished());
                 }
             });
         }
+
+        private void actionApply(AjaxRequestTarget aTarget)
+        {
+            MiraTemplate template = miraTemplateDetailForm.getModelObject();
+            if (!template.getTrainFeature().getLayer().getType()
+                    .equals(WebAnnoConst.SPAN_TYPE)) {
+                aTarget.addChildren(getPage(), IFeedback.class);
+                error("Relation automation is not supported yet, but you can use the copy annotator.");
+                // No support yet for relation automation
+                return;
+            }
+
+            Project project = ProjectMiraTemplatePanel.this.getModelObject();
+
+            // no training document is added / no curation is done yet!
+            boolean existsTrainDocument = false;
+            for (TrainingDocument document : automationService.listTrainingDocuments(project)) {
+                if (document.getState().equals(SourceDocumentState.CURATION_FINISHED)
+                        || template.getTrainFeature().equals(document.getFeature())) {
+                    existsTrainDocument = true;
+                    break;
+                }
+            }
+            if (automationService.listTabSepDocuments(project).size() > 0) {
+                existsTrainDocument = true;
+            }
+
+            if (!existsTrainDocument) {
+                error("No training document exists to proceed.");
+                aTarget.appendJavaScript("alert('No training document exists to proceed.')");
+                return;
+            }
+            if (!template.isCurrentLayer()) {
+                error("Please save automation layer details to proceed.");
+                aTarget.appendJavaScript("alert('Please save automation layer details to proceed.')");
+                return;
+            }
+
+            // no need to re-train if no new document is added
+            boolean existUnprocessedDocument = false;
+            for (SourceDocument document : documentService.listSourceDocuments(project)) {
+                if (document.getState().equals(SourceDocumentState.CURATION_FINISHED)) {
+                    existUnprocessedDocument = true;
+                    break;
+                }
+            }
+            for (TrainingDocument document : automationService.listTrainingDocuments(project)) {
+                if (!document.isProcessed()) {
+                    existUnprocessedDocument = true;
+                    break;
+                }
+            }
+            if (!existUnprocessedDocument) {
+                error("No new training/annotation document added.");
+                aTarget.appendJavaScript("alert('No new training/annotation document added.')");
+                return;
+            }
+
+            // Training and prediction can take very long, so they run in the background and the
+            // progress bar polls the state of the job.
+            AutomationJob job = automationJobService.submit(template,
+                    userRepository.getCurrentUser().getUsername());
+            if (AutomationJob.State.FAILED.equals(job.getState())) {
+                error(job.getMessage());
+                aTarget.addChildren(getPage(), IFeedback.class);
+            }
+            else {
+                progress.start(aTarget);
+            }
+            aTarget.add(this);
+        }
+
+        private void actionCancel(AjaxRequestTarget aTarget)
+        {
+            automationJobService.cancel(miraTemplateDetailForm.getModelObject());
+            aTarget.add(this);
+        }
+
+        private AutomationJob getAutomationJob()
+        {
+            if (miraTemplateDetailForm == null
+                    || miraTemplateDetailForm.getModelObject().getId() == 0) {
+                return null;
+            }
+            return automationJobService.getJob(miraTemplateDetailForm.getModelObject());
+        }
+
+        private String getJobStatus()
+        {
+            AutomationJob job = getAutomationJob();
+            if (job == null) {
+                return null;
+            }
+
+            return MessageFormat.format(getString("status." + job.getState().name()),
+                    job.getOwner(), job.getPhase(), job.getFinished(), job.getMessage());
+        }
     }
 
     public class SelectionModel
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.automation.service;
+
+import java.util.Date;
+import java.util.concurrent.Future;
+
+import org.springframework.security.core.Authentication;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Status;
+
+/**
+ * The training and prediction for an automation template running in the background. The job is
+ * owned by the {@link AutomationJobService}; UI components should look it up again when needed.
+ * The detailed progress is kept in the {@code AutomationStatus} of the template.
+ */
+public class AutomationJob
+{
+    public enum State {
+        QUEUED, RUNNING, DONE, PARTIAL, FAILED, CANCELLED;
+
+        public boolean isFinished()
+        {
+            return this == DONE || this == PARTIAL || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    /**
+     * Number of steps of the automation, see {@link AutomationJobServiceImpl}.
+     */
+    static final int STEPS = 6;
+
+    private final long templateId;
+    private final long featureId;
+    private final long projectId;
+    private final String owner;
+    private final Authentication authentication;
+    private final Date created = new Date();
+
+    private volatile int done;
+    private volatile State state = State.QUEUED;
+    private volatile Status phase = Status.NOT_STARTED;
+    private volatile boolean cancelled;
+    private volatile boolean rerunRequested;
+    private volatile Date finished;
+    private volatile String message;
+
+    private Future<?> future;
+
+    AutomationJob(long aTemplateId, long aFeatureId, long aProjectId, String aOwner,
+            Authentication aAuthentication)
+    {
+        templateId = aTemplateId;
+        featureId = aFeatureId;
+        projectId = aProjectId;
+        owner = aOwner;
+        authentication = aAuthentication;
+    }
+
+    public long getTemplateId()
+    {
+        return templateId;
+    }
+
+    public long getFeatureId()
+    {
+        return featureId;
+    }
+
+    public long getProjectId()
+    {
+        return projectId;
+    }
+
+    /**
+     * @return the user who started the job.
+     */
+    public String getOwner()
+    {
+        return owner;
+    }
+
+    /**
+     * @return the authentication of the owner. The job runs on behalf of this user.
+     */
+    Authentication getAuthentication()
+    {
+        return authentication;
+    }
+
+    public Date getCreated()
+    {
+        return created;
+    }
+
+    public Date getFinished()
+    {
+        return finished;
+    }
+
+    public State getState()
+    {
+        return state;
+    }
+
+    /**
+     * @return the step of the automation the job is currently in.
+     */
+    public Status getPhase()
+    {
+        return phase;
+    }
+
+    public String getMessage()
+    {
+        return message;
+    }
+
+    /**
+     * @return the progress in percent.
+     */
+    public int getProgress()
+    {
+        if (state.isFinished()) {
+            return 100;
+        }
+        return Math.min(99, (done * 100) / STEPS);
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * @return whether the automation has been started again while the job was running.
+     */
+    public boolean isRerunRequested()
+    {
+        return rerunRequested;
+    }
+
+    void requestRerun()
+    {
+        rerunRequested = true;
+    }
+
+    void setFuture(Future<?> aFuture)
+    {
+        future = aFuture;
+    }
+
+    void step()
+    {
+        done++;
+    }
+
+    void setPhase(Status aPhase)
+    {
+        phase = aPhase;
+    }
+
+    void running()
+    {
+        state = State.RUNNING;
+    }
+
+    void done()
+    {
+        finish(State.DONE, null);
+    }
+
+    /**
+     * The job completed, but not all documents could be processed.
+     */
+    void partial(String aMessage)
+    {
+        finish(State.PARTIAL, aMessage);
+    }
+
+    void failed(String aMessage)
+    {
+        finish(State.FAILED, aMessage);
+    }
+
+    void cancelled()
+    {
+        finish(State.CANCELLED, null);
+    }
+
+    private void finish(State aState, String aMessage)
+    {
+        message = aMessage;
+        finished = new Date();
+        state = aState;
+    }
+
+    void cancel()
+    {
+        cancelled = true;
+        rerunRequested = false;
+        if (future != null) {
+            future.cancel(true);
+        }
+        if (state == State.QUEUED) {
+            cancelled();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "AutomationJob [template=" + templateId + ", owner=" + owner + ", state=" + state
+                + ", phase=" + phase + ", progress=" + getProgress() + "%]";
+    }
+}
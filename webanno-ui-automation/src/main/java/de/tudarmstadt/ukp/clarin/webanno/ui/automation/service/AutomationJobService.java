@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.automation.service;
+
+import de.tudarmstadt.ukp.clarin.webanno.automation.model.MiraTemplate;
+
+/**
+ * Runs the training of the automation classifiers and the prediction of annotations in the
+ * background on a bounded pool of workers. There is at most one job per {@link MiraTemplate};
+ * starting the automation again while a job for the template is waiting to be run does not queue
+ * another one.
+ */
+public interface AutomationJobService
+{
+    String SERVICE_NAME = "automationJobService";
+
+    /**
+     * Start training and prediction for the given template. If a job for the template is still
+     * waiting, that job is returned. If a job is already running, it is run once more after it
+     * completes so that documents added in the mean time are taken into account.
+     *
+     * @param aTemplate
+     *            the automation template.
+     * @param aUsername
+     *            the user starting the job.
+     * @return the job.
+     */
+    AutomationJob submit(MiraTemplate aTemplate, String aUsername);
+
+    /**
+     * @return the most recent job for the given template or {@code null} if there is none.
+     */
+    AutomationJob getJob(MiraTemplate aTemplate);
+
+    /**
+     * Cancel the job for the given template if it is still queued or running.
+     */
+    void cancel(MiraTemplate aTemplate);
+}
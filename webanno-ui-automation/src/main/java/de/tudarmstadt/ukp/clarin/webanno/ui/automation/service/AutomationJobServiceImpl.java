@@ -0,0 +1,356 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.automation.service;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.CorrectionDocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.automation.model.AutomationStatus;
+import de.tudarmstadt.ukp.clarin.webanno.automation.model.MiraTemplate;
+import de.tudarmstadt.ukp.clarin.webanno.automation.service.AutomationService;
+import de.tudarmstadt.ukp.clarin.webanno.curation.storage.CurationDocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState;
+import de.tudarmstadt.ukp.clarin.webanno.model.Status;
+import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
+import de.tudarmstadt.ukp.clarin.webanno.support.logging.Logging;
+import de.tudarmstadt.ukp.clarin.webanno.ui.automation.util.AutomationUtil;
+import de.tudarmstadt.ukp.clarin.webanno.ui.automation.util.TrainingCasCache;
+
+@Component(AutomationJobService.SERVICE_NAME)
+public class AutomationJobServiceImpl
+    implements AutomationJobService, SmartLifecycle
+{
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private @Resource DocumentService documentService;
+    private @Resource CurationDocumentService curationDocumentService;
+    private @Resource CorrectionDocumentService correctionDocumentService;
+    private @Resource AnnotationSchemaService annotationService;
+    private @Resource AutomationService automationService;
+    private @Resource UserDao userRepository;
+
+    @Value(value = "${automation.jobs.threads:1}")
+    private int threads;
+
+    @Value(value = "${automation.jobs.queue:16}")
+    private int queueSize;
+
+    @Value(value = "${automation.prediction.threads:0}")
+    private int predictionThreads;
+
+    @Value(value = "${automation.prediction.buffer:50}")
+    private int predictionBuffer;
+
+    @Value(value = "${automation.training.cache:16}")
+    private int trainingCache;
+
+    @Value(value = "${automation.training.warmstart:false}")
+    private boolean warmStart;
+
+    @Value(value = "${automation.debug.files:false}")
+    private boolean debugFiles;
+
+    // template ID -> most recent job for the template
+    private final Map<Long, AutomationJob> jobs = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    private boolean running = false;
+
+    @Override
+    public synchronized AutomationJob submit(MiraTemplate aTemplate, String aUsername)
+    {
+        AutomationJob job = jobs.get(aTemplate.getId());
+        if (job != null && !job.getState().isFinished()) {
+            if (job.getState() == AutomationJob.State.RUNNING && !job.isCancelled()) {
+                job.requestRerun();
+                log.info("Automation will be run again after {}", job);
+            }
+            return job;
+        }
+
+        return enqueue(new AutomationJob(aTemplate.getId(), aTemplate.getTrainFeature().getId(),
+                aTemplate.getTrainFeature().getProject().getId(), aUsername,
+                SecurityContextHolder.getContext().getAuthentication()));
+    }
+
+    private AutomationJob enqueue(AutomationJob aJob)
+    {
+        jobs.put(aJob.getTemplateId(), aJob);
+        try {
+            aJob.setFuture(executor.submit(() -> run(aJob)));
+            log.info("Queued automation {}", aJob);
+        }
+        catch (RejectedExecutionException e) {
+            aJob.failed("Too many automation jobs are pending. Please try again later.");
+        }
+        return aJob;
+    }
+
+    @Override
+    public AutomationJob getJob(MiraTemplate aTemplate)
+    {
+        return jobs.get(aTemplate.getId());
+    }
+
+    @Override
+    public synchronized void cancel(MiraTemplate aTemplate)
+    {
+        AutomationJob job = jobs.get(aTemplate.getId());
+        if (job != null && !job.getState().isFinished()) {
+            job.cancel();
+            log.info("Cancelled automation {}", job);
+        }
+    }
+
+    private void run(AutomationJob aJob)
+    {
+        Logging.setMDC(aJob.getProjectId(), aJob.getOwner());
+        // The automation looks up the current user, so run on behalf of the user who started it
+        SecurityContextHolder.getContext().setAuthentication(aJob.getAuthentication());
+        MiraTemplate template = null;
+        try {
+            if (aJob.isCancelled()) {
+                aJob.cancelled();
+                return;
+            }
+            aJob.running();
+
+            template = automationService
+                    .getMiraTemplate(annotationService.getFeature(aJob.getFeatureId()));
+            startStatus(template);
+            int failed = automate(aJob, template);
+
+            finishStatus(template, Status.COMPLETED);
+            if (failed > 0) {
+                aJob.partial("prediction failed for " + failed + " documents");
+                log.warn("Completed automation {} - prediction failed for {} documents", aJob,
+                        failed);
+            }
+            else {
+                aJob.done();
+                log.info("Completed automation {}", aJob);
+            }
+        }
+        catch (CancellationException e) {
+            finishStatus(template, Status.INTERRUPTED);
+            aJob.cancelled();
+            log.info("Automation cancelled {}", aJob);
+        }
+        catch (Throwable e) {
+            // Catching throwable here since running out of memory is a typical failure
+            log.error("Automation failed {}", aJob, e);
+            finishStatus(template, Status.INTERRUPTED);
+            aJob.failed(ExceptionUtils.getRootCauseMessage(e));
+        }
+        finally {
+            SecurityContextHolder.clearContext();
+            Logging.clearMDC();
+            rerunIfRequested(aJob);
+        }
+    }
+
+    private synchronized void rerunIfRequested(AutomationJob aJob)
+    {
+        if (aJob.isRerunRequested() && !aJob.isCancelled() && running
+                && jobs.get(aJob.getTemplateId()) == aJob) {
+            enqueue(new AutomationJob(aJob.getTemplateId(), aJob.getFeatureId(),
+                    aJob.getProjectId(), aJob.getOwner(), aJob.getAuthentication()));
+        }
+    }
+
+    /**
+     * @return the number of documents for which the prediction failed.
+     */
+    private int automate(AutomationJob aJob, MiraTemplate aTemplate)
+        throws Exception
+    {
+        // The training steps share the training CASes, so each one is only read once per run
+        TrainingCasCache trainingCases = new TrainingCasCache(automationService, trainingCache);
+        try {
+            setPhase(aJob, aTemplate, Status.GENERATE_TRAIN_DOC);
+            AutomationUtil.addOtherFeatureTrainDocument(aTemplate, annotationService,
+                    automationService, userRepository, trainingCases);
+            step(aJob);
+            AutomationUtil.otherFeatureClassifiers(aTemplate, documentService, automationService,
+                    warmStart);
+            step(aJob);
+            AutomationUtil.addTabSepTrainDocument(aTemplate, automationService);
+            AutomationUtil.tabSepClassifiers(aTemplate, automationService);
+            step(aJob);
+            AutomationUtil.generateTrainDocument(aTemplate, documentService,
+                    curationDocumentService, annotationService, automationService,
+                    userRepository, trainingCases, true);
+            step(aJob);
+
+            setPhase(aJob, aTemplate, Status.GENERATE_CLASSIFIER);
+            aTemplate.setResult(AutomationUtil.generateFinalClassifier(aTemplate,
+                    documentService, curationDocumentService, annotationService,
+                    automationService, userRepository, trainingCases, warmStart));
+            automationService.createTemplate(aTemplate);
+            step(aJob);
+        }
+        finally {
+            trainingCases.clear();
+        }
+
+        setPhase(aJob, aTemplate, Status.PREDICTION);
+        int failed = AutomationUtil.predict(aTemplate, documentService,
+                correctionDocumentService, annotationService, automationService, userRepository,
+                predictionThreads, predictionBuffer, debugFiles);
+        step(aJob);
+        return failed;
+    }
+
+    private void step(AutomationJob aJob)
+    {
+        if (aJob.isCancelled() || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+        aJob.step();
+    }
+
+    private void startStatus(MiraTemplate aTemplate)
+    {
+        Project project = aTemplate.getTrainFeature().getProject();
+
+        int annoDocs = 0;
+        int trainDocs = 0;
+        for (SourceDocument document : documentService.listSourceDocuments(project)) {
+            if (document.getState().equals(SourceDocumentState.CURATION_FINISHED)) {
+                trainDocs++;
+            }
+            else {
+                annoDocs++;
+            }
+        }
+        trainDocs += automationService.listTrainingDocuments(project).size();
+
+        AutomationStatus status = automationService.existsAutomationStatus(aTemplate)
+                ? automationService.getAutomationStatus(aTemplate) : new AutomationStatus();
+        Date now = new Date();
+        status.setStartime(now);
+        status.setEndTime(now);
+        status.setTrainDocs(trainDocs);
+        status.setAnnoDocs(annoDocs);
+        status.setTotalDocs(annoDocs + trainDocs);
+        status.setTemplate(aTemplate);
+        status.setStatus(Status.NOT_STARTED);
+        automationService.createAutomationStatus(status);
+
+        aTemplate.setAutomationStarted(true);
+        aTemplate.setResult("---");
+        automationService.createTemplate(aTemplate);
+    }
+
+    /**
+     * The document counters of the status are updated by the individual steps, so the status is
+     * read again before changing the phase.
+     */
+    private void setPhase(AutomationJob aJob, MiraTemplate aTemplate, Status aPhase)
+    {
+        AutomationStatus status = automationService.getAutomationStatus(aTemplate);
+        status.setStatus(aPhase);
+        automationService.createAutomationStatus(status);
+        aJob.setPhase(aPhase);
+    }
+
+    private void finishStatus(MiraTemplate aTemplate, Status aPhase)
+    {
+        if (aTemplate == null) {
+            return;
+        }
+
+        try {
+            AutomationStatus status = automationService.getAutomationStatus(aTemplate);
+            status.setStatus(aPhase);
+            status.setEndTime(new Date());
+            automationService.createAutomationStatus(status);
+
+            aTemplate.setAutomationStarted(false);
+            automationService.createTemplate(aTemplate);
+        }
+        catch (Exception e) {
+            log.error("Unable to update automation status of template [{}]", aTemplate.getId(), e);
+        }
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    @Override
+    public void start()
+    {
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueSize));
+        running = true;
+    }
+
+    @Override
+    public void stop()
+    {
+        running = false;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        jobs.clear();
+    }
+
+    @Override
+    public int getPhase()
+    {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean isAutoStartup()
+    {
+        return true;
+    }
+
+    @Override
+    public void stop(Runnable aCallback)
+    {
+        stop();
+        aCallback.run();
+    }
+}
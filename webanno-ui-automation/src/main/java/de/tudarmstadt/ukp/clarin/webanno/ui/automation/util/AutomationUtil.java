@@ -18,27 +18,43 @@
 package de.tudarmstadt.ukp.clarin.webanno.ui.automation.util;
 
 import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getAddr;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.uima.fit.util.CasUtil.getType;
 import static org.apache.uima.fit.util.CasUtil.select;
 import static org.apache.uima.fit.util.CasUtil.selectCovered;
 import static org.apache.uima.fit.util.JCasUtil.select;
-import static org.apache.uima.fit.util.JCasUtil.selectCovered;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.persistence.NoResultException;
 
@@ -57,6 +73,7 @@ import org.apache.uima.jcas.JCas;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
 import de.tudarmstadt.ukp.clarin.webanno.api.CorrectionDocumentService;
@@ -72,9 +89,13 @@ import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
 import de.tudarmstadt.ukp.clarin.webanno.automation.model.AutomationStatus;
 import de.tudarmstadt.ukp.clarin.webanno.automation.model.MiraTemplate;
 import de.tudarmstadt.ukp.clarin.webanno.automation.service.AutomationService;
+import de.tudarmstadt.ukp.clarin.webanno.automation.service.RepeatAnnotationService;
+import de.tudarmstadt.ukp.clarin.webanno.automation.service.TextOccurrence;
 import de.tudarmstadt.ukp.clarin.webanno.curation.storage.CurationDocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState;
 import de.tudarmstadt.ukp.clarin.webanno.model.TrainingDocument;
@@ -91,94 +112,65 @@ public class AutomationUtil
 {
 
     private static Logger LOG = LoggerFactory.getLogger(AutomationUtil.class);
-    private static final String NILL = "__nill__";
+    static final String NILL = "__nill__";
+    /**
+     * Seconds to wait for the update of the document open in the editor when repeating or
+     * deleting annotations.
+     */
+    private static final int CURRENT_DOCUMENT_TIMEOUT = 30;
 
     public static void repeateSpanAnnotation(AnnotatorState aBModel,
             DocumentService aDocumentService, CorrectionDocumentService aCorrectionDocumentService,
-            AnnotationSchemaService aAnnotationService, int aStart, int aEnd,
-            AnnotationFeature aFeature, String aValue)
+            AnnotationSchemaService aAnnotationService, RepeatAnnotationService aRepeatService,
+            int aStart, int aEnd, AnnotationFeature aFeature, String aValue)
         throws UIMAException, ClassNotFoundException, IOException, AnnotationException
     {
         AnnotationDocument annoDoc = aDocumentService.getAnnotationDocument(aBModel.getDocument(),
                 aBModel.getUser());
         JCas annoCas = aDocumentService.readAnnotationCas(annoDoc);
 
-        // get selected text, concatenations of tokens
-        String selectedText = WebAnnoCasUtil.getSelectedText(annoCas, aStart, aEnd);
+        // look up the selected token sequence in the token index of the project
+        Map<Long, List<TextOccurrence>> occurrences = aRepeatService.findOccurrences(
+                aBModel.getProject(), getSelectedTokens(annoCas, aStart, aEnd));
         SpanAdapter adapter = (SpanAdapter) aAnnotationService.getAdapter(aFeature.getLayer());
-        for (SourceDocument d : aDocumentService.listSourceDocuments(aBModel.getProject())) {
-            loadDocument(d, aDocumentService, aCorrectionDocumentService, aBModel.getUser());
-            JCas jCas = aCorrectionDocumentService.readCorrectionCas(d);
-
-            for (Sentence sentence : select(jCas, Sentence.class)) {
-                String sentenceText = sentence.getCoveredText().toLowerCase();
-                for (int i = -1; (i = sentenceText.indexOf(selectedText.toLowerCase(),
-                        i)) != -1; i = i + selectedText.length()) {
-                    if (selectCovered(jCas, Token.class, sentence.getBegin() + i,
-                            sentence.getBegin() + i + selectedText.length()).size() > 0) {
-                        int addr = adapter.add(jCas, sentence.getBegin() + i,
-                                sentence.getBegin() + i + selectedText.length() - 1);
+        propagate(aBModel, aDocumentService, aCorrectionDocumentService, aRepeatService,
+                occurrences.keySet(), "Repeating span annotation", (d, jCas) -> {
+                    for (TextOccurrence o : occurrences.get(d.getId())) {
+                        int addr = adapter.add(jCas, o.getBegin(), o.getEnd());
                         adapter.setFeatureValue(aFeature, jCas, addr, aValue);
                     }
-                }
-            }
-            aCorrectionDocumentService.writeCorrectionCas(jCas, d);
-        }
+                });
     }
 
     public static void repeateRelationAnnotation(AnnotatorState aBModel,
             DocumentService aDocumentService, CorrectionDocumentService aCorrectionDocumentService,
-            AnnotationSchemaService aAnnotationService, AnnotationFS fs, AnnotationFeature aFeature,
-            String aValue)
+            AnnotationSchemaService aAnnotationService, RepeatAnnotationService aRepeatService,
+            AnnotationFS fs, AnnotationFeature aFeature, String aValue)
         throws UIMAException, ClassNotFoundException, IOException, AnnotationException
     {
-        for (SourceDocument d : aDocumentService.listSourceDocuments(aBModel.getProject())) {
-            loadDocument(d, aDocumentService, aCorrectionDocumentService, aBModel.getUser());
-            JCas jCas = aCorrectionDocumentService.readCorrectionCas(d);
-
-            ArcAdapter adapter = (ArcAdapter) aAnnotationService.getAdapter(aFeature.getLayer());
-            String sourceFName = adapter.getSourceFeatureName();
-            String targetFName = adapter.getTargetFeatureName();
-
-            Type type = getType(jCas.getCas(), aFeature.getLayer().getName());
-            Type spanType = getType(jCas.getCas(), adapter.getAttachTypeName());
-            Feature arcSpanFeature = spanType.getFeatureByBaseName(adapter.getAttachFeatureName());
-
-            Feature dependentFeature = type.getFeatureByBaseName(targetFName);
-            Feature governorFeature = type.getFeatureByBaseName(sourceFName);
-
-            AnnotationFS dependentFs = null;
-            AnnotationFS governorFs = null;
-    
-            if (adapter.getAttachFeatureName() != null) {
-                dependentFs = (AnnotationFS) fs.getFeatureValue(dependentFeature)
-                        .getFeatureValue(arcSpanFeature);
-                governorFs = (AnnotationFS) fs.getFeatureValue(governorFeature)
-                        .getFeatureValue(arcSpanFeature);
-
-            }
-            else {
-                dependentFs = (AnnotationFS) fs.getFeatureValue(dependentFeature);
-                governorFs = (AnnotationFS) fs.getFeatureValue(governorFeature);
-            }
-
-            if (adapter.isCrossMultipleSentence()) {
-                List<AnnotationFS> mSpanAnnos = new ArrayList<>(
-                        getAllAnnoFss(jCas, governorFs.getType()));
-                repeatRelation(0, jCas.getDocumentText().length() - 1, aFeature, aValue, jCas,
-                        adapter, dependentFs, governorFs, mSpanAnnos);
-            }
-            else {
-                for (Sentence sent : select(jCas, Sentence.class)) {
-                    List<AnnotationFS> spanAnnos = selectCovered(governorFs.getType(), sent);
-                    repeatRelation(sent.getBegin(), sent.getEnd(), aFeature, aValue, jCas, adapter,
-                            dependentFs, governorFs, spanAnnos);
-                }
-
-            }
-
-            aCorrectionDocumentService.writeCorrectionCas(jCas, d);
-        }
+        ArcAdapter adapter = (ArcAdapter) aAnnotationService.getAdapter(aFeature.getLayer());
+        AnnotationFS governorFs = getArcEndpoint(adapter, fs, adapter.getSourceFeatureName());
+        AnnotationFS dependentFs = getArcEndpoint(adapter, fs, adapter.getTargetFeatureName());
+
+        Set<Long> documentIds = findDocumentsContainingBoth(aBModel.getProject(), aRepeatService,
+                governorFs, dependentFs);
+        propagate(aBModel, aDocumentService, aCorrectionDocumentService, aRepeatService,
+                documentIds, "Repeating relation annotation", (d, jCas) -> {
+                    if (adapter.isCrossMultipleSentence()) {
+                        List<AnnotationFS> mSpanAnnos = new ArrayList<>(
+                                getAllAnnoFss(jCas, governorFs.getType()));
+                        repeatRelation(0, jCas.getDocumentText().length() - 1, aFeature, aValue,
+                                jCas, adapter, dependentFs, governorFs, mSpanAnnos);
+                    }
+                    else {
+                        for (Sentence sent : select(jCas, Sentence.class)) {
+                            List<AnnotationFS> spanAnnos = selectCovered(governorFs.getType(),
+                                    sent);
+                            repeatRelation(sent.getBegin(), sent.getEnd(), aFeature, aValue,
+                                    jCas, adapter, dependentFs, governorFs, spanAnnos);
+                        }
+                    }
+                });
     }
 
     private static void repeatRelation(int aStart, int aEnd, AnnotationFeature aFeature,
@@ -290,91 +282,256 @@ public class AutomationUtil
 
     public static void deleteSpanAnnotation(AnnotatorState aBModel,
             DocumentService aDocumentService, CorrectionDocumentService aCorrectionDocumentService,
-            AnnotationSchemaService aAnnotationService, int aStart, int aEnd,
-            AnnotationFeature aFeature, String aValue)
+            AnnotationSchemaService aAnnotationService, RepeatAnnotationService aRepeatService,
+            int aStart, int aEnd, AnnotationFeature aFeature, String aValue)
         throws UIMAException, ClassNotFoundException, IOException, AnnotationException
     {
         AnnotationDocument annoDoc = aDocumentService.getAnnotationDocument(aBModel.getDocument(),
                 aBModel.getUser());
         JCas annoCas = aDocumentService.readAnnotationCas(annoDoc);
-        // get selected text, concatenations of tokens
-        String selectedText = WebAnnoCasUtil.getSelectedText(annoCas, aStart, aEnd);
-
-        for (SourceDocument d : aDocumentService.listSourceDocuments(aBModel.getProject())) {
-            loadDocument(d, aDocumentService, aCorrectionDocumentService, aBModel.getUser());
-            JCas jCas = aCorrectionDocumentService.readCorrectionCas(d);
-
-            AutomationTypeAdapter adapter = (AutomationTypeAdapter) aAnnotationService
-                    .getAdapter(aFeature.getLayer());
 
-            for (Sentence sentence : select(jCas, Sentence.class)) {
-                String sentenceText = sentence.getCoveredText().toLowerCase();
-                for (int i = -1; (i = sentenceText.indexOf(selectedText.toLowerCase(),
-                        i)) != -1; i = i + selectedText.length()) {
-                    if (selectCovered(jCas, Token.class, sentence.getBegin() + i,
-                            sentence.getBegin() + i + selectedText.length()).size() > 0) {
-
-                        adapter.delete(jCas, aFeature, sentence.getBegin() + i,
-                                sentence.getBegin() + i + selectedText.length() - 1, aValue);
+        // look up the selected token sequence in the token index of the project
+        Map<Long, List<TextOccurrence>> occurrences = aRepeatService.findOccurrences(
+                aBModel.getProject(), getSelectedTokens(annoCas, aStart, aEnd));
+        AutomationTypeAdapter adapter = (AutomationTypeAdapter) aAnnotationService
+                .getAdapter(aFeature.getLayer());
+        propagate(aBModel, aDocumentService, aCorrectionDocumentService, aRepeatService,
+                occurrences.keySet(), "Deleting span annotation", (d, jCas) -> {
+                    for (TextOccurrence o : occurrences.get(d.getId())) {
+                        adapter.delete(jCas, aFeature, o.getBegin(), o.getEnd(), aValue);
                     }
-                }
-            }
-            aCorrectionDocumentService.writeCorrectionCas(jCas,d);
-        }
+                });
     }
 
     public static void deleteRelationAnnotation(AnnotatorState aBModel,
             DocumentService aDocumentService, CorrectionDocumentService aCorrectionDocumentService,
-            AnnotationSchemaService aAnnotationService, AnnotationFS fs, AnnotationFeature aFeature,
-            String aValue)
+            AnnotationSchemaService aAnnotationService, RepeatAnnotationService aRepeatService,
+            AnnotationFS fs, AnnotationFeature aFeature, String aValue)
         throws UIMAException, ClassNotFoundException, IOException, AnnotationException
     {
-        for (SourceDocument d : aDocumentService.listSourceDocuments(aBModel.getProject())) {
-            loadDocument(d, aDocumentService, aCorrectionDocumentService, aBModel.getUser());
-            JCas jCas = aCorrectionDocumentService.readCorrectionCas(d);
-            ArcAdapter adapter = (ArcAdapter) aAnnotationService.getAdapter(aFeature.getLayer());
-            String sourceFName = adapter.getSourceFeatureName();
-            String targetFName = adapter.getTargetFeatureName();
+        ArcAdapter adapter = (ArcAdapter) aAnnotationService.getAdapter(aFeature.getLayer());
+        AnnotationFS governorFs = getArcEndpoint(adapter, fs, adapter.getSourceFeatureName());
+        AnnotationFS dependentFs = getArcEndpoint(adapter, fs, adapter.getTargetFeatureName());
+        String depCoveredText = dependentFs.getCoveredText();
+        String govCoveredText = governorFs.getCoveredText();
+
+        Set<Long> documentIds = findDocumentsContainingBoth(aBModel.getProject(), aRepeatService,
+                governorFs, dependentFs);
+        propagate(aBModel, aDocumentService, aCorrectionDocumentService, aRepeatService,
+                documentIds, "Deleting relation annotation", (d, jCas) -> {
+                    int beginOffset = 0;
+                    int endOffset = jCas.getDocumentText().length() - 1;
+                    adapter.delete(jCas, aFeature, beginOffset, endOffset, depCoveredText,
+                            govCoveredText, aValue);
+                });
+    }
 
-            Type type = getType(jCas.getCas(), aFeature.getLayer().getName());
-            Type spanType = getType(jCas.getCas(), adapter.getAttachTypeName());
-            Feature arcSpanFeature = spanType.getFeatureByBaseName(adapter.getAttachFeatureName());
+    /**
+     * Resolves the span at one end of a relation, following the attach feature if the relation
+     * layer is attached to the feature of another layer.
+     */
+    private static AnnotationFS getArcEndpoint(ArcAdapter aAdapter, AnnotationFS aArc,
+            String aFeatureName)
+    {
+        Feature feature = aArc.getType().getFeatureByBaseName(aFeatureName);
+        AnnotationFS endpoint = (AnnotationFS) aArc.getFeatureValue(feature);
+        if (aAdapter.getAttachFeatureName() != null) {
+            Feature attachFeature = endpoint.getType()
+                    .getFeatureByBaseName(aAdapter.getAttachFeatureName());
+            endpoint = (AnnotationFS) endpoint.getFeatureValue(attachFeature);
+        }
+        return endpoint;
+    }
 
-            Feature dependentFeature = type.getFeatureByBaseName(targetFName);
-            Feature governorFeature = type.getFeatureByBaseName(sourceFName);
+    private static List<String> getSelectedTokens(JCas aJCas, int aBegin, int aEnd)
+    {
+        List<String> tokens = new ArrayList<>();
+        for (Token token : WebAnnoCasUtil.selectOverlapping(aJCas, Token.class, aBegin, aEnd)) {
+            tokens.add(token.getCoveredText());
+        }
+        return tokens;
+    }
 
-            AnnotationFS dependentFs = null;
-            AnnotationFS governorFs = null;
+    /**
+     * Relations can only be repeated in documents which contain the texts of both the governor
+     * and the dependent.
+     */
+    private static Set<Long> findDocumentsContainingBoth(Project aProject,
+            RepeatAnnotationService aRepeatService, AnnotationFS aGovernor,
+            AnnotationFS aDependent)
+        throws IOException
+    {
+        Set<Long> documentIds = new HashSet<>(aRepeatService.findOccurrences(aProject,
+                getSelectedTokens(aGovernor.getCAS(), aGovernor)).keySet());
+        documentIds.retainAll(aRepeatService.findOccurrences(aProject,
+                getSelectedTokens(aDependent.getCAS(), aDependent)).keySet());
+        return documentIds;
+    }
 
-            if (adapter.getAttachFeatureName() != null) {
-                dependentFs = (AnnotationFS) fs.getFeatureValue(dependentFeature)
-                        .getFeatureValue(arcSpanFeature);
-                governorFs = (AnnotationFS) fs.getFeatureValue(governorFeature)
-                        .getFeatureValue(arcSpanFeature);
+    private static List<String> getSelectedTokens(CAS aCas, AnnotationFS aFs)
+    {
+        List<String> tokens = new ArrayList<>();
+        for (AnnotationFS token : selectCovered(aCas, getType(aCas, Token.class), aFs)) {
+            tokens.add(token.getCoveredText());
+        }
+        return tokens;
+    }
 
+    /**
+     * Applies the given update to the correction CASes of the given documents. All updates go
+     * through the queue of the repeat service, so every document sees them in the order in which
+     * the user made them. The document currently open in the editor is updated by a task of its
+     * own which is waited for, so the suggestions shown to the user reflect the change. All other
+     * documents are updated in the background.
+     */
+    private static void propagate(AnnotatorState aBModel, DocumentService aDocumentService,
+            CorrectionDocumentService aCorrectionDocumentService,
+            RepeatAnnotationService aRepeatService, Collection<Long> aDocumentIds,
+            String aDescription, CorrectionCasUpdate aUpdate)
+        throws UIMAException, ClassNotFoundException, IOException, AnnotationException
+    {
+        if (aDocumentIds.isEmpty()) {
+            return;
+        }
+
+        Project project = aBModel.getProject();
+        User user = aBModel.getUser();
+        SourceDocument current = null;
+        List<SourceDocument> others = new ArrayList<>();
+        for (SourceDocument d : aDocumentService.listSourceDocuments(project)) {
+            if (!aDocumentIds.contains(d.getId())) {
+                continue;
+            }
+            if (d.equals(aBModel.getDocument())) {
+                current = d;
             }
             else {
-                dependentFs = (AnnotationFS) fs.getFeatureValue(dependentFeature);
-                governorFs = (AnnotationFS) fs.getFeatureValue(governorFeature);
+                others.add(d);
             }
+        }
 
-            int beginOffset = 0;
-            int endOffset = jCas.getDocumentText().length() - 1;
+        Future<Void> currentUpdate = null;
+        if (current != null) {
+            SourceDocument d = current;
+            currentUpdate = aRepeatService.submit(project,
+                    aDescription + " in the current document",
+                    () -> updateCorrectionCas(d, aDocumentService, aCorrectionDocumentService,
+                            user, aUpdate));
+        }
 
-            String depCoveredText = dependentFs.getCoveredText();
-            String govCoveredText = governorFs.getCoveredText();
+        if (!others.isEmpty()) {
+            submitUpdate(project, aDocumentService, aCorrectionDocumentService, aRepeatService,
+                    others, user, aDescription, aUpdate);
+        }
 
-            adapter.delete(jCas, aFeature, beginOffset, endOffset, depCoveredText, govCoveredText,
-                    aValue);
-            aCorrectionDocumentService.writeCorrectionCas(jCas, d);
+        if (currentUpdate != null) {
+            awaitUpdate(currentUpdate);
         }
     }
 
+    private static void submitUpdate(Project aProject, DocumentService aDocumentService,
+            CorrectionDocumentService aCorrectionDocumentService,
+            RepeatAnnotationService aRepeatService, List<SourceDocument> aDocuments, User aUser,
+            String aDescription, CorrectionCasUpdate aUpdate)
+    {
+        aRepeatService.submit(aProject,
+                aDescription + " in " + aDocuments.size() + " documents", () -> {
+                    for (SourceDocument d : aDocuments) {
+                        try {
+                            updateCorrectionCas(d, aDocumentService, aCorrectionDocumentService,
+                                    aUser, aUpdate);
+                        }
+                        catch (Exception e) {
+                            LOG.error("Unable to update correction CAS of document [{}]({})",
+                                    d.getName(), d.getId(), e);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Waits for the update of the current document. If earlier propagations are still queued,
+     * the update may not be applied in time - the suggestions then show it once the document is
+     * displayed again.
+     */
+    private static void awaitUpdate(Future<Void> aUpdate)
+        throws UIMAException, IOException, AnnotationException
+    {
+        try {
+            aUpdate.get(CURRENT_DOCUMENT_TIMEOUT, TimeUnit.SECONDS);
+        }
+        catch (TimeoutException e) {
+            LOG.info("Update of the current document is still queued - continuing without it");
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AnnotationException) {
+                throw (AnnotationException) cause;
+            }
+            if (cause instanceof UIMAException) {
+                throw (UIMAException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Reads, updates and writes the correction CAS of the given document. The CAS is written right
+     * away and not buffered, because the editor reads and writes the correction CAS as well and
+     * a delayed write would overwrite the changes made there in the meantime.
+     */
+    private static void updateCorrectionCas(SourceDocument aDocument,
+            DocumentService aDocumentService, CorrectionDocumentService aCorrectionDocumentService,
+            User aUser, CorrectionCasUpdate aUpdate)
+        throws UIMAException, IOException, AnnotationException
+    {
+        JCas jCas = readCorrectionCas(aDocument, aDocumentService, aCorrectionDocumentService,
+                aUser);
+        aUpdate.apply(aDocument, jCas);
+        aCorrectionDocumentService.writeCorrectionCas(jCas, aDocument);
+    }
+
+    /**
+     * Reads the correction CAS of the given document. If there is none yet, it is initialized from
+     * the annotation CAS of the user - but it is only written once it has been updated.
+     */
+    private static JCas readCorrectionCas(SourceDocument aDocument,
+            DocumentService aDocumentService, CorrectionDocumentService aCorrectionDocumentService,
+            User aUser)
+        throws UIMAException, IOException
+    {
+        try {
+            JCas jCas = aCorrectionDocumentService.readCorrectionCas(aDocument);
+            aCorrectionDocumentService.upgradeCorrectionCas(jCas.getCas(), aDocument);
+            return jCas;
+        }
+        catch (FileNotFoundException e) {
+            AnnotationDocument annoDoc = aDocumentService.createOrGetAnnotationDocument(aDocument,
+                    aUser);
+            JCas jCas = aDocumentService.readAnnotationCas(annoDoc);
+            aDocumentService.upgradeCas(jCas.getCas(), annoDoc);
+            return jCas;
+        }
+    }
+
+    @FunctionalInterface
+    private interface CorrectionCasUpdate
+    {
+        void apply(SourceDocument aDocument, JCas aJCas)
+            throws AnnotationException;
+    }
+
     // generates training document that will be used to predict the training document
     // to add extra features, for example add POS tag as a feature for NE classifier
     public static void addOtherFeatureTrainDocument(MiraTemplate aTemplate,
             AnnotationSchemaService aAnnotationService, AutomationService aAutomationService,
-            UserDao aUserDao)
+            UserDao aUserDao, TrainingCasCache aTrainingCases)
         throws IOException, UIMAException, ClassNotFoundException
     {
         File miraDir = aAutomationService.getMiraDir(aTemplate.getTrainFeature());
@@ -401,20 +558,23 @@ public class AutomationUtil
             BufferedWriter trainOut = new BufferedWriter(new FileWriter(trainFile));
             AutomationTypeAdapter adapter = (AutomationTypeAdapter) aAnnotationService
                     .getAdapter(feature.getLayer());
+            MiraFeatureCache cache = new MiraFeatureCache(miraDir, "other-" + feature.getId(),
+                    getMiraRowConfiguration(feature, adapter));
             for (TrainingDocument trainingDocument : aAutomationService
                     .listTrainingDocuments(feature.getProject())) {
                 if ((trainingDocument.getFeature() != null
                         && trainingDocument.getFeature().equals(feature))) {
-                    JCas jCas = aAutomationService.readTrainingAnnotationCas(trainingDocument);
-                    for (Sentence sentence : select(jCas, Sentence.class)) {
-                        trainOut.append(getMiraLine(sentence, feature, adapter).toString())
-                                .append("\n");
-                    }
+                    trainOut.append(cache.get("train-" + trainingDocument.getId(),
+                            aAutomationService.getCasFile(trainingDocument),
+                            () -> getMiraRows(aTrainingCases.read(trainingDocument), feature,
+                                    adapter)));
                     trainingDocument.setProcessed(false);
                     status.setTrainDocs(status.getTrainDocs() - 1);
+                    aAutomationService.createAutomationStatus(status);
                 }
             }
             trainOut.close();
+            cache.purge();
         }
     }
 
@@ -424,8 +584,9 @@ public class AutomationUtil
      */
     private static void addOtherFeatureFromAnnotation(AnnotationFeature aFeature,
             DocumentService aRepository, AutomationService aAutomationServic,
-            AnnotationSchemaService aAnnotationService, UserDao aUserDao,
-            List<List<String>> aPredictions, SourceDocument aSourceDocument)
+            AnnotationSchemaService aAnnotationService, User aUser,
+            TrainingCasCache aTrainingCases, List<List<String>> aPredictions,
+            SourceDocument aSourceDocument)
         throws UIMAException, ClassNotFoundException, IOException
     {
         AutomationTypeAdapter adapter = (AutomationTypeAdapter) aAnnotationService
@@ -436,7 +597,7 @@ public class AutomationUtil
             for (TrainingDocument trainingDocument : aAutomationServic
                     .listTrainingDocuments(aFeature.getProject())) {
 
-                JCas jCas = aAutomationServic.readTrainingAnnotationCas(trainingDocument);
+                JCas jCas = aTrainingCases.read(trainingDocument);
                 for (Sentence sentence : select(jCas, Sentence.class)) {
 
                     if (aFeature.getLayer().isMultipleTokens()) {
@@ -452,9 +613,8 @@ public class AutomationUtil
         }
         // This is SourceDocument to predict (in the suggestion pane)
         else {
-            User user = aUserDao.getCurrentUser();
             AnnotationDocument annodoc = aRepository.createOrGetAnnotationDocument(aSourceDocument,
-                    user);
+                    aUser);
             JCas jCas = aRepository.readAnnotationCas(annodoc);
             for (Sentence sentence : select(jCas, Sentence.class)) {
                 if (aFeature.getLayer().isMultipleTokens()) {
@@ -519,6 +679,7 @@ public class AutomationUtil
             }
             trainingDocument.setProcessed(false);
             status.setTrainDocs(status.getTrainDocs() - 1);
+            aAutomationService.createAutomationStatus(status);
             trainOut.close();
         }
 
@@ -527,7 +688,7 @@ public class AutomationUtil
     public static void generateTrainDocument(MiraTemplate aTemplate, DocumentService aRepository,
             CurationDocumentService aCurationDocumentService,
             AnnotationSchemaService aAnnotationService, AutomationService aAutomationService,
-            UserDao aUserDao, boolean aBase)
+            UserDao aUserDao, TrainingCasCache aTrainingCases, boolean aBase)
         throws IOException, UIMAException, ClassNotFoundException, AutomationException
     {
         LOG.info("Starting to generate training document");
@@ -590,6 +751,12 @@ public class AutomationUtil
         BufferedWriter trainOut = new BufferedWriter(new FileWriter(trainFile));
         AutomationTypeAdapter adapter = (AutomationTypeAdapter) aAnnotationService
                 .getAdapter(feature.getLayer());
+        // The base training document does not contain the labels, the training document with
+        // other features does
+        AnnotationFeature labelFeature = aBase ? null : feature;
+        MiraFeatureCache cache = new MiraFeatureCache(miraDir,
+                feature.getId() + (aBase ? "-unlabeled" : "-labeled"),
+                getMiraRowConfiguration(labelFeature, adapter));
         // Training documents (Curated or webanno-compatible imported ones - read using UIMA)
         List<TrainingDocument> trainingDocuments = aAutomationService
                 .listTrainingDocuments(feature.getProject());
@@ -597,20 +764,14 @@ public class AutomationUtil
         for (TrainingDocument trainingDocument : trainingDocuments) {
             if ((trainingDocument.getFeature() != null && trainingDocument
                     .getFeature().equals(feature))) {
-                JCas jCas = aAutomationService.readTrainingAnnotationCas(trainingDocument);
-                for (Sentence sentence : select(jCas, Sentence.class)) {
-                    if (aBase) { // base training document
-                        trainOut.append(getMiraLine(sentence, null, adapter)
-                            .toString()).append("\n");
-                    }
-                    else { // training document with other features
-                        trainOut.append(getMiraLine(sentence, feature, adapter)
-                            .toString()).append("\n");
-                    }
-                }
+                trainOut.append(cache.get("train-" + trainingDocument.getId(),
+                        aAutomationService.getCasFile(trainingDocument),
+                        () -> getMiraRows(aTrainingCases.read(trainingDocument), labelFeature,
+                                adapter)));
                 trainingDocument.setProcessed(!aBase);
                 if (!aBase) {
                     status.setTrainDocs(status.getTrainDocs() - 1);
+                    aAutomationService.createAutomationStatus(status);
                 }
             }
         }
@@ -619,19 +780,13 @@ public class AutomationUtil
                 .listSourceDocuments(feature.getProject());
         for (SourceDocument sourceDocument : sourceDocuments) {
             if (sourceDocument.getState().equals(SourceDocumentState.CURATION_FINISHED)) {
-                JCas jCas = aCurationDocumentService.readCurationCas(sourceDocument);
-                for (Sentence sentence : select(jCas, Sentence.class)) {
-                    if (aBase) { // base training document
-                        trainOut.append(getMiraLine(sentence, null, adapter).toString())
-                                .append("\n");
-                    }
-                    else { // training document with other features
-                        trainOut.append(getMiraLine(sentence, feature, adapter).toString())
-                                .append("\n");
-                    }
-                }
+                trainOut.append(cache.get("curation-" + sourceDocument.getId(),
+                        aRepository.getCasFile(sourceDocument, WebAnnoConst.CURATION_USER),
+                        () -> getMiraRows(aCurationDocumentService.readCurationCas(sourceDocument),
+                                labelFeature, adapter)));
                 if (!aBase) {
                     status.setTrainDocs(status.getTrainDocs() - 1);
+                    aAutomationService.createAutomationStatus(status);
                 }
             }
             trainingDocsCount++;
@@ -673,158 +828,46 @@ public class AutomationUtil
                     + goldStandardDocs.size());
         }
         trainOut.close();
-        
+        cache.purge();
+
         LOG.info("Completed generating training document");
     }
 
-    //TODO: rename to predictDocument
-    public static void generatePredictDocument(MiraTemplate aTemplate, DocumentService aRepository,
-            CorrectionDocumentService aCorrectionDocumentService,
-            AnnotationSchemaService aAnnotationService, AutomationService aAutomationService,
-            UserDao aUserDao)
-        throws IOException, UIMAException, ClassNotFoundException
+    /**
+     * @return the MIRA feature rows of all sentences of the given CAS, one block per sentence.
+     */
+    private static String getMiraRows(JCas aJCas, AnnotationFeature aLayerFeature,
+            AutomationTypeAdapter aAdapter)
+        throws CASException
     {
-        File miraDir = aAutomationService.getMiraDir(aTemplate.getTrainFeature());
-        if (!miraDir.exists()) {
-            FileUtils.forceMkdir(miraDir);
-        }
-
-        User user = aUserDao.getCurrentUser();
-        AnnotationFeature feature = aTemplate.getTrainFeature();
-        AutomationTypeAdapter adapter = (AutomationTypeAdapter) aAnnotationService
-                .getAdapter(feature.getLayer());
-        for (SourceDocument document : aRepository.listSourceDocuments(feature.getProject())) {
-            File predFile = new File(miraDir, document.getId() + ".pred.ft");
-            BufferedWriter predOut = new BufferedWriter(new FileWriter(predFile));
-            JCas jCas;
-            try {
-                jCas = aCorrectionDocumentService.readCorrectionCas(document);
-            }
-            catch (Exception e) {
-                AnnotationDocument annoDoc = aRepository.createOrGetAnnotationDocument(document,
-                        user);
-                jCas = aRepository.readAnnotationCas(annoDoc);
-            }
-
-            for (Sentence sentence : select(jCas, Sentence.class)) {
-                predOut.append(getMiraLine(sentence, null, adapter).toString()).append("\n");
-            }
-            predOut.close();
-        }
+        return new MiraRowBuilder().build(aJCas, aLayerFeature, aAdapter);
     }
 
-    private static StringBuffer getMiraLine(Sentence sentence, AnnotationFeature aLayerFeature,
+    /**
+     * @return everything besides the CAS which affects the rows built by
+     *         {@link #getMiraRows(JCas, AnnotationFeature, AutomationTypeAdapter)}, so that cached
+     *         rows are not used anymore once the layer settings change.
+     */
+    private static String getMiraRowConfiguration(AnnotationFeature aLayerFeature,
             AutomationTypeAdapter aAdapter)
-        throws CASException
     {
-        StringBuffer sb = new StringBuffer();
-
-        String tag = "";
-        List<String> annotations = new ArrayList<>();
-        Map<Integer, String> multAnno = null;
-        if (aLayerFeature != null) {
-            if (aLayerFeature.getLayer().isMultipleTokens()) {
-                multAnno = ((SpanAdapter) aAdapter).getMultipleAnnotation(sentence, aLayerFeature);
-            }
-            else {
-                annotations = aAdapter.getAnnotation(sentence, aLayerFeature);
-            }
-
+        // Without labels, the rows only depend on the tokens
+        if (aLayerFeature == null) {
+            return "unlabeled";
         }
 
-        int i = 0;
-        for (Token token : selectCovered(Token.class, sentence)) {
-            String word = token.getCoveredText();
-
-            char[] words = word.toCharArray();
-
-            String prefix1 = "", prefix2 = "", prefix3 = "", prefix4 = "", suffix1 = "", suffix2 = "", suffix3 = "", suffix4 = "";
-            if (aLayerFeature == null || aLayerFeature.getLayer().isLockToTokenOffset()) {
-                prefix1 = Character.toString(words[0]) + " ";
-                prefix2 = (words.length > 1 ? prefix1.trim()
-                        + (Character.toString(words[1]).trim().equals("") ? "__nil__" : Character
-                                .toString(words[1])) : "__nil__")
-                        + " ";
-                prefix3 = (words.length > 2 ? prefix2.trim()
-                        + (Character.toString(words[2]).trim().equals("") ? "__nil__" : Character
-                                .toString(words[2])) : "__nil__")
-                        + " ";
-                prefix4 = (words.length > 3 ? prefix3.trim()
-                        + (Character.toString(words[3]).trim().equals("") ? "__nil__" : Character
-                                .toString(words[3])) : "__nil__")
-                        + " ";
-                suffix1 = Character.toString(words[words.length - 1]) + " ";
-                suffix2 = (words.length > 1 ? (Character.toString(words[words.length - 2]).trim()
-                        .equals("") ? "__nil__" : Character.toString(words[words.length - 2]))
-                        + suffix1.trim() : "__nil__")
-                        + " ";
-                suffix3 = (words.length > 2 ? (Character.toString(words[words.length - 3]).trim()
-                        .equals("") ? "__nil__" : Character.toString(words[words.length - 3]))
-                        + suffix2.trim() : "__nil__")
-                        + " ";
-                suffix4 = (words.length > 3 ? (Character.toString(words[words.length - 4]).trim()
-                        .equals("") ? "__nil__" : Character.toString(words[words.length - 4]))
-                        + suffix3.trim() : "__nil__")
-                        + " ";
-            }
-            String nl = "\n";
-
-            if (aLayerFeature != null) {
-                if (aLayerFeature.getLayer().isMultipleTokens()) {
-                    tag = multAnno.get(getAddr(token)) == null ? "O" : multAnno.get(getAddr(token));
-                }
-                else {
-                    tag = annotations.size() == 0 ? NILL : annotations.get(i);
-                    i++;
-                }
-
-            }
-            sb.append(word).append(" ").append(prefix1).append(prefix2).append(prefix3)
-                .append(prefix4).append(suffix1).append(suffix2).append(suffix3).append(suffix4)
-                .append(tag).append(nl);
-        }
-        return sb;
-
+        AnnotationLayer layer = aLayerFeature.getLayer();
+        return String.join(";", layer.getName(), aLayerFeature.getName(),
+                "lockToTokenOffset=" + layer.isLockToTokenOffset(),
+                "multipleTokens=" + layer.isMultipleTokens(),
+                "adapter=" + aAdapter.getClass().getName());
     }
 
-    private static StringBuffer getMiraLineForTabSep(String aToken, String aFeature)
-        throws CASException
+    private static StringBuilder getMiraLineForTabSep(String aToken, String aFeature)
     {
-        StringBuffer sb = new StringBuffer();
-        char[] words = aToken.toCharArray();
-        String prefix1 = Character.toString(words[0]) + " ";
-        String prefix2 = (words.length > 1 ? prefix1.trim()
-                + (Character.toString(words[1]).trim().equals("") ? "__nil__" : Character
-                        .toString(words[1])) : "__nil__")
-                + " ";
-        String prefix3 = (words.length > 2 ? prefix2.trim()
-                + (Character.toString(words[2]).trim().equals("") ? "__nil__" : Character
-                        .toString(words[2])) : "__nil__")
-                + " ";
-        String prefix4 = (words.length > 3 ? prefix3.trim()
-                + (Character.toString(words[3]).trim().equals("") ? "__nil__" : Character
-                        .toString(words[3])) : "__nil__")
-                + " ";
-        String suffix1 = Character.toString(words[words.length - 1]) + " ";
-        String suffix2 = (words.length > 1 ? (Character.toString(words[words.length - 2]).trim()
-                .equals("") ? "__nil__" : Character.toString(words[words.length - 2]))
-                + suffix1.trim() : "__nil__")
-                + " ";
-        String suffix3 = (words.length > 2 ? (Character.toString(words[words.length - 3]).trim()
-                .equals("") ? "__nil__" : Character.toString(words[words.length - 3]))
-                + suffix2.trim() : "__nil__")
-                + " ";
-        String suffix4 = (words.length > 3 ? (Character.toString(words[words.length - 4]).trim()
-                .equals("") ? "__nil__" : Character.toString(words[words.length - 4]))
-                + suffix3.trim() : "__nil__")
-                + " ";
-
-        String nl = "\n";
-        sb.append(aToken).append(" ").append(prefix1).append(prefix2).append(prefix3)
-            .append(prefix4).append(suffix1).append(suffix2).append(suffix3).append(suffix4)
-            .append(aFeature).append(nl);
+        StringBuilder sb = new StringBuilder();
+        MiraRowBuilder.appendRow(sb, aToken, 0, aToken.length(), true, aFeature);
         return sb;
-
     }
 
     /**
@@ -843,7 +886,7 @@ public class AutomationUtil
      *             hum?
      */
     public static void otherFeatureClassifiers(MiraTemplate aTemplate,
-            DocumentService aRepository, AutomationService aAutomationService)
+            DocumentService aRepository, AutomationService aAutomationService, boolean aWarmStart)
         throws IOException, ClassNotFoundException
     {
         Mira mira = new Mira();
@@ -860,11 +903,17 @@ public class AutomationUtil
 
             File miraDir = aAutomationService.getMiraDir(aTemplate.getTrainFeature());
             File trainFile = new File(miraDir, feature.getId() + ".train");
-            String initalModelName = "";
+            File modelFile = aAutomationService.getMiraModel(feature, true, null);
+            // the training file is only re-generated if one of its documents changed
+            if (modelFile.exists() && modelFile.lastModified() >= trainFile.lastModified()) {
+                continue;
+            }
+
+            String initalModelName = aWarmStart && modelFile.exists()
+                    ? modelFile.getAbsolutePath() : "";
             String trainName = trainFile.getAbsolutePath();
 
-            String modelName = aAutomationService.getMiraModel(feature, true, null)
-                    .getAbsolutePath();
+            String modelName = modelFile.getAbsolutePath();
 
             boolean randomInit = false;
 
@@ -1145,7 +1194,7 @@ public class AutomationUtil
     public static String generateFinalClassifier(MiraTemplate aTemplate,
             DocumentService aRepository, CurationDocumentService aCurationDocumentService,
             AnnotationSchemaService aAnnotationService, AutomationService aAutomationService,
-            UserDao aUserDao)
+            UserDao aUserDao, TrainingCasCache aTrainingCases, boolean aWarmStart)
         throws UIMAException, ClassNotFoundException, IOException, AnnotationException,
         AutomationException
     {
@@ -1161,7 +1210,6 @@ public class AutomationUtil
         Mira mira = new Mira();
         File predFile = new File(miraDir, layerFeature.getLayer().getId() + "-"
                 + layerFeature.getId() + ".train.ft");
-        File predcitedFile = new File(predFile.getAbsolutePath() + "-pred");
 
         boolean trainingDocumentUpdated = false;
 
@@ -1219,15 +1267,16 @@ public class AutomationUtil
         String trainName = trainFile.getAbsolutePath();
         String finalClassifierModelName = aAutomationService.getMiraModel(layerFeature, false, null)
                 .getAbsolutePath();
+        MiraInput trainFeatures = () -> new FileReader(predFile);
+        Map<String, Mira> models = new HashMap<>();
         getFeatureOtherLayer(aTemplate, aRepository, aAutomationService, aAnnotationService,
-                aUserDao, beamSize, maxPosteriors, predictions, mira, predFile, predcitedFile,
-                null);
+                null, aTrainingCases, models, predictions, trainFeatures, null, null);
 
-        getFeaturesTabSep(aTemplate, aAutomationService, beamSize, maxPosteriors,
-                layerFeature, predictions, mira, predFile, predcitedFile);
+        getFeaturesTabSep(aTemplate, aAutomationService, layerFeature, models, predictions,
+                trainFeatures, null);
 
         generateTrainDocument(aTemplate, aRepository, aCurationDocumentService, aAnnotationService,
-                aAutomationService, aUserDao, false);
+                aAutomationService, aUserDao, aTrainingCases, false);
 
         String trainTemplate;
         if (predictions.size() == 0) {
@@ -1251,6 +1300,9 @@ public class AutomationUtil
         mira.beamSize = beamSize;
         int numExamples = mira.count(trainName, frequency);
         mira.initModel(randomInit);
+        if (aWarmStart && new File(finalClassifierModelName).exists()) {
+            mira.loadModel(finalClassifierModelName);
+        }
         String trainResult = "";
         for (int i = 0; i < iterations; i++) {
             trainResult = mira.train(trainName, iterations, numExamples, i);
@@ -1272,162 +1324,77 @@ public class AutomationUtil
 
     private static void getFeatureOtherLayer(MiraTemplate aTemplate, DocumentService aRepository,
             AutomationService aAutomationService, AnnotationSchemaService aAnnotationService,
-            UserDao aUserDao, int beamSize, boolean maxPosteriors, List<List<String>> predictions,
-            Mira mira, File predFtFile, File predcitedFile, SourceDocument document)
+            User aUser, TrainingCasCache aTrainingCases, Map<String, Mira> aModels,
+            List<List<String>> predictions, MiraInput aFeatures, File aDebugFile,
+            SourceDocument document)
         throws IOException, ClassNotFoundException, UIMAException
     {
         // other layers as training document
         for (AnnotationFeature feature : aTemplate.getOtherFeatures()) {
-            int shiftColumns = 0;
-            int nbest = 1;
             String modelName = aAutomationService.getMiraModel(feature, true, null)
                     .getAbsolutePath();
             if (!new File(modelName).exists()) {
                 addOtherFeatureFromAnnotation(feature, aRepository, aAutomationService,
-                        aAnnotationService, aUserDao, predictions, document);
+                        aAnnotationService, aUser, aTrainingCases, predictions, document);
                 continue;
             }
-            String testName = predFtFile.getAbsolutePath();
-
-            PrintStream stream = new PrintStream(predcitedFile);
-            BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
-            if (testName != null) {
-                input = new BufferedReader(new FileReader(testName));
-            }
-            mira.loadModel(modelName);
-            mira.setShiftColumns(shiftColumns);
-            mira.nbest = nbest;
-            mira.beamSize = beamSize;
-            mira.maxPosteriors = maxPosteriors;
-            mira.test(input, stream);
-
-            LineIterator it = IOUtils.lineIterator(new FileReader(predcitedFile));
-            List<String> annotations = new ArrayList<>();
-
-            while (it.hasNext()) {
-                String line = it.next();
-                if (line.trim().equals("")) {
-                    continue;
-                }
-                StringTokenizer st = new StringTokenizer(line, " ");
-                String tag = "";
-                while (st.hasMoreTokens()) {
-                    tag = st.nextToken();
-                }
-                annotations.add(tag);
-            }
-            predictions.add(annotations);
+            predictions.add(tag(getModel(aModels, modelName), aFeatures, aDebugFile));
         }
     }
 
     private static void getFeaturesTabSep(MiraTemplate aTemplate,
-            AutomationService aAutomationService, int beamSize, boolean maxPosteriors,
-            AnnotationFeature layerFeature, List<List<String>> predictions, Mira mira,
-            File predFile, File predcitedFile)
+            AutomationService aAutomationService, AnnotationFeature layerFeature,
+            Map<String, Mira> aModels, List<List<String>> predictions, MiraInput aFeatures,
+            File aDebugFile)
         throws IOException, ClassNotFoundException, AutomationException
     {
         for (TrainingDocument document : aAutomationService
                 .listTabSepDocuments(aTemplate.getTrainFeature().getProject())) {
-            int shiftColumns = 0;
-            int nbest = 1;
             String modelName = aAutomationService.getMiraModel(layerFeature, true, document)
                     .getAbsolutePath();
             if (!new File(modelName).exists()) {
                 continue;
             }
-            String testName = predFile.getAbsolutePath();
-
-            PrintStream stream = new PrintStream(predcitedFile);
-            BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
-            if (testName != null) {
-                input = new BufferedReader(new FileReader(testName));
-            }
-            mira.loadModel(modelName);
-            mira.setShiftColumns(shiftColumns);
-            mira.nbest = nbest;
-            mira.beamSize = beamSize;
-            mira.maxPosteriors = maxPosteriors;
+            Mira mira = getModel(aModels, modelName);
             try {
-                mira.test(input, stream);
+                predictions.add(tag(mira, aFeatures, aDebugFile));
             }
             catch (Exception e) {
                 throw new AutomationException(document.getName() + " is Invalid TAB-SEP file!");
             }
-
-            LineIterator it = IOUtils.lineIterator(new FileReader(predcitedFile));
-            List<String> annotations = new ArrayList<>();
-
-            while (it.hasNext()) {
-                String line = it.next();
-                if (line.trim().equals("")) {
-                    continue;
-                }
-                StringTokenizer st = new StringTokenizer(line, " ");
-                String tag = "";
-                while (st.hasMoreTokens()) {
-                    tag = st.nextToken();
-                }
-                annotations.add(tag);
-            }
-            predictions.add(annotations);
         }
     }
 
     /**
-     * Based on the other layer, add features for the prediction document
+     * Tags the given feature rows with a MIRA model. Only the label at the end of each row of the
+     * tagger output is needed, so the output is parsed while it is written instead of going
+     * through a file.
      *
-     * @param aTemplate
-     *            the template.
-     * @param aRepository
-     *            the repository.
-     * @throws UIMAException
-     *             hum?
-     * @throws ClassNotFoundException
-     *             hum?
-     * @throws IOException
-     *             hum?
-     * @throws AnnotationException
-     *             hum?
-     * @throws AutomationException
-     *             hum?
+     * @param aDebugFile
+     *            if not {@code null}, the tagger output is additionally written to this file.
+     * @return the labels, one per token.
      */
-    public static void addOtherFeatureToPredictDocument(MiraTemplate aTemplate,
-            DocumentService aRepository, AnnotationSchemaService aAnnotationService,
-            AutomationService aAutomationService, UserDao aUserDao)
-        throws UIMAException, ClassNotFoundException, IOException, AnnotationException,
-        AutomationException
+    private static List<String> tag(Mira aMira, MiraInput aInput, File aDebugFile)
+        throws IOException
     {
-        AnnotationFeature layerFeature = aTemplate.getTrainFeature();
-
-        File miraDir = aAutomationService.getMiraDir(layerFeature);
-        for (SourceDocument document : aRepository.listSourceDocuments(layerFeature.getProject())) {
-            List<List<String>> predictions = new ArrayList<>();
-            File predFtFile = new File(miraDir, document.getId() + ".pred.ft");
-            Mira mira = new Mira();
-            int beamSize = 0;
-            boolean maxPosteriors = false;
-            File predcitedFile = new File(predFtFile.getAbsolutePath() + "-pred");
-
-            getFeatureOtherLayer(aTemplate, aRepository, aAutomationService, aAnnotationService,
-                    aUserDao, beamSize, maxPosteriors, predictions, mira, predFtFile, predcitedFile,
-                    document);
-
-            getFeaturesTabSep(aTemplate, aAutomationService, beamSize, maxPosteriors, layerFeature,
-                    predictions, mira, predFtFile, predcitedFile);
-
-            File basePredFile = new File(miraDir, document.getId() + ".pred");
-            if (predictions.size() == 0) {
-                createTemplate(aTemplate.getTrainFeature(),
-                        getMiraTemplateFile(layerFeature, aAutomationService), 0);
-                FileUtils.copyFile(predFtFile, basePredFile);
-            }
-            else {
-                createTemplate(aTemplate.getTrainFeature(),
-                        getMiraTemplateFile(layerFeature, aAutomationService), predictions.size());
-                buildPredictFile(predFtFile, basePredFile, predictions,
-                        aTemplate.getTrainFeature());
+        try (BufferedReader input = new BufferedReader(aInput.open())) {
+            MiraLabelCollector labels = new MiraLabelCollector(aDebugFile);
+            try (PrintStream output = new PrintStream(labels, false, UTF_8.name())) {
+                aMira.test(input, output);
             }
+            return labels.getLabels();
+        }
+    }
+
+    private static Mira getModel(Map<String, Mira> aModels, String aModelName)
+        throws IOException, ClassNotFoundException
+    {
+        Mira mira = aModels.get(aModelName);
+        if (mira == null) {
+            mira = loadPredictionModel(aModelName);
+            aModels.put(aModelName, mira);
         }
+        return mira;
     }
 
     // add all predicted features and its own label at the end, to train a classifier.
@@ -1471,11 +1438,10 @@ public class AutomationUtil
 
     // add additional features predicted so that it will have the same number of features as the
     // classifier
-    private static void buildPredictFile(File apredFt, File aPredFile,
-            List<List<String>> aPredictions, AnnotationFeature aFeature)
-        throws IOException
+    private static String buildPredictRows(String aFeatureRows, List<List<String>> aPredictions,
+            AnnotationFeature aFeature)
     {
-        LineIterator it = IOUtils.lineIterator(new FileReader(apredFt));
+        LineIterator it = IOUtils.lineIterator(new StringReader(aFeatureRows));
         StringBuilder predBuffer = new StringBuilder();
         int i = 0;
         while (it.hasNext()) {
@@ -1502,8 +1468,7 @@ public class AutomationUtil
             predBuffer.append("\n");
             i++;
         }
-        IOUtils.write(predBuffer.toString(), new FileOutputStream(aPredFile));
-
+        return predBuffer.toString();
     }
 
     /**
@@ -1618,78 +1583,289 @@ public class AutomationUtil
         }
     }
 
-    public static void predict(MiraTemplate aTemplate, DocumentService aRepository,
+    /**
+     * Predicts the annotations of all source documents of the project. A failure on one document
+     * does not stop the prediction for the others.
+     *
+     * @return the number of documents for which no prediction could be made or stored.
+     * @throws AutomationException
+     *             if the prediction failed for all documents.
+     */
+    public static int predict(MiraTemplate aTemplate, DocumentService aRepository,
             CorrectionDocumentService aCorrectionDocumentService,
-            AutomationService aAutomationService, UserDao aUserDao)
-        throws UIMAException, ClassNotFoundException, IOException, AnnotationException
+            AnnotationSchemaService aAnnotationService, AutomationService aAutomationService,
+            UserDao aUserDao, int aThreads, int aBufferSize, boolean aDebugFiles)
+        throws UIMAException, ClassNotFoundException, IOException, AnnotationException,
+        AutomationException
     {
         AnnotationFeature layerFeature = aTemplate.getTrainFeature();
 
         File miraDir = aAutomationService.getMiraDir(layerFeature);
+        if (aDebugFiles && !miraDir.exists()) {
+            FileUtils.forceMkdir(miraDir);
+        }
         AutomationStatus status = aAutomationService.getAutomationStatus(aTemplate);
-        for (SourceDocument document : aRepository.listSourceDocuments(layerFeature.getProject())) {
-            File predFile = new File(miraDir, document.getId() + ".pred");
-            Mira mira = new Mira();
-            int shiftColumns = 0;
-            int nbest = 1;
-            int beamSize = 0;
-            boolean maxPosteriors = false;
-            String modelName = aAutomationService.getMiraModel(layerFeature, false, null)
-                    .getAbsolutePath();
-            String testName = predFile.getAbsolutePath();
-            File predcitedFile = new File(predFile.getAbsolutePath() + "-pred");
-            PrintStream stream = new PrintStream(predcitedFile);
-            BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
-            if (testName != null) {
-                input = new BufferedReader(new FileReader(testName));
-            }
-            mira.loadModel(modelName);
-            mira.setShiftColumns(shiftColumns);
-            mira.nbest = nbest;
-            mira.beamSize = beamSize;
-            mira.maxPosteriors = maxPosteriors;
-            mira.test(input, stream);
+        String modelName = aAutomationService.getMiraModel(layerFeature, false, null)
+                .getAbsolutePath();
+        AutomationTypeAdapter adapter = (AutomationTypeAdapter) aAnnotationService
+                .getAdapter(layerFeature.getLayer());
+        // The workers run with the security context of the caller, but the user is the same for
+        // all documents, so it is only looked up once
+        User user = aUserDao.getCurrentUser();
+        // MIRA keeps the decoder state in the instance, so every worker loads its own copy of the
+        // models - but only once and not once per document
+        ThreadLocal<Map<String, Mira>> workerModels = ThreadLocal.withInitial(HashMap::new);
+
+        // The correction CASes are written in parallel once a batch of documents is complete or
+        // the prediction is finished
+        List<SourceDocument> documents = aRepository
+                .listSourceDocuments(layerFeature.getProject());
+        Set<Long> failed = ConcurrentHashMap.newKeySet();
+
+        // CASes are written in batches, so a CAS which cannot be written is reported against its
+        // own document and not against the one whose prediction triggered the write
+        try (CorrectionCasBuffer buffer = new CorrectionCasBuffer(aCorrectionDocumentService,
+                aBufferSize, aThreads, (document, e) -> {
+                    LOG.error("Unable to write correction CAS of document [{}]({})",
+                            document.getName(), document.getId(), e);
+                    failed.add(document.getId());
+                })) {
+            List<SourceDocument> failedDocuments = forEachDocument(documents, aThreads,
+                    "Prediction", document -> {
+                        // predicting can take long, so allow to cancel it between documents
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new CancellationException();
+                        }
 
-            LOG.info("Prediction is wrtten to a MIRA File. To be done is writing back to the CAS");
-            LineIterator it = IOUtils.lineIterator(new FileReader(predcitedFile));
-            List<String> annotations = new ArrayList<>();
+                        // The feature rows of a document are extracted, extended with the tags
+                        // of the other layers and tagged in memory. The intermediate files are
+                        // only written if requested for debugging.
+                        JCas featureCas;
+                        try {
+                            featureCas = aCorrectionDocumentService.readCorrectionCas(document);
+                        }
+                        catch (Exception e) {
+                            featureCas = aRepository.readAnnotationCas(
+                                    aRepository.createOrGetAnnotationDocument(document, user));
+                        }
+                        String featureRows = getMiraRows(featureCas, null, adapter);
+                        writeDebugFile(aDebugFiles, miraDir, document.getId() + ".pred.ft",
+                                featureRows);
+
+                        Map<String, Mira> models = workerModels.get();
+                        List<List<String>> predictions = new ArrayList<>();
+                        MiraInput featureInput = () -> new StringReader(featureRows);
+                        File featureDebugFile = aDebugFiles
+                                ? new File(miraDir, document.getId() + ".pred.ft-pred") : null;
+                        // No training CASes are read when predicting a source document
+                        getFeatureOtherLayer(aTemplate, aRepository, aAutomationService,
+                                aAnnotationService, user, null, models, predictions,
+                                featureInput, featureDebugFile, document);
+                        getFeaturesTabSep(aTemplate, aAutomationService, layerFeature, models,
+                                predictions, featureInput, featureDebugFile);
+
+                        String predictRows = predictions.isEmpty() ? featureRows
+                                : buildPredictRows(featureRows, predictions, layerFeature);
+                        writeDebugFile(aDebugFiles, miraDir, document.getId() + ".pred",
+                                predictRows);
+
+                        File predictDebugFile = aDebugFiles
+                                ? new File(miraDir, document.getId() + ".pred-pred") : null;
+                        List<String> annotations = tag(getModel(models, modelName),
+                                () -> new StringReader(predictRows), predictDebugFile);
+
+                        LOG.info(annotations.size()
+                                + " Predictions found to be written to the CAS");
+                        JCas jCas;
+                        try {
+                            AnnotationDocument annoDocument = aRepository
+                                    .getAnnotationDocument(document, user);
+                            jCas = aRepository.readAnnotationCas(annoDocument);
+                        }
+                        catch (DataRetrievalFailureException | NoResultException e) {
+                            jCas = aRepository.readAnnotationCas(
+                                    aRepository.createOrGetAnnotationDocument(document, user));
+                        }
+                        automate(jCas, layerFeature, annotations);
+                        LOG.info("Predictions found are written to the CAS");
+                        buffer.write(jCas, document);
 
-            while (it.hasNext()) {
-                String line = it.next();
-                if (line.trim().equals("")) {
-                    continue;
-                }
-                StringTokenizer st = new StringTokenizer(line, " ");
-                String tag = "";
-                while (st.hasMoreTokens()) {
-                    tag = st.nextToken();
+                        synchronized (status) {
+                            status.setAnnoDocs(status.getAnnoDocs() - 1);
+                            aAutomationService.createAutomationStatus(status);
+                        }
+                    });
+            failedDocuments.forEach(document -> failed.add(document.getId()));
+        }
+
+        if (!documents.isEmpty() && failed.size() == documents.size()) {
+            throw new AutomationException(
+                    "Prediction failed for all " + documents.size() + " documents");
+        }
+        if (!failed.isEmpty()) {
+            LOG.warn("Prediction failed for {} of {} documents", failed.size(),
+                    documents.size());
+        }
+        return failed.size();
+    }
+
+    private static void writeDebugFile(boolean aEnabled, File aMiraDir, String aName,
+            String aContent)
+        throws IOException
+    {
+        if (aEnabled) {
+            FileUtils.writeStringToFile(new File(aMiraDir, aName), aContent, UTF_8);
+        }
+    }
+
+    private static Mira loadPredictionModel(String aModelName)
+        throws IOException, ClassNotFoundException
+    {
+        Mira mira = new Mira();
+        mira.loadModel(aModelName);
+        mira.setShiftColumns(0);
+        mira.nbest = 1;
+        mira.beamSize = 0;
+        mira.maxPosteriors = false;
+        return mira;
+    }
+
+    /**
+     * Runs the given task for each of the documents on a pool of worker threads. The documents are
+     * independent of each other, so a failure on one document is logged and does not stop the
+     * others from being processed.
+     *
+     * @param aThreads
+     *            the number of workers, or {@code 0} to use one worker per available processor.
+     * @return the documents which could not be processed.
+     */
+    private static List<SourceDocument> forEachDocument(List<SourceDocument> aDocuments,
+            int aThreads, String aTaskName, DocumentTask aTask)
+    {
+        if (aDocuments.isEmpty()) {
+            return new ArrayList<>();
+        }
 
+        int threads = aThreads > 0 ? aThreads : Runtime.getRuntime().availableProcessors();
+        // The workers write CASes, which requires the permissions of the calling user
+        ExecutorService executor = new DelegatingSecurityContextExecutorService(
+                Executors.newFixedThreadPool(Math.min(threads, aDocuments.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (SourceDocument document : aDocuments) {
+                futures.add(executor.submit(() -> {
+                    aTask.process(document);
+                    return null;
+                }));
+            }
+
+            List<SourceDocument> failed = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                }
+                catch (ExecutionException e) {
+                    failed.add(aDocuments.get(i));
+                    LOG.error("{} failed for document [{}]({})", aTaskName,
+                            aDocuments.get(i).getName(), aDocuments.get(i).getId(), e.getCause());
                 }
-                annotations.add(tag);
             }
 
-            LOG.info(annotations.size() + " Predictions found to be written to the CAS");
-            JCas jCas = null;
-            User user = aUserDao.getCurrentUser();
-            try {
-                AnnotationDocument annoDocument = aRepository.getAnnotationDocument(document,
-                        user);
-                jCas = aRepository.readAnnotationCas(annoDocument);
-                automate(jCas, layerFeature, annotations);
-            }
-            catch (DataRetrievalFailureException e) {
-                automate(jCas, layerFeature, annotations);
-                LOG.info("Predictions found are written to the CAS");
-                aCorrectionDocumentService.writeCorrectionCas(jCas, document);
-                status.setAnnoDocs(status.getAnnoDocs() - 1);
-            }
-            automate(jCas, layerFeature, annotations);
-            LOG.info("Predictions found are written to the CAS");
-            aCorrectionDocumentService.writeCorrectionCas(jCas, document);
-            status.setAnnoDocs(status.getAnnoDocs() - 1);
+            if (!failed.isEmpty()) {
+                LOG.warn("{} failed for {} of {} documents", aTaskName, failed.size(),
+                        aDocuments.size());
+            }
+            return failed;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+        finally {
+            executor.shutdownNow();
         }
     }
-    
+
+    @FunctionalInterface
+    private interface DocumentTask
+    {
+        void process(SourceDocument aDocument)
+            throws Exception;
+    }
+
+    /**
+     * Source of MIRA feature rows. The rows are read once by every model that tags them, so the
+     * source must be possible to open repeatedly.
+     */
+    @FunctionalInterface
+    private interface MiraInput
+    {
+        Reader open()
+            throws IOException;
+    }
+
+    /**
+     * Collects the label at the end of each non-empty line of the MIRA tagger output.
+     */
+    private static class MiraLabelCollector
+        extends OutputStream
+    {
+        private final List<String> labels = new ArrayList<>();
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private final OutputStream debug;
+        private boolean closed;
+
+        public MiraLabelCollector(File aDebugFile)
+            throws IOException
+        {
+            debug = aDebugFile != null
+                    ? new BufferedOutputStream(new FileOutputStream(aDebugFile)) : null;
+        }
+
+        @Override
+        public void write(int aByte)
+            throws IOException
+        {
+            if (debug != null) {
+                debug.write(aByte);
+            }
+            if (aByte == '\n') {
+                endLine();
+            }
+            else {
+                line.write(aByte);
+            }
+        }
+
+        private void endLine()
+        {
+            String row = new String(line.toByteArray(), UTF_8).trim();
+            line.reset();
+            if (!row.isEmpty()) {
+                labels.add(row.substring(row.lastIndexOf(' ') + 1));
+            }
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            endLine();
+            if (debug != null) {
+                debug.close();
+            }
+        }
+
+        public List<String> getLabels()
+        {
+            return labels;
+        }
+    }
+
     public static void clearAnnotations(JCas aJCas, Type aType)
         throws IOException
     {
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.automation.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.uima.jcas.JCas;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.CorrectionDocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+
+/**
+ * Write-behind buffer for correction CASes. Repeated updates of the same document are coalesced,
+ * so a CAS which is changed several times while the buffer is open is only written once. The
+ * buffered CASes are written in parallel when the buffer is flushed or closed, or earlier if too
+ * many CASes are pending or the heap is running low.
+ * <p>
+ * Since CASes of several documents are written together, a CAS which cannot be written is not
+ * reported to the caller which happened to trigger the write. Instead, every failure is passed to
+ * a {@link WriteFailureHandler} together with the document it belongs to.
+ * <p>
+ * Instances are thread-safe. The buffer must only be used for documents whose correction CASes
+ * are not changed by anybody else while the buffer is open.
+ */
+public class CorrectionCasBuffer
+    implements Closeable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CorrectionCasBuffer.class);
+
+    private final CorrectionDocumentService correctionDocumentService;
+    private final int maxPending;
+    private final int threads;
+    private final WriteFailureHandler failureHandler;
+
+    // Document ID -> CAS waiting to be written
+    private final Map<Long, PendingCas> pending = new LinkedHashMap<>();
+    private final Object flushLock = new Object();
+    private int updates;
+    private int writes;
+
+    /**
+     * @param aMaxPending
+     *            the number of CASes after which the buffer is flushed.
+     * @param aThreads
+     *            the number of CASes written in parallel, or {@code 0} to use one thread per
+     *            available processor.
+     * @param aFailureHandler
+     *            receives the documents whose CASes could not be written.
+     */
+    public CorrectionCasBuffer(CorrectionDocumentService aCorrectionDocumentService,
+            int aMaxPending, int aThreads, WriteFailureHandler aFailureHandler)
+    {
+        correctionDocumentService = aCorrectionDocumentService;
+        maxPending = Math.max(1, aMaxPending);
+        threads = aThreads > 0 ? aThreads : Runtime.getRuntime().availableProcessors();
+        failureHandler = aFailureHandler;
+    }
+
+    /**
+     * Schedules writing the correction CAS of the given document. A pending update of the same
+     * document is replaced.
+     */
+    public void write(JCas aJCas, SourceDocument aDocument)
+    {
+        boolean flush;
+        synchronized (this) {
+            pending.put(aDocument.getId(), new PendingCas(aDocument, aJCas));
+            updates++;
+            flush = pending.size() >= maxPending || HeapUtil.isHeapLow();
+        }
+        if (flush) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all pending CASes. If some of them cannot be written, the others are written anyway
+     * and each failure is passed to the failure handler.
+     */
+    public void flush()
+    {
+        // Flushes do not overlap, so an older update can never overwrite a newer one
+        synchronized (flushLock) {
+            List<PendingCas> batch;
+            synchronized (this) {
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+
+            if (!batch.isEmpty()) {
+                writeAll(batch);
+            }
+        }
+    }
+
+    private void writeAll(List<PendingCas> aBatch)
+    {
+        if (aBatch.size() == 1 || threads == 1) {
+            for (PendingCas cas : aBatch) {
+                try {
+                    write(cas);
+                }
+                catch (Exception e) {
+                    failureHandler.failed(cas.document, e);
+                }
+            }
+        }
+        else {
+            // The storage checks the permissions of the user, so the workers need to run with
+            // the security context of the caller
+            ExecutorService executor = new DelegatingSecurityContextExecutorService(
+                    Executors.newFixedThreadPool(Math.min(threads, aBatch.size())));
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (PendingCas cas : aBatch) {
+                    futures.add(executor.submit(() -> {
+                        write(cas);
+                        return null;
+                    }));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        futures.get(i).get();
+                    }
+                    catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        failureHandler.failed(aBatch.get(i).document, cause instanceof Exception
+                                ? (Exception) cause : new IOException(cause));
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        // The remaining CASes may or may not have been written
+                        for (int j = i; j < futures.size(); j++) {
+                            failureHandler.failed(aBatch.get(j).document, new IOException(
+                                    "Interrupted while writing correction CASes", e));
+                        }
+                        break;
+                    }
+                }
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private void write(PendingCas aCas)
+        throws IOException
+    {
+        try {
+            correctionDocumentService.writeCorrectionCas(aCas.jcas, aCas.document);
+        }
+        finally {
+            synchronized (this) {
+                writes++;
+            }
+        }
+    }
+
+    /**
+     * Flushes the pending CASes.
+     */
+    @Override
+    public void close()
+    {
+        flush();
+        synchronized (this) {
+            LOG.info("Wrote {} correction CASes for {} updates", writes, updates);
+        }
+    }
+
+    /**
+     * Receives the documents whose correction CASes could not be written.
+     */
+    @FunctionalInterface
+    public interface WriteFailureHandler
+    {
+        void failed(SourceDocument aDocument, Exception aError);
+    }
+
+    private static class PendingCas
+    {
+        final SourceDocument document;
+        final JCas jcas;
+
+        PendingCas(SourceDocument aDocument, JCas aJCas)
+        {
+            document = aDocument;
+            jcas = aJCas;
+        }
+    }
+}
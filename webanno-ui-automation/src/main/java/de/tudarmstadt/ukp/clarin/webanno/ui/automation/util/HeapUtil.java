@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.automation.util;
+
+/**
+ * Heap checks shared by the CAS caches and buffers used during automation.
+ */
+final class HeapUtil
+{
+    // Fraction of the maximum heap which may be in use before cached CASes are released
+    private static final double MAX_HEAP_USAGE = 0.8;
+
+    private HeapUtil()
+    {
+        // No instances
+    }
+
+    /**
+     * @return whether so much of the maximum heap is in use that cached CASes should be released
+     *         instead of kept in memory.
+     */
+    static boolean isHeapLow()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return used > runtime.maxMemory() * MAX_HEAP_USAGE;
+    }
+}
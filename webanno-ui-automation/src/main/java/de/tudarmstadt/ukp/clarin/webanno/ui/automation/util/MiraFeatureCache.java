@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.automation.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.UIMAException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the MIRA feature rows extracted from each document on disk, so that re-training only has
+ * to extract the rows of the documents which changed since the last training. An entry stays valid
+ * as long as the CAS file it was extracted from is not modified and the rows are extracted with the
+ * same configuration, i.e. the same layer settings and adapter.
+ */
+public class MiraFeatureCache
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MiraFeatureCache.class);
+
+    private static final String ROWS_SUFFIX = ".ft";
+    private static final String VERSION_SUFFIX = ".version";
+
+    private final File dir;
+    private final String configuration;
+    private final Set<String> used = new HashSet<>();
+    private int hits;
+    private int misses;
+
+    /**
+     * @param aMiraDir
+     *            the MIRA folder of the trained feature.
+     * @param aName
+     *            the name of the cache. Caches with different names do not share entries.
+     * @param aConfiguration
+     *            everything besides the CAS which affects the extracted rows. Entries extracted
+     *            with a different configuration are not used.
+     */
+    public MiraFeatureCache(File aMiraDir, String aName, String aConfiguration)
+    {
+        dir = new File(new File(aMiraDir, "cache"), aName);
+        configuration = aConfiguration;
+    }
+
+    /**
+     * Returns the feature rows of a document, extracting them only if they are not cached yet or
+     * the CAS changed since they were cached.
+     *
+     * @param aKey
+     *            identifies the document within this cache.
+     * @param aCasFile
+     *            the CAS file the rows are extracted from.
+     * @param aExtractor
+     *            extracts the rows from the CAS.
+     * @return the feature rows.
+     */
+    public String get(String aKey, File aCasFile, FeatureRowExtractor aExtractor)
+        throws IOException, UIMAException
+    {
+        used.add(aKey);
+
+        String version = aCasFile.exists() ? configuration + "|" + aCasFile.lastModified() + ":"
+                + aCasFile.length() : null;
+        File rowsFile = new File(dir, aKey + ROWS_SUFFIX);
+        File versionFile = new File(dir, aKey + VERSION_SUFFIX);
+        if (version != null && rowsFile.exists() && versionFile.exists()
+                && version.equals(FileUtils.readFileToString(versionFile, UTF_8))) {
+            hits++;
+            return FileUtils.readFileToString(rowsFile, UTF_8);
+        }
+
+        misses++;
+        String rows = aExtractor.extract();
+        if (version != null) {
+            // The version is written last, so an interrupted write leaves an invalid entry behind
+            FileUtils.writeStringToFile(rowsFile, rows, UTF_8);
+            FileUtils.writeStringToFile(versionFile, version, UTF_8);
+        }
+        return rows;
+    }
+
+    /**
+     * Removes the entries which were not requested since this cache was created, e.g. those of
+     * deleted documents.
+     */
+    public void purge()
+    {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                String key = name.substring(0, name.lastIndexOf('.'));
+                if (!used.contains(key)) {
+                    FileUtils.deleteQuietly(file);
+                }
+            }
+        }
+        LOG.info("Feature rows of [{}]: {} documents reused, {} documents extracted",
+                dir.getName(), hits, misses);
+    }
+
+    @FunctionalInterface
+    public interface FeatureRowExtractor
+    {
+        String extract()
+            throws IOException, UIMAException;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.automation.util;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getAddr;
+import static org.apache.uima.fit.util.CasUtil.getType;
+import static org.apache.uima.fit.util.CasUtil.indexCovered;
+import static org.apache.uima.fit.util.JCasUtil.select;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.CASException;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.jcas.JCas;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.AutomationTypeAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.SpanAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+/**
+ * Builds the MIRA feature rows of a document. Each token becomes one row consisting of the token
+ * text, its prefixes and suffixes of up to four characters and its label. Each sentence is
+ * followed by an empty row.
+ * <p>
+ * The rows are built from the token offsets and the document text, and the labels are looked up
+ * for the whole document at once, so apart from the rows themselves hardly any objects are
+ * created per token. Instances are not thread-safe, but they can be reused.
+ */
+public class MiraRowBuilder
+{
+    private static final String NIL = "__nil__";
+    private static final String OUTSIDE = "O";
+
+    private final StringBuilder rows = new StringBuilder();
+
+    /**
+     * @param aLayerFeature
+     *            the feature providing the labels, or {@code null} to build rows without labels.
+     * @param aAdapter
+     *            the adapter of the layer of the feature.
+     * @return the feature rows of all sentences of the CAS.
+     */
+    public String build(JCas aJCas, AnnotationFeature aLayerFeature,
+            AutomationTypeAdapter aAdapter)
+        throws CASException
+    {
+        String text = aJCas.getDocumentText();
+        List<Token> tokens = new ArrayList<>(select(aJCas, Token.class));
+        String[] labels = aLayerFeature != null
+                ? getLabels(aJCas, tokens, aLayerFeature, aAdapter) : null;
+        // Affixes are not useful if annotations do not need to match the token boundaries
+        boolean affixes = aLayerFeature == null || aLayerFeature.getLayer().isLockToTokenOffset();
+
+        rows.setLength(0);
+        rows.ensureCapacity(text.length() * (affixes ? 8 : 3));
+        int t = 0;
+        for (Sentence sentence : select(aJCas, Sentence.class)) {
+            t = skipTo(tokens, t, sentence.getBegin());
+            for (; t < tokens.size() && tokens.get(t).getEnd() <= sentence.getEnd(); t++) {
+                Token token = tokens.get(t);
+                appendRow(rows, text, token.getBegin(), token.getEnd(), affixes,
+                        labels != null ? labels[t] : "");
+            }
+            rows.append('\n');
+        }
+        return rows.toString();
+    }
+
+    /**
+     * Appends the row of a single token.
+     *
+     * @param aText
+     *            the text containing the token.
+     * @param aBegin
+     *            the begin of the token in the text.
+     * @param aEnd
+     *            the end of the token in the text.
+     * @param aAffixes
+     *            whether to include the prefixes and suffixes of the token.
+     * @param aLabel
+     *            the label of the token.
+     */
+    public static void appendRow(StringBuilder aRows, CharSequence aText, int aBegin, int aEnd,
+            boolean aAffixes, String aLabel)
+    {
+        aRows.append(aText, aBegin, aEnd).append(' ');
+        if (aAffixes) {
+            int length = aEnd - aBegin;
+            // Prefixes - the first character of the token is always used as is
+            aRows.append(aText.charAt(aBegin)).append(' ');
+            for (int n = 2; n <= 4; n++) {
+                if (length >= n) {
+                    appendTrimmed(aRows, aText.charAt(aBegin));
+                    for (int i = 1; i < n; i++) {
+                        appendOrNil(aRows, aText.charAt(aBegin + i));
+                    }
+                }
+                else {
+                    aRows.append(NIL);
+                }
+                aRows.append(' ');
+            }
+            // Suffixes - the last character of the token is always used as is
+            aRows.append(aText.charAt(aEnd - 1)).append(' ');
+            for (int n = 2; n <= 4; n++) {
+                if (length >= n) {
+                    for (int i = n; i > 1; i--) {
+                        appendOrNil(aRows, aText.charAt(aEnd - i));
+                    }
+                    appendTrimmed(aRows, aText.charAt(aEnd - 1));
+                }
+                else {
+                    aRows.append(NIL);
+                }
+                aRows.append(' ');
+            }
+        }
+        aRows.append(aLabel).append('\n');
+    }
+
+    // Whitespace and control characters within an affix are replaced by a placeholder...
+    private static void appendOrNil(StringBuilder aRows, char aChar)
+    {
+        if (aChar <= ' ') {
+            aRows.append(NIL);
+        }
+        else {
+            aRows.append(aChar);
+        }
+    }
+
+    // ... except for the first character of a prefix and the last character of a suffix, which
+    // are dropped
+    private static void appendTrimmed(StringBuilder aRows, char aChar)
+    {
+        if (aChar > ' ') {
+            aRows.append(aChar);
+        }
+    }
+
+    private static int skipTo(List<Token> aTokens, int aIndex, int aBegin)
+    {
+        int i = aIndex;
+        while (i < aTokens.size() && aTokens.get(i).getBegin() < aBegin) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String[] getLabels(JCas aJCas, List<Token> aTokens,
+            AnnotationFeature aLayerFeature, AutomationTypeAdapter aAdapter)
+        throws CASException
+    {
+        String[] labels = new String[aTokens.size()];
+        if (aLayerFeature.getLayer().isMultipleTokens()) {
+            // Multi-token annotations are labelled using the BIO scheme per sentence
+            SpanAdapter adapter = (SpanAdapter) aAdapter;
+            int t = 0;
+            for (Sentence sentence : select(aJCas, Sentence.class)) {
+                Map<Integer, String> multAnno = adapter.getMultipleAnnotation(sentence,
+                        aLayerFeature);
+                t = skipTo(aTokens, t, sentence.getBegin());
+                for (; t < aTokens.size() && aTokens.get(t).getEnd() <= sentence.getEnd(); t++) {
+                    String label = multAnno.get(getAddr(aTokens.get(t)));
+                    labels[t] = label != null ? label : OUTSIDE;
+                }
+            }
+        }
+        else if (aAdapter instanceof SpanAdapter) {
+            // Same as SpanAdapter.getAnnotation(), but for all tokens of the document at once
+            CAS cas = aJCas.getCas();
+            Type type = getType(cas, ((SpanAdapter) aAdapter).getAnnotationTypeName());
+            Feature feature = type.getFeatureByBaseName(aLayerFeature.getName());
+            Map<AnnotationFS, Collection<AnnotationFS>> index = indexCovered(cas,
+                    getType(cas, Token.class), type);
+            for (int t = 0; t < aTokens.size(); t++) {
+                Collection<AnnotationFS> covered = index.get(aTokens.get(t));
+                labels[t] = covered == null || covered.isEmpty() ? AutomationUtil.NILL
+                        : covered.iterator().next().getFeatureValueAsString(feature);
+            }
+        }
+        else {
+            int t = 0;
+            for (Sentence sentence : select(aJCas, Sentence.class)) {
+                List<String> annotations = aAdapter.getAnnotation(sentence, aLayerFeature);
+                t = skipTo(aTokens, t, sentence.getBegin());
+                for (int i = 0; t < aTokens.size()
+                        && aTokens.get(t).getEnd() <= sentence.getEnd(); t++, i++) {
+                    labels[t] = annotations.isEmpty() ? AutomationUtil.NILL
+                            : annotations.get(i);
+                }
+            }
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.automation.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.impl.Serialization;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.util.CasCreationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tudarmstadt.ukp.clarin.webanno.automation.service.AutomationService;
+import de.tudarmstadt.ukp.clarin.webanno.model.TrainingDocument;
+
+/**
+ * Cache for the training CASes read during one automation run, so that every training document is
+ * only read from disk once even if it is used by several training steps.
+ * <p>
+ * At most {@code aMaxCases} CASes are kept in memory. When a CAS is evicted, it is kept in the
+ * compressed binary CAS format instead and is restored from there if it is needed again. Compressed
+ * copies are only kept as long as the heap is not running low, otherwise the CAS is read from disk
+ * again.
+ * <p>
+ * The CASes returned by the cache are shared and must not be modified. Instances are not
+ * thread-safe.
+ */
+public class TrainingCasCache
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TrainingCasCache.class);
+
+    private final AutomationService automationService;
+    private final int maxCases;
+
+    // Document ID -> CAS, least recently used first
+    private final Map<Long, JCas> cases = new LinkedHashMap<>(16, 0.75f, true);
+    // Document ID -> evicted CAS in compressed binary format
+    private final Map<Long, CompressedCas> compressed = new HashMap<>();
+    private int reads;
+    private int restores;
+    private int hits;
+
+    /**
+     * @param aMaxCases
+     *            the number of CASes kept in memory.
+     */
+    public TrainingCasCache(AutomationService aAutomationService, int aMaxCases)
+    {
+        automationService = aAutomationService;
+        maxCases = Math.max(1, aMaxCases);
+    }
+
+    /**
+     * Reads the annotation CAS of the given training document, creating it if it does not exist
+     * yet.
+     */
+    public JCas read(TrainingDocument aDocument)
+        throws IOException, UIMAException
+    {
+        JCas jcas = cases.get(aDocument.getId());
+        if (jcas != null) {
+            hits++;
+            return jcas;
+        }
+
+        CompressedCas evicted = compressed.remove(aDocument.getId());
+        if (evicted != null) {
+            jcas = evicted.restore();
+            restores++;
+        }
+        else {
+            jcas = automationService.readTrainingAnnotationCas(aDocument);
+            reads++;
+        }
+
+        cases.put(aDocument.getId(), jcas);
+        evict();
+        return jcas;
+    }
+
+    private void evict()
+        throws IOException
+    {
+        Iterator<Map.Entry<Long, JCas>> i = cases.entrySet().iterator();
+        while (cases.size() > maxCases && i.hasNext()) {
+            Map.Entry<Long, JCas> eldest = i.next();
+            i.remove();
+            if (!HeapUtil.isHeapLow()) {
+                compressed.put(eldest.getKey(), new CompressedCas(eldest.getValue().getCas()));
+            }
+        }
+    }
+
+    /**
+     * Releases all cached CASes.
+     */
+    public void clear()
+    {
+        LOG.info("Training CAS cache: {} read from disk, {} restored from compressed copies, "
+                + "{} hits", reads, restores, hits);
+        cases.clear();
+        compressed.clear();
+    }
+
+    private static class CompressedCas
+    {
+        private final TypeSystem typeSystem;
+        private final byte[] data;
+
+        CompressedCas(CAS aCas)
+            throws IOException
+        {
+            typeSystem = aCas.getTypeSystem();
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            Serialization.serializeWithCompression(aCas, bos);
+            data = bos.toByteArray();
+        }
+
+        JCas restore()
+            throws UIMAException
+        {
+            // The compressed binary format does not contain the type system, so the CAS is
+            // restored into a new CAS using the type system of the original one
+            CAS cas = CasCreationUtils.createCas(typeSystem, null, null, null);
+            Serialization.deserializeCAS(cas, new ByteArrayInputStream(data));
+            return cas.getJCas();
+        }
+    }
+}
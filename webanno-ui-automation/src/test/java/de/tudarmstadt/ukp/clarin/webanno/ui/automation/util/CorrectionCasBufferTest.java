@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.automation.util;
+
+import static de.tudarmstadt.ukp.clarin.webanno.ui.automation.util.ServiceStubs.makeSourceDocument;
+import static de.tudarmstadt.ukp.clarin.webanno.ui.automation.util.ServiceStubs.stub;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.CorrectionDocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.ui.automation.util.ServiceStubs.DocumentCounter;
+
+public class CorrectionCasBufferTest
+{
+    // Document ID -> CAS in the storage
+    private Map<Long, JCas> storage;
+    private DocumentCounter writeCounts;
+    // IDs of the documents whose CASes cannot be written
+    private Set<Long> broken;
+    private List<SourceDocument> failedDocuments;
+
+    private CorrectionDocumentService service;
+
+    private SourceDocument doc1;
+    private SourceDocument doc2;
+
+    @Before
+    public void setup()
+    {
+        storage = new ConcurrentHashMap<>();
+        writeCounts = new DocumentCounter();
+        broken = new HashSet<>();
+        failedDocuments = new ArrayList<>();
+
+        service = stub(CorrectionDocumentService.class, "writeCorrectionCas", args -> {
+            SourceDocument doc = (SourceDocument) args[1];
+            if (broken.contains(doc.getId())) {
+                throw new IOException("Cannot write [" + doc.getName() + "]");
+            }
+            storage.put(doc.getId(), (JCas) args[0]);
+            writeCounts.increment(doc.getId());
+            return null;
+        });
+
+        doc1 = makeSourceDocument(1, "doc1");
+        doc2 = makeSourceDocument(2, "doc2");
+    }
+
+    @Test
+    public void thatRepeatedUpdatesAreCoalesced()
+        throws Exception
+    {
+        JCas first = JCasFactory.createJCas();
+        JCas second = JCasFactory.createJCas();
+        JCas other = JCasFactory.createJCas();
+
+        CorrectionCasBuffer buffer = new CorrectionCasBuffer(service, 10, 1, this::failed);
+        buffer.write(first, doc1);
+        buffer.write(second, doc1);
+        buffer.write(other, doc2);
+
+        assertTrue(writeCounts.isEmpty());
+
+        buffer.close();
+
+        assertEquals(1, writeCounts.get(doc1.getId()));
+        assertEquals(1, writeCounts.get(doc2.getId()));
+        assertSame(second, storage.get(doc1.getId()));
+        assertSame(other, storage.get(doc2.getId()));
+        assertTrue(failedDocuments.isEmpty());
+    }
+
+    @Test
+    public void thatBufferIsFlushedWhenFull()
+        throws Exception
+    {
+        CorrectionCasBuffer buffer = new CorrectionCasBuffer(service, 2, 1, this::failed);
+        buffer.write(JCasFactory.createJCas(), doc1);
+        assertTrue(writeCounts.isEmpty());
+
+        buffer.write(JCasFactory.createJCas(), doc2);
+        assertEquals(1, writeCounts.get(doc1.getId()));
+        assertEquals(1, writeCounts.get(doc2.getId()));
+
+        // Nothing is left to be written when the buffer is closed
+        buffer.close();
+        assertEquals(1, writeCounts.get(doc1.getId()));
+        assertEquals(1, writeCounts.get(doc2.getId()));
+    }
+
+    @Test
+    public void thatWriteFailuresAreReportedPerDocument()
+        throws Exception
+    {
+        broken.add(doc2.getId());
+
+        CorrectionCasBuffer buffer = new CorrectionCasBuffer(service, 10, 2, this::failed);
+        buffer.write(JCasFactory.createJCas(), doc1);
+        buffer.write(JCasFactory.createJCas(), doc2);
+        buffer.close();
+
+        assertEquals(asList(doc2), failedDocuments);
+        assertEquals(1, writeCounts.get(doc1.getId()));
+        assertFalse(storage.containsKey(doc2.getId()));
+    }
+
+    private synchronized void failed(SourceDocument aDocument, Exception aError)
+    {
+        failedDocuments.add(aDocument);
+    }
+}
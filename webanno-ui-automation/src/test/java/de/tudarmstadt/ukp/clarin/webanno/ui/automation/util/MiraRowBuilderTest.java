@@ -0,0 +1,233 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.automation.util;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.SPAN_TYPE;
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getAddr;
+import static java.util.Arrays.asList;
+import static org.apache.uima.fit.util.JCasUtil.select;
+import static org.apache.uima.fit.util.JCasUtil.selectCovered;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.AutomationTypeAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.SpanAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Lemma;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+/**
+ * Checks that {@link MiraRowBuilder} produces exactly the rows of the per-sentence extraction it
+ * replaced. The rows are written to the MIRA training and prediction files and are cached per
+ * document, so they must not change.
+ */
+public class MiraRowBuilderTest
+{
+    private static final String NIL = "__nil__";
+    private static final String NILL = "__nill__";
+
+    private JCas jcas;
+
+    @Before
+    public void setup()
+        throws Exception
+    {
+        jcas = JCasFactory.createJCas();
+
+        // Tokens of 1 to 5 characters, with whitespace at the start, inside and at the end
+        StringBuilder text = new StringBuilder();
+        addSentence(text, "I", "am", "a b", "ab c", "\tfg", "hi ", "abcd", "x y z");
+        addSentence(text, " ", "longer", "c d", "e", "f\tg h", "last", ".");
+        addSentence(text, "ok");
+        jcas.setDocumentText(text.toString());
+
+        List<Token> tokens = new ArrayList<>(select(jcas, Token.class));
+        // Single-token annotations, one of them without a value
+        addLemma(tokens.get(0), tokens.get(0), "PRON");
+        addLemma(tokens.get(2), tokens.get(2), "A");
+        addLemma(tokens.get(6), tokens.get(6), null);
+        // Multi-token annotations, one of them spanning a whole sentence
+        addLemma(tokens.get(3), tokens.get(5), "MULTI");
+        addLemma(tokens.get(8), tokens.get(14), "SENT");
+        addLemma(tokens.get(10), tokens.get(11), "NESTED");
+    }
+
+    @Test
+    public void thatUnlabeledRowsAreUnchanged()
+        throws Exception
+    {
+        assertRows(null, adapter(true, false));
+    }
+
+    @Test
+    public void thatRowsOfTokenLayerAreUnchanged()
+        throws Exception
+    {
+        SpanAdapter adapter = adapter(true, false);
+        assertRows(feature(adapter), adapter);
+    }
+
+    @Test
+    public void thatRowsOfMultiTokenLayerAreUnchanged()
+        throws Exception
+    {
+        SpanAdapter adapter = adapter(false, true);
+        assertRows(feature(adapter), adapter);
+    }
+
+    @Test
+    public void thatRowsOfLayerNotLockedToTokensAreUnchanged()
+        throws Exception
+    {
+        SpanAdapter adapter = adapter(false, false);
+        assertRows(feature(adapter), adapter);
+    }
+
+    private void assertRows(AnnotationFeature aFeature, AutomationTypeAdapter aAdapter)
+        throws Exception
+    {
+        StringBuilder expected = new StringBuilder();
+        for (Sentence sentence : select(jcas, Sentence.class)) {
+            expected.append(previousRow(sentence, aFeature, aAdapter)).append("\n");
+        }
+
+        MiraRowBuilder builder = new MiraRowBuilder();
+        assertEquals(expected.toString(), builder.build(jcas, aFeature, aAdapter));
+        // The builder can be reused
+        assertEquals(expected.toString(), builder.build(jcas, aFeature, aAdapter));
+    }
+
+    private void addSentence(StringBuilder aText, String... aTokens)
+    {
+        int begin = aText.length();
+        for (String token : aTokens) {
+            if (aText.length() > begin) {
+                aText.append(' ');
+            }
+            new Token(jcas, aText.length(), aText.length() + token.length()).addToIndexes();
+            aText.append(token);
+        }
+        new Sentence(jcas, begin, aText.length()).addToIndexes();
+        aText.append('\n');
+    }
+
+    private void addLemma(Token aFirst, Token aLast, String aValue)
+    {
+        Lemma lemma = new Lemma(jcas, aFirst.getBegin(), aLast.getEnd());
+        lemma.setValue(aValue);
+        lemma.addToIndexes();
+    }
+
+    private static SpanAdapter adapter(boolean aLockToTokenOffset, boolean aMultipleTokens)
+    {
+        AnnotationLayer layer = new AnnotationLayer(Lemma.class.getName(), "Lemma", SPAN_TYPE,
+                null, false);
+        layer.setLockToTokenOffset(aLockToTokenOffset);
+        layer.setMultipleTokens(aMultipleTokens);
+
+        AnnotationFeature feature = new AnnotationFeature();
+        feature.setLayer(layer);
+        feature.setName("value");
+        feature.setType(CAS.TYPE_NAME_STRING);
+
+        // The feature support registry is only needed when editing annotations
+        return new SpanAdapter(null, layer, asList(feature));
+    }
+
+    private static AnnotationFeature feature(SpanAdapter aAdapter)
+    {
+        return aAdapter.listFeatures().iterator().next();
+    }
+
+    /**
+     * The per-sentence extraction which was used before {@link MiraRowBuilder}.
+     */
+    private static StringBuffer previousRow(Sentence sentence, AnnotationFeature aLayerFeature,
+            AutomationTypeAdapter aAdapter)
+        throws Exception
+    {
+        StringBuffer sb = new StringBuffer();
+
+        String tag = "";
+        List<String> annotations = new ArrayList<>();
+        Map<Integer, String> multAnno = null;
+        if (aLayerFeature != null) {
+            if (aLayerFeature.getLayer().isMultipleTokens()) {
+                multAnno = ((SpanAdapter) aAdapter).getMultipleAnnotation(sentence,
+                        aLayerFeature);
+            }
+            else {
+                annotations = aAdapter.getAnnotation(sentence, aLayerFeature);
+            }
+        }
+
+        int i = 0;
+        for (Token token : selectCovered(Token.class, sentence)) {
+            String word = token.getCoveredText();
+
+            char[] words = word.toCharArray();
+
+            String prefix1 = "", prefix2 = "", prefix3 = "", prefix4 = "", suffix1 = "",
+                    suffix2 = "", suffix3 = "", suffix4 = "";
+            if (aLayerFeature == null || aLayerFeature.getLayer().isLockToTokenOffset()) {
+                prefix1 = Character.toString(words[0]) + " ";
+                prefix2 = (words.length > 1 ? prefix1.trim() + nil(words[1]) : NIL) + " ";
+                prefix3 = (words.length > 2 ? prefix2.trim() + nil(words[2]) : NIL) + " ";
+                prefix4 = (words.length > 3 ? prefix3.trim() + nil(words[3]) : NIL) + " ";
+                suffix1 = Character.toString(words[words.length - 1]) + " ";
+                suffix2 = (words.length > 1 ? nil(words[words.length - 2]) + suffix1.trim()
+                        : NIL) + " ";
+                suffix3 = (words.length > 2 ? nil(words[words.length - 3]) + suffix2.trim()
+                        : NIL) + " ";
+                suffix4 = (words.length > 3 ? nil(words[words.length - 4]) + suffix3.trim()
+                        : NIL) + " ";
+            }
+
+            if (aLayerFeature != null) {
+                if (aLayerFeature.getLayer().isMultipleTokens()) {
+                    tag = multAnno.get(getAddr(token)) == null ? "O"
+                            : multAnno.get(getAddr(token));
+                }
+                else {
+                    tag = annotations.size() == 0 ? NILL : annotations.get(i);
+                    i++;
+                }
+            }
+            sb.append(word).append(" ").append(prefix1).append(prefix2).append(prefix3)
+                    .append(prefix4).append(suffix1).append(suffix2).append(suffix3)
+                    .append(suffix4).append(tag).append("\n");
+        }
+        return sb;
+    }
+
+    private static String nil(char aChar)
+    {
+        return Character.toString(aChar).trim().equals("") ? NIL : Character.toString(aChar);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.automation.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.TrainingDocument;
+
+/**
+ * Stubs and fixtures shared by the tests of the automation CAS caches.
+ */
+final class ServiceStubs
+{
+    private ServiceStubs()
+    {
+        // No instances
+    }
+
+    /**
+     * Creates a stub of the given service which only implements the given method. Calling any
+     * other method of the service fails.
+     */
+    static <T> T stub(Class<T> aInterface, String aMethod, Answer aAnswer)
+    {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "Stub for " + aInterface.getSimpleName();
+                }
+            }
+
+            if (!method.getName().equals(aMethod)) {
+                throw new UnsupportedOperationException("Not supported by the stub: "
+                        + aInterface.getSimpleName() + "." + method.getName());
+            }
+            return aAnswer.answer(args != null ? args : new Object[0]);
+        };
+
+        return aInterface.cast(Proxy.newProxyInstance(aInterface.getClassLoader(),
+                new Class<?>[] { aInterface }, handler));
+    }
+
+    static SourceDocument makeSourceDocument(long aId, String aName)
+    {
+        SourceDocument doc = new SourceDocument();
+        doc.setId(aId);
+        doc.setName(aName);
+        return doc;
+    }
+
+    static TrainingDocument makeTrainingDocument(long aId, String aName)
+    {
+        TrainingDocument doc = new TrainingDocument();
+        doc.setId(aId);
+        doc.setName(aName);
+        return doc;
+    }
+
+    /**
+     * Implementation of the stubbed method.
+     */
+    @FunctionalInterface
+    interface Answer
+    {
+        Object answer(Object[] aArgs)
+            throws Exception;
+    }
+
+    /**
+     * Counts how often the stubbed method was called for each document. Instances are
+     * thread-safe.
+     */
+    static class DocumentCounter
+    {
+        // Document ID -> number of calls
+        private final Map<Long, Integer> counts = new ConcurrentHashMap<>();
+
+        void increment(long aDocumentId)
+        {
+            counts.merge(aDocumentId, 1, Integer::sum);
+        }
+
+        int get(long aDocumentId)
+        {
+            return counts.getOrDefault(aDocumentId, 0);
+        }
+
+        boolean isEmpty()
+        {
+            return counts.isEmpty();
+        }
+    }
+}
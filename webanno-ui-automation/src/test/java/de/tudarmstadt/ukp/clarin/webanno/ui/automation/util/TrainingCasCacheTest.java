@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.automation.util;
+
+import static de.tudarmstadt.ukp.clarin.webanno.ui.automation.util.ServiceStubs.makeTrainingDocument;
+import static de.tudarmstadt.ukp.clarin.webanno.ui.automation.util.ServiceStubs.stub;
+import static org.apache.uima.fit.util.JCasUtil.select;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.automation.service.AutomationService;
+import de.tudarmstadt.ukp.clarin.webanno.model.TrainingDocument;
+import de.tudarmstadt.ukp.clarin.webanno.ui.automation.util.ServiceStubs.DocumentCounter;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+public class TrainingCasCacheTest
+{
+    // Number of times the CAS of a document was read from the storage
+    private DocumentCounter readCounts;
+
+    private AutomationService service;
+
+    private TrainingDocument doc1;
+    private TrainingDocument doc2;
+    private TrainingDocument doc3;
+
+    @Before
+    public void setup()
+    {
+        readCounts = new DocumentCounter();
+
+        // Every read creates a new CAS containing the document name as text and a single token
+        service = stub(AutomationService.class, "readTrainingAnnotationCas", args -> {
+            TrainingDocument doc = (TrainingDocument) args[0];
+            readCounts.increment(doc.getId());
+            JCas jcas = JCasFactory.createJCas();
+            jcas.setDocumentText(doc.getName());
+            new Token(jcas, 0, doc.getName().length()).addToIndexes();
+            return jcas;
+        });
+
+        doc1 = makeTrainingDocument(1, "doc1");
+        doc2 = makeTrainingDocument(2, "doc2");
+        doc3 = makeTrainingDocument(3, "doc3");
+    }
+
+    @Test
+    public void thatLeastRecentlyUsedCasIsEvicted()
+        throws Exception
+    {
+        TrainingCasCache cache = new TrainingCasCache(service, 2);
+
+        JCas cas1 = cache.read(doc1);
+        JCas cas2 = cache.read(doc2);
+        assertSame(cas1, cache.read(doc1));
+
+        // doc2 is now the least recently used document and makes room for doc3
+        cache.read(doc3);
+
+        assertSame(cas1, cache.read(doc1));
+        assertNotSame(cas2, cache.read(doc2));
+    }
+
+    @Test
+    public void thatEvictedCasIsRestoredFromCompressedCopy()
+        throws Exception
+    {
+        TrainingCasCache cache = new TrainingCasCache(service, 1);
+
+        JCas cas1 = cache.read(doc1);
+        cache.read(doc2);
+
+        JCas restored = cache.read(doc1);
+        assertNotSame(cas1, restored);
+        assertEquals("doc1", restored.getDocumentText());
+        assertEquals(1, select(restored, Token.class).size());
+
+        // The evicted CAS was not read from the storage again
+        assertEquals(1, readCounts.get(doc1.getId()));
+        assertEquals(1, readCounts.get(doc2.getId()));
+    }
+
+    @Test
+    public void thatClearedCacheReadsFromStorage()
+        throws Exception
+    {
+        TrainingCasCache cache = new TrainingCasCache(service, 2);
+
+        JCas cas1 = cache.read(doc1);
+        cache.clear();
+
+        assertNotSame(cas1, cache.read(doc1));
+        assertEquals(2, readCounts.get(doc1.getId()));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.core.database;
+
+import java.util.List;
+
+import org.apache.wicket.RestartResponseException;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.link.Link;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.spring.injection.annot.SpringBean;
+import org.wicketstuff.annotation.mount.MountPath;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.DatabasePoolStatistics;
+import de.tudarmstadt.ukp.clarin.webanno.api.DatabaseQueryStatistics;
+import de.tudarmstadt.ukp.clarin.webanno.api.DatabaseStatisticsService;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
+import de.tudarmstadt.ukp.clarin.webanno.api.SecurityUtil;
+import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
+import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaModel;
+import de.tudarmstadt.ukp.clarin.webanno.ui.core.menu.MenuItem;
+import de.tudarmstadt.ukp.clarin.webanno.ui.core.menu.MenuItemCondition;
+import de.tudarmstadt.ukp.clarin.webanno.ui.core.page.ApplicationPageBase;
+
+/**
+ * Shows the state of the database connection pool and the slowest and most frequently executed
+ * queries along with the service methods executing them.
+ */
+@MenuItem(icon = "images/cog.png", label = "Database")
+@MountPath("/database.html")
+public class DatabaseStatisticsPage
+    extends ApplicationPageBase
+{
+    private static final long serialVersionUID = 4212879526150813291L;
+
+    private static final int TOP_QUERIES = 20;
+
+    private @SpringBean DatabaseStatisticsService databaseStatisticsService;
+    private @SpringBean ProjectService projectService;
+    private @SpringBean UserDao userRepository;
+
+    public DatabaseStatisticsPage()
+    {
+        if (!SecurityUtil.isSuperAdmin(projectService, userRepository.getCurrentUser())) {
+            throw new RestartResponseException(getApplication().getHomePage());
+        }
+
+        IModel<DatabasePoolStatistics> pool = LambdaModel
+                .of(databaseStatisticsService::getPoolStatistics);
+
+        WebMarkupContainer poolContainer = new WebMarkupContainer("pool");
+        poolContainer.add(new Label("active", LambdaModel.of(() -> pool.getObject().getActive())));
+        poolContainer.add(new Label("idle", LambdaModel.of(() -> pool.getObject().getIdle())));
+        poolContainer.add(
+                new Label("maxActive", LambdaModel.of(() -> pool.getObject().getMaxActive())));
+        poolContainer.add(new Label("requests",
+                LambdaModel.of(() -> pool.getObject().getConnectionRequests())));
+        poolContainer.add(new Label("averageWait", LambdaModel
+                .of(() -> String.format("%.2f", pool.getObject().getAverageWaitTime()))));
+        poolContainer.add(
+                new Label("maxWait", LambdaModel.of(() -> pool.getObject().getMaxWaitTime())));
+        add(poolContainer);
+
+        add(new Label("disabled", getString("queryStatisticsDisabled"))
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void onConfigure()
+            {
+                super.onConfigure();
+                setVisible(!databaseStatisticsService.isQueryStatisticsEnabled());
+            }
+        });
+
+        add(new QueryListView("slowest", LambdaModel
+                .of(() -> databaseStatisticsService.listSlowestQueries(TOP_QUERIES))));
+        add(new QueryListView("frequent", LambdaModel
+                .of(() -> databaseStatisticsService.listMostFrequentQueries(TOP_QUERIES))));
+
+        add(new Link<Void>("reset")
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void onClick()
+            {
+                databaseStatisticsService.reset();
+            }
+        });
+    }
+
+    private static class QueryListView
+        extends ListView<DatabaseQueryStatistics>
+    {
+        private static final long serialVersionUID = -3054906411385961707L;
+
+        public QueryListView(String aId, IModel<List<DatabaseQueryStatistics>> aModel)
+        {
+            super(aId, aModel);
+        }
+
+        @Override
+        protected void populateItem(ListItem<DatabaseQueryStatistics> aItem)
+        {
+            DatabaseQueryStatistics stats = aItem.getModelObject();
+            aItem.add(new Label("query", stats.getQuery()));
+            aItem.add(new Label("callSites", String.join(", ", stats.getCallSites())));
+            aItem.add(new Label("count", stats.getExecutionCount()));
+            aItem.add(new Label("averageTime", stats.getAverageTime()));
+            aItem.add(new Label("maxTime", stats.getMaxTime()));
+            aItem.add(new Label("rows", stats.getRowCount()));
+        }
+    }
+
+    @MenuItemCondition
+    public static boolean menuItemCondition(ProjectService aRepo, UserDao aUserRepo)
+    {
+        return SecurityUtil.isSuperAdmin(aRepo, aUserRepo.getCurrentUser());
+    }
+}
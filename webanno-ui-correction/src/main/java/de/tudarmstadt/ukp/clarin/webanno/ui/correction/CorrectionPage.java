@@ -70,6 +70,7 @@ import de.tudarmstadt.ukp.clarin.webanno.constraints.ConstraintsService;
 import de.tudarmstadt.ukp.clarin.webanno.curation.storage.CurationDocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.Mode;
+import de.tudarmstadt.ukp.clarin.webanno.model.PermissionLevel;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState;
@@ -371,9 +372,9 @@ public class CorrectionPage
                 User user = userRepository.get(
                         SecurityContextHolder.getContext().getAuthentication().getName());
                 List<DecoratedObject<Project>> allowedProject = new ArrayList<>();
-                for (Project project : projectService.listProjects()) {
-                    if (SecurityUtil.isAnnotator(project, projectService, user)
-                            && WebAnnoConst.PROJECT_TYPE_CORRECTION.equals(project.getMode())) {
+                for (Project project : projectService.listProjectsWithPermission(user,
+                        PermissionLevel.USER)) {
+                    if (WebAnnoConst.PROJECT_TYPE_CORRECTION.equals(project.getMode())) {
                         allowedProject.add(DecoratedObject.of(project));
                     }
                 }
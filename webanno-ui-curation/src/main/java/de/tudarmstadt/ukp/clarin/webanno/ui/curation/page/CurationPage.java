@@ -26,6 +26,7 @@ import static org.apache.uima.fit.util.JCasUtil.select;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -66,6 +67,7 @@ import de.tudarmstadt.ukp.clarin.webanno.curation.storage.CurationDocumentServic
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState;
 import de.tudarmstadt.ukp.clarin.webanno.model.Mode;
+import de.tudarmstadt.ukp.clarin.webanno.model.PermissionLevel;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState;
@@ -89,6 +91,8 @@ import de.tudarmstadt.ukp.clarin.webanno.ui.core.menu.MenuItemCondition;
 import de.tudarmstadt.ukp.clarin.webanno.ui.curation.component.CurationPanel;
 import de.tudarmstadt.ukp.clarin.webanno.ui.curation.component.model.CurationContainer;
 import de.tudarmstadt.ukp.clarin.webanno.ui.curation.component.model.SuggestionBuilder;
+import de.tudarmstadt.ukp.clarin.webanno.ui.curation.util.BulkMerge;
+import de.tudarmstadt.ukp.clarin.webanno.ui.curation.util.BulkMergeReport;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 import wicket.contrib.input.events.EventType;
 import wicket.contrib.input.events.InputBehavior;
@@ -135,6 +139,8 @@ public class CurationPage
     private CurationPanel curationPanel;
     private ChallengeResponseDialog remergeDocumentDialog;
     private ActionBarLink remergeDocumentLink;
+    private ActionBarLink mergeAgreeingLink;
+    private ConfirmationDialog mergeAgreeingDialog;
 
     private WebMarkupContainer finishDocumentIcon;
     private ConfirmationDialog finishDocumentDialog;
@@ -256,6 +262,16 @@ public class CurationPage
                     .equals(SourceDocumentState.CURATION_FINISHED));
         });
         add(remergeDocumentLink);
+        
+        mergeAgreeingLink = new ActionBarLink("mergeAgreeing", this::actionMergeAgreeing);
+        mergeAgreeingLink.onConfigure(_this -> {
+            AnnotatorState state = CurationPage.this.getModelObject();
+            _this.setEnabled(state.getDocument() != null && !state.getDocument().getState()
+                    .equals(SourceDocumentState.CURATION_FINISHED));
+        });
+        add(mergeAgreeingLink);
+        add(mergeAgreeingDialog = new ConfirmationDialog("mergeAgreeingDialog",
+                new StringResourceModel("MergeAgreeingDialog.title", this, null)));
 
         add(new LambdaAjaxLink("showOpenDocumentModal", this::actionShowOpenDocumentDialog));
         
@@ -366,17 +382,16 @@ public class CurationPage
                 List<DecoratedObject<Project>> allowedProject = new ArrayList<>();
                 List<Project> projectsWithFinishedAnnos = projectService
                         .listProjectsWithFinishedAnnos();
-                for (Project project : projectService.listProjects()) {
-                    if (SecurityUtil.isCurator(project, projectService, user)) {
-                        DecoratedObject<Project> dp = DecoratedObject.of(project);
-                        if (projectsWithFinishedAnnos.contains(project)) {
-                            dp.setColor("green");
-                        }
-                        else {
-                            dp.setColor("red");
-                        }
-                        allowedProject.add(dp);
+                for (Project project : projectService.listProjectsWithPermission(user,
+                        PermissionLevel.CURATOR)) {
+                    DecoratedObject<Project> dp = DecoratedObject.of(project);
+                    if (projectsWithFinishedAnnos.contains(project)) {
+                        dp.setColor("green");
+                    }
+                    else {
+                        dp.setColor("red");
                     }
+                    allowedProject.add(dp);
                 }
                 return allowedProject;
             }
@@ -560,6 +575,7 @@ public class CurationPage
             aCallbackTarget.add(finishDocumentLink);
             aCallbackTarget.add(curationPanel.editor);
             aCallbackTarget.add(remergeDocumentLink);
+            aCallbackTarget.add(mergeAgreeingLink);
         });
         finishDocumentDialog.show(aTarget);
     }
@@ -574,6 +590,31 @@ public class CurationPage
         aTarget.add(getFeedbackPanel());
     }
 
+    private void actionMergeAgreeing(AjaxRequestTarget aTarget)
+    {
+        AnnotatorState state = CurationPage.this.getModelObject();
+        BulkMerge merge = new BulkMerge(documentService, curationDocumentService,
+                annotationService);
+        
+        // Preview the merge in a dry run first - the curation CAS is only written once the user
+        // has confirmed the counts
+        BulkMergeReport preview = merge.merge(Arrays.asList(state.getDocument()), false, true);
+        mergeAgreeingDialog.setContentModel(
+                new StringResourceModel("MergeAgreeingDialog.text", this).setParameters(
+                        preview.getMerged(), preview.getPresent(), preview.getDisagreeing(),
+                        preview.getFailed()));
+        mergeAgreeingDialog.setConfirmAction((aCallbackTarget) -> {
+            AnnotatorState currentState = CurationPage.this.getModelObject();
+            BulkMergeReport report = new BulkMerge(documentService, curationDocumentService,
+                    annotationService).merge(Arrays.asList(currentState.getDocument()), false,
+                            false);
+            actionLoadDocument(aCallbackTarget);
+            info("Merge finished: " + report.getDocuments().get(0));
+            aCallbackTarget.add(getFeedbackPanel());
+        });
+        mergeAgreeingDialog.show(aTarget);
+    }
+
     /**
      * Open a document or to a different document. This method should be used only the first time
      * that a document is accessed. It reset the annotator state and upgrades the CAS.
@@ -664,6 +705,7 @@ public class CurationPage
             aTarget.add(getOrCreatePositionInfoLabel());
             aTarget.add(documentNamePanel);
             aTarget.add(remergeDocumentLink);
+            aTarget.add(mergeAgreeingLink);
             aTarget.add(finishDocumentLink);
         }
         catch (Exception e) {
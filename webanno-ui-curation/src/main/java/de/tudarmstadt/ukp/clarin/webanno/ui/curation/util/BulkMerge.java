@@ -0,0 +1,338 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.curation.util;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.CURATION_USER;
+import static de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentStateTransition.ANNOTATION_IN_PROGRESS_TO_CURATION_IN_PROGRESS;
+import static de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentStateTransition.transition;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.uima.UIMAException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.util.CasCopier;
+import org.apache.uima.util.CasCreationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.exception.AnnotationException;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.ArcPosition;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.Configuration;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.ConfigurationSet;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.DiffResult;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.LinkCompareBehavior;
+import de.tudarmstadt.ukp.clarin.webanno.curation.storage.CurationDocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState;
+import de.tudarmstadt.ukp.clarin.webanno.ui.curation.component.model.SuggestionBuilder;
+import de.tudarmstadt.ukp.clarin.webanno.ui.curation.util.BulkMergeReport.DocumentResult;
+
+/**
+ * Copies all annotations on which the annotators agree into the curation CAS of one or more
+ * documents in a single pass. This is the server-side counterpart of clicking every agreeing
+ * annotation in the curation view.
+ * <p>
+ * For each document, the finished annotator CASes and the curation CAS are diffed once. Every
+ * position at which all annotators made the same, non-stacked annotation (or, if majority voting
+ * is enabled, at which more than half of the annotators made the same annotation) and at which the
+ * curation CAS does not contain anything yet is copied to the curation CAS. Spans are merged before
+ * relations so that relation endpoints are already in place. The curation CAS is written at most
+ * once per document. Link features are not merged.
+ */
+public class BulkMerge
+{
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final DocumentService documentService;
+    private final CurationDocumentService curationDocumentService;
+    private final AnnotationSchemaService annotationService;
+
+    public BulkMerge(DocumentService aDocumentService,
+            CurationDocumentService aCurationDocumentService,
+            AnnotationSchemaService aAnnotationService)
+    {
+        documentService = aDocumentService;
+        curationDocumentService = aCurationDocumentService;
+        annotationService = aAnnotationService;
+    }
+
+    /**
+     * Merge the agreeing annotations of the given documents. Documents for which curation has
+     * already been finished are not touched. A failure on one document is recorded in the report
+     * and does not abort the others.
+     *
+     * @param aDocuments
+     *            the documents to merge.
+     * @param aMajorityVote
+     *            whether to also merge annotations made by a strict majority of annotators.
+     * @param aDryRun
+     *            if {@code true}, the annotations are merged into a scratch copy of the curation
+     *            CAS, so the report contains the same counts as a real merge but no CAS is
+     *            written.
+     * @return the merge report.
+     */
+    public BulkMergeReport merge(Collection<SourceDocument> aDocuments, boolean aMajorityVote,
+            boolean aDryRun)
+    {
+        BulkMergeReport report = new BulkMergeReport(aMajorityVote, aDryRun);
+        for (SourceDocument document : aDocuments) {
+            try {
+                report.add(merge(document, aMajorityVote, aDryRun));
+            }
+            catch (Exception e) {
+                log.error("Unable to merge document [{}]({})", document.getName(),
+                        document.getId(), e);
+                DocumentResult result = new DocumentResult(document.getId(), document.getName());
+                result.setMessage(ExceptionUtils.getRootCauseMessage(e));
+                report.add(result);
+            }
+        }
+        log.info("Bulk merge completed: {}", report);
+        return report;
+    }
+
+    public DocumentResult merge(SourceDocument aDocument, boolean aMajorityVote, boolean aDryRun)
+        throws IOException, UIMAException
+    {
+        DocumentResult result = new DocumentResult(aDocument.getId(), aDocument.getName());
+
+        if (SourceDocumentState.CURATION_FINISHED.equals(aDocument.getState())) {
+            result.setMessage("Curation already finished");
+            return result;
+        }
+
+        // Collect the CASes of all annotators which finished the document
+        Map<String, JCas> jCases = new LinkedHashMap<>();
+        AnnotationDocument randomAnnotationDocument = null;
+        for (AnnotationDocument annotationDocument : documentService
+                .listAnnotationDocuments(aDocument)) {
+            if (!AnnotationDocumentState.FINISHED.equals(annotationDocument.getState())) {
+                continue;
+            }
+            if (randomAnnotationDocument == null) {
+                randomAnnotationDocument = annotationDocument;
+            }
+            jCases.put(annotationDocument.getUser(),
+                    documentService.readAnnotationCas(annotationDocument));
+        }
+
+        if (jCases.isEmpty()) {
+            result.setMessage("No finished annotations");
+            return result;
+        }
+
+        Set<String> annotators = new HashSet<>(jCases.keySet());
+
+        List<AnnotationLayer> layers = new ArrayList<>();
+        for (AnnotationLayer layer : annotationService
+                .listAnnotationLayer(aDocument.getProject())) {
+            if (layer.isEnabled()) {
+                layers.add(layer);
+            }
+        }
+
+        // Obtain the curation CAS - if there is none yet, create it in the same way as the
+        // curation page does when a document is opened for the first time.
+        boolean modified = false;
+        JCas mergeCas;
+        if (documentService.existsCas(aDocument, CURATION_USER)) {
+            mergeCas = curationDocumentService.readCurationCas(aDocument);
+            if (aDryRun) {
+                // Merge into a scratch copy so that the preview also counts the annotations which
+                // cannot be merged, without touching the curation CAS
+                mergeCas = copy(mergeCas);
+            }
+            jCases.put(CURATION_USER, mergeCas);
+        }
+        else {
+            mergeCas = copy(jCases.get(randomAnnotationDocument.getUser()));
+            jCases.put(CURATION_USER, mergeCas);
+            List<Type> entryTypes = SuggestionBuilder.getEntryTypes(mergeCas, layers,
+                    annotationService);
+            DiffResult initialDiff = CasDiff2.doDiffSingle(annotationService,
+                    aDocument.getProject(), entryTypes, LinkCompareBehavior.LINK_ROLE_AS_LABEL,
+                    jCases, 0, mergeCas.getDocumentText().length());
+            MergeCas.geMergeCas(initialDiff, jCases);
+            modified = true;
+        }
+
+        List<Type> entryTypes = SuggestionBuilder.getEntryTypes(mergeCas, layers,
+                annotationService);
+        DiffResult diff = CasDiff2.doDiffSingle(annotationService, aDocument.getProject(),
+                entryTypes, LinkCompareBehavior.LINK_ROLE_AS_LABEL, jCases, 0,
+                mergeCas.getDocumentText().length());
+
+        // Split the positions so that spans are merged before the relations attached to them.
+        // Sub-positions of link features are skipped.
+        List<ConfigurationSet> spans = new ArrayList<>();
+        List<ConfigurationSet> arcs = new ArrayList<>();
+        for (ConfigurationSet cfgSet : diff.getConfigurationSets()) {
+            if (cfgSet.getPosition().getFeature() != null) {
+                continue;
+            }
+            if (cfgSet.getPosition() instanceof ArcPosition) {
+                arcs.add(cfgSet);
+            }
+            else {
+                spans.add(cfgSet);
+            }
+        }
+
+        Map<String, AnnotationLayer> layerCache = new HashMap<>();
+        modified |= mergeConfigurationSets(aDocument, spans, jCases, annotators, layerCache,
+                aMajorityVote, result);
+        modified |= mergeConfigurationSets(aDocument, arcs, jCases, annotators, layerCache,
+                aMajorityVote, result);
+
+        if (modified && !aDryRun) {
+            curationDocumentService.writeCurationCas(mergeCas, aDocument, true);
+
+            if (!SourceDocumentState.CURATION_IN_PROGRESS.equals(aDocument.getState())) {
+                aDocument.setState(transition(ANNOTATION_IN_PROGRESS_TO_CURATION_IN_PROGRESS));
+                documentService.createSourceDocument(aDocument);
+            }
+        }
+
+        log.debug("Merged document {}", result);
+
+        return result;
+    }
+
+    private boolean mergeConfigurationSets(SourceDocument aDocument,
+            List<ConfigurationSet> aCfgSets, Map<String, JCas> aJCases, Set<String> aAnnotators,
+            Map<String, AnnotationLayer> aLayerCache, boolean aMajorityVote,
+            DocumentResult aResult)
+    {
+        JCas mergeCas = aJCases.get(CURATION_USER);
+        boolean modified = false;
+        for (ConfigurationSet cfgSet : aCfgSets) {
+            // Never override what the curator has already decided on
+            if (!cfgSet.getConfigurations(CURATION_USER).isEmpty()) {
+                aResult.incPresent();
+                continue;
+            }
+
+            Configuration candidate = selectCandidate(cfgSet, aAnnotators, aMajorityVote);
+            if (candidate == null) {
+                aResult.incDisagreeing();
+                continue;
+            }
+
+            String user = candidate.getCasGroupIds().stream()
+                    .filter(u -> !CURATION_USER.equals(u)).findFirst().get();
+            AnnotationFS fs = (AnnotationFS) candidate.getFs(user, aJCases);
+            AnnotationLayer layer = aLayerCache.computeIfAbsent(fs.getType().getName(),
+                typeName -> annotationService.getLayer(typeName, aDocument.getProject()));
+
+            try {
+                if (cfgSet.getPosition() instanceof ArcPosition) {
+                    Type type = fs.getType();
+                    Feature sourceFeat = type.getFeatureByBaseName(WebAnnoConst.FEAT_REL_SOURCE);
+                    Feature targetFeat = type.getFeatureByBaseName(WebAnnoConst.FEAT_REL_TARGET);
+                    MergeCas.addRelationArcAnnotation(mergeCas, fs, layer.getAttachType() != null,
+                            layer.isAllowStacking(), (AnnotationFS) fs.getFeatureValue(sourceFeat),
+                            (AnnotationFS) fs.getFeatureValue(targetFeat));
+                }
+                else {
+                    MergeCas.addSpanAnnotation(annotationService, layer, mergeCas, fs,
+                            layer.isAllowStacking());
+                }
+                aResult.incMerged();
+                modified = true;
+            }
+            catch (AnnotationException e) {
+                log.debug("Unable to merge [{}]: {}", cfgSet.getPosition(), e.getMessage());
+                aResult.incFailed();
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Determine the configuration to be copied to the curation CAS.
+     *
+     * @return the configuration or {@code null} if there is no agreement, the set is incomplete
+     *         or an annotator has stacked annotations at the position.
+     */
+    private static Configuration selectCandidate(ConfigurationSet aCfgSet, Set<String> aAnnotators,
+            boolean aMajorityVote)
+    {
+        Set<String> seen = new HashSet<>();
+        Configuration best = null;
+        int bestVotes = 0;
+        for (Configuration cfg : aCfgSet.getConfigurations()) {
+            int votes = 0;
+            for (String user : cfg.getCasGroupIds()) {
+                if (CURATION_USER.equals(user)) {
+                    continue;
+                }
+                // An annotator contributing to multiple configurations has stacked annotations
+                if (!seen.add(user)) {
+                    return null;
+                }
+                votes++;
+            }
+            if (votes > bestVotes) {
+                best = cfg;
+                bestVotes = votes;
+            }
+        }
+
+        if (bestVotes == aAnnotators.size()) {
+            return best;
+        }
+
+        if (aMajorityVote && bestVotes * 2 > aAnnotators.size()) {
+            return best;
+        }
+
+        return null;
+    }
+
+    /**
+     * Create a copy of the given CAS which can be modified without affecting the CAS which may
+     * still be held in the request-level CAS cache.
+     */
+    private static JCas copy(JCas aSource)
+        throws UIMAException
+    {
+        CAS target = CasCreationUtils.createCas(aSource.getTypeSystem(), null, null, null);
+        CasCopier.copyCas(aSource.getCas(), target, true);
+        return target.getJCas();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.curation.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a {@link BulkMerge} run. Contains one entry per processed document. In a dry run, the
+ * counts describe what would have been merged without the curation CASes having been modified.
+ */
+public class BulkMergeReport
+    implements Serializable
+{
+    private static final long serialVersionUID = -2436213893612471092L;
+
+    private final boolean majorityVote;
+    private final boolean dryRun;
+    private final List<DocumentResult> documents = new ArrayList<>();
+
+    public BulkMergeReport(boolean aMajorityVote, boolean aDryRun)
+    {
+        majorityVote = aMajorityVote;
+        dryRun = aDryRun;
+    }
+
+    public boolean isMajorityVote()
+    {
+        return majorityVote;
+    }
+
+    public boolean isDryRun()
+    {
+        return dryRun;
+    }
+
+    public void add(DocumentResult aResult)
+    {
+        documents.add(aResult);
+    }
+
+    public List<DocumentResult> getDocuments()
+    {
+        return Collections.unmodifiableList(documents);
+    }
+
+    public int getMerged()
+    {
+        return documents.stream().mapToInt(DocumentResult::getMerged).sum();
+    }
+
+    public int getPresent()
+    {
+        return documents.stream().mapToInt(DocumentResult::getPresent).sum();
+    }
+
+    public int getDisagreeing()
+    {
+        return documents.stream().mapToInt(DocumentResult::getDisagreeing).sum();
+    }
+
+    public int getFailed()
+    {
+        return documents.stream().mapToInt(DocumentResult::getFailed).sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s%d documents: %d merged, %d already present, %d disagreeing, "
+                + "%d failed", dryRun ? "[dry run] " : "", documents.size(), getMerged(),
+                getPresent(), getDisagreeing(), getFailed());
+    }
+
+    /**
+     * Merge counts for a single document.
+     */
+    public static class DocumentResult
+        implements Serializable
+    {
+        private static final long serialVersionUID = 6106361431335000929L;
+
+        private final long documentId;
+        private final String documentName;
+        private int merged;
+        private int present;
+        private int disagreeing;
+        private int failed;
+        private String message;
+
+        public DocumentResult(long aDocumentId, String aDocumentName)
+        {
+            documentId = aDocumentId;
+            documentName = aDocumentName;
+        }
+
+        public long getDocumentId()
+        {
+            return documentId;
+        }
+
+        public String getDocumentName()
+        {
+            return documentName;
+        }
+
+        /**
+         * @return number of positions copied (or, in a dry run, to be copied) to the curation CAS.
+         */
+        public int getMerged()
+        {
+            return merged;
+        }
+
+        void incMerged()
+        {
+            merged++;
+        }
+
+        /**
+         * @return number of positions for which the curation CAS already contains an annotation.
+         */
+        public int getPresent()
+        {
+            return present;
+        }
+
+        void incPresent()
+        {
+            present++;
+        }
+
+        /**
+         * @return number of positions which are incomplete, stacked or without the required
+         *         agreement.
+         */
+        public int getDisagreeing()
+        {
+            return disagreeing;
+        }
+
+        void incDisagreeing()
+        {
+            disagreeing++;
+        }
+
+        /**
+         * @return number of positions which were eligible but could not be copied, e.g. because
+         *         the endpoints of a relation are not in the curation CAS.
+         */
+        public int getFailed()
+        {
+            return failed;
+        }
+
+        void incFailed()
+        {
+            failed++;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+        public void setMessage(String aMessage)
+        {
+            message = aMessage;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("[%s](%d): %d merged, %d already present, %d disagreeing, "
+                    + "%d failed%s", documentName, documentId, merged, present, disagreeing,
+                    failed, message != null ? " - " + message : "");
+        }
+    }
+}
@@ -23,6 +23,7 @@ import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUt
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -96,6 +97,10 @@ public class MergeCas
 
         Set<String> users = aJCases.keySet();
 
+        // Look up annotations by their offsets instead of running a covered-select for every
+        // user and position
+        OffsetIndex index = new OffsetIndex(aJCases);
+
         for (Position position : aDiff.getPositions()) {
 
             Map<String, List<FeatureStructure>> annosPerUser = new HashMap<>();
@@ -110,7 +115,7 @@ public class MergeCas
                     .getFs(WebAnnoConst.CURATION_USER, aJCases);
 
             // Get Annotations per user in this position
-            getAllAnnosOnPosition(aJCases, annosPerUser, users, mergeAnno);
+            getAllAnnosOnPosition(index, annosPerUser, users, mergeAnno);
 
             for (FeatureStructure mergeFs : annosPerUser.get(WebAnnoConst.CURATION_USER)) {
                 // incomplete annotations
@@ -135,8 +140,8 @@ public class MergeCas
                         // all span anno on this target positions
                         Map<String, List<FeatureStructure>> targetAnnosPerUser = new HashMap<>();
 
-                        getAllAnnosOnPosition(aJCases, sourceAnnosPerUser, users, source);
-                        getAllAnnosOnPosition(aJCases, targetAnnosPerUser, users, target);
+                        getAllAnnosOnPosition(index, sourceAnnosPerUser, users, source);
+                        getAllAnnosOnPosition(index, targetAnnosPerUser, users, target);
 
                         if (isAgree(source, sourceAnnosPerUser)
                                 && isAgree(target, targetAnnosPerUser)) {
@@ -163,32 +168,47 @@ public class MergeCas
         }
 
         // remove annotations that do not agree or are a stacked ones
+        JCas megerCas = aJCases.get(WebAnnoConst.CURATION_USER);
+        Map<Integer, Token> tokenByBegin = null;
         for (FeatureStructure fs : annotationsToDelete) {
 
             if (!slotFeaturesToReset.contains(fs)) {
-                JCas megerCas = aJCases.get(WebAnnoConst.CURATION_USER);
                 // Check if this difference is on POS, STEM and LEMMA (so remove from the token too)
                 Type type = fs.getType();
                 int fsBegin = ((AnnotationFS) fs).getBegin();
                 int fsEnd = ((AnnotationFS) fs).getEnd();
-                if (type.getName().equals(POS.class.getName())) {
-                    megerCas.removeFsFromIndexes(fs);
-                    Token t = JCasUtil.selectCovered(megerCas, Token.class, fsBegin, fsEnd).get(0);
-                    t.setPos(null);
-                }
-                if (type.getName().equals(Stem.class.getName())) {
-                    megerCas.removeFsFromIndexes(fs);
-                    Token t = JCasUtil.selectCovered(megerCas, Token.class, fsBegin, fsEnd).get(0);
-                    t.setStem(null);
-                }
-                if (type.getName().equals(Lemma.class.getName())) {
+                boolean isPos = type.getName().equals(POS.class.getName());
+                boolean isStem = type.getName().equals(Stem.class.getName());
+                boolean isLemma = type.getName().equals(Lemma.class.getName());
+                if (isPos || isStem || isLemma) {
+                    if (tokenByBegin == null) {
+                        tokenByBegin = new HashMap<>();
+                        for (Token t : JCasUtil.select(megerCas, Token.class)) {
+                            tokenByBegin.putIfAbsent(t.getBegin(), t);
+                        }
+                    }
                     megerCas.removeFsFromIndexes(fs);
-                    Token t = JCasUtil.selectCovered(megerCas, Token.class, fsBegin, fsEnd).get(0);
-                    t.setLemma(null);
+                    Token t = tokenByBegin.get(fsBegin);
+                    if (t == null || t.getEnd() > fsEnd) {
+                        t = JCasUtil.selectCovered(megerCas, Token.class, fsBegin, fsEnd).get(0);
+                    }
+                    if (isPos) {
+                        t.setPos(null);
+                    }
+                    if (isStem) {
+                        t.setStem(null);
+                    }
+                    if (isLemma) {
+                        t.setLemma(null);
+                    }
                 }
                 megerCas.removeFsFromIndexes(fs);
             }
         }
+        
+        // The merge CAS has changed - its offset index must be rebuilt if used again
+        index.invalidate(WebAnnoConst.CURATION_USER);
+        
         // if slot bearing annotation, clean
         for (FeatureStructure baseFs : slotFeaturesToReset) {
             for (Feature roleFeature : baseFs.getType().getFeatures()) {
@@ -201,7 +221,7 @@ public class MergeCas
                     }
                     Map<String, ArrayFS> roleAnnosPerUser = new HashMap<>();
 
-                    setAllRoleAnnosOnPosition(aJCases, roleAnnosPerUser, users, baseFs,
+                    setAllRoleAnnosOnPosition(index, roleAnnosPerUser, users, baseFs,
                             roleFeature);
                     List<FeatureStructure> linkFSes = new LinkedList<>(
                             Arrays.asList(roleFss.toArray()));
@@ -221,7 +241,7 @@ public class MergeCas
                                 }
                                 Map<String, List<FeatureStructure>> targetAnnosPerUser = 
                                         new HashMap<>();
-                                getAllAnnosOnPosition(aJCases, targetAnnosPerUser, users, targetFs);
+                                getAllAnnosOnPosition(index, targetAnnosPerUser, users, targetFs);
 
                                 // do not agree on targets
                                 if (!isAgree(targetFs, targetAnnosPerUser)) {
@@ -255,35 +275,30 @@ public class MergeCas
                 || aFeature.toString().equals("uima.cas.AnnotationBase:sofa");
     }
 
-    private static void getAllAnnosOnPosition(Map<String, JCas> aJCases,
+    private static void getAllAnnosOnPosition(OffsetIndex aIndex,
             Map<String, List<FeatureStructure>> aAnnosPerUser, Set<String> aUsers,
             FeatureStructure aMergeAnno)
     {
         for (String usr : aUsers) {
             if (!aAnnosPerUser.containsKey(usr)) {
-                List<FeatureStructure> fssAtThisPosition = getFSAtPosition(aJCases, aMergeAnno,
+                List<FeatureStructure> fssAtThisPosition = getFSAtPosition(aIndex, aMergeAnno,
                         usr);
                 aAnnosPerUser.put(usr, fssAtThisPosition);
             }
             else {
-                List<FeatureStructure> fssAtThisPosition = getFSAtPosition(aJCases, aMergeAnno,
+                List<FeatureStructure> fssAtThisPosition = getFSAtPosition(aIndex, aMergeAnno,
                         usr);
                 aAnnosPerUser.get(usr).addAll(fssAtThisPosition);
             }
         }
     }
 
-    private static void setAllRoleAnnosOnPosition(Map<String, JCas> aJCases,
+    private static void setAllRoleAnnosOnPosition(OffsetIndex aIndex,
             Map<String, ArrayFS> slotAnnosPerUser, Set<String> aUsers, FeatureStructure aBaseAnno,
             Feature aFeature)
     {
-        Type t = aBaseAnno.getType();
-        int begin = ((AnnotationFS) aBaseAnno).getBegin();
-        int end = ((AnnotationFS) aBaseAnno).getEnd();
-
         for (String usr : aUsers) {
-            for (FeatureStructure baseFS : CasUtil.selectCovered(aJCases.get(usr).getCas(), t,
-                    begin, end)) {
+            for (AnnotationFS baseFS : aIndex.get(usr, (AnnotationFS) aBaseAnno)) {
                 // if non eqal stacked annotations with slot feature exists, get
                 // the right one
                 if (isSameAnno(aBaseAnno, baseFS)) {
@@ -299,15 +314,11 @@ public class MergeCas
     /**
      * Returns list of Annotations on this particular position (basically when stacking is allowed).
      */
-    private static List<FeatureStructure> getFSAtPosition(Map<String, JCas> aJCases,
+    private static List<FeatureStructure> getFSAtPosition(OffsetIndex aIndex,
             FeatureStructure fs, String aUser)
     {
-        Type t = fs.getType();
-        int begin = ((AnnotationFS) fs).getBegin();
-        int end = ((AnnotationFS) fs).getEnd();
-
         List<FeatureStructure> fssAtThisPosition = new ArrayList<>();
-        fssAtThisPosition.addAll(CasUtil.selectCovered(aJCases.get(aUser).getCas(), t, begin, end));
+        fssAtThisPosition.addAll(aIndex.get(aUser, (AnnotationFS) fs));
 
         return fssAtThisPosition;
     }
@@ -810,4 +821,56 @@ public class MergeCas
         }
         return targets;
     }
+
+    /**
+     * Annotations of each user indexed by type and offsets. The index for a user and type is built
+     * on first access with a single pass over the annotations of that type, so looking up the
+     * annotations at a position is a constant-time operation afterwards.
+     * <p>
+     * Only annotations with exactly the offsets of the position are returned. Other annotations
+     * covered by the position can never be {@link MergeCas#isSameAnno the same annotation} because
+     * their begin/end features differ.
+     */
+    private static class OffsetIndex
+    {
+        private final Map<String, JCas> jCases;
+        private final Map<String, Map<String, Map<Long, List<AnnotationFS>>>> index =
+                new HashMap<>();
+
+        public OffsetIndex(Map<String, JCas> aJCases)
+        {
+            jCases = aJCases;
+        }
+
+        public List<AnnotationFS> get(String aUser, AnnotationFS aFS)
+        {
+            Map<String, Map<Long, List<AnnotationFS>>> userIndex = index.computeIfAbsent(aUser,
+                k -> new HashMap<>());
+            
+            String typeName = aFS.getType().getName();
+            Map<Long, List<AnnotationFS>> typeIndex = userIndex.get(typeName);
+            if (typeIndex == null) {
+                typeIndex = new HashMap<>();
+                CAS cas = jCases.get(aUser).getCas();
+                for (AnnotationFS fs : CasUtil.select(cas, CasUtil.getType(cas, typeName))) {
+                    typeIndex.computeIfAbsent(key(fs.getBegin(), fs.getEnd()),
+                        k -> new ArrayList<>()).add(fs);
+                }
+                userIndex.put(typeName, typeIndex);
+            }
+            
+            List<AnnotationFS> result = typeIndex.get(key(aFS.getBegin(), aFS.getEnd()));
+            return result != null ? result : Collections.emptyList();
+        }
+
+        public void invalidate(String aUser)
+        {
+            index.remove(aUser);
+        }
+
+        private static long key(int aBegin, int aEnd)
+        {
+            return ((long) aBegin << 32) | (aEnd & 0xFFFFFFFFL);
+        }
+    }
 }
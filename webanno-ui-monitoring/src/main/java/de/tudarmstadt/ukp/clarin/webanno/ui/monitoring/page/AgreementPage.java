@@ -22,20 +22,19 @@ import static java.util.Arrays.asList;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
-import org.apache.commons.lang3.exception.ExceptionUtils;
-import org.apache.uima.jcas.JCas;
 import org.apache.wicket.Component;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.ajax.form.OnChangeAjaxBehavior;
 import org.apache.wicket.ajax.markup.html.form.AjaxButton;
 import org.apache.wicket.feedback.IFeedback;
 import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.CheckBox;
 import org.apache.wicket.markup.html.form.ChoiceRenderer;
 import org.apache.wicket.markup.html.form.DropDownChoice;
@@ -47,50 +46,45 @@ import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.model.ResourceModel;
 import org.apache.wicket.model.StringResourceModel;
-import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.spring.injection.annot.SpringBean;
 import org.apache.wicket.util.resource.AbstractResourceStream;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.wicketstuff.annotation.mount.MountPath;
+import org.wicketstuff.progressbar.ProgressBar;
+import org.wicketstuff.progressbar.Progression;
+import org.wicketstuff.progressbar.ProgressionModel;
 
 import de.agilecoders.wicket.core.markup.html.bootstrap.components.PopoverBehavior;
 import de.agilecoders.wicket.core.markup.html.bootstrap.components.PopoverConfig;
 import de.agilecoders.wicket.core.markup.html.bootstrap.components.TooltipConfig.Placement;
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
-import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
 import de.tudarmstadt.ukp.clarin.webanno.api.SecurityUtil;
 import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
-import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.AgreementUtils;
+import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.AgreementJob;
+import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.AgreementJob.State;
+import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.AgreementJobService;
+import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.AgreementRequest;
 import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.AgreementUtils.AgreementReportExportFormat;
-import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.AgreementUtils.AgreementResult;
 import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.AgreementUtils.ConcreteAgreementMeasure;
 import de.tudarmstadt.ukp.clarin.webanno.curation.agreement.PairwiseAnnotationResult;
-import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2;
-import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.DiffAdapter;
-import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.DiffResult;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff2.LinkCompareBehavior;
-import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
-import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.LinkMode;
 import de.tudarmstadt.ukp.clarin.webanno.model.PermissionLevel;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
-import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.clarin.webanno.support.AJAXDownload;
+import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxButton;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxFormComponentUpdatingBehavior;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaModel;
 import de.tudarmstadt.ukp.clarin.webanno.support.wicket.OverviewListChoice;
 import de.tudarmstadt.ukp.clarin.webanno.ui.core.menu.MenuItem;
 import de.tudarmstadt.ukp.clarin.webanno.ui.core.menu.MenuItemCondition;
 import de.tudarmstadt.ukp.clarin.webanno.ui.core.page.ApplicationPageBase;
-import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 
 @MenuItem(icon = "images/statistics.png", label = "Agreement", prio = 300)
@@ -100,12 +94,10 @@ public class AgreementPage
 {
     private static final long serialVersionUID = 5333662917247971912L;
 
-    private static final Logger LOG = LoggerFactory.getLogger(AgreementPage.class);
-
-    private @SpringBean DocumentService documentService;
     private @SpringBean ProjectService projectService;
     private @SpringBean AnnotationSchemaService annotationService;
     private @SpringBean UserDao userRepository;
+    private @SpringBean AgreementJobService agreementJobService;
 
     private final ProjectSelectionForm projectSelectionForm;
     private final AgreementForm agreementForm;
@@ -116,91 +108,37 @@ public class AgreementPage
         add(agreementForm = new AgreementForm("agreementForm"));
     }
 
-    private void updateAgreementTable(AjaxRequestTarget aTarget, boolean aClearCache)
-    {
-        try {
-            if (aClearCache) {
-                cachedCASes = null;
-            }
-            agreementForm.agreementTable2.getDefaultModel().detach();
-            if (aTarget != null && agreementForm.agreementTable2.isVisibleInHierarchy()) {
-                aTarget.add(agreementForm.agreementTable2);
-            }
-        }
-        catch (Throwable e) {
-            LOG.error("Error updating agreement table", e);
-            error("Error updating agreement table: " + ExceptionUtils.getRootCauseMessage(e));
-            if (aTarget != null) {
-                aTarget.addChildren(getPage(), IFeedback.class);
-            }
-        }
-    }
-
-    // The CASes cannot be serialized, so we make them transient here. However, it does not matter
-    // as we do not access the field directly but via getJCases() which will re-load them if
-    // necessary, e.g. if the transient field is empty after a session is restored from a
-    // persisted state.
-    private transient Map<String, List<JCas>> cachedCASes;
-
     /**
-     * Get the finished CASes used to compute agreement.
+     * @return the agreement request for the current settings or {@code null} if no feature has
+     *         been selected yet.
      */
-    private Map<String, List<JCas>> getJCases()
+    private AgreementRequest getAgreementRequest()
     {
-        // Avoid reloading the CASes when switching features.
-        if (cachedCASes != null) {
-            return cachedCASes;
-        }
-
         Project project = projectSelectionForm.getModelObject().project;
+        AgreementFormModel pref = agreementForm.getModelObject();
 
-        List<User> users = projectService.listProjectUsersWithPermissions(project,
-                PermissionLevel.USER);
-
-        List<SourceDocument> sourceDocuments = documentService.listSourceDocuments(project);
-
-        cachedCASes = new LinkedHashMap<>();
-        for (User user : users) {
-            List<JCas> cases = new ArrayList<>();
-
-            for (SourceDocument document : sourceDocuments) {
-                JCas jCas = null;
-
-                // Load the CAS if there is a finished one.
-                if (documentService.existsAnnotationDocument(document, user)) {
-                    AnnotationDocument annotationDocument = documentService
-                            .getAnnotationDocument(document, user);
-                    if (annotationDocument.getState().equals(AnnotationDocumentState.FINISHED)) {
-                        try {
-                            jCas = documentService.readAnnotationCas(annotationDocument);
-                            documentService.upgradeCas(jCas.getCas(), annotationDocument);
-                            // REC: I think there is no need to write the CASes here. We would not
-                            // want to interfere with currently active annotator users
-
-                            // Set the CAS name in the DocumentMetaData so that we can pick it
-                            // up in the Diff position for the purpose of debugging / transparency.
-                            DocumentMetaData documentMetadata = DocumentMetaData.get(jCas);
-                            documentMetadata
-                                    .setDocumentId(annotationDocument.getDocument().getName());
-                            documentMetadata
-                                    .setCollectionId(annotationDocument.getProject().getName());
-                        }
-                        catch (Exception e) {
-                            LOG.error("Unable to load data", e);
-                            error("Unable to load data: " + ExceptionUtils.getRootCauseMessage(e));
-                        }
-                    }
-                }
+        if (project == null || pref == null || pref.feature == null) {
+            return null;
+        }
 
-                // The next line can enter null values into the list if a user didn't work on this
-                // source document yet.
-                cases.add(jCas);
-            }
+        return new AgreementRequest(project, pref.feature, pref.measure, pref.linkCompareBehavior,
+                pref.excludeIncomplete);
+    }
 
-            cachedCASes.put(user.getUsername(), cases);
-        }
+    /**
+     * Get the agreement job for the current settings. The job may have been started by any curator
+     * of the project.
+     */
+    private AgreementJob getAgreementJob()
+    {
+        AgreementRequest request = getAgreementRequest();
+        return request != null ? agreementJobService.getJob(request) : null;
+    }
 
-        return cachedCASes;
+    private PairwiseAnnotationResult getAgreementResult()
+    {
+        AgreementJob job = getAgreementJob();
+        return job != null && State.DONE.equals(job.getState()) ? job.getResult() : null;
     }
 
     private class AgreementForm
@@ -220,6 +158,8 @@ public class AgreementPage
 
         private AjaxButton exportAll;
 
+        private ProgressBar progress;
+
         private CheckBox excludeIncomplete;
 
         public AgreementForm(String id)
@@ -338,29 +278,64 @@ public class AgreementPage
                         @Override
                         protected PairwiseAnnotationResult load()
                         {
-                            AnnotationFeature feature = featureList.getModelObject();
+                            return getAgreementResult();
+                        }
+                    }));
 
-                            // Do not do any agreement if no feature has been selected yet.
-                            if (feature == null) {
-                                return null;
-                            }
+            add(new Label("status", LambdaModel.of(this::getJobStatus)));
 
-                            Map<String, List<JCas>> casMap = getJCases();
+            add(progress = new ProgressBar("progress", new ProgressionModel()
+            {
+                private static final long serialVersionUID = 1L;
 
-                            Project project = projectSelectionForm.getModelObject().project;
-                            List<DiffAdapter> adapters = CasDiff2.getAdapters(annotationService,
-                                    project);
+                @Override
+                protected Progression getProgression()
+                {
+                    AgreementJob job = getAgreementJob();
+                    return new Progression(job != null ? job.getProgress() : 100);
+                }
+            })
+            {
+                private static final long serialVersionUID = 1L;
 
-                            AgreementFormModel pref = AgreementForm.this.getModelObject();
+                @Override
+                protected void onFinished(AjaxRequestTarget aTarget)
+                {
+                    AgreementJob job = getAgreementJob();
+                    if (job != null && State.FAILED.equals(job.getState())) {
+                        error("Unable to calculate agreement: " + job.getMessage());
+                        aTarget.addChildren(getPage(), IFeedback.class);
+                    }
+                    aTarget.add(agreementForm);
+                }
+            });
 
-                            DiffResult diff = CasDiff2.doDiff(asList(feature.getLayer().getName()),
-                                    adapters, pref.linkCompareBehavior, casMap);
-                            return AgreementUtils.getPairwiseAgreement(
-                                    AgreementForm.this.getModelObject().measure,
-                                    pref.excludeIncomplete, diff, feature.getLayer().getName(),
-                                    feature.getName(), casMap);
-                        }
-                    }));
+            add(new LambdaAjaxButton<AgreementFormModel>("calculate", this::actionCalculate)
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void onConfigure()
+                {
+                    super.onConfigure();
+
+                    setVisible(featureList.getModelObject() != null);
+                }
+            });
+
+            add(new LambdaAjaxButton<AgreementFormModel>("cancel", this::actionCancel)
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void onConfigure()
+                {
+                    super.onConfigure();
+
+                    AgreementJob job = getAgreementJob();
+                    setVisible(job != null && !job.getState().isFinished());
+                }
+            });
 
             exportAll = new AjaxButton("exportAll")
             {
@@ -384,36 +359,13 @@ public class AgreementPage
                                 public InputStream getInputStream()
                                     throws ResourceStreamNotFoundException
                                 {
-                                    AnnotationFeature feature = featureList.getModelObject();
-
-                                    // Do not do any agreement if no feature has been selected yet.
-                                    if (feature == null) {
-                                        return null;
-                                    }
-
-                                    Map<String, List<JCas>> casMap = getJCases();
-
-                                    Project project = projectSelectionForm.getModelObject().project;
-                                    List<DiffAdapter> adapters = CasDiff2
-                                            .getAdapters(annotationService, project);
-
-                                    AgreementFormModel pref = AgreementForm.this.getModelObject();
-
-                                    DiffResult diff = CasDiff2.doDiff(
-                                            asList(feature.getLayer().getName()), adapters,
-                                            pref.linkCompareBehavior, casMap);
-
-                                    AgreementResult agreementResult = AgreementUtils.makeStudy(diff,
-                                            feature.getLayer().getName(), feature.getName(),
-                                            pref.excludeIncomplete, casMap);
-                                    try {
-                                        return AgreementUtils.generateCsvReport(agreementResult);
-                                    }
-                                    catch (Exception e) {
-                                        // FIXME Is there some better error handling here?
-                                        LOG.error("Unable to generate report", e);
-                                        throw new ResourceStreamNotFoundException(e);
+                                    AgreementJob job = getAgreementJob();
+                                    InputStream report = job != null ? job.getReport() : null;
+                                    if (report == null) {
+                                        throw new ResourceStreamNotFoundException(
+                                                "No agreement results available");
                                     }
+                                    return report;
                                 }
 
                                 @Override
@@ -435,7 +387,7 @@ public class AgreementPage
                 {
                     super.onConfigure();
 
-                    setVisible(featureList.getModelObject() != null);
+                    setVisible(getAgreementResult() != null);
                 }
 
                 @Override
@@ -456,6 +408,47 @@ public class AgreementPage
             setVisible(model != null && model.project != null);
         }
 
+        private void actionCalculate(AjaxRequestTarget aTarget, Form<AgreementFormModel> aForm)
+        {
+            AgreementRequest request = getAgreementRequest();
+            if (request == null) {
+                return;
+            }
+
+            // Calculating again for the same settings discards the previous results since the
+            // annotations may have changed in the mean time.
+            AgreementJob job = agreementJobService.getJob(request);
+            agreementJobService.submit(request, userRepository.getCurrentUser().getUsername(),
+                    job != null && job.getState().isFinished());
+
+            progress.start(aTarget);
+            aTarget.add(agreementForm);
+        }
+
+        private void actionCancel(AjaxRequestTarget aTarget, Form<AgreementFormModel> aForm)
+        {
+            AgreementRequest request = getAgreementRequest();
+            if (request != null) {
+                agreementJobService.cancel(request);
+            }
+            aTarget.add(agreementForm);
+        }
+
+        private String getJobStatus()
+        {
+            if (featureList.getModelObject() == null) {
+                return null;
+            }
+
+            AgreementJob job = getAgreementJob();
+            if (job == null) {
+                return getString("status.NONE");
+            }
+
+            return MessageFormat.format(getString("status." + job.getState().name()),
+                    job.getOwner(), job.getProgress(), job.getFinished(), job.getMessage());
+        }
+
         private void addUpdateAgreementTableBehavior(Component aComponent)
         {
             aComponent.add(new OnChangeAjaxBehavior()
@@ -465,16 +458,14 @@ public class AgreementPage
                 @Override
                 protected void onUpdate(AjaxRequestTarget aTarget)
                 {
-                    // We may get errors when loading the JCases but at that time we can no longer
-                    // add the feedback panel to the cycle, so let's do it here.
                     aTarget.add(getFeedbackPanel());
 
-                    updateAgreementTable(aTarget, false);
-                    // // Adding this as well because when choosing a different measure, it may
-                    // affect
-                    // // the ability to exclude incomplete configurations.
-                    // aTarget.add(excludeIncomplete);
-                    // aTarget.add(linkCompareBehaviorDropDown);
+                    // If another curator is already calculating the agreement for the new
+                    // settings, follow the progress of that calculation.
+                    AgreementJob job = getAgreementJob();
+                    if (job != null && !job.getState().isFinished()) {
+                        progress.start(aTarget);
+                    }
 
                     // #1791 - for some reason the updateAgreementTableBehavior does not work
                     // anymore on the linkCompareBehaviorDropDown if we add it explicitly here/
@@ -555,26 +546,14 @@ public class AgreementPage
         {
             agreementForm.setModelObject(new AgreementFormModel());
             aTarget.add(agreementForm);
-
-            // Clear the cached CASes. When we switch to another project, we'll have to
-            // reload them.
-            updateAgreementTable(RequestCycle.get().find(AjaxRequestTarget.class), true);
         }
         
         private List<Project> listAllowedProjects()
         {
-            List<Project> allowedProject = new ArrayList<>();
-
             User user = userRepository.getCurrentUser();
 
-            List<Project> allProjects = projectService.listProjects();
-            for (Project project : allProjects) {
-                if (SecurityUtil.isProjectAdmin(project, projectService, user)
-                        || SecurityUtil.isCurator(project, projectService, user)) {
-                    allowedProject.add(project);
-                }
-            }
-            return allowedProject;
+            return projectService.listProjectsWithPermission(user, PermissionLevel.ADMIN,
+                    PermissionLevel.CURATOR);
         }
     }
 
@@ -145,7 +145,7 @@ public class AgreementTable
                             int incLabel = result.getIncompleteSetsByLabel().size();
                             
                             String label;
-                            if (result.getStudy().getItemCount() == 0) {
+                            if (result.getCompactStudy().getItemCount() == 0) {
                                 label = "no positions";
                             }
                             else if (noDataRater0 && noDataRater1) {
@@ -178,13 +178,13 @@ public class AgreementTable
                                 String.format("- %s: %d/%d%n",
                                     result.getCasGroupIds().get(0),
                                     result.getNonNullCount(result.getCasGroupIds().get(0)),
-                                    result.getStudy().getItemCount()) +
+                                    result.getCompactStudy().getItemCount()) +
                                 String.format("- %s: %d/%d%n",
                                     result.getCasGroupIds().get(1),
                                     result.getNonNullCount(result.getCasGroupIds().get(1)),
-                                    result.getStudy().getItemCount()) +
+                                    result.getCompactStudy().getItemCount()) +
                                 String.format("Distinct labels used: %d%n",
-                                    result.getStudy().getCategoryCount());
+                                    result.getCompactStudy().getCategoryCount());
 
                             Label l = new Label("label", Model.of(label)); 
                             cell.add(l);
@@ -20,7 +20,6 @@ package de.tudarmstadt.ukp.clarin.webanno.ui.monitoring.page;
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentStateTransition.ANNOTATION_FINISHED_TO_ANNOTATION_IN_PROGRESS;
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentStateTransition.ANNOTATION_IN_PROGRESS_TO_ANNOTATION_FINISHED;
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentStateTransition.IGNORE_TO_NEW;
-import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentStateTransition.NEW_TO_ANNOTATION_IN_PROGRESS;
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentStateTransition.NEW_TO_IGNORE;
 import static de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState.ANNOTATION_FINISHED;
 import static de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState.ANNOTATION_IN_PROGRESS;
@@ -38,6 +37,7 @@ import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -89,7 +89,10 @@ import org.wicketstuff.annotation.mount.MountPath;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
 import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectProgressMatrix;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectProgressMatrix.DocumentProgress;
 import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
+import de.tudarmstadt.ukp.clarin.webanno.api.ProjectStatisticsService;
 import de.tudarmstadt.ukp.clarin.webanno.api.SecurityUtil;
 import de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst;
 import de.tudarmstadt.ukp.clarin.webanno.automation.model.MiraTemplate;
@@ -144,6 +147,7 @@ public class MonitoringPage
     private @SpringBean AutomationService automationService;
     private @SpringBean DocumentService documentService;
     private @SpringBean ProjectService projectService;
+    private @SpringBean ProjectStatisticsService projectStatisticsService;
     private @SpringBean UserDao userRepository;
     
     private final ProjectSelectionForm projectSelectionForm;
@@ -157,6 +161,23 @@ public class MonitoringPage
 
     private String result;
 
+    /**
+     * Progress matrix of the selected project. It is loaded at most once per request and is not
+     * kept in the page state.
+     */
+    private final IModel<ProjectProgressMatrix> progressModel =
+            new LoadableDetachableModel<ProjectProgressMatrix>()
+    {
+        private static final long serialVersionUID = 6440417397475582150L;
+
+        @Override
+        protected ProjectProgressMatrix load()
+        {
+            Project project = projectSelectionForm.getModelObject().project;
+            return project != null ? documentService.getProjectProgressMatrix(project) : null;
+        }
+    };
+
     private static final ResourceReference ICON_FINISHED = new PackageResourceReference(
             MonitoringPage.class, "accept.png");
     private static final ResourceReference ICON_IGNORE = new PackageResourceReference(
@@ -266,6 +287,13 @@ public class MonitoringPage
 
     }
     
+    @Override
+    protected void onDetach()
+    {
+        super.onDetach();
+        progressModel.detach();
+    }
+    
     private JFreeChart renderProjectProgress()
     {
         Map<String, Integer> data = getOverallProjectProgress();
@@ -311,18 +339,10 @@ public class MonitoringPage
                         @Override
                         protected List<Project> load()
                         {
-                            List<Project> allowedProject = new ArrayList<>();
-
                             User user = userRepository.getCurrentUser();
 
-                            List<Project> allProjects = projectService.listProjects();
-                            for (Project project : allProjects) {
-                                if (SecurityUtil.isProjectAdmin(project, projectService, user)
-                                        || SecurityUtil.isCurator(project, projectService, user)) {
-                                    allowedProject.add(project);
-                                }
-                            }
-                            return allowedProject;
+                            return projectService.listProjectsWithPermission(user,
+                                    PermissionLevel.ADMIN, PermissionLevel.CURATOR);
                         }
                     });
                     setChoiceRenderer(new ChoiceRenderer<>("name"));
@@ -333,35 +353,32 @@ public class MonitoringPage
                 @Override
                 protected void onSelectionChanged(Project aNewSelection)
                 {
-                    List<SourceDocument> sourceDocuments = documentService
-                            .listSourceDocuments(aNewSelection);
-
                     if (aNewSelection == null) {
                         return;
                     }
 
+                    ProjectSelectionModel projectSelectionModel = ProjectSelectionForm.this
+                            .getModelObject();
+                    projectSelectionModel.project = aNewSelection;
+                    progressModel.detach();
+                    ProjectProgressMatrix progress = progressModel.getObject();
+
                     monitoringDetailForm.setModelObject(aNewSelection);
                     monitoringDetailForm.setVisible(true);
 
                     updateTrainingResultForm(aNewSelection);
                     result = "";
 
-                    ProjectSelectionModel projectSelectionModel = ProjectSelectionForm.this
-                            .getModelObject();
-                    projectSelectionModel.project = aNewSelection;
                     projectSelectionModel.annotatorsProgress = new TreeMap<>();
                     projectSelectionModel.annotatorsProgressInPercent = new TreeMap<>();
-                    projectSelectionModel.totalDocuments = sourceDocuments.size();
+                    projectSelectionModel.totalDocuments = progress.getDocumentCount();
                     ProjectSelectionForm.this.setVisible(true);
 
                     // Annotator's Progress
-                    if (projectSelectionModel.project != null) {
-                        projectSelectionModel.annotatorsProgressInPercent
-                                .putAll(getPercentageOfFinishedDocumentsPerUser(
-                                        projectSelectionModel.project));
-                        projectSelectionModel.annotatorsProgress
-                                .putAll(getFinishedDocumentsPerUser(projectSelectionModel.project));
-                    }
+                    projectSelectionModel.annotatorsProgressInPercent
+                            .putAll(getPercentageOfFinishedDocumentsPerUser(progress));
+                    projectSelectionModel.annotatorsProgress
+                            .putAll(getFinishedDocumentsPerUser(progress));
                     overallProjectProgressImage.setVisible(false);
                     annotatorsProgressImage.setVisible(true);
                     annotatorsProgressPercentageImage.setVisible(true);
@@ -373,12 +390,9 @@ public class MonitoringPage
                     documentListAsColumnHeader.add(CURATION);
 
                     // List of users with USER permission level
-                    List<User> users = projectService.listProjectUsersWithPermissions(
-                            projectSelectionModel.project, PermissionLevel.USER);
+                    List<String> users = progress.getAnnotators();
 
-                    for (User user : users) {
-                        documentListAsColumnHeader.add(user.getUsername());
-                    }
+                    documentListAsColumnHeader.addAll(users);
 
                     List<List<String>> userAnnotationDocumentStatusList = new ArrayList<>();
 
@@ -386,32 +400,15 @@ public class MonitoringPage
                     List<String> projectTimeStamp = new ArrayList<>();
                     projectTimeStamp.add(LAST_ACCESS + LAST_ACCESS_ROW); // first
                                                                          // column
-                    if (projectService.existsProjectTimeStamp(aNewSelection)) {
-                        projectTimeStamp.add(LAST_ACCESS
-                                + new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(projectService
-                                        .getProjectTimeStamp(aNewSelection)));
-                    }
-                    else {
-                        projectTimeStamp.add(LAST_ACCESS + "__");
-                    }
+                    projectTimeStamp.add(formatLastAccess(progress.getLastAccess()));
 
-                    for (User user : users) {
-                        if (projectService.existsProjectTimeStamp(projectSelectionModel.project,
-                                user.getUsername())) {
-                            projectTimeStamp
-                                    .add(LAST_ACCESS + new SimpleDateFormat("dd/MM/yyyy HH:mm:ss")
-                                            .format(projectService.getProjectTimeStamp(
-                                                    projectSelectionModel.project,
-                                                    user.getUsername())));
-                        }
-                        else {
-                            projectTimeStamp.add(LAST_ACCESS + "__");
-                        }
+                    for (String user : users) {
+                        projectTimeStamp.add(formatLastAccess(progress.getLastAccess(user)));
                     }
 
                     userAnnotationDocumentStatusList.add(projectTimeStamp);
 
-                    for (SourceDocument document : sourceDocuments) {
+                    for (DocumentProgress document : progress.getDocuments()) {
                         List<String> userAnnotationDocuments = new ArrayList<>();
                         userAnnotationDocuments.add(DOCUMENT + document.getName());
 
@@ -419,9 +416,9 @@ public class MonitoringPage
                         userAnnotationDocuments.add(WebAnnoConst.CURATION_USER + "-" + DOCUMENT
                                 + document.getName());
 
-                        for (User user : users) {
+                        for (String user : users) {
                             // annotation document status for this annotator
-                            userAnnotationDocuments.add(user.getUsername() + "-" + DOCUMENT
+                            userAnnotationDocuments.add(user + "-" + DOCUMENT
                                     + document.getName());
                         }
 
@@ -470,57 +467,34 @@ public class MonitoringPage
         }
     };
 
-    private Map<String, Integer> getFinishedDocumentsPerUser(Project aProject)
+    private static String formatLastAccess(Date aTimestamp)
+    {
+        if (aTimestamp == null) {
+            return LAST_ACCESS + "__";
+        }
+        return LAST_ACCESS + new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(aTimestamp);
+    }
+
+    private Map<String, Integer> getFinishedDocumentsPerUser(ProjectProgressMatrix aProgress)
     {
         Map<String, Integer> annotatorsProgress = new HashMap<>();
-        if (aProject != null) {
-            for (User user : projectService.listProjectUsersWithPermissions(aProject,
-                    PermissionLevel.USER)) {
-                for (SourceDocument document : documentService.listSourceDocuments(aProject)) {
-                    if (documentService.isAnnotationFinished(document, user)) {
-                        if (annotatorsProgress.get(user.getUsername()) == null) {
-                            annotatorsProgress.put(user.getUsername(), 1);
-                        }
-                        else {
-                            int previousValue = annotatorsProgress.get(user.getUsername());
-                            annotatorsProgress.put(user.getUsername(), previousValue + 1);
-                        }
-                    }
-                }
-                if (annotatorsProgress.get(user.getUsername()) == null) {
-                    annotatorsProgress.put(user.getUsername(), 0);
-                }
-            }
+        for (String user : aProgress.getAnnotators()) {
+            annotatorsProgress.put(user,
+                    aProgress.getCount(user, AnnotationDocumentState.FINISHED));
         }
         return annotatorsProgress;
     }
 
-    private Map<String, Integer> getPercentageOfFinishedDocumentsPerUser(Project aProject)
+    private Map<String, Integer> getPercentageOfFinishedDocumentsPerUser(
+            ProjectProgressMatrix aProgress)
     {
         Map<String, Integer> annotatorsProgress = new HashMap<>();
-        if (aProject != null) {
-            for (User user : projectService.listProjectUsersWithPermissions(aProject,
-                    PermissionLevel.USER)) {
-                int finished = 0;
-                int ignored = 0;
-                int totalDocs = 0;
-                List<SourceDocument> documents = documentService.listSourceDocuments(aProject);
-                for (SourceDocument document : documents) {
-                    totalDocs++;
-                    if (documentService.isAnnotationFinished(document, user)) {
-                        finished++;
-                    }
-                    else if (documentService.existsAnnotationDocument(document, user)) {
-                        AnnotationDocument annotationDocument = documentService
-                                .getAnnotationDocument(document, user);
-                        if (annotationDocument.getState().equals(AnnotationDocumentState.IGNORE)) {
-                            ignored++;
-                        }
-                    }
-                }
-                annotatorsProgress.put(user.getUsername(),
-                        (int) Math.round((double) (finished * 100) / (totalDocs - ignored)));
-            }
+        int totalDocs = aProgress.getDocumentCount();
+        for (String user : aProgress.getAnnotators()) {
+            int finished = aProgress.getCount(user, AnnotationDocumentState.FINISHED);
+            int ignored = aProgress.getCount(user, AnnotationDocumentState.IGNORE);
+            annotatorsProgress.put(user,
+                    (int) Math.round((double) (finished * 100) / (totalDocs - ignored)));
         }
         return annotatorsProgress;
     }
@@ -530,14 +504,10 @@ public class MonitoringPage
         Map<String, Integer> overallProjectProgress = new LinkedHashMap<>();
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
         User user = userRepository.get(username);
-        for (Project project : projectService.listProjects()) {
-            if (SecurityUtil.isCurator(project, projectService, user)
-                    || SecurityUtil.isProjectAdmin(project, projectService, user)) {
-                int annoFinished = documentService.listFinishedAnnotationDocuments(project).size();
-                int allAnno = documentService.numberOfExpectedAnnotationDocuments(project);
-                int progress = (int) Math.round((double) (annoFinished * 100) / (allAnno));
-                overallProjectProgress.put(project.getName(), progress);
-            }
+        for (Project project : projectService.listProjectsWithPermission(user,
+                PermissionLevel.CURATOR, PermissionLevel.ADMIN)) {
+            overallProjectProgress.put(project.getName(), projectStatisticsService
+                    .getProjectStatistics(project).getAnnotationProgress());
         }
         return overallProjectProgress;
     }
@@ -854,9 +824,9 @@ public class MonitoringPage
         public void populateItem(final Item<ICellPopulator<List<String>>> aCellItem,
                 final String componentId, final IModel<List<String>> rowModel)
         {
-            String username = SecurityContextHolder.getContext().getAuthentication()
-                    .getName();
-            final User user = userRepository.get(username);
+            // All states are taken from the progress matrix which is loaded once per request
+            // instead of being fetched from the database cell by cell
+            ProjectProgressMatrix progress = progressModel.getObject();
 
             int rowNumber = aCellItem.getIndex();
             aCellItem.setOutputMarkupId(true);
@@ -870,9 +840,8 @@ public class MonitoringPage
                 aCellItem.add(AttributeModifier.append("class", "centering"));
             }
             else if (value.substring(0, value.indexOf(":")).equals(WebAnnoConst.CURATION_USER)) {
-                SourceDocument document = documentService.getSourceDocument(project,
-                        value.substring(value.indexOf(":") + 1));
-                SourceDocumentState state = document.getState();
+                SourceDocumentState state = progress
+                        .getDocument(value.substring(value.indexOf(":") + 1)).getState();
                 // #770 - Disable per-document progress on account of slowing down monitoring page
 //                if (iconNameForState.equals(AnnotationDocumentState.IN_PROGRESS.toString())
 //                        && document.getSentenceAccessed() != 0) {
@@ -908,6 +877,7 @@ public class MonitoringPage
                     @Override
                     protected void onEvent(AjaxRequestTarget aTarget)
                     {
+                        User user = userRepository.getCurrentUser();
                         if (!SecurityUtil.isCurator(project, projectService, user)) {
                             aTarget.appendJavaScript(
                                     "alert('the state can only be changed explicitly by the curator')");
@@ -940,26 +910,12 @@ public class MonitoringPage
                 });
             }
             else {
-                SourceDocument document = documentService.getSourceDocument(project,
-                        value.substring(value.indexOf(":") + 1));
-                User annotator = userRepository.get(value.substring(0, value.indexOf(":")));
-
-                AnnotationDocumentState state;
-                AnnotationDocument annoDoc = null;
-                if (documentService.existsAnnotationDocument(document, annotator)) {
-                    annoDoc = documentService.getAnnotationDocument(document, annotator);
-                    state = annoDoc.getState();
-                }
+                AnnotationDocumentState state = progress.getState(
+                        value.substring(value.indexOf(":") + 1),
+                        value.substring(0, value.indexOf(":")));
                 // user didn't even start working on it
-                else {
+                if (state == null) {
                     state = AnnotationDocumentState.NEW;
-                    AnnotationDocument annotationDocument = new AnnotationDocument();
-                    annotationDocument.setDocument(document);
-                    annotationDocument.setName(document.getName());
-                    annotationDocument.setProject(project);
-                    annotationDocument.setUser(annotator.getUsername());
-                    annotationDocument.setState(state);
-                    documentService.createAnnotationDocument(annotationDocument);
                 }
 
                 // if state is in progress, add the last sentence number accessed
@@ -1025,15 +981,16 @@ public class MonitoringPage
                                 changeAnnotationDocumentState(document, user, IGNORE_TO_NEW);
                             }
                         }
-                        // user didn't even start working on it
+                        // user didn't even start working on it - the cell is shown as NEW, so
+                        // it is toggled to IGNORE just like an existing NEW document
                         else {
                             AnnotationDocument annotationDocument = new AnnotationDocument();
                             annotationDocument.setDocument(document);
                             annotationDocument.setName(document.getName());
                             annotationDocument.setProject(project);
                             annotationDocument.setUser(user.getUsername());
-                            annotationDocument.setState(AnnotationDocumentStateTransition
-                                    .transition(NEW_TO_ANNOTATION_IN_PROGRESS));
+                            annotationDocument.setState(
+                                    AnnotationDocumentStateTransition.transition(NEW_TO_IGNORE));
                             documentService.createAnnotationDocument(annotationDocument);
                         }
                         
@@ -1046,13 +1003,17 @@ public class MonitoringPage
 
         private void updateStats(AjaxRequestTarget aTarget, ProjectSelectionModel aModel)
         {
+            // Reload the matrix to pick up the state change
+            progressModel.detach();
+            ProjectProgressMatrix progress = progressModel.getObject();
+
             aModel.annotatorsProgress.clear();
-            aModel.annotatorsProgress.putAll(getFinishedDocumentsPerUser(project));
+            aModel.annotatorsProgress.putAll(getFinishedDocumentsPerUser(progress));
             aTarget.add(annotatorsProgressImage);
 
             aModel.annotatorsProgressInPercent.clear();
             aModel.annotatorsProgressInPercent
-                    .putAll(getPercentageOfFinishedDocumentsPerUser(project));
+                    .putAll(getPercentageOfFinishedDocumentsPerUser(progress));
             aTarget.add(annotatorsProgressPercentageImage);
 
             aTarget.add(monitoringDetailForm);
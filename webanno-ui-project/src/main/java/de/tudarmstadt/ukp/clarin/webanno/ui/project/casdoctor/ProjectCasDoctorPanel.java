@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.apache.uima.UIMAException;
@@ -142,7 +143,9 @@ public class ProjectCasDoctorPanel
 
         formModel.messageSets = new ArrayList<>();
 
-        for (SourceDocument sd : documentService.listSourceDocuments(project)) {
+        Map<SourceDocument, List<AnnotationDocument>> annotationDocuments = documentService
+                .listAnnotationDocuments(documentService.listSourceDocuments(project));
+        for (SourceDocument sd : annotationDocuments.keySet()) {
             {
                 LogMessageSet messageSet = new LogMessageSet(sd.getName() + " [INITIAL]");
                 JCas initialCas;
@@ -161,7 +164,7 @@ public class ProjectCasDoctorPanel
                 formModel.messageSets.add(messageSet);
             }
 
-            for (AnnotationDocument ad : documentService.listAnnotationDocuments(sd)) {
+            for (AnnotationDocument ad : annotationDocuments.get(sd)) {
                 if (documentService.existsAnnotationCas(ad)) {
                     LogMessageSet messageSet = new LogMessageSet(
                             sd.getName() + " [" + ad.getUser() + "]");
@@ -192,7 +195,9 @@ public class ProjectCasDoctorPanel
 
         formModel.messageSets = new ArrayList<>();
 
-        for (SourceDocument sd : documentService.listSourceDocuments(project)) {
+        Map<SourceDocument, List<AnnotationDocument>> annotationDocuments = documentService
+                .listAnnotationDocuments(documentService.listSourceDocuments(project));
+        for (SourceDocument sd : annotationDocuments.keySet()) {
             {
                 LogMessageSet messageSet = new LogMessageSet(sd.getName() + " [INITIAL]");
                 JCas initialCas;
@@ -215,7 +220,7 @@ public class ProjectCasDoctorPanel
                 formModel.messageSets.add(messageSet);
             }
 
-            for (AnnotationDocument ad : documentService.listAnnotationDocuments(sd)) {
+            for (AnnotationDocument ad : annotationDocuments.get(sd)) {
                 if (documentService.existsAnnotationCas(ad)) {
                     LogMessageSet messageSet = new LogMessageSet(
                             sd.getName() + " [" + ad.getUser() + "]");
@@ -18,15 +18,25 @@
 package de.tudarmstadt.ukp.clarin.webanno.ui.project.documents;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.Arrays;
 
 import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.markup.html.navigation.paging.AjaxPagingNavigator;
+import org.apache.wicket.extensions.ajax.markup.html.repeater.data.sort.AjaxFallbackOrderByBorder;
 import org.apache.wicket.feedback.IFeedback;
-import org.apache.wicket.markup.html.form.ChoiceRenderer;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.form.Check;
+import org.apache.wicket.markup.html.form.CheckGroup;
+import org.apache.wicket.markup.html.form.DropDownChoice;
+import org.apache.wicket.markup.html.form.EnumChoiceRenderer;
 import org.apache.wicket.markup.html.form.Form;
-import org.apache.wicket.markup.html.form.ListMultipleChoice;
+import org.apache.wicket.markup.html.form.TextField;
 import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.markup.repeater.data.DataView;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.PropertyModel;
 import org.apache.wicket.model.StringResourceModel;
 import org.apache.wicket.model.util.CollectionModel;
 import org.apache.wicket.spring.injection.annot.SpringBean;
@@ -36,9 +46,9 @@ import org.slf4j.LoggerFactory;
 import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState;
 import de.tudarmstadt.ukp.clarin.webanno.support.dialog.ConfirmationDialog;
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxButton;
-import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaModel;
 
 public class DocumentListPanel
     extends Panel
@@ -47,11 +57,15 @@ public class DocumentListPanel
 
     private static final Logger LOG = LoggerFactory.getLogger(DocumentListPanel.class);
 
+    private static final int ROWS_PER_PAGE = 50;
+
     private @SpringBean DocumentService documentService;
 
-    private ListMultipleChoice<SourceDocument> overviewList;
     private IModel<Project> project;
     private CollectionModel<SourceDocument> selectedDocuments;
+    private SourceDocumentDataProvider dataProvider;
+    private WebMarkupContainer documentsContainer;
+    private DataView<SourceDocument> documentList;
     private ConfirmationDialog confirmationDialog;
     
     public DocumentListPanel(String aId, IModel<Project> aProject)
@@ -62,15 +76,62 @@ public class DocumentListPanel
         
         project = aProject;
         selectedDocuments = new CollectionModel<>();
+        dataProvider = new SourceDocumentDataProvider(documentService, project);
 
         Form<Void> form = new Form<>("form");
         add(form);
         
-        overviewList = new ListMultipleChoice<>("documents");
-        overviewList.setChoiceRenderer(new ChoiceRenderer<>("name"));
-        overviewList.setModel(selectedDocuments);
-        overviewList.setChoices(LambdaModel.of(this::listSourceDocuments));
-        form.add(overviewList);
+        form.add(new TextField<>("nameFilter", new PropertyModel<String>(dataProvider,
+                "nameFilter")));
+        DropDownChoice<SourceDocumentState> stateFilter = new DropDownChoice<>("stateFilter",
+                new PropertyModel<>(dataProvider, "state"),
+                Arrays.asList(SourceDocumentState.values()), new EnumChoiceRenderer<>(this));
+        stateFilter.setNullValid(true);
+        form.add(stateFilter);
+        form.add(new LambdaAjaxButton<>("filter", this::actionFilter));
+
+        documentsContainer = new WebMarkupContainer("documentsContainer");
+        documentsContainer.setOutputMarkupId(true);
+        form.add(documentsContainer);
+
+        CheckGroup<SourceDocument> documents = new CheckGroup<>("documents", selectedDocuments);
+        documentsContainer.add(documents);
+
+        documentList = new DataView<SourceDocument>("document",
+                dataProvider, ROWS_PER_PAGE)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void populateItem(Item<SourceDocument> aItem)
+            {
+                aItem.add(new Check<>("selected", aItem.getModel()));
+                aItem.add(new Label("name", aItem.getModelObject().getName()));
+                aItem.add(new Label("state", aItem.getModelObject().getState()));
+            }
+        };
+        documents.add(documentList);
+        documents.add(new AjaxFallbackOrderByBorder<String>("orderByName", "name", dataProvider)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void onAjaxClick(AjaxRequestTarget aTarget)
+            {
+                aTarget.add(documentsContainer);
+            }
+        });
+        documents.add(new AjaxFallbackOrderByBorder<String>("orderByState", "state", dataProvider)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void onAjaxClick(AjaxRequestTarget aTarget)
+            {
+                aTarget.add(documentsContainer);
+            }
+        });
+        documentsContainer.add(new AjaxPagingNavigator("navigator", documentList));
 
         confirmationDialog = new ConfirmationDialog("confirmationDialog");
         confirmationDialog.setTitleModel(new StringResourceModel("DeleteDialog.title", this));
@@ -79,9 +140,13 @@ public class DocumentListPanel
         form.add(new LambdaAjaxButton<>("delete", this::actionDelete));
     }
     
-    private List<SourceDocument> listSourceDocuments()
+    private void actionFilter(AjaxRequestTarget aTarget, Form<Void> aForm)
     {
-        return documentService.listSourceDocuments(project.getObject());
+        if (selectedDocuments.getObject() != null) {
+            selectedDocuments.getObject().clear();
+        }
+        documentList.setCurrentPage(0);
+        aTarget.add(documentsContainer);
     }
     
     private void actionDelete(AjaxRequestTarget aTarget, Form<Void> aForm)
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab and FG Language Technology
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.ui.project.documents;
+
+import java.util.Iterator;
+
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortableDataProvider;
+import org.apache.wicket.model.IModel;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState;
+import de.tudarmstadt.ukp.clarin.webanno.support.EntityModel;
+
+/**
+ * Pages through the source documents of a project in the database instead of loading all of them
+ * at once. Only the IDs of the documents of the current page end up in the page state.
+ */
+public class SourceDocumentDataProvider
+    extends SortableDataProvider<SourceDocument, String>
+{
+    private static final long serialVersionUID = -2577402963520862633L;
+
+    private final DocumentService documentService;
+    private final IModel<Project> project;
+
+    private String nameFilter;
+    private SourceDocumentState state;
+
+    private Long size;
+
+    public SourceDocumentDataProvider(DocumentService aDocumentService, IModel<Project> aProject)
+    {
+        documentService = aDocumentService;
+        project = aProject;
+        setSort("name", SortOrder.ASCENDING);
+    }
+
+    @Override
+    public Iterator<? extends SourceDocument> iterator(long aFirst, long aCount)
+    {
+        return documentService.listSourceDocuments(project.getObject(), nameFilter, state,
+                getSort().getProperty(), getSort().isAscending(), aFirst, aCount).iterator();
+    }
+
+    @Override
+    public long size()
+    {
+        if (size == null) {
+            size = project.getObject() != null ? documentService
+                    .countSourceDocuments(project.getObject(), nameFilter, state) : 0;
+        }
+        return size;
+    }
+
+    @Override
+    public IModel<SourceDocument> model(SourceDocument aObject)
+    {
+        // Only keep the ID in the page state and re-load the document on the next request
+        return new EntityModel<>(aObject);
+    }
+
+    @Override
+    public void detach()
+    {
+        super.detach();
+        size = null;
+    }
+
+    public String getNameFilter()
+    {
+        return nameFilter;
+    }
+
+    public void setNameFilter(String aNameFilter)
+    {
+        nameFilter = aNameFilter;
+    }
+
+    public SourceDocumentState getState()
+    {
+        return state;
+    }
+
+    public void setState(SourceDocumentState aState)
+    {
+        state = aState;
+    }
+}
@@ -19,7 +19,6 @@ package de.tudarmstadt.ukp.clarin.webanno.ui.project.export;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.text.SimpleDateFormat;
@@ -61,11 +60,11 @@ import de.tudarmstadt.ukp.clarin.webanno.export.ExportService;
 import de.tudarmstadt.ukp.clarin.webanno.export.ExportUtil;
 import de.tudarmstadt.ukp.clarin.webanno.export.ImportUtil;
 import de.tudarmstadt.ukp.clarin.webanno.export.ProjectExportRequest;
+import de.tudarmstadt.ukp.clarin.webanno.export.ProjectZipWriter;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState;
 import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
 import de.tudarmstadt.ukp.clarin.webanno.support.AJAXDownload;
-import de.tudarmstadt.ukp.clarin.webanno.support.ZipUtils;
 import de.tudarmstadt.ukp.clarin.webanno.support.logging.Logging;
 import de.tudarmstadt.ukp.clarin.webanno.ui.core.settings.ProjectSettingsPanel;
 import de.tudarmstadt.ukp.clarin.webanno.ui.core.settings.ProjectSettingsPanelBase;
@@ -172,25 +171,25 @@ public class ProjectExportPanel
                 @Override
                 protected File load() {
                     File exportFile = null;
-                    File exportTempDir = null;
                     try {
-                        exportTempDir = File.createTempFile("webanno", "export");
-                        exportTempDir.delete();
-                        exportTempDir.mkdirs();
-
                         boolean curationDocumentExist = existsCurationDocument(
                                 ProjectExportForm.this.getModelObject().project.getObject());
 
                         if (!curationDocumentExist) {
                             error("No curation document created yet for this document");
                         } else {
-                            ExportUtil.exportCuratedDocuments(documentService, importExportService,
-                                    ProjectExportForm.this.getModelObject(), exportTempDir, false);
-                            ZipUtils.zipFolder(exportTempDir, new File(
-                                    exportTempDir.getAbsolutePath() + ".zip"));
-                            exportFile = new File(exportTempDir.getAbsolutePath()
-                                    + ".zip");
-
+                            File zipFile = File.createTempFile("webanno", "export.zip");
+                            try (ProjectZipWriter zip = new ProjectZipWriter(zipFile, true)) {
+                                ExportUtil.exportCuratedDocuments(documentService,
+                                        importExportService,
+                                        ProjectExportForm.this.getModelObject(), zip, false);
+                            }
+                            catch (Exception e) {
+                                // Do not leave the partially written archive behind
+                                FileUtils.deleteQuietly(zipFile);
+                                throw e;
+                            }
+                            exportFile = zipFile;
                         }
                     }
                     catch (CASRuntimeException e) {
@@ -201,13 +200,6 @@ public class ProjectExportPanel
                         error("Error: " + e.getMessage());
                         cancelOperationOnError();
                     }
-                    finally {
-                        try {
-                            FileUtils.forceDelete(exportTempDir);
-                        } catch (IOException e) {
-                            error("Unable to delete temp file");
-                        }
-                    }
 
                     return exportFile;
                 }